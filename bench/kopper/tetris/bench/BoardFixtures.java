@@ -0,0 +1,165 @@
+package kopper.tetris.bench;
+
+import java.util.Random;
+
+import kopper.tetris.core.BackgroundGrid;
+import kopper.tetris.core.BagRandomizer;
+import kopper.tetris.shape.Shape;
+
+/**
+ * The fixed board fixtures every benchmark of this package runs on. Every fixture is built from its own constant seed, so the exact same boards
+ * are measured on every run and on every machine.
+ * <ul>
+ * <li>{@code EMPTY}: nothing on the board.</li>
+ * <li>{@code HALF_FULL}: the bottom half of the board is ragged garbage with at least one hole in every row.</li>
+ * <li>{@code NEAR_DEATH}: like {@code HALF_FULL}, but only the top three rows are free.</li>
+ * <li>{@code MULTI_LINE_CLEAR}: the bottom rows are full except for the slots of the first two Shapes of a game, as they fall from the spawn
+ * column without any input, the slot of the first Shape under the slot of the second. The first Shape, the "T" of {@link BoardFixtures#SEED},
+ * deletes the two rows of its slot at once when it locks, and then the second Shape, an "I", deletes the row of its own.</li>
+ * </ul>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public final class BoardFixtures
+{
+	/**
+	 * The number of columns of every fixture, the same as {@link kopper.tetris.core.TetrisGame}.
+	 */
+	public static final int COLUMNS=20;
+	/**
+	 * The number of rows of every fixture, the same as {@link kopper.tetris.core.TetrisGame}.
+	 */
+	public static final int ROWS=20;
+	/**
+	 * The names of all fixtures, for use in {@code @Param} annotations.
+	 */
+	public static final String EMPTY="EMPTY", HALF_FULL="HALF_FULL", NEAR_DEATH="NEAR_DEATH", MULTI_LINE_CLEAR="MULTI_LINE_CLEAR";
+	/**
+	 * The seed of the 7-bag of every game played on a fixture. The {@code MULTI_LINE_CLEAR} board is built for the first Shapes it deals.
+	 */
+	public static final long SEED=20210501L;
+	/**
+	 * The ARGB color of the garbage cells, gray.
+	 */
+	private static final int GARBAGE_RGB=0xFF808080;
+
+	/**
+	 * Not instantiable.
+	 */
+	private BoardFixtures()
+	{
+	}
+	/**
+	 * Builds a new copy of the named fixture's board.
+	 * @param name the fixture name.
+	 * @return the board.
+	 * @throws IllegalArgumentException if there is no fixture of that name.
+	 */
+	public static BackgroundGrid createGrid(String name)
+	{
+		BackgroundGrid grid=new BackgroundGrid(COLUMNS,ROWS);
+		switch(name)
+		{
+			case EMPTY:
+				break;
+			case HALF_FULL:
+				fillGarbage(grid,ROWS/2,ROWS,new Random(0x48414C46L));
+				break;
+			case NEAR_DEATH:
+				fillGarbage(grid,3,ROWS,new Random(0x4E454152L));
+				break;
+			case MULTI_LINE_CLEAR:
+				BagRandomizer bag=new BagRandomizer(SEED);
+				int bottom=ROWS;
+				for(int i=0;i<2;i++)
+					bottom=fillAroundShape(grid,createSpawnedShape(bag.nextShapeIndex()),bottom);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown board fixture: "+name);
+		}
+		return grid;
+	}
+	/**
+	 * Builds the Shape that goes with the named fixture: the first Shape of a game on it, where it locks when it falls from the spawn column without
+	 * any input. That is the "T" of {@link BoardFixtures#SEED} resting on top of the pile, or in its slot on {@code MULTI_LINE_CLEAR}.
+	 * @param name the fixture name.
+	 * @param grid a board built by {@link BoardFixtures#createGrid(String)} for the same fixture.
+	 * @return the Shape, which is not part of the board.
+	 */
+	public static Shape createShape(String name, BackgroundGrid grid)
+	{
+		Shape s=createSpawnedShape(new BagRandomizer(SEED).nextShapeIndex());
+		while(grid.canTranslateDown(s))
+			s.translateShapeDown();
+		return s;
+	}
+	/**
+	 * Builds a Shape where a {@link kopper.tetris.core.TetrisEngine} spawns it, at the center column one cell over the top of the board.
+	 * @param type the type index of the Shape, see {@link BackgroundGrid#createShape(int, int, int)}.
+	 * @return the Shape.
+	 */
+	private static Shape createSpawnedShape(int type)
+	{
+		return BackgroundGrid.createShape(type,COLUMNS/2,-1);
+	}
+	/**
+	 * Moves a Shape straight down until its lowest cell is in the row above {@code bottom}, and fills the rows it covers there with garbage except
+	 * for its own cells, which leaves a slot the Shape completes.
+	 * @param grid the board.
+	 * @param s the Shape, which is moved but not consumed.
+	 * @param bottom the row under the slot.
+	 * @return the top most row of the slot.
+	 */
+	private static int fillAroundShape(BackgroundGrid grid, Shape s, int bottom)
+	{
+		int lowest=-1;
+		for(int i=0;i<s.getCellCount();i++)
+			lowest=Math.max(lowest,s.getAbsoluteCellRow(i));
+		s.translateShape(0,bottom-1-lowest);
+		int top=bottom;
+		for(int i=0;i<s.getCellCount();i++)
+			top=Math.min(top,s.getAbsoluteCellRow(i));
+		for(int r=top;r<bottom;r++)
+		{
+			for(int c=0;c<COLUMNS;c++)
+			{
+				if(!isShapeCell(s,r,c))
+					grid.fillCell(r,c,grid.getPaletteIndex(GARBAGE_RGB));
+			}
+		}
+		return top;
+	}
+	/**
+	 * Tests whether a Shape has a cell at a position of the board.
+	 * @param s the Shape.
+	 * @param row the row.
+	 * @param column the column.
+	 * @return true if one of the Shape's cells is there.
+	 */
+	private static boolean isShapeCell(Shape s, int row, int column)
+	{
+		for(int i=0;i<s.getCellCount();i++)
+		{
+			if(s.getAbsoluteCellRow(i)==row&&s.getAbsoluteCellColumn(i)==column)
+				return true;
+		}
+		return false;
+	}
+	/**
+	 * Fills rows with garbage: about two thirds of the cells, but never a full row.
+	 * @param grid the board.
+	 * @param top the first row to fill.
+	 * @param bottom the row after the last row to fill.
+	 * @param random the seeded source of the garbage.
+	 */
+	private static void fillGarbage(BackgroundGrid grid, int top, int bottom, Random random)
+	{
+		for(int r=top;r<bottom;r++)
+		{
+			int hole=random.nextInt(COLUMNS);
+			for(int c=0;c<COLUMNS;c++)
+				if(c!=hole&&random.nextInt(3)!=0)
+					grid.fillCell(r,c,grid.getPaletteIndex(GARBAGE_RGB));
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package kopper.tetris.bench;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kopper.tetris.core.BagRandomizer;
+import kopper.tetris.core.TetrisEngine;
+
+/**
+ * Benchmarks one iteration of game logic, {@link TetrisEngine#step()}, which is what {@link kopper.tetris.core.TetrisGame#performOneGameTick()}
+ * does: spawning, gravity, locking and row deletion. Every measurement is one batch of {@link EngineStepBenchmark#STEPS} steps of a new game on a
+ * board fixture with the 7-bag of {@link BoardFixtures#SEED}, so the board stays close to the fixture. The game is built once per trial and restored
+ * from a snapshot of its start before every batch, outside the measured time, so its construction is neither timed nor counted by {@code -prof gc}
+ * as allocation of the steps.
+ * <p>When a step ends the game, the same step restores the game to its start, so every step of a batch plays: a game lasts four steps on
+ * {@code NEAR_DEATH} and forty on {@code HALF_FULL}. Those restores are timed and allocate a little, once per game. On
+ * {@code MULTI_LINE_CLEAR} the first Shape deletes two rows and the second one row within the batch.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=2000,batchSize=EngineStepBenchmark.STEPS)
+@Measurement(iterations=2000,batchSize=EngineStepBenchmark.STEPS)
+@Fork(2)
+public class EngineStepBenchmark
+{
+	/**
+	 * The number of steps measured as one batch, enough for about three Shapes to fall and lock on an empty board.
+	 */
+	static final int STEPS=64;
+	/**
+	 * The board fixture, see {@link BoardFixtures}.
+	 */
+	@Param({BoardFixtures.EMPTY,BoardFixtures.HALF_FULL,BoardFixtures.NEAR_DEATH,BoardFixtures.MULTI_LINE_CLEAR})
+	public String fixture;
+	/**
+	 * The game being stepped.
+	 */
+	private TetrisEngine engine;
+	/**
+	 * The snapshot of the game just after it was started, see {@link TetrisEngine#writeSnapshot(ByteBuffer)}.
+	 */
+	private ByteBuffer start;
+
+	/**
+	 * Starts a new game on the fixture and keeps a snapshot of its start.
+	 */
+	@Setup(Level.Trial)
+	public void newGame()
+	{
+		engine=new TetrisEngine(BoardFixtures.createGrid(fixture),new BagRandomizer(BoardFixtures.SEED));
+		engine.start();
+		start=ByteBuffer.allocate(engine.getSnapshotSize());
+		engine.writeSnapshot(start);
+	}
+	/**
+	 * Restores the game to its start before every batch.
+	 */
+	@Setup(Level.Iteration)
+	public void restartGame()
+	{
+		start.rewind();
+		engine.restoreSnapshot(start);
+	}
+	/**
+	 * Measures {@link TetrisEngine#step()}, restoring the game to its start if the step ended it. The score is the time of a whole batch of
+	 * {@link EngineStepBenchmark#STEPS} steps.
+	 * @return the result flags of the step.
+	 */
+	@Benchmark
+	public int step()
+	{
+		int result=engine.step();
+		if((result&TetrisEngine.RESULT_GAME_OVER)!=0)
+			restartGame();
+		return result;
+	}
+}
@@ -0,0 +1,98 @@
+package kopper.tetris.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kopper.tetris.core.BackgroundGrid;
+import kopper.tetris.shape.Shape;
+
+/**
+ * Benchmarks of the collision methods of {@link BackgroundGrid} and of Shape rotation, on every board fixture. None of them change the board, so they
+ * share one board per trial. The methods that change the board are measured by {@link LockBenchmark}.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=5,time=1)
+@Measurement(iterations=5,time=1)
+@Fork(2)
+public class GridBenchmark
+{
+	/**
+	 * The board fixture, see {@link BoardFixtures}.
+	 */
+	@Param({BoardFixtures.EMPTY,BoardFixtures.HALF_FULL,BoardFixtures.NEAR_DEATH,BoardFixtures.MULTI_LINE_CLEAR})
+	public String fixture;
+	/**
+	 * The board of the read only benchmarks.
+	 */
+	private BackgroundGrid grid;
+	/**
+	 * The Shape resting on {@link GridBenchmark#grid}.
+	 */
+	private Shape shape;
+
+	/**
+	 * Builds the board and Shape of all benchmarks.
+	 */
+	@Setup(Level.Trial)
+	public void setUpTrial()
+	{
+		grid=BoardFixtures.createGrid(fixture);
+		shape=BoardFixtures.createShape(fixture,grid);
+	}
+	/**
+	 * Measures {@link BackgroundGrid#canTranslate(Shape, int, int)} one column to the left.
+	 * @return the result, so it is not optimized away.
+	 */
+	@Benchmark
+	public boolean canTranslate()
+	{
+		return grid.canTranslate(shape,-1,0);
+	}
+	/**
+	 * Measures {@link BackgroundGrid#canRotateCW90(Shape)}.
+	 * @return the result, so it is not optimized away.
+	 */
+	@Benchmark
+	public boolean canRotateCW90()
+	{
+		return grid.canRotateCW90(shape);
+	}
+	/**
+	 * Measures {@link BackgroundGrid#isShapeDead(Shape)}.
+	 * @return the result, so it is not optimized away.
+	 */
+	@Benchmark
+	public boolean isShapeDead()
+	{
+		return grid.isShapeDead(shape);
+	}
+	/**
+	 * Measures a full clockwise turn of the Shape, four calls to {@link Shape#rotateShapeClockwise90()}, which leaves the Shape as it was.
+	 * @return the Shape's orientation, so the rotation is not optimized away.
+	 */
+	@Benchmark
+	public int rotateShape()
+	{
+		shape.rotateShapeClockwise90();
+		shape.rotateShapeClockwise90();
+		shape.rotateShapeClockwise90();
+		shape.rotateShapeClockwise90();
+		return shape.getRotation();
+	}
+}
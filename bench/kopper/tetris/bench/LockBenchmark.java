@@ -0,0 +1,137 @@
+package kopper.tetris.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kopper.tetris.core.BackgroundGrid;
+import kopper.tetris.shape.Shape;
+
+/**
+ * Benchmarks of the methods of {@link BackgroundGrid} that lock a Shape and delete the rows it fills, on every board fixture. Every benchmark runs
+ * on a board of its own, which is brought to the state the measured method starts from before every invocation, outside the measured time:
+ * the fixture's cells are copied back with {@link BackgroundGrid#restoreCells(byte[], int)}, then the Shape is locked and the full rows are detected
+ * as far as the measured method needs. Two rows are deleted on {@code MULTI_LINE_CLEAR} and none on the other fixtures.
+ * <p>The setup before every invocation makes JMH time each invocation on its own, which adds the cost of reading the clock to every score, so
+ * compare these scores with each other rather than with those of {@link GridBenchmark}.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=5,time=1)
+@Measurement(iterations=5,time=1)
+@Fork(2)
+public class LockBenchmark
+{
+	/**
+	 * The board fixture, see {@link BoardFixtures}.
+	 */
+	@Param({BoardFixtures.EMPTY,BoardFixtures.HALF_FULL,BoardFixtures.NEAR_DEATH,BoardFixtures.MULTI_LINE_CLEAR})
+	public String fixture;
+	/**
+	 * The Shape resting on every board. Locking and row deletion do not move it, so it never needs restoring.
+	 */
+	private Shape shape;
+	/**
+	 * The cells of the fixture, as copied by {@link BackgroundGrid#copyCellsTo(byte[], int)}.
+	 */
+	private byte[] fixtureCells;
+	/**
+	 * The board of the benchmarks that lock the Shape, restored to the fixture before every invocation.
+	 */
+	private BackgroundGrid grid;
+	/**
+	 * The board of {@link LockBenchmark#detectFullRows()}, with the Shape locked into it before every invocation.
+	 */
+	private BackgroundGrid lockedGrid;
+	/**
+	 * The board of {@link LockBenchmark#removeDetectedRows()}, with the Shape locked into it and its full rows detected before every invocation.
+	 */
+	private BackgroundGrid detectedGrid;
+
+	/**
+	 * Builds the boards and the Shape and keeps a copy of the fixture's cells.
+	 */
+	@Setup(Level.Trial)
+	public void setUpTrial()
+	{
+		grid=BoardFixtures.createGrid(fixture);
+		lockedGrid=BoardFixtures.createGrid(fixture);
+		detectedGrid=BoardFixtures.createGrid(fixture);
+		shape=BoardFixtures.createShape(fixture,grid);
+		fixtureCells=new byte[grid.getRowCount()*grid.getColumnCount()];
+		grid.copyCellsTo(fixtureCells,0);
+	}
+	/**
+	 * Brings every board to the state its benchmark starts from. A restored board counts all of its rows as changed, so they are detected once
+	 * before the Shape is locked, which leaves only the rows of the Shape to examine, as after a lock in a game.
+	 */
+	@Setup(Level.Invocation)
+	public void restoreBoards()
+	{
+		grid.restoreCells(fixtureCells,0);
+		grid.detectFullRows();
+		lockedGrid.restoreCells(fixtureCells,0);
+		lockedGrid.detectFullRows();
+		lockedGrid.consumeShape(shape);
+		detectedGrid.restoreCells(fixtureCells,0);
+		detectedGrid.detectFullRows();
+		detectedGrid.consumeShape(shape);
+		detectedGrid.detectFullRows();
+	}
+	/**
+	 * Measures {@link BackgroundGrid#consumeShape(Shape)}.
+	 * @return the board, so the call is not optimized away.
+	 */
+	@Benchmark
+	public BackgroundGrid consumeShape()
+	{
+		grid.consumeShape(shape);
+		return grid;
+	}
+	/**
+	 * Measures {@link BackgroundGrid#detectFullRows()} just after the Shape was locked.
+	 * @return the number of full rows.
+	 */
+	@Benchmark
+	public int detectFullRows()
+	{
+		return lockedGrid.detectFullRows();
+	}
+	/**
+	 * Measures {@link BackgroundGrid#removeDetectedRows()} of the rows the Shape filled.
+	 * @return the board, so the call is not optimized away.
+	 */
+	@Benchmark
+	public BackgroundGrid removeDetectedRows()
+	{
+		detectedGrid.removeDetectedRows();
+		return detectedGrid;
+	}
+	/**
+	 * Measures locking the Shape and deleting the rows it fills: {@link BackgroundGrid#consumeShape(Shape)}, {@link BackgroundGrid#detectFullRows()}
+	 * and {@link BackgroundGrid#removeDetectedRows()}.
+	 * @return the number of rows deleted.
+	 */
+	@Benchmark
+	public int consumeAndClearRows()
+	{
+		grid.consumeShape(shape);
+		int rows=grid.detectFullRows();
+		grid.removeDetectedRows();
+		return rows;
+	}
+}
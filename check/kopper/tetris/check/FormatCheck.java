@@ -0,0 +1,428 @@
+package kopper.tetris.check;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import kopper.tetris.core.BagRandomizer;
+import kopper.tetris.core.HistoryRandomizer;
+import kopper.tetris.core.Replay;
+import kopper.tetris.core.ReplayArchive;
+import kopper.tetris.core.ReplayRecorder;
+import kopper.tetris.core.ShapeRandomizer;
+import kopper.tetris.core.TetrisEngine;
+import kopper.tetris.core.TetrisScore;
+import kopper.tetris.shape.Shape;
+
+/**
+ * A self-checking harness for the binary formats that outlive a single run of the game: the {@link ReplayArchive} file and its index, and the snapshot
+ * of {@link TetrisEngine#writeSnapshot(ByteBuffer)}. It plays seeded games, writes them, damages the files the way a crashed writer would, and checks
+ * that everything reads back exactly. Every failed check is printed, and the exit status is 1 if any check failed, so a build can run it after every
+ * format change. It is built and run by {@code check.xml} with Ant:
+ * <pre>    ant -f check.xml</pre>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public final class FormatCheck
+{
+	/**
+	 * The size of the header at the start of the archive and the index file, before the first record or index entry.
+	 */
+	private static final int FILE_HEADER=16;
+	/**
+	 * The number of games archived.
+	 */
+	private static final int GAMES=12;
+	/**
+	 * The offset of the number of randomizer parameters in a replay of a game of {@link FormatCheck#play(long)}: after the magic, the version, the
+	 * flags, and the columns, rows, ticks between gravity steps and randomizer type, each of them a varint of one byte.
+	 */
+	private static final int REPLAY_PARAMETER_COUNT=10;
+	/**
+	 * The number of ticks a game runs, plus its seed so that the snapshots are taken at different points between two gravity steps, before its
+	 * snapshot is taken, and at most again after it to compare the continued games tick by tick.
+	 */
+	private static final int SNAPSHOT_TICKS=300;
+	/**
+	 * The number of checks performed.
+	 */
+	private int checks=0;
+	/**
+	 * The number of checks that failed.
+	 */
+	private int failures=0;
+
+	/**
+	 * Not instantiable from outside.
+	 */
+	private FormatCheck()
+	{
+	}
+	/**
+	 * Runs every check in a new temporary directory, which is deleted afterwards.
+	 * @param args not used.
+	 * @throws IOException if the temporary files can not be written.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		FormatCheck check=new FormatCheck();
+		Path dir=Files.createTempDirectory("kopper-tetris-check");
+		try
+		{
+			check.checkArchive(dir.resolve("check.ktra"));
+			check.checkDamagedReplays();
+		}
+		catch(IOException|RuntimeException e)
+		{
+			check.check(false,"the archive checks ended with "+e);
+		}
+		try
+		{
+			check.checkSnapshots();
+		}
+		catch(RuntimeException e)
+		{
+			check.check(false,"the snapshot checks ended with "+e);
+		}
+		finally
+		{
+			try(Stream<Path> files=Files.walk(dir))
+			{
+				files.sorted(Comparator.reverseOrder()).forEach(f->f.toFile().delete());
+			}
+		}
+		System.out.println(check.checks+" checks, "+check.failures+" failed.");
+		if(check.failures>0)
+			System.exit(1);
+	}
+	/**
+	 * Records the outcome of a check, printing it if it failed.
+	 * @param ok True if the check passed.
+	 * @param what what was checked.
+	 */
+	private void check(boolean ok,String what)
+	{
+		checks++;
+		if(!ok)
+		{
+			failures++;
+			System.out.println("FAILED: "+what);
+		}
+	}
+	/**
+	 * Plays a seeded game with seeded random inputs until it is over.
+	 * @param seed the seed of the 7-bag and of the inputs.
+	 * @return the recorded game.
+	 */
+	private static Replay play(long seed)
+	{
+		TetrisEngine engine=new TetrisEngine(10,20,new BagRandomizer(seed));
+		ReplayRecorder recorder=engine.startRecording();
+		Random inputs=new Random(seed);
+		engine.start();
+		while(!engine.getState().isGameOver())
+		{
+			engine.tick();
+			if(inputs.nextInt(3)==0)
+				engine.input(1+inputs.nextInt(TetrisEngine.INPUT_ROTATE_CCW));
+		}
+		return recorder.finish();
+	}
+	/**
+	 * Checks that an archive holds exactly the supplied games, through {@link ReplayArchive#get(long)}, {@link ReplayArchive#getEntry(long)} and
+	 * both scan methods.
+	 * @param archive the archive.
+	 * @param games the games, in the order they were appended.
+	 * @param when the situation checked, for the failure messages.
+	 * @throws IOException if the archive can not be read.
+	 */
+	private void checkContents(ReplayArchive archive, Replay[] games, String when) throws IOException
+	{
+		check(archive.size()==games.length,when+": "+archive.size()+" replays instead of "+games.length);
+		if(archive.size()!=games.length)
+			return;
+		for(int i=0;i<games.length;i++)
+		{
+			Replay replay=archive.get(i);
+			check(Arrays.equals(replay.toBytes(false),games[i].toBytes(false)),when+": replay "+i+" differs from the one appended");
+			check(replay.verify(),when+": replay "+i+" does not play back to its summary");
+			ReplayArchive.Entry entry=archive.getEntry(i);
+			check(entry.getSeed()==games[i].getSeed()&&entry.getTicks()==games[i].getTicks()&&entry.getScore()==games[i].getScore()
+					&&entry.getRowsEliminated()==games[i].getRowsEliminated()&&entry.isGameOver()==games[i].isGameOver()
+					&&entry.getEventCount()==games[i].getEventCount(),when+": the header of replay "+i+" differs from its summary");
+		}
+		long[] visited=new long[2];
+		archive.scan(e->
+		{
+			check(e.getIndex()==visited[0]&&e.getSeed()==games[(int)visited[0]].getSeed(),when+": scan visited replay "+e.getIndex()+" out of order");
+			visited[0]++;
+		});
+		check(visited[0]==games.length,when+": scan visited "+visited[0]+" replays instead of "+games.length);
+		archive.scan(2,games.length-1,e->visited[1]+=e.getIndex());
+		long expected=0;
+		for(int i=2;i<games.length-1;i++)
+			expected+=i;
+		check(visited[1]==expected,when+": a range scan did not visit exactly the replays of its range");
+	}
+	/**
+	 * Checks appending to an archive, reopening it, and recovering it from a truncated index, a torn tail and a damaged last record.
+	 * @param file the archive file, which does not exist yet.
+	 * @throws IOException if the files can not be written.
+	 */
+	private void checkArchive(Path file) throws IOException
+	{
+		Path indexFile=file.resolveSibling(file.getFileName()+".idx");
+		Replay[] games=new Replay[GAMES];
+		for(int i=0;i<games.length;i++)
+			games[i]=play(i);
+		try(ReplayArchive archive=ReplayArchive.open(file))
+		{
+			for(int i=0;i<games.length;i++)
+				check(archive.append(games[i])==i,"append did not return the index "+i);
+			archive.flush();
+			checkContents(archive,games,"after appending");
+		}
+		long archiveSize=Files.size(file);
+		check(Files.size(indexFile)==FILE_HEADER+games.length*Long.BYTES,"the index does not hold one entry per replay");
+		try(ReplayArchive archive=ReplayArchive.openReadOnly(file))
+		{
+			checkContents(archive,games,"reopened read only");
+		}
+
+		//a writer that died while appending: the last index entries are lost, one of them half written, and half a record follows the last one.
+		byte[] firstRecord;
+		try(FileChannel channel=FileChannel.open(file,StandardOpenOption.READ,StandardOpenOption.WRITE))
+		{
+			ByteBuffer header=ByteBuffer.allocate(Integer.BYTES);
+			channel.read(header,FILE_HEADER);
+			firstRecord=new byte[ReplayArchive.RECORD_HEADER+header.getInt(0)];
+			channel.read(ByteBuffer.wrap(firstRecord),FILE_HEADER);
+			channel.write(ByteBuffer.wrap(firstRecord,0,ReplayArchive.RECORD_HEADER+7),archiveSize);
+		}
+		try(FileChannel channel=FileChannel.open(indexFile,StandardOpenOption.WRITE))
+		{
+			channel.truncate(channel.size()-3*Long.BYTES-3);
+		}
+		try(ReplayArchive archive=ReplayArchive.openReadOnly(file))
+		{
+			check(archive.size()==games.length-4,"read only after a crash: "+archive.size()+" replays instead of the "+(games.length-4)+" indexed");
+		}
+		try(ReplayArchive archive=ReplayArchive.open(file))
+		{
+			checkContents(archive,games,"recovered from a truncated index and a torn tail");
+		}
+		check(Files.size(file)==archiveSize,"the torn tail was not cut off");
+		check(Files.size(indexFile)==FILE_HEADER+games.length*Long.BYTES,"the recovered index does not hold one entry per replay");
+
+		//a complete record that fails its CRC is cut off like a torn one.
+		try(FileChannel channel=FileChannel.open(file,StandardOpenOption.WRITE))
+		{
+			firstRecord[firstRecord.length-1]^=0x55;
+			channel.write(ByteBuffer.wrap(firstRecord),archiveSize);
+		}
+		try(ReplayArchive archive=ReplayArchive.open(file))
+		{
+			checkContents(archive,games,"recovered from a record failing its CRC");
+		}
+		check(Files.size(file)==archiveSize,"the record failing its CRC was not cut off");
+
+		//the data of the last indexed record is torn: the index entry is dropped with it.
+		try(FileChannel channel=FileChannel.open(file,StandardOpenOption.WRITE))
+		{
+			channel.truncate(archiveSize-5);
+		}
+		Replay[] kept=Arrays.copyOf(games,games.length-1);
+		try(ReplayArchive archive=ReplayArchive.open(file))
+		{
+			checkContents(archive,kept,"recovered from a torn indexed record");
+			check(archive.append(games[games.length-1])==kept.length,"append after recovery did not return the next index");
+		}
+		try(ReplayArchive archive=ReplayArchive.openReadOnly(file))
+		{
+			checkContents(archive,games,"appended after recovery");
+		}
+	}
+	/**
+	 * Checks that replays whose header claims impossible sizes are rejected as damaged, rather than allocating what they claim: a grid without
+	 * columns, {@link Integer#MAX_VALUE} randomizer parameters, and compressed calls of {@link Integer#MAX_VALUE} bytes.
+	 * @throws IOException never, the expected exceptions are checked.
+	 */
+	private void checkDamagedReplays() throws IOException
+	{
+		byte[] good=play(0).toBytes(false);
+		byte[] noColumns=good.clone();
+		noColumns[REPLAY_PARAMETER_COUNT-4]=0;
+		checkDamaged(noColumns,"a replay without columns");
+
+		ByteArrayOutputStream parameters=new ByteArrayOutputStream();
+		parameters.write(good,0,REPLAY_PARAMETER_COUNT);
+		writeVarint(parameters,Integer.MAX_VALUE);
+		parameters.write(good,REPLAY_PARAMETER_COUNT+1,good.length-REPLAY_PARAMETER_COUNT-1);
+		checkDamaged(parameters.toByteArray(),"a replay with too many randomizer parameters");
+
+		//no parameters, a seed of 8 bytes, and a summary of 12 varints and a byte, all zero, followed by the lengths of the calls.
+		ByteArrayOutputStream calls=new ByteArrayOutputStream();
+		calls.write(good,0,REPLAY_PARAMETER_COUNT);
+		calls.write(new byte[1+8+12+1]);
+		writeVarint(calls,Integer.MAX_VALUE);
+		writeVarint(calls,0);
+		byte[] inflated=calls.toByteArray();
+		inflated[5]=1;
+		checkDamaged(inflated,"a replay with too long compressed calls");
+	}
+	/**
+	 * Checks that {@link Replay#fromBytes(byte[])} rejects data as a damaged replay.
+	 * @param data the data.
+	 * @param what what the data is, for the failure messages.
+	 */
+	private void checkDamaged(byte[] data, String what)
+	{
+		try
+		{
+			Replay.fromBytes(data);
+			check(false,what+" was read");
+		}
+		catch(IOException e)
+		{
+			check("Damaged replay".equals(e.getMessage()),what+" was rejected with "+e);
+		}
+	}
+	/**
+	 * Writes an unsigned LEB128 varint, the number format of a {@link Replay}.
+	 * @param out the stream.
+	 * @param value the value, not negative.
+	 */
+	private static void writeVarint(ByteArrayOutputStream out, long value)
+	{
+		while(value>=0x80)
+		{
+			out.write((int)(value&0x7F)|0x80);
+			value>>>=7;
+		}
+		out.write((int)value);
+	}
+	/**
+	 * Returns a description of everything a snapshot holds of a game, to compare games with.
+	 * @param engine the game.
+	 * @return the description.
+	 */
+	private static String describe(TetrisEngine engine)
+	{
+		Shape shape=engine.getCurrentShape();
+		TetrisScore score=engine.getScore();
+		StringBuilder s=new StringBuilder();
+		s.append(engine.getState().getCurrentState()).append(' ').append(engine.getGrid().cellsHashCode()).append(' ');
+		s.append(engine.getGrid().getPaletteSize()).append(' ').append(score.getScore()).append(' ').append(score.getRows()).append(' ');
+		s.append(score.getArrowDowns()).append(' ').append(score.getShapeTotal()).append(' ');
+		if(shape!=null)
+			s.append(shape.getKind()).append(shape.getAbsoluteShapePos().getX()).append(',').append(shape.getAbsoluteShapePos().getY()).append(',').append(shape.getRotation());
+		return s.toString();
+	}
+	/**
+	 * Returns the snapshot of a game.
+	 * @param engine the game.
+	 * @param order the byte order of the snapshot.
+	 * @return the bytes of the snapshot.
+	 */
+	private static byte[] snapshotOf(TetrisEngine engine, ByteOrder order)
+	{
+		ByteBuffer snapshot=ByteBuffer.allocate(engine.getSnapshotSize()).order(order);
+		engine.writeSnapshot(snapshot);
+		return snapshot.array();
+	}
+	/**
+	 * Runs a game for one tick, with a seeded random input every few ticks.
+	 * @param engine the game.
+	 * @param inputs the source of the inputs.
+	 */
+	private static void tick(TetrisEngine engine, Random inputs)
+	{
+		engine.tick();
+		if(inputs.nextInt(4)==0)
+			engine.input(1+inputs.nextInt(TetrisEngine.INPUT_ROTATE_CCW));
+	}
+	/**
+	 * Checks that snapshots round-trip in both byte orders and with both randomizers, including a color added to the palette, that the restored
+	 * game continues exactly as the original, and that a damaged snapshot leaves the game it is restored into unchanged.
+	 */
+	private void checkSnapshots()
+	{
+		for(int seed=0;seed<8;seed++)
+		{
+			try
+			{
+				checkSnapshot(seed);
+			}
+			catch(RuntimeException e)
+			{
+				check(false,"snapshot "+seed+" ended with "+e);
+			}
+		}
+	}
+	/**
+	 * Checks the snapshot of one seeded game, see {@link FormatCheck#checkSnapshots()}.
+	 * @param seed the seed of the game and of its inputs. Even seeds use a {@link BagRandomizer}, odd ones a {@link HistoryRandomizer}.
+	 */
+	private void checkSnapshot(int seed)
+	{
+		ShapeRandomizer randomizer=seed%2==0?new BagRandomizer(seed):new HistoryRandomizer(seed);
+		ByteOrder order=seed%4<2?ByteOrder.BIG_ENDIAN:ByteOrder.LITTLE_ENDIAN;
+		String when="snapshot "+seed+" ("+randomizer.getClass().getSimpleName()+", "+order+")";
+		TetrisEngine original=new TetrisEngine(10,20,randomizer);
+		original.start();
+		Random inputs=new Random(seed);
+		for(int i=0;i<SNAPSHOT_TICKS+seed;i++)
+			tick(original,inputs);
+		check(!original.getState().isGameOver(),when+": the game was over before its snapshot was taken");
+		if(seed==7)
+			original.getGrid().fillCell(19,0,original.getGrid().getPaletteIndex(0xFF808080));
+
+		ByteBuffer snapshot=ByteBuffer.allocate(original.getSnapshotSize()).order(order);
+		original.writeSnapshot(snapshot);
+		check(!snapshot.hasRemaining(),when+": the snapshot is not getSnapshotSize() bytes");
+		snapshot.flip();
+		TetrisEngine copy=TetrisEngine.readSnapshot(snapshot.duplicate().order(order));
+		check(describe(copy).equals(describe(original)),when+": read back as "+describe(copy)+" instead of "+describe(original));
+		TetrisEngine restored=new TetrisEngine(10,20);
+		restored.restoreSnapshot(snapshot.duplicate().order(order));
+		check(describe(restored).equals(describe(original)),when+": restored as "+describe(restored)+" instead of "+describe(original));
+		check(Arrays.equals(snapshotOf(copy,order),snapshotOf(original,order)),when+": the game read back writes a different snapshot");
+		check(Arrays.equals(snapshotOf(restored,order),snapshotOf(original,order)),when+": the restored game writes a different snapshot");
+
+		Random originalInputs=new Random(~seed);
+		Random copyInputs=new Random(~seed);
+		int ticks=0;
+		while(ticks<SNAPSHOT_TICKS&&!original.getState().isGameOver()&&describe(copy).equals(describe(original)))
+		{
+			tick(original,originalInputs);
+			tick(copy,copyInputs);
+			ticks++;
+		}
+		check(describe(copy).equals(describe(original)),when+": the restored game continued differently after "+ticks+" ticks");
+
+		for(int cut:new int[]{0,10,snapshot.limit()/2,snapshot.limit()-1})
+		{
+			String before=describe(restored);
+			ByteBuffer truncated=snapshot.duplicate().order(order);
+			truncated.limit(cut);
+			try
+			{
+				restored.restoreSnapshot(truncated);
+				check(false,when+": a snapshot cut after "+cut+" bytes was restored");
+			}
+			catch(IllegalArgumentException e)
+			{
+				check(describe(restored).equals(before),when+": a snapshot cut after "+cut+" bytes changed the game");
+			}
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package kopper.tetris.check;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import kopper.tetris.core.GameClient;
+import kopper.tetris.core.GameServer;
+import kopper.tetris.core.SpectatorPublisher;
+import kopper.tetris.core.SpectatorView;
+import kopper.tetris.core.TetrisEngine;
+import kopper.tetris.shape.Shape;
+
+/**
+ * A self-checking harness for spectating a game served by a {@link GameServer}. It serves a game on the loopback address at fifty times the speed of
+ * {@link kopper.tetris.core.TetrisGame}, plays it with seeded random inputs until it is over, and follows it from the spectator port with a
+ * {@link SpectatorView}. It checks that the view ends exactly where the player's last frame does, having applied deltas and not only keyframes,
+ * that a spectator asking for an unknown game is disconnected, and that the spectators are disconnected when the player leaves. Every failed check
+ * is printed, and the exit status is 1 if any check failed. It is built and run by {@code check.xml} with Ant:
+ * <pre>    ant -f check.xml</pre>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public final class SpectatorCheck
+{
+	/**
+	 * The length of a logic step of the server, 0.8 milliseconds.
+	 */
+	private static final long STEP_NANOS=800_000L;
+	/**
+	 * The number of the game played, the first game of the Java virtual machine.
+	 */
+	private static final int GAME=1;
+	/**
+	 * The number of milliseconds to wait for the player's last frame once the view shows the game over.
+	 */
+	private static final long FRAME_WAIT_MILLIS=5000;
+	/**
+	 * The number of milliseconds to wait for the server to close a connection.
+	 */
+	private static final long DISCONNECT_WAIT_MILLIS=2000;
+	/**
+	 * The number of checks performed.
+	 */
+	private int checks=0;
+	/**
+	 * The number of checks that failed.
+	 */
+	private int failures=0;
+	/**
+	 * The player's game as of the last frame it read, read by the main thread.
+	 */
+	private volatile String playerGame="";
+	/**
+	 * The number of messages the view applied, keyframes and deltas.
+	 */
+	private int keyframes, deltas;
+
+	/**
+	 * Not instantiable from outside.
+	 */
+	private SpectatorCheck()
+	{
+	}
+	/**
+	 * Runs every check on a new server, which is closed afterwards.
+	 * @param args not used.
+	 * @throws IOException if the server can not be started.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		SpectatorCheck check=new SpectatorCheck();
+		InetAddress loopback=InetAddress.getLoopbackAddress();
+		GameServer server=new GameServer(new InetSocketAddress(loopback,0),1,STEP_NANOS);
+		try
+		{
+			server.listenForSpectators(new InetSocketAddress(loopback,0));
+			server.start();
+			check.checkSpectating(new InetSocketAddress(loopback,server.getPort()),new InetSocketAddress(loopback,server.getSpectatorPort()));
+		}
+		catch(IOException|RuntimeException|InterruptedException e)
+		{
+			check.check(false,"the spectator checks ended with "+e);
+		}
+		finally
+		{
+			server.close();
+		}
+		System.out.println(check.checks+" checks, "+check.failures+" failed.");
+		if(check.failures>0)
+			System.exit(1);
+	}
+	/**
+	 * Records the outcome of a check, printing it if it failed.
+	 * @param ok True if the check passed.
+	 * @param what what was checked.
+	 */
+	private void check(boolean ok,String what)
+	{
+		checks++;
+		if(!ok)
+		{
+			failures++;
+			System.out.println("FAILED: "+what);
+		}
+	}
+	/**
+	 * Plays a game, follows it as a spectator, and checks the view and the disconnections.
+	 * @param players the address the server listens on for players.
+	 * @param spectators the address the server listens on for spectators.
+	 * @throws IOException if a connection failed.
+	 * @throws InterruptedException if the check was interrupted.
+	 */
+	private void checkSpectating(InetSocketAddress players, InetSocketAddress spectators) throws IOException, InterruptedException
+	{
+		GameClient player=new GameClient(players);
+		Thread playing=new Thread(()->play(player),"spectator-check-player");
+		try
+		{
+			playing.start();
+			GameClient spectator=new GameClient(spectators,GAME);
+			SpectatorView view=new SpectatorView(GameServer.COLUMNS,GameServer.ROWS);
+			while(!view.isSynced()||!view.getEngine().getState().isGameOver())
+				follow(view,spectator.readFrame());
+			check(keyframes>0&&deltas>0,"the view applied "+keyframes+" keyframes and "+deltas+" deltas");
+			String watched=describe(view.getEngine());
+			long end=System.currentTimeMillis()+FRAME_WAIT_MILLIS;
+			while(!watched.equals(playerGame)&&System.currentTimeMillis()<end)
+				Thread.sleep(10);
+			check(watched.equals(playerGame),"the view ended as "+watched+" instead of "+playerGame);
+
+			GameClient unknown=new GameClient(spectators,GAME+1000);
+			check(isDisconnected(unknown),"a spectator of an unknown game was not disconnected");
+			unknown.close();
+
+			player.close();
+			check(isDisconnected(spectator),"the spectator was not disconnected when the player left");
+			spectator.close();
+		}
+		finally
+		{
+			player.close();
+			playing.join();
+		}
+	}
+	/**
+	 * Applies a message to the view, counting the messages applied.
+	 * @param view the view.
+	 * @param message the message.
+	 */
+	private void follow(SpectatorView view, ByteBuffer message)
+	{
+		int type=message.get(message.position());
+		if(view.apply(message))
+		{
+			if(type==SpectatorPublisher.MESSAGE_KEYFRAME)
+				keyframes++;
+			else
+				deltas++;
+		}
+	}
+	/**
+	 * Runs the player: starts the game and sends a seeded random input after about every third frame, keeping a description of the game of the
+	 * last frame, until the connection is closed.
+	 * @param player the player's connection.
+	 */
+	private void play(GameClient player)
+	{
+		TetrisEngine game=new TetrisEngine(GameServer.COLUMNS,GameServer.ROWS);
+		Random inputs=new Random(GAME);
+		try
+		{
+			player.send(GameServer.COMMAND_START);
+			while(true)
+			{
+				game.restoreSnapshot(player.readFrame());
+				playerGame=describe(game);
+				if(!game.getState().isGameOver()&&inputs.nextInt(3)==0)
+					player.send(1+inputs.nextInt(TetrisEngine.INPUT_ROTATE_CCW));
+			}
+		}
+		catch(IOException e)
+		{
+			//the connection was closed.
+		}
+	}
+	/**
+	 * Tells if the server closes a connection within {@link SpectatorCheck#DISCONNECT_WAIT_MILLIS}, reading and discarding what it still sends.
+	 * A thread of its own closes the connection when the time is up, which ends the read that would otherwise wait forever.
+	 * @param client the connection.
+	 * @return true if the server closed the connection.
+	 * @throws InterruptedException if the check was interrupted.
+	 */
+	private static boolean isDisconnected(GameClient client) throws InterruptedException
+	{
+		AtomicBoolean timedOut=new AtomicBoolean();
+		Thread timer=new Thread(()->
+		{
+			try
+			{
+				Thread.sleep(DISCONNECT_WAIT_MILLIS);
+				timedOut.set(true);
+				client.close();
+			}
+			catch(InterruptedException|IOException e)
+			{
+				//the server closed the connection first.
+			}
+		},"spectator-check-timer");
+		timer.start();
+		try
+		{
+			while(true)
+				client.readFrame();
+		}
+		catch(IOException e)
+		{
+			timer.interrupt();
+			timer.join();
+			return !timedOut.get();
+		}
+	}
+	/**
+	 * Returns a description of everything a spectator sees of a game, to compare games with.
+	 * @param engine the game.
+	 * @return the description.
+	 */
+	private static String describe(TetrisEngine engine)
+	{
+		Shape shape=engine.getCurrentShape();
+		StringBuilder s=new StringBuilder();
+		s.append(engine.getState().getCurrentState()).append(' ').append(engine.getGrid().cellsHashCode()).append(' ');
+		s.append(engine.getScore().getScore()).append(' ').append(engine.getScore().getRows()).append(' ');
+		if(shape!=null)
+			s.append(shape.getKind()).append(shape.getAbsoluteShapePos().getX()).append(',').append(shape.getAbsoluteShapePos().getY()).append(',').append(shape.getRotation());
+		return s.toString();
+	}
+}
@@ -0,0 +1,176 @@
+package kopper.tetris.core;
+
+/**
+ * The part of {@link GameMetrics} and {@link AllGamesMetrics} deriving the published metrics from the raw counters and histograms, which the
+ * subclasses read from a single game or sum over all games.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+abstract class AbstractMetrics implements GameMetricsMBean
+{
+	/**
+	 * The counter of player inputs.
+	 */
+	static final int INPUTS=0;
+	/**
+	 * The counter of Shapes locked.
+	 */
+	static final int PIECES=1;
+	/**
+	 * The counter of rows cleared.
+	 */
+	static final int LINES=2;
+	/**
+	 * The counter of logic steps dropped.
+	 */
+	static final int SKIPPED=3;
+	/**
+	 * The counter of the bytes allocated during ticks.
+	 */
+	static final int ALLOCATED=4;
+	/**
+	 * The counter of the ticks whose allocations were measured.
+	 */
+	static final int ALLOCATION_TICKS=5;
+	/**
+	 * The first of the four counters of the locks clearing one to four rows at once.
+	 */
+	static final int CLEARS=6;
+	/**
+	 * The number of counters.
+	 */
+	static final int COUNTERS=CLEARS+4;
+	/**
+	 * The histogram of the durations of the ticks.
+	 */
+	static final int TICKS=0;
+	/**
+	 * The histogram of the durations of the paints.
+	 */
+	static final int PAINTS=1;
+
+	/**
+	 * Returns the value of a counter.
+	 * @param counter the counter, one of the constants of this class.
+	 * @return the value.
+	 */
+	abstract long getCounter(int counter);
+	/**
+	 * Adds the bucket counts of a histogram to an array.
+	 * @param histogram {@link AbstractMetrics#TICKS} or {@link AbstractMetrics#PAINTS}.
+	 * @param counts the array, of {@link DurationHistogram#BUCKETS} elements.
+	 */
+	abstract void addCountsTo(int histogram, long[] counts);
+	/**
+	 * Returns the sum of the durations of a histogram.
+	 * @param histogram {@link AbstractMetrics#TICKS} or {@link AbstractMetrics#PAINTS}.
+	 * @return the sum in nanoseconds.
+	 */
+	abstract long getDurationSum(int histogram);
+	/**
+	 * Returns the longest duration of a histogram.
+	 * @param histogram {@link AbstractMetrics#TICKS} or {@link AbstractMetrics#PAINTS}.
+	 * @return the duration in nanoseconds.
+	 */
+	abstract long getDurationMax(int histogram);
+
+	/**
+	 * Returns the bucket counts of a histogram.
+	 * @param histogram {@link AbstractMetrics#TICKS} or {@link AbstractMetrics#PAINTS}.
+	 * @return a new array of the counts.
+	 */
+	private long[] getCounts(int histogram)
+	{
+		long[] counts=new long[DurationHistogram.BUCKETS];
+		addCountsTo(histogram,counts);
+		return counts;
+	}
+	/**
+	 * Returns the mean duration of a histogram.
+	 * @param histogram {@link AbstractMetrics#TICKS} or {@link AbstractMetrics#PAINTS}.
+	 * @return the duration in nanoseconds, 0 if nothing was recorded.
+	 */
+	private double getMean(int histogram)
+	{
+		long count=DurationHistogram.getCount(getCounts(histogram));
+		return count==0?0:(double)getDurationSum(histogram)/count;
+	}
+	public long getTickCount()
+	{
+		return DurationHistogram.getCount(getCounts(TICKS));
+	}
+	public double getTickMeanNanos()
+	{
+		return getMean(TICKS);
+	}
+	public long getTickP50Nanos()
+	{
+		return DurationHistogram.getPercentile(getCounts(TICKS),50);
+	}
+	public long getTickP99Nanos()
+	{
+		return DurationHistogram.getPercentile(getCounts(TICKS),99);
+	}
+	public long getTickMaxNanos()
+	{
+		return getDurationMax(TICKS);
+	}
+	public long[] getTickHistogram()
+	{
+		return getCounts(TICKS);
+	}
+	public long getPaintCount()
+	{
+		return DurationHistogram.getCount(getCounts(PAINTS));
+	}
+	public double getPaintMeanNanos()
+	{
+		return getMean(PAINTS);
+	}
+	public long getPaintP50Nanos()
+	{
+		return DurationHistogram.getPercentile(getCounts(PAINTS),50);
+	}
+	public long getPaintP99Nanos()
+	{
+		return DurationHistogram.getPercentile(getCounts(PAINTS),99);
+	}
+	public long getPaintMaxNanos()
+	{
+		return getDurationMax(PAINTS);
+	}
+	public long[] getPaintHistogram()
+	{
+		return getCounts(PAINTS);
+	}
+	public long getFramesSkipped()
+	{
+		return getCounter(SKIPPED);
+	}
+	public long getInputEvents()
+	{
+		return getCounter(INPUTS);
+	}
+	public long getPiecesLocked()
+	{
+		return getCounter(PIECES);
+	}
+	public long getLinesCleared()
+	{
+		return getCounter(LINES);
+	}
+	public long[] getLineClears()
+	{
+		long[] clears=new long[4];
+		for(int i=0;i<4;i++)
+			clears[i]=getCounter(CLEARS+i);
+		return clears;
+	}
+	public double getAllocatedBytesPerTick()
+	{
+		long ticks=getCounter(ALLOCATION_TICKS);
+		if(ticks==0)
+			return GameMetrics.isAllocationMeasured()?0:-1;
+		return (double)getCounter(ALLOCATED)/ticks;
+	}
+}
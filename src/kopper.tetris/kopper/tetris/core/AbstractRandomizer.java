@@ -0,0 +1,91 @@
+package kopper.tetris.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The superclass of the randomizers of this package. It holds the seed and a small, fast, seedable pseudo random number generator (SplitMix64)
+ * whose whole state is a single {@code long}. Unlike {@link Math#random()}, which is one {@link java.util.Random} shared by every thread of the JVM, 
+ * each object of this class has its own generator, which is only ever used by the game owning it.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public abstract class AbstractRandomizer implements ShapeRandomizer
+{
+	/**
+	 * The seed this randomizer was created with.
+	 */
+	private final long seed;
+	/**
+	 * The state of the pseudo random number generator.
+	 */
+	private long state;
+	/**
+	 * Creates a randomizer from the supplied seed.
+	 * @param seed the seed.
+	 */
+	protected AbstractRandomizer(long seed)
+	{
+		this.seed=seed;
+		this.state=seed;
+	}
+	public long getSeed()
+	{
+		return seed;
+	}
+	/**
+	 * Resets the pseudo random number generator to the seed. Subclasses that keep more state must override this method, call it and reset their own state too.
+	 */
+	public void reset()
+	{
+		this.state=seed;
+	}
+	/**
+	 * Returns the number of bytes {@link AbstractRandomizer#writeState(ByteBuffer)} writes. Subclasses that keep more state must override this method
+	 * and add the size of their own state.
+	 * @return the size of the state in bytes.
+	 */
+	public int getStateSize()
+	{
+		return Long.BYTES;
+	}
+	/**
+	 * Writes the state of the sequence to a buffer, so that a randomizer created with the same seed and parameters continues the same sequence from
+	 * here after {@link AbstractRandomizer#readState(ByteBuffer)}. Subclasses that keep more state must override this method, call it and write their
+	 * own state after it.
+	 * @param dest the buffer, written at its position, which is advanced by {@link AbstractRandomizer#getStateSize()}.
+	 */
+	public void writeState(ByteBuffer dest)
+	{
+		dest.putLong(state);
+	}
+	/**
+	 * Restores the state of the sequence written by {@link AbstractRandomizer#writeState(ByteBuffer)}. Subclasses that keep more state must override this
+	 * method, call it and read their own state after it.
+	 * @param src the buffer, read at its position, which is advanced by {@link AbstractRandomizer#getStateSize()}.
+	 * @throws IllegalArgumentException if the state is not valid for this randomizer.
+	 */
+	public void readState(ByteBuffer src)
+	{
+		this.state=src.getLong();
+	}
+	/**
+	 * Returns the next 64 random bits of the pseudo random number generator.
+	 * @return 64 random bits.
+	 */
+	protected long nextLong()
+	{
+		long z=(state+=0x9E3779B97F4A7C15L);
+		z=(z^(z>>>30))*0xBF58476D1CE4E5B9L;
+		z=(z^(z>>>27))*0x94D049BB133111EBL;
+		return z^(z>>>31);
+	}
+	/**
+	 * Returns a random integer from 0 (inclusive) to the supplied bound (exclusive).
+	 * @param bound the upper bound, greater than zero and small compared to 2^31.
+	 * @return the random integer.
+	 */
+	protected int nextInt(int bound)
+	{
+		return (int)(((nextLong()>>>33)*bound)>>>31);
+	}
+}
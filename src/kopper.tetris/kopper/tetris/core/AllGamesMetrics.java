@@ -0,0 +1,120 @@
+package kopper.tetris.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * The runtime metrics of all games of this Java virtual machine together, published as the MBean {@code kopper.tetris:type=Games} once the first
+ * {@link GameMetrics} are registered. Every metric is the sum over the games whose metrics are published and the games whose metrics were published
+ * before, so the totals keep growing as games come and go. The percentiles are computed from the summed histograms.
+ * <p>A game's metrics move from the running games into the sums of the finished games under the lock of this object, which every sum is computed
+ * under as well, so no reader ever sees a game counted twice or not at all and the counters never go down.</p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public final class AllGamesMetrics extends AbstractMetrics implements AllGamesMetricsMBean
+{
+	/**
+	 * The single instance, created and published when first needed.
+	 */
+	private static AllGamesMetrics instance;
+	/**
+	 * The metrics of the games whose metrics are published. Guarded by the lock of this object.
+	 */
+	private final Set<GameMetrics> running=new HashSet<>();
+	/**
+	 * The sums of the metrics of the games whose metrics are no longer published. Only added to under the lock of this object.
+	 */
+	private final GameMetrics finished=new GameMetrics();
+	/**
+	 * The number of games whose metrics are no longer published. Guarded by the lock of this object.
+	 */
+	private long finishedGames;
+
+	/**
+	 * Creates the single instance.
+	 */
+	private AllGamesMetrics()
+	{
+	}
+	/**
+	 * Returns the metrics of all games, publishing them the first time.
+	 * @return the metrics.
+	 */
+	public static synchronized AllGamesMetrics getInstance()
+	{
+		if(instance==null)
+		{
+			instance=new AllGamesMetrics();
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(instance,AllGamesMetricsMBean.class),
+						new ObjectName("kopper.tetris:type=Games"));
+			}
+			catch(JMException e)
+			{
+				System.out.println("The metrics of all games are not published: "+e);
+			}
+		}
+		return instance;
+	}
+	/**
+	 * Adds the metrics of a game that were just published.
+	 * @param metrics the metrics.
+	 */
+	synchronized void add(GameMetrics metrics)
+	{
+		running.add(metrics);
+	}
+	/**
+	 * Moves the metrics of a game that are no longer published into the sums of the finished games.
+	 * @param metrics the metrics.
+	 */
+	synchronized void remove(GameMetrics metrics)
+	{
+		if(running.remove(metrics))
+		{
+			metrics.addTo(finished);
+			finishedGames++;
+		}
+	}
+	public synchronized int getRunningGames()
+	{
+		return running.size();
+	}
+	public synchronized long getFinishedGames()
+	{
+		return finishedGames;
+	}
+	synchronized long getCounter(int counter)
+	{
+		long sum=finished.getCounter(counter);
+		for(GameMetrics m:running)
+			sum+=m.getCounter(counter);
+		return sum;
+	}
+	synchronized void addCountsTo(int histogram, long[] counts)
+	{
+		finished.addCountsTo(histogram,counts);
+		for(GameMetrics m:running)
+			m.addCountsTo(histogram,counts);
+	}
+	synchronized long getDurationSum(int histogram)
+	{
+		long sum=finished.getDurationSum(histogram);
+		for(GameMetrics m:running)
+			sum+=m.getDurationSum(histogram);
+		return sum;
+	}
+	synchronized long getDurationMax(int histogram)
+	{
+		long max=finished.getDurationMax(histogram);
+		for(GameMetrics m:running)
+			max=Math.max(max,m.getDurationMax(histogram));
+		return max;
+	}
+}
@@ -0,0 +1,21 @@
+package kopper.tetris.core;
+
+/**
+ * The runtime metrics of all games of this Java virtual machine together, as published over JMX by {@link AllGamesMetrics}: the sums of the
+ * metrics of the running games and of the games that finished.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public interface AllGamesMetricsMBean extends GameMetricsMBean
+{
+	/**
+	 * Returns the number of games whose metrics are published.
+	 * @return the number of games.
+	 */
+	int getRunningGames();
+	/**
+	 * Returns the number of games whose metrics were published and no longer are.
+	 * @return the number of games.
+	 */
+	long getFinishedGames();
+}
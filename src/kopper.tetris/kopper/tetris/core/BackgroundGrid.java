@@ -1,7 +1,8 @@
 package kopper.tetris.core;
-import java.awt.Color;
 
-import java.awt.Graphics2D;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import kopper.tetris.shape.*;
 
@@ -10,9 +11,9 @@ import kopper.tetris.shape.*;
  *
  *
  * 
- *<p> 	A class that defines the background area of the Tetris game. All pixels of the Tetris game area reside within a
- *{@link GridCell}. This class paints the entire area of the Tetris game. The {@link Shape} class then paints over the background
- * its information according to the {@link Coord} objects inside the {@link Shape} model. When a shape is consumed by an object of this class using 
+ *<p> 	A class that defines the background area of the Tetris game. This class only holds the model of the game area: every cell stores the palette index
+ * of its color, and colors are ARGB ints, so nothing here touches {@code java.awt}. A {@link GridView} paints the grid and the live {@link Shape}
+ * over it according to the {@link Coord} objects inside the {@link Shape} model. When a shape is consumed by an object of this class using 
  * {@link BackgroundGrid#consumeShape(Shape)}, that object's data for cell color and cell location are inputed into this objects internal model representation
  * of the background of the Tetris game. Therefore, this class draws the background of the Tetris game and occupied cells left over by "dead" colored cells
  * of consumed "dead" Shapes. Programmatically, the shape object consumed by {@link BackgroundGrid#consumeShape(Shape)} is dereferenced and collected by the 
@@ -22,21 +23,60 @@ import kopper.tetris.shape.*;
  */
 public class BackgroundGrid 
 {
-	
-	private Color[][]internalStructure;
-	private boolean[][]isOccupied;
-	private Color backgroundColor;
+	/**
+	 * The palette index of the color of the empty background.
+	 */
+	public static final int PALETTE_EMPTY=0;
+	/**
+	 * The largest number of colors a palette can hold, since every cell stores its palette index in one byte.
+	 */
+	public static final int MAX_PALETTE_SIZE=256;
+	/**
+	 * The palette index of every cell, stored one row after another in a single flat array ({@code row*columns+column}). Index {@link BackgroundGrid#PALETTE_EMPTY}
+	 * is the empty background, indices 1 to 7 are the colors of the seven Tetrominoes in the order of {@link BackgroundGrid#createShape(int, int, int)}.
+	 * Colors are only looked up in {@link BackgroundGrid#palette} when the grid is painted by a {@link GridView}.
+	 */
+	private byte[] internalStructure;
+	/**
+	 * The ARGB values of the colors referred to by the palette indices of {@link BackgroundGrid#internalStructure}. Colors of custom Shapes are appended as
+	 * they are consumed.
+	 */
+	private int[] palette;
+	/**
+	 * The number of colors in {@link BackgroundGrid#palette}.
+	 */
+	private int paletteSize;
+	/**
+	 * The occupancy of every cell of this grid packed into row bitmasks. All collision detection is performed against this model.
+	 */
+	private BitBoard occupancy;
+	private int backgroundColor;
 	private int rows, columns;
-	private GridCell[][]cells;
 	private int[] rowRemovalIndices;
 	private int rowRemovalIndicesCount=0;
-	private GridCell imaginaryCell=new GridCell()
-	{
-		public void drawCell(Graphics2D g2d,boolean drawOutline)
-		{
-			//do nothing on purpose. off screen location.
-		}
-	};
+	/**
+	 * The number of occupied cells of every row, kept up to date by every method that changes the grid.
+	 */
+	private int[] rowFill;
+	/**
+	 * The height of every column: the number of rows from the bottom of the grid up to and including the column's top most occupied cell,
+	 * 0 for an empty column. Kept up to date by every method that changes the grid.
+	 */
+	private int[] columnHeights;
+	/**
+	 * The first and last row that may have become full since the last time rows were removed. Every other row is known to not be full.
+	 * An empty range is stored as {@code touchedTop>touchedBottom}.
+	 */
+	private int touchedTop, touchedBottom;
+	/**
+	 * The number of changes made to the cells of this grid, see {@link BackgroundGrid#getModificationCount()}.
+	 */
+	private int modificationCount=0;
+	/**
+	 * The first and last row whose cells changed since {@link BackgroundGrid#clearChangedRows()} was last called. An empty range is stored as
+	 * {@code changedTop>changedBottom}.
+	 */
+	private int changedTop, changedBottom;
 	/**
 	 * Returns a Shape of one of equal chance of being one of the following six subclass of {@link Shape}: {@link ShapeI}, {@link ShapeJ}, {@link ShapeL},
 	 * {@link ShapeO}, {@link ShapeS}, {@link ShapeT}, {@link ShapeZ}. This is a convenience method to be called upon when the game wants to spawn a new Shape.
@@ -55,75 +95,54 @@ public class BackgroundGrid
 	 * {@link ShapeO}, {@link ShapeS}, {@link ShapeT}, {@link ShapeZ}. This is a convenience method to be called upon when the game wants to spawn a new Shape. 
 	 * This method is an overloaded version of {@link BackgroundGrid#getNextShape(Coord)} and simply supplies the integer parameters to a new {@link Coord} object and calls that method.
 	 * 
-	 * @param x The y component of the coordinate where the requested shape should be located.
+	 * <p>Note: this method uses {@link Math#random()}, which is shared by the whole JVM and can not be seeded. A {@link TetrisEngine} draws its Shapes
+	 * from its own {@link ShapeRandomizer} instead.
+	 * 
+	 * @param x The x component of the coordinate where the requested shape should be located.
 	 * @param y The y component of the coordinate where the requested shape should be located.
 	 * @return A new Shape with location provided in parameters and an instance of one of the six Shape subclasses.
 	 * 
 	 */
 	public static Shape getNextShape(int x, int y)
 	{
-		int i=(int)(Math.random()*7.0);
-		switch(i)
-		{
-			case 0:return new ShapeI(x,y);
-			case 1:return new ShapeJ(x,y);
-			case 2:return new ShapeL(x,y);
-			case 3:return new ShapeO(x,y);
-			case 4:return new ShapeS(x,y);
-			case 5:return new ShapeT(x,y);
-			default:return new ShapeZ(x,y);
-		}
+		return createShape((int)(Math.random()*ShapeKind.COUNT),x,y);
 	}
 	/**
-	 *  Constructs a new Background Grid object.
-	 * @param x the Xth pixel location of the upper left corner of the pixel area represented by this object. (x,y)=(0,0) represents the upper left most corner of GUI.
-	 * @param y the Yth pixel location of the upper left corner of the pixel area represented by this object. (x,y=(0,0) represents the upper left most corner of the GUI.
-	 * @param gridWidth the number of pixels wide the rectangular area represented by this object is.
-	 * @param gridHeight the number of pixels tall the rectangular area represented by this object is.
-	 * @param columns the number of columns of tetris blocks to be represented in this object. The {@link GridCell} created by this objects internal model will have the
-	 * following property: {@code cellwidth=(gridWidth-x)/columns;}
-	 * @param rows the number of rows of tetris blocks to be represented in this object. The {@link GridCell} created by this objects internal model will have the
-	 * following property: {@code cellheight=(gridHeight-y)/rows;}
+	 * Returns a new Shape of the specified type. This is the type order used by every {@link ShapeRandomizer}, see {@link ShapeKind#fromIndex(int)}.
+	 * @param type The type index: 0 for {@link ShapeI}, 1 for {@link ShapeJ}, 2 for {@link ShapeL}, 3 for {@link ShapeO}, 4 for {@link ShapeS},
+	 * 5 for {@link ShapeT} and 6 for {@link ShapeZ}.
+	 * @param x The x component of the coordinate where the requested shape should be located.
+	 * @param y The y component of the coordinate where the requested shape should be located.
+	 * @return A new Shape with location provided in parameters.
 	 */
-	public BackgroundGrid(int x,int y, int gridWidth, int gridHeight,int columns, int rows)
+	public static Shape createShape(int type, int x, int y)
 	{
-		this.rows=rows;
-		this.columns=columns;
-		backgroundColor=Color.black;
-		cells=GridCell.createUniformGrid(x, y, gridWidth, gridHeight, columns, rows,backgroundColor);
-		rowRemovalIndices=new int[this.rows];
-		internalStructure=new Color[this.rows][];
-		isOccupied=new boolean[this.rows][];
-		for(int r=0;r<internalStructure.length;r++)
-		{
-			internalStructure[r]=new Color[columns];
-			isOccupied[r]=new boolean[columns];
-			for(int c=0;c<columns;c++)
-			{
-				internalStructure[r][c]=backgroundColor;
-				isOccupied[r][c]=false;
-			}
-		}
+		return ShapeKind.fromIndex(type).createShape(x,y);
 	}
 	/**
-	 * Returns the cell represented by the cell coordinate provided. If the coordinate is outside the bounds of the paintable area, 
-	 * a dumby cell, representing all out of bounds cells with an overridden  {@link GridCell#drawCell(Graphics2D, boolean)} and functionless method, is returned.
-	 * 
-	 * @param ro The row of the desired cell's location in the grid of this class's internal grid model of {@link GridCell} objects to retrieve
-	 * @param col The column of the desired cell's location in the grid of this class's internal grid model of {@link GridCell} objects to retrieve
-	 * @return the cell at the row, col location or in (col,row) if in (x,y) notation.
+	 * Constructs a new Background Grid object, which only holds the game model. A {@link GridView} gives it a pixel area to paint to, a
+	 * {@link TetrisEngine} running without any display needs none.
+	 * @param columns the number of columns of tetris blocks to be represented in this object.
+	 * @param rows the number of rows of tetris blocks to be represented in this object.
 	 */
-	public GridCell getCell(int ro,int col)
+	public BackgroundGrid(int columns, int rows)
 	{
-		if(col>=0&&col<columns&&ro>=0&&ro<rows)
-		{
-			return cells[ro][col];
-		}
-		else
-		{
-			return imaginaryCell;
-		}
-		
+		this.rows=rows;
+		this.columns=columns;
+		backgroundColor=0xFF000000;
+		rowRemovalIndices=new int[this.rows];
+		internalStructure=new byte[this.rows*this.columns];
+		palette=new int[MAX_PALETTE_SIZE];
+		palette[paletteSize++]=backgroundColor;
+		for(int i=0;i<ShapeKind.COUNT;i++)
+			palette[paletteSize++]=ShapeKind.fromIndex(i).createShape(0,0).getCellRGB(0);
+		rowFill=new int[this.rows];
+		columnHeights=new int[this.columns];
+		touchedTop=this.rows;
+		touchedBottom=-1;
+		changedTop=this.rows;
+		changedBottom=-1;
+		occupancy=new BitBoard(columns,rows);
 	}
 	/**
 	 * Gets the number of rows present in this model's internal grid data.
@@ -141,31 +160,6 @@ public class BackgroundGrid
 	{
 		return this.columns;
 	}
-	/**
-	 * <p>This method is named differently for various classes, but all classes that must paint 
-	 * representations of their data to the window, have some variation
-	 * of a method {@code drawOBJECTNAME(Graphics2D g2d);} This is that method for this class.
-	 * <p>Note: TO BE REIMPLEMENTED AS AN INTERFACE DEFINITION implemented by all drawable classes in the future.
-	 * 
-	 * <p>This method is where the background model data represented by this object is painted to represent this object.
-	 * Specifically, this object keeps track of each gridcell's color, whether it is occupied by a cell of a dead shape
-	 * or empty space and the background color of empty space. 
-	 * 
-	 * <p>
-	 * This method is called via helper method {@link TetrisGame#paintGameRunning(Graphics2D, kopper.tetris.core.TetrisGame.State)}, which in turn is called by {@link TetrisGame#paintComponent(java.awt.Graphics)}, 
-	 * which in turn is an overridden method of{@link javax.swing.JPanel}'s {@link javax.swing.JComponent#paintComponents(java.awt.Graphics) }.
-	 * @param g2d The graphics object ultimately supplied by overridden method  {@link TetrisGame#paintComponent(java.awt.Graphics)}
-	 */
-	public void drawBackgroundGrid(Graphics2D g2d)
-	{
-		for(int r=0;r<cells.length;r++)
-			for(int c=0;c<cells[r].length;c++)
-			{	cells[r][c].setColor(backgroundColor);
-				cells[r][c].drawCell(g2d, false); 
-				cells[r][c].setColor(internalStructure[r][c]);
-				cells[r][c].drawCell(g2d,isOccupied[r][c]);
-			}
-	}
 	/**
 	 * Takes the individual colors and cell coordinates of the supplied {@link Shape} object copies those colors and coordinates into the internal grid model of this objects
 	 * grid of cells. The shape is now painted as if it were the background represented by this object. Conceptually, this shape will be referred to as a dead shape. 
@@ -178,97 +172,116 @@ public class BackgroundGrid
 		int column=0;
 		for(int i=0;i<s.getCellCount();i++)
 		{
-			row=s.getAbsoluteCellPos(i).getRow();
-			column=s.getAbsoluteCellPos(i).getColumn();
+			row=s.getAbsoluteCellRow(i);
+			column=s.getAbsoluteCellColumn(i);
 			
 			if(row>=0&&row<this.rows&&column>=0&&column<this.columns)
 			{
-				internalStructure[row][column]=s.getCellColor(i);
-				isOccupied[row][column]=true;
+				fillCell(row,column,getPaletteIndex(s.getCellRGB(i)));
 			}
 			else
 			{
 				System.out.println("Consuming a shape outside of grid. Nothing added to Grid.");// END OF GAME SITUATIOn
 			}
-			
+
 		}
-		
+
 	}
 	/**
-	 * This method calls the supplied Shape's method {@link Shape#trialTranslateShape(int, int)} and compares the returned {@link Coord}
-	 * object data to this object's internal model (a 2D boolean array) to determine if the the coordinates are supplied by a trial translation
-	 * are already occupied. 
+	 * Makes a single cell part of the background, as if a cell of a dead shape had been consumed there, with the color at the specified palette index.
+	 * This is how boards are set up that could not easily be reached by playing, for example the fixed board fixtures of benchmarks and bots, see
+	 * {@link BackgroundGrid#getPaletteIndex(int)}.
+	 * @param row The row of the cell, inside the grid.
+	 * @param column The column of the cell, inside the grid.
+	 * @param paletteIndex The palette index of the color of the cell, 1 or greater and less than {@link BackgroundGrid#getPaletteSize()}.
+	 */
+	public void fillCell(int row,int column,int paletteIndex)
+	{
+		internalStructure[row*columns+column]=(byte)paletteIndex;
+		modificationCount++;
+		changedTop=Math.min(changedTop,row);
+		changedBottom=Math.max(changedBottom,row);
+		if(occupancy.isOccupied(row,column))
+			return;
+		occupancy.set(row,column);
+		rowFill[row]++;
+		columnHeights[column]=Math.max(columnHeights[column],this.rows-row);
+		touchedTop=Math.min(touchedTop,row);
+		touchedBottom=Math.max(touchedBottom,row);
+	}
+	/**
+	 * This method tests the supplied Shape's row masks, in its current orientation and translated by the supplied vector, against this object's
+	 * internal model (a {@link BitBoard}) to determine if the the coordinates of the translated Shape are already occupied. The Shape itself is not modified.
 	 * 
 	 * @param s The shape being tested for collision with occupied cells.
 	 * @param x The translation vector x component. Typically of magnitude one with + or - determining direction.
 	 * @param y The translation vector y component. Typically of magnitude one with + or - determining direction.
-	 * @return True if none of the trial coordinates collide with occupied cells and False if otherwise, as defined by the private data of this {@link BackgroundGrid} object.
+	 * @return True if none of the translated coordinates collide with occupied cells and False if otherwise, as defined by the private data of this {@link BackgroundGrid} object.
 	 */
 	public boolean canTranslate(Shape s,int x, int y)
 	{
-		s.trialTranslateShape(x, y);
-		Coord temp;
-		for(int i=0;i<s.getCellCount();i++)
-		{
-			temp=s.getTrialAbsoluteCellPos(i);
-			if(isOffLimits(temp.getRow(),temp.getColumn()))
-				return false;
-		}
-		return true;
+		return canPlace(s,s.getRotation(),x,y);
 	}
 	/**
 	 * A convenience method which calls {@link BackgroundGrid#canTranslate(Shape, int, int)} with a downward vector of (x,y)=(0,1).
 	 * @param s The shape being tested for collision with occupied cells.
-	 * @return True if none of the trial coordinates collide with occupied cells and False if otherwise, as defined by the private data of this {@link BackgroundGrid} object.
+	 * @return True if none of the translated coordinates collide with occupied cells and False if otherwise, as defined by the private data of this {@link BackgroundGrid} object.
 	 */
 	public boolean canTranslateDown(Shape s)
 	{
 		return canTranslate(s,0,1);
 	}
 	/**
-	 * This method calls the supplied Shape's method {@link Shape#trialRotateShapeClockwise90() } and compares the returned {@link Coord}
-	 * object data to this object's internal model (a 2D boolean array) to determine if the the coordinates are supplied by a trial translation
-	 * are already occupied. 
+	 * This method tests the row masks of the supplied Shape's next clockwise orientation ({@link RotationTable#clockwise(int)}) against this object's
+	 * internal model (a {@link BitBoard}) to determine if the the coordinates of the rotated Shape are already occupied. The Shape itself is not modified.
 	 * 
 	 * @param s The shape being tested for collision with occupied cells.
-	 * @return True if none of the trial coordinates collide with occupied cells and False if otherwise, as defined by the private data of this {@link BackgroundGrid} object.
+	 * @return True if none of the rotated coordinates collide with occupied cells and False if otherwise, as defined by the private data of this {@link BackgroundGrid} object.
 	 */
 	public boolean canRotateCW90(Shape s)
 	{
-		s.trialRotateShapeClockwise90();
-		Coord temp;
-		for(int i=0;i<s.getCellCount();i++)
-		{
-			temp=s.getTrialAbsoluteCellPos(i);
-			if(isOffLimits(temp.getRow(),temp.getColumn()))
-				return false;
-		}
-		return true;
+		return canPlace(s,RotationTable.clockwise(s.getRotation()),0,0);
 	}
 	/**
 	 * 
-	 * This method calls the supplied Shape's method {@link Shape#trialRotateShapeCounterClockwise90() } and compares the returned {@link Coord}
-	 * object data to this object's internal model (a 2D boolean array) to determine if the the coordinates are supplied by a trial translation
-	 * are already occupied. 
+	 * This method tests the row masks of the supplied Shape's next counter clockwise orientation ({@link RotationTable#counterClockwise(int)}) against this object's
+	 * internal model (a {@link BitBoard}) to determine if the the coordinates of the rotated Shape are already occupied. The Shape itself is not modified.
 	 * 
 	 * @param s The shape being tested for collision with occupied cells.
-	 * @return True if none of the trial coordinates collide with occupied cells and False if otherwise, as defined by the private data of this {@link BackgroundGrid} object.
+	 * @return True if none of the rotated coordinates collide with occupied cells and False if otherwise, as defined by the private data of this {@link BackgroundGrid} object.
 	 */
 	public boolean canRotateCCW90(Shape s)
 	{
-		s.trialRotateShapeCounterClockwise90();
-		Coord temp;
-		for (int i=0;i<s.getCellCount();i++)
-		{
-			temp=s.getTrialAbsoluteCellPos(i);
-			if(isOffLimits(temp.getRow(),temp.getColumn()))
-				return false;
-		}
-		return true;
+		return canPlace(s,RotationTable.counterClockwise(s.getRotation()),0,0);
+	}
+	/**
+	 * Tests whether the supplied Shape would collide with occupied cells if it were in the specified orientation and translated by the specified vector.
+	 * This is the single test all the other {@code canX} methods of this class are built on and involves no per cell work: the precomputed row masks
+	 * of the orientation are tested against this object's {@link BitBoard} directly.
+	 * @param s The shape being tested for collision with occupied cells.
+	 * @param rotation The orientation of the Shape's {@link RotationTable} to test.
+	 * @param x The translation vector x component.
+	 * @param y The translation vector y component.
+	 * @return True if none of the cells are off limits.
+	 */
+	public boolean canPlace(Shape s,int rotation,int x,int y)
+	{
+		RotationTable table=s.getRotationTable();
+		Coord pos=s.getAbsoluteShapePos();
+		return !occupancy.collides(table.getMasks(rotation), table.getMaskHeight(rotation), pos.getRow()+y+table.getMaskTop(rotation), pos.getColumn()+x+table.getMaskLeft(rotation));
+	}
+	/**
+	 * Returns the occupancy model of this grid. Bots and other code that must test many moves quickly can copy it with
+	 * {@link BitBoard#BitBoard(BitBoard)} and test piece masks against the copy.
+	 * @return the occupancy model of this grid.
+	 */
+	public BitBoard getBitBoard()
+	{
+		return occupancy;
 	}
 	/**
 	 * This method determines of a cell is off limits to a live {@link Shape}. When the row and column supplied are with in the bounds of the
-	 * drawable background, it returns the value of the internal boolean 2D array, which represents whether a dead cell occupies a location or not. 
+	 * drawable background, it returns the value of the internal {@link BitBoard}, which represents whether a dead cell occupies a location or not. 
 	 * Otherwise, when the row and column supplied are not within the drawable background, then the location is considered off limits in all cases
 	 *  EXCEPT when the {@code row<0}, which is the top of the screen (and where shapes spawn in the game off screen). This is the method used to keep shapes
 	 *  from going out of bounds left or right or falling down through the bottom of the game, when no dead shapes are on the bottom to stop a Shape.
@@ -279,10 +292,7 @@ public class BackgroundGrid
 	 */
 	public boolean isOffLimits(int r,int c)
 	{
-		if(c>=0&&c<columns&&r>=0&&r<rows)
-			return isOccupied[r][c];
-		else
-			return c<0||c>=columns||r>=rows;//ceiling is unoccupied to infinity;
+		return occupancy.isOffLimits(r,c);//ceiling is unoccupied to infinity;
 	}
 	/**
 	 * A Convenience method which calls {@link BackgroundGrid#canTranslateDown(Shape) } and negates it.
@@ -307,12 +317,14 @@ public class BackgroundGrid
 	/**
 	 * This method searches all the rows for rows that are completely full of dead Shape's. The resulting indices are stored privately in this BackgroundGrid
 	 * Object. 
+	 * <p>Only the rows cells were added to since rows were last removed are examined, since no other row can have become full. After a lock these are
+	 * just the rows the consumed Shape touched, and each of them is tested with its fill count in constant time.
 	 * @return Returns the total number of rows counted to be full.
 	 */
 	public int detectFullRows()
 	{
 		this.rowRemovalIndicesCount=0;
-		for(int r=0;r<this.rows;r++)//must search and add indices in lowest (first) to highest (last) order for removal to properly.
+		for(int r=touchedTop;r<=touchedBottom;r++)//must search and add indices in lowest (first) to highest (last) order for removal to properly.
 		{
 			if(isRowFull(r))
 			{
@@ -320,6 +332,11 @@ public class BackgroundGrid
 				this.rowRemovalIndicesCount++;
 			}
 		}
+		if(this.rowRemovalIndicesCount==0)
+		{
+			touchedTop=this.rows;
+			touchedBottom=-1;
+		}
 		return this.rowRemovalIndicesCount;
 	}
 	/**
@@ -331,21 +348,82 @@ public class BackgroundGrid
 	{
 		return this.rowRemovalIndicesCount;
 	}
+	/**
+	 * Returns one of the rows counted to be full the last time {@link BackgroundGrid#detectFullRows()} was called, and not removed yet.
+	 * @param i The index of the row, less than {@link BackgroundGrid#getDetectFullRowCount()}. The rows are in increasing order.
+	 * @return the row.
+	 */
+	public int getDetectedFullRow(int i)
+	{
+		return this.rowRemovalIndices[i];
+	}
 	/**
 	 * Removes all rows previously detected by the call {@link BackgroundGrid#detectFullRows()}. If none were detected, then the method will do nothing as 
 	 * it operates on a for loop and the initial index value of for loop is 0 and the test {@code 0<0} will fail before method's executes.
 	 * This method will clear the number of rows detected to be full back to zero. Another call to {@link BackgroundGrid#detectFullRows() } must be called 
-	 * again or else the number of full rows internally stored will remain at zero. This method removes rows in order of lowest numbered row (top of screen)
-	 * first to the highest number row (bottom of the screen) last. This method calls {@link BackgroundGrid#removeRow(int) } in a for loop. Do not override that
-	 * method without considering this method also.
+	 * again or else the number of full rows internally stored will remain at zero.
+	 * <p>All detected rows are removed in a single sweep, rather than one {@link BackgroundGrid#removeRow(int)} call per row: every remaining row is moved
+	 * down exactly once, and every run of rows between two removed rows is moved with a single array copy. The cost is therefore proportional to the number of rows actually moved, not to the number of rows removed times the height of the grid.
 	 */
 	public void removeDetectedRows()
 	{
-		for(int i=0;i<this.rowRemovalIndicesCount;i++)
+		int count=this.rowRemovalIndicesCount;
+		if(count==0)
+			return;
+		compactRows(internalStructure,count,this.columns);
+		compactRows(rowFill,count,1);
+		Arrays.fill(internalStructure, 0, count*this.columns, (byte)PALETTE_EMPTY);
+		Arrays.fill(rowFill, 0, count, 0);
+		occupancy.removeRows(this.rowRemovalIndices, count);
+		modificationCount++;
+		changedTop=0;//every row above the lowest removed row moved down.
+		changedBottom=Math.max(changedBottom,this.rowRemovalIndices[count-1]);
+		updateColumnHeights(this.rowRemovalIndices[0],count);
+		this.rowRemovalIndicesCount=0;
+		if(touchedTop<=touchedBottom)
+			touchedBottom=Math.min(this.rows-1,touchedBottom+count);//rows filled since detection moved down with the rest.
+	}
+	/**
+	 * Moves the elements of a per row array down over the detected full rows, one array copy per run of rows between two removed rows. The elements of
+	 * the top {@code count} rows are left as they were and must be reset by the caller.
+	 * @param perRow an array with {@code stride} elements per row, such as {@link BackgroundGrid#internalStructure} or {@link BackgroundGrid#rowFill}.
+	 * @param count the number of detected full rows.
+	 * @param stride the number of elements per row.
+	 */
+	private void compactRows(Object perRow,int count,int stride)
+	{
+		for(int k=count-1;k>=0;k--)
+		{
+			int top=k>0?this.rowRemovalIndices[k-1]+1:0;
+			int length=this.rowRemovalIndices[k]-top;
+			if(length>0)
+				System.arraycopy(perRow, top*stride, perRow, (top+count-k)*stride, length*stride);
+		}
+	}
+	/**
+	 * Brings the column heights up to date after rows were removed. A column whose top most cell was above the removed rows simply lost one row of
+	 * height per removed row. A column whose top most cell was in the top most removed row is searched downwards for its new top most cell.
+	 * Other columns did not change.
+	 * @param firstRemoved the top most removed row.
+	 * @param count the number of removed rows.
+	 */
+	private void updateColumnHeights(int firstRemoved,int count)
+	{
+		for(int c=0;c<this.columns;c++)
 		{
-			removeRow(this.rowRemovalIndices[i]);
+			int top=this.rows-columnHeights[c];
+			if(top<firstRemoved)
+			{
+				columnHeights[c]-=count;
+			}
+			else if(top==firstRemoved)
+			{
+				int r=firstRemoved;
+				while(r<this.rows&&!occupancy.isOccupied(r,c))
+					r++;
+				columnHeights[c]=this.rows-r;
+			}
 		}
-		//this.rowRemovalIndicesCount=0;
 	}
 	/**
 	 * This method is called in a for loop by {@link BackgroundGrid#removeDetectedRows() }. This method removes the specified row
@@ -362,20 +440,17 @@ public class BackgroundGrid
 	{
 		int deletedRow=row;
 		
-		for(int r=deletedRow;r>0;r--)
-		{
-			for(int c=0;c<isOccupied[r].length;c++)
-			{
-				isOccupied[r][c]=isOccupied[r-1][c];
-				internalStructure[r][c]=internalStructure[r-1][c];
-				
-				if(r==1)
-				{
-					isOccupied[0][c]=false;
-					internalStructure[0][c]=backgroundColor;
-				}
-			}
-		}
+		System.arraycopy(internalStructure, 0, internalStructure, this.columns, deletedRow*this.columns);
+		Arrays.fill(internalStructure, 0, this.columns, (byte)PALETTE_EMPTY);
+		System.arraycopy(rowFill, 0, rowFill, 1, deletedRow);
+		rowFill[0]=0;
+		occupancy.removeRow(deletedRow);
+		modificationCount++;
+		changedTop=0;
+		changedBottom=Math.max(changedBottom,deletedRow);
+		updateColumnHeights(deletedRow,1);
+		if(touchedTop<=touchedBottom)
+			touchedBottom=Math.min(this.rows-1,touchedBottom+1);
 		this.rowRemovalIndicesCount--;
 		
 		if(this.rowRemovalIndicesCount<0)
@@ -392,18 +467,215 @@ public class BackgroundGrid
 	 */
 	public boolean isRowFull(int row)
 	{
-		if(isOccupied.length>0)
+		return this.columns>0&&rowFill[row]==this.columns;
+	}
+	/**
+	 * Returns the number of cells of a row occupied by dead shape's cells. This count is maintained as cells are added and rows removed, so this method
+	 * takes constant time.
+	 * @param row The row in question.
+	 * @return the number of occupied cells, 0 to {@link BackgroundGrid#getColumnCount()}.
+	 */
+	public int getRowFillCount(int row)
+	{
+		return rowFill[row];
+	}
+	/**
+	 * Returns the height of a column: the number of rows from the bottom of the grid up to and including the column's top most occupied cell.
+	 * Holes below the top most cell do not lower the height. This value is maintained as cells are added and rows removed, so this method takes constant time.
+	 * @param column The column in question.
+	 * @return the height, 0 for an empty column and {@link BackgroundGrid#getRowCount()} for a column occupied up to the top row.
+	 */
+	public int getColumnHeight(int column)
+	{
+		return columnHeights[column];
+	}
+	/**
+	 * Returns a counter that changes every time a cell of this grid changes: when a cell is filled, rows are removed or the cells are restored.
+	 * Painting code compares it with the value it last painted to skip repainting a grid that did not change.
+	 * @return the modification count, which only ever increases (wrapping around after {@link Integer#MAX_VALUE} changes).
+	 */
+	public int getModificationCount()
+	{
+		return modificationCount;
+	}
+	/**
+	 * Returns the top most row whose cells changed since {@link BackgroundGrid#clearChangedRows()} was last called. Filling a cell changes its row,
+	 * removing rows changes every row from the top of the grid down to the lowest removed row.
+	 * @return the row, greater than {@link BackgroundGrid#getChangedRowBottom()} if no row changed.
+	 */
+	public int getChangedRowTop()
+	{
+		return changedTop;
+	}
+	/**
+	 * Returns the bottom most row whose cells changed since {@link BackgroundGrid#clearChangedRows()} was last called.
+	 * @return the row, less than {@link BackgroundGrid#getChangedRowTop()} if no row changed.
+	 */
+	public int getChangedRowBottom()
+	{
+		return changedBottom;
+	}
+	/**
+	 * Forgets the rows that changed so far. {@link TetrisGame} calls this once it has asked Swing to repaint them.
+	 */
+	public void clearChangedRows()
+	{
+		changedTop=this.rows;
+		changedBottom=-1;
+	}
+	/**
+	 * Returns the palette index of the color of a cell.
+	 * @param row The row of the cell, inside the grid.
+	 * @param column The column of the cell, inside the grid.
+	 * @return the palette index, {@link BackgroundGrid#PALETTE_EMPTY} for an empty cell.
+	 */
+	public int getCellPaletteIndex(int row,int column)
+	{
+		return internalStructure[row*columns+column]&0xFF;
+	}
+	/**
+	 * Returns the palette index of a color given as an ARGB value, adding the color to the palette if it is not in it yet.
+	 * @param argb the ARGB value of the color, alpha in the highest byte.
+	 * @return the palette index of the color.
+	 * @throws IllegalStateException if the color is new and the palette already holds {@link BackgroundGrid#MAX_PALETTE_SIZE} colors.
+	 */
+	public int getPaletteIndex(int argb)
+	{
+		int i=findPaletteIndex(argb);
+		if(i>=0)
+			return i;
+		if(paletteSize==MAX_PALETTE_SIZE)
+			throw new IllegalStateException("The palette of this grid is full.");
+		palette[paletteSize]=argb;
+		return paletteSize++;
+	}
+	/**
+	 * Returns the palette index of a color given as an ARGB value, without changing the palette.
+	 * @param argb the ARGB value of the color, alpha in the highest byte.
+	 * @return the palette index of the color, or -1 if it is not in the palette.
+	 */
+	public int findPaletteIndex(int argb)
+	{
+		for(int i=1;i<paletteSize;i++)
+		{
+			if(palette[i]==argb)
+				return i;
+		}
+		return -1;
+	}
+	/**
+	 * Returns the ARGB value of the color of a palette index.
+	 * @param paletteIndex the palette index, 0 to {@link BackgroundGrid#getPaletteSize()}{@code -1}.
+	 * @return the ARGB value, alpha in the highest byte.
+	 */
+	public int getPaletteRGB(int paletteIndex)
+	{
+		return palette[paletteIndex];
+	}
+	/**
+	 * Returns the number of colors in the palette of this grid, 8 unless Shapes with custom colors were consumed.
+	 * @return the palette size.
+	 */
+	public int getPaletteSize()
+	{
+		return paletteSize;
+	}
+	/**
+	 * Copies the palette index of every cell into the supplied array, one row after another. This is a snapshot of the whole background in
+	 * {@link BackgroundGrid#getRowCount()}{@code *}{@link BackgroundGrid#getColumnCount()} bytes.
+	 * @param dest the array to copy into.
+	 * @param offset the index of {@code dest} to start at.
+	 */
+	public void copyCellsTo(byte[] dest,int offset)
+	{
+		System.arraycopy(internalStructure, 0, dest, offset, internalStructure.length);
+	}
+	/**
+	 * Replaces every cell of this grid with the palette indices of the supplied array, as written by {@link BackgroundGrid#copyCellsTo(byte[], int)}.
+	 * The occupancy, row fill counts and column heights are rebuilt from the cells.
+	 * @param src the array to copy from.
+	 * @param offset the index of {@code src} to start at.
+	 */
+	public void restoreCells(byte[] src,int offset)
+	{
+		System.arraycopy(src, offset, internalStructure, 0, internalStructure.length);
+		cellsRestored();
+	}
+	/**
+	 * Writes the palette index of every cell to a buffer, one row after another, the same {@link BackgroundGrid#getRowCount()}{@code *}
+	 * {@link BackgroundGrid#getColumnCount()} bytes as {@link BackgroundGrid#copyCellsTo(byte[], int)} without an array in between.
+	 * @param dest the buffer, written at its position, which is advanced.
+	 * @throws java.nio.BufferOverflowException if the buffer has not enough room.
+	 */
+	public void writeCellsTo(ByteBuffer dest)
+	{
+		dest.put(internalStructure);
+	}
+	/**
+	 * Replaces every cell of this grid with the palette indices read from a buffer, as written by {@link BackgroundGrid#writeCellsTo(ByteBuffer)}.
+	 * The occupancy, row fill counts and column heights are rebuilt from the cells.
+	 * @param src the buffer, read at its position, which is advanced.
+	 * @throws java.nio.BufferUnderflowException if the buffer holds fewer bytes than this grid has cells.
+	 * @throws IllegalArgumentException if a palette index is not in the palette of this grid. The grid is left unchanged.
+	 */
+	public void readCellsFrom(ByteBuffer src)
+	{
+		checkCells(src,paletteSize);
+		src.get(internalStructure);
+		cellsRestored();
+	}
+	/**
+	 * Checks that a buffer holds the cells of this grid, as written by {@link BackgroundGrid#writeCellsTo(ByteBuffer)}, without reading them.
+	 * @param src the buffer, checked from its position, which is not changed.
+	 * @param paletteSize the number of colors the cells may refer to.
+	 * @throws java.nio.BufferUnderflowException if the buffer holds fewer bytes than this grid has cells.
+	 * @throws IllegalArgumentException if a palette index is not less than {@code paletteSize}.
+	 */
+	void checkCells(ByteBuffer src,int paletteSize)
+	{
+		if(src.remaining()<internalStructure.length)
+			throw new BufferUnderflowException();
+		int pos=src.position();
+		for(int i=0;i<internalStructure.length;i++)
 		{
-			for(int col=0;col<isOccupied[0].length;col++)
+			if((src.get(pos+i)&0xFF)>=paletteSize)
+				throw new IllegalArgumentException("Palette index "+(src.get(pos+i)&0xFF)+" is not in the palette of this grid.");
+		}
+	}
+	/**
+	 * Rebuilds everything derived from the cells after they were replaced all at once.
+	 */
+	private void cellsRestored()
+	{
+		modificationCount++;
+		changedTop=0;
+		changedBottom=this.rows-1;
+		occupancy.clear();
+		Arrays.fill(rowFill, 0);
+		Arrays.fill(columnHeights, 0);
+		for(int r=this.rows-1;r>=0;r--)
+		{
+			for(int c=0;c<this.columns;c++)
 			{
-				if(!isOccupied[row][col])
-					return false;
+				if(internalStructure[r*columns+c]!=PALETTE_EMPTY)
+				{
+					occupancy.set(r,c);
+					rowFill[r]++;
+					columnHeights[c]=this.rows-r;
+				}
 			}
-			return true;
 		}
-		else
-			return false;
-		
+		this.rowRemovalIndicesCount=0;
+		touchedTop=0;
+		touchedBottom=this.rows-1;
+	}
+	/**
+	 * Returns a hash code of the cells of this grid, computed from the palette indices only. Two grids with the same cells have the same hash code.
+	 * @return the hash code of the cells.
+	 */
+	public int cellsHashCode()
+	{
+		return Arrays.hashCode(internalStructure);
 	}
 	/**
 	 * Determines if a shape is completely in the drawable area. If even one cell of a given Shape is not in the drawable area,
@@ -419,8 +691,8 @@ public class BackgroundGrid
 		int column=0;
 		for(int i=0;i<s.getCellCount();i++)
 		{
-			row=s.getAbsoluteCellPos(i).getRow();
-			column=s.getAbsoluteCellPos(i).getColumn();
+			row=s.getAbsoluteCellRow(i);
+			column=s.getAbsoluteCellColumn(i);
 			
 			if(!(row>=0&&row<this.rows&&column>=0&&column<this.columns))
 				return true;
@@ -0,0 +1,76 @@
+package kopper.tetris.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The standard "7-bag" randomizer: all seven Tetromino types are put in a bag, shuffled and dealt one at a time. When the bag is empty, a new bag
+ * is shuffled. Every type therefore appears exactly once in every seven Shapes, and a type never goes missing for longer than twelve Shapes.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class BagRandomizer extends AbstractRandomizer
+{
+	/**
+	 * The current bag of type indices.
+	 */
+	private final int[] bag=new int[SHAPE_TYPES];
+	/**
+	 * The index of the next type to deal from {@link BagRandomizer#bag}. Equal to the bag length when the bag is empty.
+	 */
+	private int next=SHAPE_TYPES;
+	/**
+	 * Creates a randomizer from the supplied seed.
+	 * @param seed the seed.
+	 */
+	public BagRandomizer(long seed)
+	{
+		super(seed);
+	}
+	public void reset()
+	{
+		super.reset();
+		next=SHAPE_TYPES;
+	}
+	public int getStateSize()
+	{
+		return super.getStateSize()+SHAPE_TYPES+1;
+	}
+	public void writeState(ByteBuffer dest)
+	{
+		super.writeState(dest);
+		for(int type:bag)
+			dest.put((byte)type);
+		dest.put((byte)next);
+	}
+	public void readState(ByteBuffer src)
+	{
+		super.readState(src);
+		for(int i=0;i<SHAPE_TYPES;i++)
+			bag[i]=src.get();
+		next=src.get();
+		if(next<0||next>SHAPE_TYPES)
+			throw new IllegalArgumentException("Invalid bag position "+next);
+		for(int i=next;i<SHAPE_TYPES;i++)
+		{
+			if(bag[i]<0||bag[i]>=SHAPE_TYPES)
+				throw new IllegalArgumentException("Invalid type "+bag[i]+" in the bag");
+		}
+	}
+	public int nextShapeIndex()
+	{
+		if(next==SHAPE_TYPES)
+		{
+			for(int i=0;i<SHAPE_TYPES;i++)
+				bag[i]=i;
+			for(int i=SHAPE_TYPES-1;i>0;i--)//Fisher-Yates shuffle
+			{
+				int j=nextInt(i+1);
+				int temp=bag[i];
+				bag[i]=bag[j];
+				bag[j]=temp;
+			}
+			next=0;
+		}
+		return bag[next++];
+	}
+}
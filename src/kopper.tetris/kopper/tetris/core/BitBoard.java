@@ -0,0 +1,270 @@
+package kopper.tetris.core;
+import java.util.Arrays;
+
+/**
+ * <p>A compact occupancy model of the Tetris playing field where every row is packed into one or more {@code long} bitmasks.
+ * Bit {@code c%64} of word {@code c/64} of a row is set when the cell in column {@code c} of that row is occupied by a dead Shape's cell.
+ * Boards up to 64 columns wide use a single {@code long} per row, wider boards use as many words per row as needed.
+ * </p>
+ * <p>
+ * Collision detection is done against piece masks rather than cell by cell. A piece mask is a short array of row bitmasks where bit {@code j}
+ * of element {@code i} represents the cell located {@code i} rows below and {@code j} columns right of the piece mask's upper left corner.
+ * Testing a piece against this board is then a handful of shift and AND operations per piece row, see {@link BitBoard#collides(long[], int, int, int)}.
+ * </p>
+ * <p>
+ * This class follows the exact same off limits rules as {@link BackgroundGrid#isOffLimits(int, int)}: columns left and right of the board and rows
+ * below the bottom of the board are always off limits, while the rows above the top of the board are unoccupied to infinity.
+ * This class has no dependency on any painting classes and can be used on its own, for example by bots that need to test many moves quickly.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class BitBoard
+{
+	/**
+	 * The number of rows of this board.
+	 */
+	private final int rows;
+	/**
+	 * The number of columns of this board.
+	 */
+	private final int columns;
+	/**
+	 * The number of {@code long} words required to store one row of this board.
+	 */
+	private final int wordsPerRow;
+	/**
+	 * The occupancy bits of all rows stored one row after another, {@link BitBoard#wordsPerRow} words per row. Row 0 is the top of the board.
+	 */
+	private final long[] words;
+	/**
+	 * The value each word of a row holds when that row is completely full.
+	 */
+	private final long[] fullRow;
+
+	/**
+	 * Creates a new empty board.
+	 * @param columns the number of columns of the board.
+	 * @param rows the number of rows of the board.
+	 */
+	public BitBoard(int columns, int rows)
+	{
+		this.rows=rows;
+		this.columns=columns;
+		this.wordsPerRow=Math.max(1,(columns+63)>>>6);
+		this.words=new long[this.rows*this.wordsPerRow];
+		this.fullRow=new long[this.wordsPerRow];
+		for(int w=0;w<wordsPerRow;w++)
+		{
+			int bitsInWord=Math.min(64,columns-(w<<6));
+			fullRow[w]=bitsInWord<=0?0L:(bitsInWord==64?-1L:(1L<<bitsInWord)-1L);
+		}
+	}
+	/**
+	 * Creates a new board that is an exact copy of the supplied board.
+	 * @param other the board to copy.
+	 */
+	public BitBoard(BitBoard other)
+	{
+		this(other.columns,other.rows);
+		copyFrom(other);
+	}
+	/**
+	 * Copies the occupancy of the supplied board into this board. Both boards must have the same dimensions.
+	 * @param other the board to copy from.
+	 * @throws IllegalArgumentException if the dimensions of the boards differ.
+	 */
+	public void copyFrom(BitBoard other)
+	{
+		if(other.rows!=this.rows||other.columns!=this.columns)
+			throw new IllegalArgumentException("BitBoard dimensions differ: "+other.columns+"x"+other.rows+" vs "+this.columns+"x"+this.rows);
+		System.arraycopy(other.words, 0, this.words, 0, this.words.length);
+	}
+	/**
+	 * Gets the number of rows of this board.
+	 * @return the number of rows.
+	 */
+	public int getRowCount()
+	{
+		return rows;
+	}
+	/**
+	 * Gets the number of columns of this board.
+	 * @return the number of columns.
+	 */
+	public int getColumnCount()
+	{
+		return columns;
+	}
+	/**
+	 * Empties every cell of this board.
+	 */
+	public void clear()
+	{
+		Arrays.fill(words, 0L);
+	}
+	/**
+	 * Returns whether the cell at the specified location is occupied. The location must be inside the board.
+	 * @param r the row of the cell.
+	 * @param c the column of the cell.
+	 * @return True if the cell is occupied.
+	 */
+	public boolean isOccupied(int r, int c)
+	{
+		return (words[r*wordsPerRow+(c>>>6)]&(1L<<c))!=0;
+	}
+	/**
+	 * Marks the cell at the specified location as occupied. The location must be inside the board.
+	 * @param r the row of the cell.
+	 * @param c the column of the cell.
+	 */
+	public void set(int r, int c)
+	{
+		words[r*wordsPerRow+(c>>>6)]|=1L<<c;
+	}
+	/**
+	 * Marks the cell at the specified location as empty. The location must be inside the board.
+	 * @param r the row of the cell.
+	 * @param c the column of the cell.
+	 */
+	public void clear(int r, int c)
+	{
+		words[r*wordsPerRow+(c>>>6)]&=~(1L<<c);
+	}
+	/**
+	 * Determines if a cell is off limits to a live Shape using the same rules as {@link BackgroundGrid#isOffLimits(int, int)}.
+	 * @param r The row in question.
+	 * @param c The column in question.
+	 * @return True if the location is occupied, or is off the board to the left, right or bottom. False otherwise, including everywhere above the board.
+	 */
+	public boolean isOffLimits(int r, int c)
+	{
+		if(c<0||c>=columns||r>=rows)
+			return true;
+		return r>=0&&isOccupied(r,c);
+	}
+	/**
+	 * Tests the supplied piece mask against this board.
+	 * @param mask the piece mask, where bit {@code j} of {@code mask[i]} represents the cell at row {@code top+i} and column {@code left+j}.
+	 * @param height the number of elements of {@code mask} that are used.
+	 * @param top the row of the board the first element of {@code mask} is aligned to.
+	 * @param left the column of the board bit zero of every mask element is aligned to.
+	 * @return True if any cell of the piece mask is off limits, as defined by {@link BitBoard#isOffLimits(int, int)}.
+	 */
+	public boolean collides(long[] mask, int height, int top, int left)
+	{
+		for(int i=0;i<height;i++)
+		{
+			long m=mask[i];
+			if(m==0L)
+				continue;
+			int col=left;
+			if(col<0)
+			{
+				if(col<=-64||(m&((1L<<-col)-1L))!=0L)
+					return true;//off the left wall.
+				m>>>=-col;
+				col=0;
+			}
+			if(col+(64-Long.numberOfLeadingZeros(m))>columns)
+				return true;//off the right wall.
+			int r=top+i;
+			if(r<0)
+				continue;//ceiling is unoccupied to infinity.
+			if(r>=rows)
+				return true;//through the floor.
+			int base=r*wordsPerRow+(col>>>6);
+			int shift=col&63;
+			if((words[base]&(m<<shift))!=0L)
+				return true;
+			if(shift!=0&&(m>>>(64-shift))!=0L&&(words[base+1]&(m>>>(64-shift)))!=0L)
+				return true;
+		}
+		return false;
+	}
+	/**
+	 * Marks every cell of the supplied piece mask that is inside this board as occupied. Cells outside the board are ignored.
+	 * @param mask the piece mask, see {@link BitBoard#collides(long[], int, int, int)}.
+	 * @param height the number of elements of {@code mask} that are used.
+	 * @param top the row of the board the first element of {@code mask} is aligned to.
+	 * @param left the column of the board bit zero of every mask element is aligned to.
+	 */
+	public void place(long[] mask, int height, int top, int left)
+	{
+		for(int i=0;i<height;i++)
+		{
+			int r=top+i;
+			if(r<0||r>=rows)
+				continue;
+			long m=mask[i];
+			while(m!=0L)
+			{
+				int c=left+Long.numberOfTrailingZeros(m);
+				if(c>=0&&c<columns)
+					set(r,c);
+				m&=m-1L;
+			}
+		}
+	}
+	/**
+	 * Determines if every cell of the specified row is occupied.
+	 * @param r the row in question.
+	 * @return True if the row is full.
+	 */
+	public boolean isRowFull(int r)
+	{
+		if(columns==0)
+			return false;
+		int base=r*wordsPerRow;
+		for(int w=0;w<wordsPerRow;w++)
+		{
+			if(words[base+w]!=fullRow[w])
+				return false;
+		}
+		return true;
+	}
+	/**
+	 * Determines if no cell of the specified row is occupied.
+	 * @param r the row in question.
+	 * @return True if the row is empty.
+	 */
+	public boolean isRowEmpty(int r)
+	{
+		int base=r*wordsPerRow;
+		for(int w=0;w<wordsPerRow;w++)
+		{
+			if(words[base+w]!=0L)
+				return false;
+		}
+		return true;
+	}
+	/**
+	 * Removes the specified row. Every row above it is moved down by one row and the top row becomes empty.
+	 * @param row the row to remove.
+	 */
+	public void removeRow(int row)
+	{
+		System.arraycopy(words, 0, words, wordsPerRow, row*wordsPerRow);
+		for(int w=0;w<wordsPerRow;w++)
+			words[w]=0L;
+	}
+	/**
+	 * Removes several rows in one sweep. Every row that is kept is moved down exactly once, by the number of removed rows below it, and the top
+	 * {@code count} rows become empty. The kept rows between two removed rows are moved together with a single array copy.
+	 * @param removed the rows to remove, sorted from top (lowest number) to bottom, without duplicates.
+	 * @param count the number of elements of {@code removed} that are used.
+	 */
+	public void removeRows(int[] removed, int count)
+	{
+		if(count<=0)
+			return;
+		for(int k=count-1;k>=0;k--)
+		{
+			int top=k>0?removed[k-1]+1:0;
+			int length=removed[k]-top;
+			if(length>0)
+				System.arraycopy(words, top*wordsPerRow, words, (top+count-k)*wordsPerRow, length*wordsPerRow);
+		}
+		Arrays.fill(words, 0, count*wordsPerRow, 0L);
+	}
+}
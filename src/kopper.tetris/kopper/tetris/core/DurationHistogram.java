@@ -0,0 +1,121 @@
+package kopper.tetris.core;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds with power of two buckets: bucket {@code b} counts the durations from {@code 2^(b-1)} to {@code 2^b-1}
+ * nanoseconds, bucket 0 the durations of 0. Every bucket is a {@link LongAdder}, so recording a duration is a few uncontended additions, even when
+ * several threads record into the same histogram, and the histogram can stay on in production. Reading it sums the adders and is only as exact as
+ * the recordings finished at that moment.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+final class DurationHistogram
+{
+	/**
+	 * The number of buckets, enough for durations of up to 2^39 nanoseconds, about 9 minutes. Longer durations are counted in the last bucket.
+	 */
+	static final int BUCKETS=40;
+	/**
+	 * The counts of the buckets.
+	 */
+	private final LongAdder[] buckets=new LongAdder[BUCKETS];
+	/**
+	 * The sum of all durations recorded.
+	 */
+	private final LongAdder sum=new LongAdder();
+	/**
+	 * The longest duration recorded.
+	 */
+	private final LongAccumulator max=new LongAccumulator(Math::max,0);
+
+	/**
+	 * Creates an empty histogram.
+	 */
+	DurationHistogram()
+	{
+		for(int i=0;i<BUCKETS;i++)
+			buckets[i]=new LongAdder();
+	}
+	/**
+	 * Counts one duration.
+	 * @param nanos the duration in nanoseconds, negative durations are counted as 0.
+	 */
+	void record(long nanos)
+	{
+		nanos=Math.max(0,nanos);
+		buckets[Math.min(BUCKETS-1,64-Long.numberOfLeadingZeros(nanos))].increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+	/**
+	 * Adds everything recorded in this histogram to another one.
+	 * @param other the other histogram.
+	 */
+	void addTo(DurationHistogram other)
+	{
+		for(int i=0;i<BUCKETS;i++)
+			other.buckets[i].add(buckets[i].sum());
+		other.sum.add(sum.sum());
+		other.max.accumulate(max.get());
+	}
+	/**
+	 * Adds the counts of the buckets to an array.
+	 * @param counts the array, of {@link DurationHistogram#BUCKETS} elements.
+	 */
+	void addCountsTo(long[] counts)
+	{
+		for(int i=0;i<BUCKETS;i++)
+			counts[i]+=buckets[i].sum();
+	}
+	/**
+	 * Returns the sum of all durations recorded.
+	 * @return the sum in nanoseconds.
+	 */
+	long getSum()
+	{
+		return sum.sum();
+	}
+	/**
+	 * Returns the longest duration recorded.
+	 * @return the duration in nanoseconds, 0 if none was recorded.
+	 */
+	long getMax()
+	{
+		return max.get();
+	}
+	/**
+	 * Returns the number of durations counted by bucket counts.
+	 * @param counts the bucket counts.
+	 * @return the number of durations.
+	 */
+	static long getCount(long[] counts)
+	{
+		long count=0;
+		for(long c:counts)
+			count+=c;
+		return count;
+	}
+	/**
+	 * Returns an upper bound of a percentile of the durations counted by bucket counts: the largest duration of the bucket the percentile falls in.
+	 * @param counts the bucket counts.
+	 * @param percentile the percentile, from 0 to 100.
+	 * @return the duration in nanoseconds, 0 if nothing was counted.
+	 */
+	static long getPercentile(long[] counts, double percentile)
+	{
+		long count=getCount(counts);
+		if(count==0)
+			return 0;
+		long rank=(long)Math.ceil(count*percentile/100.0);
+		long seen=0;
+		for(int i=0;i<counts.length;i++)
+		{
+			seen+=counts[i];
+			if(seen>=rank)
+				return i==0?0:(1L<<i)-1;
+		}
+		return (1L<<(counts.length-1))-1;
+	}
+}
@@ -0,0 +1,164 @@
+package kopper.tetris.core;
+
+import kopper.tetris.shape.Shape;
+import kopper.tetris.shape.ShapeKind;
+
+/**
+ * <p>An immutable copy of everything needed to paint one frame of a game: the cells of the grid, the current Shape, the score and the game state.
+ * A {@link GameLoop} captures a snapshot on its own thread every time the game changes, and the painting thread reads the snapshot instead of the
+ * engine, so the two threads never share mutable state.
+ * </p>
+ * <p>
+ * Capturing a snapshot copies the grid's cells only when they changed since the previous snapshot, see {@link BackgroundGrid#getModificationCount()}.
+ * Otherwise the snapshots share the same cell array, which is safe since no snapshot ever writes to it.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public final class FrameSnapshot
+{
+	/**
+	 * The number of logic steps the loop had performed when this snapshot was captured.
+	 */
+	private final long step;
+	/**
+	 * The game state, one of the constants of {@link GameState}.
+	 */
+	private final int state;
+	/**
+	 * The modification count of the grid the cells were copied from.
+	 */
+	private final int gridVersion;
+	/**
+	 * The number of columns of the grid.
+	 */
+	private final int columns;
+	/**
+	 * The palette index of every cell, row after row, see {@link BackgroundGrid#copyCellsTo(byte[], int)}.
+	 */
+	private final byte[] cells;
+	/**
+	 * The kind of the current Shape, null if there is none.
+	 */
+	private final ShapeKind shapeKind;
+	/**
+	 * The center column, center row and orientation of the current Shape.
+	 */
+	private final int shapeX, shapeY, shapeRotation;
+	/**
+	 * A private copy of the score.
+	 */
+	private final TetrisScore score=new TetrisScore();
+
+	/**
+	 * Captures a snapshot of an engine. Must be called on the thread that runs the engine.
+	 * @param engine the engine.
+	 * @param step the number of logic steps performed so far.
+	 * @param previous the previous snapshot of the same engine, whose cells are reused if the grid did not change, or null.
+	 */
+	FrameSnapshot(TetrisEngine engine, long step, FrameSnapshot previous)
+	{
+		BackgroundGrid grid=engine.getGrid();
+		this.step=step;
+		this.state=engine.getState().getCurrentState();
+		this.gridVersion=grid.getModificationCount();
+		this.columns=grid.getColumnCount();
+		if(previous!=null&&previous.gridVersion==gridVersion&&previous.cells.length==grid.getRowCount()*columns)
+		{
+			this.cells=previous.cells;
+		}
+		else
+		{
+			this.cells=new byte[grid.getRowCount()*columns];
+			grid.copyCellsTo(cells, 0);
+		}
+		Shape s=engine.getCurrentShape();
+		if(s!=null)
+		{
+			this.shapeKind=s.getKind();
+			this.shapeX=s.getAbsoluteShapePos().getX();
+			this.shapeY=s.getAbsoluteShapePos().getY();
+			this.shapeRotation=s.getRotation();
+		}
+		else
+		{
+			this.shapeKind=null;
+			this.shapeX=0;
+			this.shapeY=0;
+			this.shapeRotation=0;
+		}
+		this.score.copyFrom(engine.getScore());
+	}
+	/**
+	 * Returns the number of logic steps the loop had performed when this snapshot was captured.
+	 * @return the step number.
+	 */
+	public long getStep()
+	{
+		return step;
+	}
+	/**
+	 * Returns the game state.
+	 * @return one of the constants of {@link GameState}.
+	 */
+	public int getState()
+	{
+		return state;
+	}
+	/**
+	 * Returns the {@link BackgroundGrid#getModificationCount()} of the grid when this snapshot was captured. Two snapshots with the same grid version
+	 * have the same cells.
+	 * @return the grid version.
+	 */
+	public int getGridVersion()
+	{
+		return gridVersion;
+	}
+	/**
+	 * Returns the palette index of a cell.
+	 * @param row the row of the cell.
+	 * @param column the column of the cell.
+	 * @return the palette index, {@link BackgroundGrid#PALETTE_EMPTY} for an empty cell.
+	 */
+	public int getCellPaletteIndex(int row, int column)
+	{
+		return cells[row*columns+column]&0xFF;
+	}
+	/**
+	 * Replaces the cells of a grid with the cells of this snapshot, see {@link BackgroundGrid#restoreCells(byte[], int)}. This is how a painting thread
+	 * keeps a grid of its own that mirrors the engine's grid.
+	 * @param grid the grid, of the same size as the engine's grid and with the same palette.
+	 */
+	public void restoreCells(BackgroundGrid grid)
+	{
+		grid.restoreCells(cells, 0);
+	}
+	/**
+	 * Returns the kind of the current Shape.
+	 * @return the kind, or null if there was no current Shape.
+	 */
+	public ShapeKind getShapeKind()
+	{
+		return shapeKind;
+	}
+	/**
+	 * Creates a new Shape at the position and in the orientation of the current Shape.
+	 * @return the new Shape, or null if there was no current Shape.
+	 */
+	public Shape createShape()
+	{
+		if(shapeKind==null)
+			return null;
+		Shape s=shapeKind.createShape(shapeX, shapeY);
+		s.setRotation(shapeRotation);
+		return s;
+	}
+	/**
+	 * Copies the score of this snapshot into another score object.
+	 * @param target the score to overwrite.
+	 */
+	public void copyScoreTo(TetrisScore target)
+	{
+		target.copyFrom(score);
+	}
+}
@@ -0,0 +1,117 @@
+package kopper.tetris.core;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The connection of a player to a {@link GameServer}. The player's commands are sent with {@link GameClient#send(int)}, and the frames of the game
+ * are received with {@link GameClient#readFrame()}, usually by a thread of its own, since it blocks until the game changes. A spectator connects
+ * with {@link GameClient#GameClient(InetSocketAddress, int)} and receives the messages of a {@link SpectatorPublisher} the same way.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class GameClient implements Closeable
+{
+	/**
+	 * The connection to the server, in blocking mode.
+	 */
+	private final SocketChannel channel;
+	/**
+	 * The buffer a command is sent from.
+	 */
+	private final ByteBuffer command=ByteBuffer.allocate(1);
+	/**
+	 * The buffer the length of a frame is read into.
+	 */
+	private final ByteBuffer length=ByteBuffer.allocate(Integer.BYTES);
+
+	/**
+	 * Connects to a server.
+	 * @param address the address of the server.
+	 * @throws IOException if the server can not be reached.
+	 */
+	public GameClient(InetSocketAddress address) throws IOException
+	{
+		this.channel=SocketChannel.open(address);
+		this.channel.socket().setTcpNoDelay(true);
+	}
+	/**
+	 * Connects to the spectator port of a server as a spectator of a game, see {@link GameServer#listenForSpectators(InetSocketAddress)}. Every frame
+	 * read is then a message for {@link SpectatorView#apply(ByteBuffer)}, and no commands are sent.
+	 * @param address the address the server listens on for spectators.
+	 * @param game the number of the game to watch.
+	 * @throws IOException if the server can not be reached.
+	 */
+	public GameClient(InetSocketAddress address, int game) throws IOException
+	{
+		this(address);
+		ByteBuffer number=ByteBuffer.allocate(Integer.BYTES);
+		number.putInt(game).flip();
+		try
+		{
+			while(number.hasRemaining())
+				channel.write(number);
+		}
+		catch(IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+	/**
+	 * Sends a command to the server. May be called by one thread while another one reads frames.
+	 * @param command one of the {@code INPUT_...} constants of {@link TetrisEngine}, or {@link GameServer#COMMAND_START},
+	 * {@link GameServer#COMMAND_PAUSE} or {@link GameServer#COMMAND_TOGGLE_PAUSE}.
+	 * @throws IOException if the connection failed.
+	 */
+	public synchronized void send(int command) throws IOException
+	{
+		this.command.clear();
+		this.command.put((byte)command).flip();
+		while(this.command.hasRemaining())
+			channel.write(this.command);
+	}
+	/**
+	 * Waits for the next frame of the game and reads it.
+	 * @return a new buffer holding the snapshot of the engine, for {@link TetrisEngine#restoreSnapshot(ByteBuffer)}, or for a spectator the message
+	 * of the publisher.
+	 * @throws IOException if the connection failed or was closed, or the server sent a frame that is too large.
+	 */
+	public ByteBuffer readFrame() throws IOException
+	{
+		length.clear();
+		readFully(length);
+		int size=length.getInt(0);
+		if(size<=0||size>GameServer.MAX_FRAME_SIZE)
+			throw new IOException("Invalid frame size "+size);
+		ByteBuffer frame=ByteBuffer.allocate(size);
+		readFully(frame);
+		frame.flip();
+		return frame;
+	}
+	/**
+	 * Reads until a buffer is full.
+	 * @param buffer the buffer.
+	 * @throws IOException if the connection failed or was closed.
+	 */
+	private void readFully(ByteBuffer buffer) throws IOException
+	{
+		while(buffer.hasRemaining())
+		{
+			if(channel.read(buffer)<0)
+				throw new EOFException("The server closed the connection");
+		}
+	}
+	/**
+	 * Closes the connection, which ends the game on the server.
+	 * @throws IOException if the connection can not be closed.
+	 */
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
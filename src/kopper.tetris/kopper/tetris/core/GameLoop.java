@@ -0,0 +1,447 @@
+package kopper.tetris.core;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * <p>Runs a {@link TetrisEngine} on a thread of its own, advancing it with a fixed logic step measured with {@link System#nanoTime()}, instead of
+ * with a {@link javax.swing.Timer} on the Swing event dispatch thread. A stalled event dispatch thread therefore no longer delays gravity, and painting
+ * can run at any rate, or not at all, independently of the game logic.
+ * </p>
+ * <p>
+ * Every {@link GameLoop#getStepNanos()} nanoseconds the loop calls {@link TetrisEngine#tick()} once. If the loop fell behind, for example because
+ * the thread was not scheduled for a while, it catches up by performing the missed steps back to back, at most {@link GameLoop#MAX_CATCH_UP_STEPS}
+ * at a time. Steps missed beyond that are dropped, so the game slows down instead of running in fast forward after a long stall. Commands
+ * submitted with {@link GameLoop#submit(int)} wake the loop and are applied right away, so player input does not wait for the next step.
+ * </p>
+ * <p>
+ * Player input arrives as key presses and key releases, each stamped with the time it was submitted and passed through a lock-free
+ * {@link InputRing}. The loop repeats the moves of held keys itself: a held left, right or down key moves the Shape once when pressed, again after
+ * the delayed auto shift (DAS) and then once every auto repeat rate (ARR) interval until it is released, see
+ * {@link GameLoop#setAutoRepeat(long, long)}. Repeating depends on the timestamps of the key events rather than on the key repeat rate of the
+ * operating system, or on how late the event dispatch thread delivered the events, and every move is applied to the engine by the loop thread
+ * alone.
+ * </p>
+ * <p>
+ * The engine belongs to the loop thread once the loop is started and may not be used by any other thread. Other threads see the game through the
+ * immutable {@link FrameSnapshot} the loop publishes every time the game changed, see {@link GameLoop#getLatestSnapshot()}.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class GameLoop implements Runnable
+{
+	/**
+	 * The default length of a logic step, 40 milliseconds, the period of {@link TetrisGame}'s timer.
+	 */
+	public static final long DEFAULT_STEP_NANOS=40_000_000L;
+	/**
+	 * The maximum number of logic steps performed back to back to catch up after the loop fell behind.
+	 */
+	public static final int MAX_CATCH_UP_STEPS=5;
+	/**
+	 * The command starting the game, see {@link TetrisEngine#start()}.
+	 */
+	public static final int COMMAND_START=-1;
+	/**
+	 * The command pausing a running game, see {@link TetrisEngine#pause()}.
+	 */
+	public static final int COMMAND_PAUSE=-2;
+	/**
+	 * The command resuming a paused game.
+	 */
+	public static final int COMMAND_RESUME=-3;
+	/**
+	 * Combined with one of the {@code INPUT_...} constants of {@link TetrisEngine}, as in {@code COMMAND_RELEASE|TetrisEngine.INPUT_LEFT}, the command
+	 * telling that the key of the input was released, ending its auto repeat.
+	 */
+	public static final int COMMAND_RELEASE=0x100;
+	/**
+	 * The default delayed auto shift, 170 milliseconds: how long a key is held before its move starts to repeat.
+	 */
+	public static final long DEFAULT_DAS_NANOS=170_000_000L;
+	/**
+	 * The default auto repeat rate, 50 milliseconds: the interval between the repeated moves of a held key.
+	 */
+	public static final long DEFAULT_ARR_NANOS=50_000_000L;
+	/**
+	 * The number of commands the input ring holds.
+	 */
+	private static final int INPUT_CAPACITY=256;
+	/**
+	 * The number of {@code INPUT_...} constants of {@link TetrisEngine}, the size of the arrays tracking held keys.
+	 */
+	private static final int INPUT_COUNT=TetrisEngine.INPUT_ROTATE_CCW+1;
+
+	/**
+	 * The engine run by this loop.
+	 */
+	private final TetrisEngine engine;
+	/**
+	 * The length of a logic step in nanoseconds.
+	 */
+	private final long stepNanos;
+	/**
+	 * Called on the loop thread with every snapshot published, or null.
+	 */
+	private final Consumer<FrameSnapshot> listener;
+	/**
+	 * The commands and player inputs waiting to be applied.
+	 */
+	private final InputRing commands=new InputRing(INPUT_CAPACITY);
+	/**
+	 * The delayed auto shift in nanoseconds.
+	 */
+	private volatile long dasNanos=DEFAULT_DAS_NANOS;
+	/**
+	 * The auto repeat rate in nanoseconds.
+	 */
+	private volatile long arrNanos=DEFAULT_ARR_NANOS;
+	/**
+	 * True for every input whose key is held, as far as the loop thread knows. Used by the loop thread only.
+	 */
+	private final boolean[] held=new boolean[INPUT_COUNT];
+	/**
+	 * True for every held input that repeats, false while its repeat is suspended by the key of the opposite direction. Used by the loop thread only.
+	 */
+	private final boolean[] repeating=new boolean[INPUT_COUNT];
+	/**
+	 * The {@link System#nanoTime()} at which each repeating input repeats next. Used by the loop thread only.
+	 */
+	private final long[] repeatAt=new long[INPUT_COUNT];
+	/**
+	 * The most recently published snapshot.
+	 */
+	private volatile FrameSnapshot latest;
+	/**
+	 * False once {@link GameLoop#stop()} was called.
+	 */
+	private volatile boolean running=true;
+	/**
+	 * The number of logic steps dropped because the loop fell too far behind.
+	 */
+	private volatile long droppedSteps=0;
+	/**
+	 * The loop thread, null until the loop is started. Written under the lock of the loop, read without it by {@link GameLoop#submit(int)}.
+	 */
+	private volatile Thread thread;
+
+	/**
+	 * Creates a loop for an engine. The loop does nothing until {@link GameLoop#start()} is called.
+	 * @param engine the engine, which must not be used by any other thread once the loop is started.
+	 * @param stepNanos the length of a logic step in nanoseconds, {@link GameLoop#DEFAULT_STEP_NANOS} for the timing of {@link TetrisGame}.
+	 * @param listener called on the loop thread with every snapshot published, or null. It must return quickly, for example by handing the snapshot to
+	 * the event dispatch thread.
+	 * @throws IllegalArgumentException if the step is not positive.
+	 */
+	public GameLoop(TetrisEngine engine, long stepNanos, Consumer<FrameSnapshot> listener)
+	{
+		if(stepNanos<=0)
+			throw new IllegalArgumentException("The step must be positive, not "+stepNanos);
+		this.engine=engine;
+		this.stepNanos=stepNanos;
+		this.listener=listener;
+	}
+	/**
+	 * Starts the loop thread, a daemon thread. Does nothing if the loop was already started.
+	 */
+	public synchronized void start()
+	{
+		if(thread!=null)
+			return;
+		thread=new Thread(this,"kopper-tetris-game-loop");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	/**
+	 * Asks the loop to stop. The loop thread ends after its current step.
+	 */
+	public synchronized void stop()
+	{
+		running=false;
+		if(thread!=null)
+			LockSupport.unpark(thread);
+	}
+	/**
+	 * Waits until the loop thread has ended, after {@link GameLoop#stop()} or once the game is over. Afterwards the engine may be used by the calling
+	 * thread. Returns at once if the loop was never started.
+	 * @throws InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public void awaitStop() throws InterruptedException
+	{
+		Thread t=thread;
+		if(t!=null&&t!=Thread.currentThread())
+			t.join();
+	}
+	/**
+	 * Sets the auto repeat of held keys. May be called from any thread.
+	 * @param dasNanos the delayed auto shift, how long a key is held before its move starts to repeat, in nanoseconds.
+	 * @param arrNanos the auto repeat rate, the interval between the repeated moves of a held key, in nanoseconds.
+	 * @throws IllegalArgumentException if the delay is negative or the rate is not positive.
+	 */
+	public void setAutoRepeat(long dasNanos, long arrNanos)
+	{
+		if(dasNanos<0||arrNanos<=0)
+			throw new IllegalArgumentException("Invalid auto repeat "+dasNanos+"/"+arrNanos);
+		this.dasNanos=dasNanos;
+		this.arrNanos=arrNanos;
+	}
+	/**
+	 * Returns the delayed auto shift.
+	 * @return the delay in nanoseconds.
+	 */
+	public long getDasNanos()
+	{
+		return dasNanos;
+	}
+	/**
+	 * Returns the auto repeat rate.
+	 * @return the interval in nanoseconds.
+	 */
+	public long getArrNanos()
+	{
+		return arrNanos;
+	}
+	/**
+	 * Queues a command or the press or release of a player input for the loop thread, stamped with the current time, and wakes the loop so it is
+	 * applied right away. The queue has a single producer: all commands must be submitted by the same thread, in {@link TetrisGame} the event dispatch
+	 * thread.
+	 * @param command one of the {@code INPUT_...} constants of {@link TetrisEngine} for a key press, such an input combined with
+	 * {@link GameLoop#COMMAND_RELEASE} for a key release, or one of the other {@code COMMAND_...} constants of this class.
+	 * @return false if the queue was full and the command was dropped.
+	 */
+	public boolean submit(int command)
+	{
+		if(!commands.offer(command, System.nanoTime()))
+			return false;
+		Thread t=thread;
+		if(t!=null)
+			LockSupport.unpark(t);
+		return true;
+	}
+	/**
+	 * Returns the most recently published snapshot.
+	 * @return the snapshot, or null if the loop did not publish one yet.
+	 */
+	public FrameSnapshot getLatestSnapshot()
+	{
+		return latest;
+	}
+	/**
+	 * Returns the length of a logic step.
+	 * @return the length in nanoseconds.
+	 */
+	public long getStepNanos()
+	{
+		return stepNanos;
+	}
+	/**
+	 * Returns the number of logic steps dropped so far because the loop fell more than {@link GameLoop#MAX_CATCH_UP_STEPS} steps behind.
+	 * @return the number of dropped steps.
+	 */
+	public long getDroppedSteps()
+	{
+		return droppedSteps;
+	}
+	/**
+	 * The body of the loop thread. Use {@link GameLoop#start()} instead of calling this method.
+	 */
+	public void run()
+	{
+		long step=0;
+		long next=System.nanoTime()+stepNanos;
+		publish(step);
+		while(running)
+		{
+			int result=applyCommands();
+			long now=System.nanoTime();
+			result|=applyAutoRepeat(now);
+			int steps=0;
+			while(now-next>=0&&steps<MAX_CATCH_UP_STEPS)
+			{
+				result|=engine.tick();
+				step++;
+				steps++;
+				next+=stepNanos;
+			}
+			if(now-next>=0)
+			{
+				long behind=(now-next)/stepNanos+1;
+				droppedSteps+=behind;
+				GameMetrics metrics=engine.getMetrics();
+				if(metrics!=null)
+					metrics.recordSkippedFrames(behind);
+				next+=behind*stepNanos;
+			}
+			if(result!=0)
+				publish(step);
+			if(engine.getState().isGameOver())
+				break;
+			long wait=getWaitNanos(next, System.nanoTime());
+			if(wait>0&&commands.isEmpty())
+				LockSupport.parkNanos(this,wait);
+		}
+		running=false;
+	}
+	/**
+	 * Applies every queued command to the engine.
+	 * @return the combination of {@code RESULT_...} flags of {@link TetrisEngine} describing what happened.
+	 */
+	private int applyCommands()
+	{
+		int result=0;
+		while(!commands.isEmpty())
+		{
+			int command=commands.peekCommand();
+			long time=commands.peekTime();
+			commands.remove();
+			switch(command)
+			{
+				case COMMAND_START:
+					result|=engine.start();
+					break;
+				case COMMAND_PAUSE:
+					releaseAll();
+					result|=engine.pause();
+					break;
+				case COMMAND_RESUME:
+					if(engine.getState().isGamePaused())
+						result|=engine.togglePause();
+					break;
+				default:
+					if((command&COMMAND_RELEASE)!=0)
+						release(command&~COMMAND_RELEASE, time);
+					else
+						result|=press(command, time);
+					break;
+			}
+		}
+		return result;
+	}
+	/**
+	 * Applies the press of an input's key: the input is applied once, and the repeat of a left, right or down move is scheduled after the delayed auto
+	 * shift. Pressing left suspends the repeat of a held right key and the other way round.
+	 * @param input the input.
+	 * @param time the time the key was pressed.
+	 * @return the combination of {@code RESULT_...} flags of {@link TetrisEngine} describing what happened.
+	 */
+	private int press(int input, long time)
+	{
+		if(isRepeatable(input))
+		{
+			held[input]=true;
+			repeating[input]=true;
+			repeatAt[input]=time+dasNanos;
+			int opposite=getOpposite(input);
+			if(opposite!=TetrisEngine.INPUT_NONE)
+				repeating[opposite]=false;
+		}
+		return engine.input(input);
+	}
+	/**
+	 * Applies the release of an input's key, ending its repeat. Releasing left resumes the repeat of a still held right key after the delayed auto shift,
+	 * and the other way round.
+	 * @param input the input.
+	 * @param time the time the key was released.
+	 */
+	private void release(int input, long time)
+	{
+		if(!isRepeatable(input)||!held[input])
+			return;
+		held[input]=false;
+		repeating[input]=false;
+		int opposite=getOpposite(input);
+		if(opposite!=TetrisEngine.INPUT_NONE&&held[opposite])
+		{
+			repeating[opposite]=true;
+			repeatAt[opposite]=time+dasNanos;
+		}
+	}
+	/**
+	 * Forgets every held key, for when the game is paused and the releases of the keys may never reach the loop.
+	 */
+	private void releaseAll()
+	{
+		for(int i=0;i<INPUT_COUNT;i++)
+		{
+			held[i]=false;
+			repeating[i]=false;
+		}
+	}
+	/**
+	 * Repeats the moves of the held keys that are due, at most {@link GameLoop#MAX_CATCH_UP_STEPS} times each. Repeats missed beyond that are dropped,
+	 * the same way as logic steps.
+	 * @param now the current time.
+	 * @return the combination of {@code RESULT_...} flags of {@link TetrisEngine} describing what happened.
+	 */
+	private int applyAutoRepeat(long now)
+	{
+		int result=0;
+		long arr=arrNanos;
+		for(int i=0;i<INPUT_COUNT;i++)
+		{
+			if(!repeating[i])
+				continue;
+			int repeats=0;
+			while(now-repeatAt[i]>=0&&repeats<MAX_CATCH_UP_STEPS)
+			{
+				result|=engine.input(i);
+				repeatAt[i]+=arr;
+				repeats++;
+			}
+			if(now-repeatAt[i]>=0)
+				repeatAt[i]=now+arr;
+		}
+		return result;
+	}
+	/**
+	 * Returns how long the loop may wait before the next logic step or the next repeat of a held key is due.
+	 * @param next the time the next logic step is due.
+	 * @param now the current time.
+	 * @return the time to wait in nanoseconds, 0 or less if something is due already.
+	 */
+	private long getWaitNanos(long next, long now)
+	{
+		long wait=next-now;
+		for(int i=0;i<INPUT_COUNT;i++)
+		{
+			if(repeating[i]&&repeatAt[i]-now<wait)
+				wait=repeatAt[i]-now;
+		}
+		return wait;
+	}
+	/**
+	 * Tells if an input repeats while its key is held.
+	 * @param input one of the {@code INPUT_...} constants of {@link TetrisEngine}.
+	 * @return true for left, right and down, false for the rotations.
+	 */
+	private static boolean isRepeatable(int input)
+	{
+		return input==TetrisEngine.INPUT_LEFT||input==TetrisEngine.INPUT_RIGHT||input==TetrisEngine.INPUT_DOWN;
+	}
+	/**
+	 * Returns the input moving in the opposite horizontal direction.
+	 * @param input one of the {@code INPUT_...} constants of {@link TetrisEngine}.
+	 * @return right for left, left for right, {@link TetrisEngine#INPUT_NONE} otherwise.
+	 */
+	private static int getOpposite(int input)
+	{
+		switch(input)
+		{
+			case TetrisEngine.INPUT_LEFT:	return TetrisEngine.INPUT_RIGHT;
+			case TetrisEngine.INPUT_RIGHT:	return TetrisEngine.INPUT_LEFT;
+			default:						return TetrisEngine.INPUT_NONE;
+		}
+	}
+	/**
+	 * Captures and publishes a snapshot of the engine and hands it to the listener.
+	 * @param step the number of logic steps performed so far.
+	 */
+	private void publish(long step)
+	{
+		FrameSnapshot snapshot=new FrameSnapshot(engine,step,latest);
+		latest=snapshot;
+		if(listener!=null)
+			listener.accept(snapshot);
+	}
+}
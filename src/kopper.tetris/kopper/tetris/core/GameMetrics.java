@@ -0,0 +1,237 @@
+package kopper.tetris.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * <p>The runtime metrics of one game: the number and durations of its ticks and paints, the logic steps dropped, the player inputs, the Shapes
+ * locked, the rows cleared and the bytes allocated per tick. An engine records into the metrics set with
+ * {@link TetrisEngine#setMetrics(GameMetrics)}, the thread running it records dropped steps and the painting thread records paints.
+ * {@link GameMetrics#register(String)} publishes the metrics as an MBean named {@code kopper.tetris:type=Game,name=<name>}, where they can be watched
+ * with JConsole or any other JMX client, and adds them to the sums published by {@link AllGamesMetrics}.
+ * </p>
+ * <p>
+ * Every counter is a {@link LongAdder} and every duration is counted in a {@link DurationHistogram} of LongAdders, so recording costs a few
+ * uncontended additions and a {@link System#nanoTime()} pair, cheap enough to stay on in production. The bytes allocated per tick are measured by
+ * asking the Java virtual machine for the allocation counter of the ticking thread before and after one tick in every
+ * {@link GameMetrics#ALLOCATION_SAMPLE_INTERVAL}, see {@link GameMetrics#isAllocationMeasured()}.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class GameMetrics extends AbstractMetrics
+{
+	/**
+	 * The allocations of one tick in every this many are measured, since reading the allocation counter of a thread costs more than the tick itself.
+	 */
+	public static final int ALLOCATION_SAMPLE_INTERVAL=16;
+	/**
+	 * The bean reading the allocation counters of threads, null if the Java virtual machine does not measure them.
+	 */
+	private static final com.sun.management.ThreadMXBean ALLOCATIONS=getAllocationBean();
+	/**
+	 * The counters, indexed by the counter constants of {@link AbstractMetrics}.
+	 */
+	private final LongAdder[] counters=new LongAdder[COUNTERS];
+	/**
+	 * The durations of the ticks.
+	 */
+	private final DurationHistogram ticks=new DurationHistogram();
+	/**
+	 * The durations of the paints.
+	 */
+	private final DurationHistogram paints=new DurationHistogram();
+	/**
+	 * The name the metrics are published under, null if they are not published.
+	 */
+	private ObjectName name;
+	/**
+	 * The number of ticks until the allocations of a tick are measured again, used by the ticking thread only.
+	 */
+	private int ticksUntilAllocationSample=0;
+
+	/**
+	 * Creates metrics with every counter at 0.
+	 */
+	public GameMetrics()
+	{
+		for(int i=0;i<COUNTERS;i++)
+			counters[i]=new LongAdder();
+	}
+	/**
+	 * Records a tick of the engine.
+	 * @param nanos how long the tick took in nanoseconds.
+	 * @param allocatedBytes the number of bytes the thread allocated during the tick, negative if that was not measured, see
+	 * {@link GameMetrics#isAllocationSampleDue()}.
+	 */
+	public void recordTick(long nanos, long allocatedBytes)
+	{
+		ticks.record(nanos);
+		if(allocatedBytes>=0)
+		{
+			counters[ALLOCATED].add(allocatedBytes);
+			counters[ALLOCATION_TICKS].increment();
+		}
+	}
+	/**
+	 * Tells the ticking thread whether to measure the allocations of the coming tick, once every {@link GameMetrics#ALLOCATION_SAMPLE_INTERVAL} ticks.
+	 * @return true if the allocations of the tick should be measured.
+	 */
+	public boolean isAllocationSampleDue()
+	{
+		if(ticksUntilAllocationSample>0)
+		{
+			ticksUntilAllocationSample--;
+			return false;
+		}
+		ticksUntilAllocationSample=ALLOCATION_SAMPLE_INTERVAL-1;
+		return ALLOCATIONS!=null;
+	}
+	/**
+	 * Records a player input that changed the game, see {@link GameMetricsMBean#getInputEvents()}.
+	 */
+	public void recordInput()
+	{
+		counters[INPUTS].increment();
+	}
+	/**
+	 * Records a Shape locked into the grid.
+	 * @param rowsCleared the number of rows the lock cleared.
+	 */
+	public void recordLock(int rowsCleared)
+	{
+		counters[PIECES].increment();
+		if(rowsCleared>0)
+		{
+			counters[LINES].add(rowsCleared);
+			counters[CLEARS+Math.min(4,rowsCleared)-1].increment();
+		}
+	}
+	/**
+	 * Records a paint of the game.
+	 * @param nanos how long the paint took in nanoseconds.
+	 */
+	public void recordPaint(long nanos)
+	{
+		paints.record(nanos);
+	}
+	/**
+	 * Records logic steps dropped because the thread running the game fell too far behind.
+	 * @param steps the number of steps.
+	 */
+	public void recordSkippedFrames(long steps)
+	{
+		counters[SKIPPED].add(steps);
+	}
+	/**
+	 * Publishes these metrics in the platform MBean server as {@code kopper.tetris:type=Game,name=<name>}, and adds them to {@link AllGamesMetrics}.
+	 * Does nothing if they are already published.
+	 * @param gameName the name of the game, unique among the published games.
+	 * @throws IllegalStateException if the metrics can not be published, for example because the name is taken.
+	 */
+	public synchronized void register(String gameName)
+	{
+		if(name!=null)
+			return;
+		try
+		{
+			ObjectName n=new ObjectName("kopper.tetris:type=Game,name="+ObjectName.quote(gameName));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this,GameMetricsMBean.class),n);
+			name=n;
+		}
+		catch(JMException e)
+		{
+			throw new IllegalStateException("The metrics of "+gameName+" can not be published",e);
+		}
+		AllGamesMetrics.getInstance().add(this);
+	}
+	/**
+	 * Stops publishing these metrics, whose counts stay in the sums of {@link AllGamesMetrics}. Does nothing if they are not published.
+	 */
+	public synchronized void unregister()
+	{
+		if(name==null)
+			return;
+		MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			server.unregisterMBean(name);
+		}
+		catch(JMException e)
+		{
+		}
+		name=null;
+		AllGamesMetrics.getInstance().remove(this);
+	}
+	/**
+	 * Adds everything recorded in these metrics to other metrics.
+	 * @param other the other metrics.
+	 */
+	void addTo(GameMetrics other)
+	{
+		for(int i=0;i<COUNTERS;i++)
+			other.counters[i].add(counters[i].sum());
+		ticks.addTo(other.ticks);
+		paints.addTo(other.paints);
+	}
+	long getCounter(int counter)
+	{
+		return counters[counter].sum();
+	}
+	void addCountsTo(int histogram, long[] counts)
+	{
+		(histogram==TICKS?ticks:paints).addCountsTo(counts);
+	}
+	long getDurationSum(int histogram)
+	{
+		return (histogram==TICKS?ticks:paints).getSum();
+	}
+	long getDurationMax(int histogram)
+	{
+		return (histogram==TICKS?ticks:paints).getMax();
+	}
+	/**
+	 * Tells if the Java virtual machine measures the bytes allocated by each thread, which the allocations per tick are computed from.
+	 * @return true if allocations are measured.
+	 */
+	public static boolean isAllocationMeasured()
+	{
+		return ALLOCATIONS!=null;
+	}
+	/**
+	 * Returns the number of bytes the calling thread allocated since it started.
+	 * @return the number of bytes, or -1 if allocations are not measured.
+	 */
+	public static long getThreadAllocatedBytes()
+	{
+		return ALLOCATIONS!=null?ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId()):-1;
+	}
+	/**
+	 * Returns the bean reading the allocation counters of threads, turning the counters on if needed.
+	 * @return the bean, or null if the Java virtual machine does not measure the allocations of threads.
+	 */
+	private static com.sun.management.ThreadMXBean getAllocationBean()
+	{
+		ThreadMXBean bean=ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean))
+			return null;
+		com.sun.management.ThreadMXBean allocations=(com.sun.management.ThreadMXBean)bean;
+		try
+		{
+			if(!allocations.isThreadAllocatedMemorySupported())
+				return null;
+			if(!allocations.isThreadAllocatedMemoryEnabled())
+				allocations.setThreadAllocatedMemoryEnabled(true);
+			return allocations;
+		}
+		catch(UnsupportedOperationException|SecurityException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package kopper.tetris.core;
+
+/**
+ * The runtime metrics of a game as published over JMX by {@link GameMetrics}, and of all games together by {@link AllGamesMetrics}. Durations are
+ * in nanoseconds. The percentiles are upper bounds, the largest duration of the power of two bucket the percentile falls in, and the histograms
+ * hold the counts of those buckets: element {@code b} counts the durations from {@code 2^(b-1)} to {@code 2^b-1} nanoseconds.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public interface GameMetricsMBean
+{
+	/**
+	 * Returns the number of ticks of the engine.
+	 * @return the number of ticks.
+	 */
+	long getTickCount();
+	/**
+	 * Returns the mean duration of a tick.
+	 * @return the duration, 0 if there was no tick.
+	 */
+	double getTickMeanNanos();
+	/**
+	 * Returns the median duration of a tick.
+	 * @return the duration.
+	 */
+	long getTickP50Nanos();
+	/**
+	 * Returns the 99th percentile of the duration of a tick.
+	 * @return the duration.
+	 */
+	long getTickP99Nanos();
+	/**
+	 * Returns the longest duration of a tick.
+	 * @return the duration.
+	 */
+	long getTickMaxNanos();
+	/**
+	 * Returns the histogram of the durations of the ticks.
+	 * @return the counts of the buckets.
+	 */
+	long[] getTickHistogram();
+	/**
+	 * Returns the number of times the game was painted.
+	 * @return the number of paints.
+	 */
+	long getPaintCount();
+	/**
+	 * Returns the mean duration of a paint.
+	 * @return the duration, 0 if the game was not painted.
+	 */
+	double getPaintMeanNanos();
+	/**
+	 * Returns the median duration of a paint.
+	 * @return the duration.
+	 */
+	long getPaintP50Nanos();
+	/**
+	 * Returns the 99th percentile of the duration of a paint.
+	 * @return the duration.
+	 */
+	long getPaintP99Nanos();
+	/**
+	 * Returns the longest duration of a paint.
+	 * @return the duration.
+	 */
+	long getPaintMaxNanos();
+	/**
+	 * Returns the histogram of the durations of the paints.
+	 * @return the counts of the buckets.
+	 */
+	long[] getPaintHistogram();
+	/**
+	 * Returns the number of logic steps dropped because the thread running the game fell too far behind, see {@link GameLoop#getDroppedSteps()}.
+	 * @return the number of steps.
+	 */
+	long getFramesSkipped();
+	/**
+	 * Returns the number of player inputs that changed the game, by moving, rotating or locking the Shape. These are the inputs a {@link Replay}
+	 * records; key presses mapped to no input and inputs that were blocked or came while the game was not running are not counted.
+	 * @return the number of inputs.
+	 */
+	long getInputEvents();
+	/**
+	 * Returns the number of Shapes locked into the grid.
+	 * @return the number of Shapes.
+	 */
+	long getPiecesLocked();
+	/**
+	 * Returns the number of rows cleared, as counted by {@link TetrisScore#getRows()}.
+	 * @return the number of rows.
+	 */
+	long getLinesCleared();
+	/**
+	 * Returns the number of locks that cleared one, two, three and four rows at once.
+	 * @return the counts, element {@code n-1} counting the locks that cleared {@code n} rows.
+	 */
+	long[] getLineClears();
+	/**
+	 * Returns the mean number of bytes the thread running the engine allocated during a tick.
+	 * @return the number of bytes, or -1 if the Java virtual machine does not measure the allocations of threads.
+	 */
+	double getAllocatedBytesPerTick();
+}
@@ -0,0 +1,730 @@
+package kopper.tetris.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Hosts any number of independent games over TCP, one {@link TetrisEngine} per connection, so a whole league plays on one server. A
+ * {@link TetrisGame} created with {@link TetrisGame#TetrisGame(javax.swing.JFrame, GameClient)} is the client, see {@link GameClient}.
+ * </p>
+ * <p>
+ * The games are run by a small, fixed number of worker threads, not by a thread per game. Each worker owns a {@link Selector} and the sessions of
+ * the connections assigned to it. It waits on its selector until the next logic step is due, applies the commands that arrived, advances every game
+ * of the worker by one tick per step, with the catch up rules of {@link GameLoop}, and writes the frames of the games that changed. A game costs a
+ * tick every 40 milliseconds and a frame every time it changes, so a worker thread keeps up with thousands of games, and a connection costs a socket
+ * and a few kilobytes of buffers.
+ * </p>
+ * <p>
+ * The protocol is binary. Every byte the client sends is a command: one of the {@code INPUT_...} constants of {@link TetrisEngine}, or
+ * {@link GameServer#COMMAND_START}, {@link GameServer#COMMAND_PAUSE} or {@link GameServer#COMMAND_TOGGLE_PAUSE}. An unknown command closes the
+ * connection. The server sends a frame when the connection is accepted and every time the game changed since: a big endian int giving the length
+ * of the frame, followed by a snapshot of the engine written by {@link TetrisEngine#writeSnapshot(java.nio.ByteBuffer)} in big endian order. The
+ * client keeps no game logic of its own, it shows the latest frame with {@link TetrisEngine#restoreSnapshot(java.nio.ByteBuffer)}.
+ * </p>
+ * <p>
+ * Every game is recorded. When a game is over, or its player leaves a started game, its {@link Replay} is appended to the archive set with
+ * {@link GameServer#setArchive(ReplayArchive)}, if any, by an archiver thread of its own, so no worker thread ever waits for the disk. The runtime metrics of every game can be published over JMX, see
+ * {@link GameServer#setMetricsPublished(boolean)}.
+ * </p>
+ * <p>
+ * The games are numbered in the order their players connected, from 1 and across all servers of the Java virtual machine, the number their
+ * metrics are published under. A server can also let spectators watch any game, see {@link GameServer#listenForSpectators(InetSocketAddress)}: a
+ * spectator connects to the spectator port and sends the number of the game as a big endian int, and is then sent the messages of a
+ * {@link SpectatorPublisher} of the game after every tick, which a {@link SpectatorView} applies. A spectator asking for a game that is not played
+ * on the server is disconnected, and so are the spectators of a game when its player leaves. {@link GameClient#GameClient(InetSocketAddress, int)}
+ * connects a spectator.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class GameServer implements Closeable
+{
+	/**
+	 * The default port of the server.
+	 */
+	public static final int DEFAULT_PORT=7474;
+	/**
+	 * The number of columns of the grid of every game, those of {@link TetrisGame}.
+	 */
+	public static final int COLUMNS=20;
+	/**
+	 * The number of rows of the grid of every game, those of {@link TetrisGame}.
+	 */
+	public static final int ROWS=20;
+	/**
+	 * The largest frame the server sends, in bytes.
+	 */
+	public static final int MAX_FRAME_SIZE=1<<16;
+	/**
+	 * The command starting the game, see {@link TetrisEngine#start()}.
+	 */
+	public static final int COMMAND_START=Replay.CODE_START;
+	/**
+	 * The command pausing a running game, see {@link TetrisEngine#pause()}.
+	 */
+	public static final int COMMAND_PAUSE=Replay.CODE_PAUSE;
+	/**
+	 * The command pausing a running game and resuming a paused one, see {@link TetrisEngine#togglePause()}.
+	 */
+	public static final int COMMAND_TOGGLE_PAUSE=Replay.CODE_TOGGLE_PAUSE;
+	/**
+	 * The socket accepting connections.
+	 */
+	private final ServerSocketChannel server;
+	/**
+	 * The socket accepting spectators, null if spectators are not served.
+	 */
+	private ServerSocketChannel spectatorServer;
+	/**
+	 * The sessions of all worker threads, by the number of their game, where spectators look up the game they asked for.
+	 */
+	private final ConcurrentHashMap<Integer,GameSession> games=new ConcurrentHashMap<>();
+	/**
+	 * The worker threads' state, the first of which also accepts the connections.
+	 */
+	private final Worker[] workers;
+	/**
+	 * The length of a logic step in nanoseconds.
+	 */
+	private final long stepNanos;
+	/**
+	 * The number of open sessions.
+	 */
+	private final AtomicInteger sessionCount=new AtomicInteger();
+	/**
+	 * The archive the replays of finished games are appended to, null to not keep them.
+	 */
+	private volatile ReplayArchive archive;
+	/**
+	 * The replays of finished games waiting for the archiver thread.
+	 */
+	private final LinkedBlockingQueue<Replay> finishedReplays=new LinkedBlockingQueue<>();
+	/**
+	 * The thread appending the replays of finished games to the archive.
+	 */
+	private final Thread archiver=new Thread(this::runArchiver,"kopper-tetris-archiver");
+	/**
+	 * False once the worker threads ended, after which the archiver thread appends the replays left and ends.
+	 */
+	private volatile boolean archiving=true;
+	/**
+	 * True if the runtime metrics of every new session are published.
+	 */
+	private volatile boolean metricsPublished=false;
+	/**
+	 * The number of sessions created by every server of the Java virtual machine, which numbers the games, so the names of their published metrics
+	 * never clash.
+	 */
+	private static final AtomicInteger sessionsCreated=new AtomicInteger();
+	/**
+	 * False once the server was closed.
+	 */
+	private volatile boolean running=true;
+	/**
+	 * The worker the next accepted connection is assigned to, used by the first worker thread only.
+	 */
+	private int nextWorker=0;
+
+	/**
+	 * Creates a server listening on an address. No game is run until {@link GameServer#start()} is called.
+	 * @param address the address to listen on, for example {@code new InetSocketAddress(GameServer.DEFAULT_PORT)}. Port 0 picks a free port, see
+	 * {@link GameServer#getPort()}.
+	 * @param threads the number of worker threads.
+	 * @param stepNanos the length of a logic step in nanoseconds, {@link GameLoop#DEFAULT_STEP_NANOS} for the timing of {@link TetrisGame}.
+	 * @throws IOException if the address can not be listened on.
+	 * @throws IllegalArgumentException if the number of threads or the step is not positive.
+	 */
+	public GameServer(InetSocketAddress address, int threads, long stepNanos) throws IOException
+	{
+		if(threads<=0||stepNanos<=0)
+			throw new IllegalArgumentException("The threads and step must be positive, not "+threads+" and "+stepNanos);
+		this.stepNanos=stepNanos;
+		this.workers=new Worker[threads];
+		this.server=ServerSocketChannel.open();
+		try
+		{
+			server.bind(address,1024);
+			server.configureBlocking(false);
+			for(int i=0;i<threads;i++)
+				workers[i]=new Worker(i);
+			server.register(workers[0].selector,SelectionKey.OP_ACCEPT);
+		}
+		catch(IOException e)
+		{
+			close();
+			throw e;
+		}
+	}
+	/**
+	 * Starts the worker threads and the archiver thread. Call once.
+	 */
+	public void start()
+	{
+		archiver.start();
+		for(Worker worker:workers)
+			worker.thread.start();
+	}
+	/**
+	 * Returns the port the server listens on.
+	 * @return the port.
+	 * @throws IOException if the port can not be read.
+	 */
+	public int getPort() throws IOException
+	{
+		return ((InetSocketAddress)server.getLocalAddress()).getPort();
+	}
+	/**
+	 * Starts listening for spectators on a second address, see {@link GameServer}. Call before {@link GameServer#start()}, once.
+	 * @param address the address to listen on. Port 0 picks a free port, see {@link GameServer#getSpectatorPort()}.
+	 * @throws IOException if the address can not be listened on.
+	 */
+	public void listenForSpectators(InetSocketAddress address) throws IOException
+	{
+		ServerSocketChannel channel=ServerSocketChannel.open();
+		try
+		{
+			channel.bind(address,1024);
+			channel.configureBlocking(false);
+			channel.register(workers[0].selector,SelectionKey.OP_ACCEPT);
+		}
+		catch(IOException e)
+		{
+			closeQuietly(channel);
+			throw e;
+		}
+		spectatorServer=channel;
+	}
+	/**
+	 * Returns the port the server listens on for spectators.
+	 * @return the port, or -1 if spectators are not served.
+	 * @throws IOException if the port can not be read.
+	 */
+	public int getSpectatorPort() throws IOException
+	{
+		return spectatorServer!=null?((InetSocketAddress)spectatorServer.getLocalAddress()).getPort():-1;
+	}
+	/**
+	 * Returns the number of connected players.
+	 * @return the number of sessions.
+	 */
+	public int getSessionCount()
+	{
+		return sessionCount.get();
+	}
+	/**
+	 * Sets the archive the replays of finished games are appended to. The archive is used by the archiver thread of the server, which flushes it every
+	 * time it appended all replays waiting, and must not be used by anybody else. The server flushes and closes it when it is closed.
+	 * @param archive the archive, or null to not keep the replays, the default.
+	 */
+	public void setArchive(ReplayArchive archive)
+	{
+		this.archive=archive;
+	}
+	/**
+	 * Sets whether the runtime metrics of the games of new connections are published over JMX, each as {@code kopper.tetris:type=Game,name=session-<n>}
+	 * until its connection closes, see {@link GameMetrics}. The sessions are numbered across all servers of the Java virtual machine. The sums over all games are published as {@code kopper.tetris:type=Games}.
+	 * @param published true to publish the metrics, false to not record them, the default.
+	 */
+	public void setMetricsPublished(boolean published)
+	{
+		this.metricsPublished=published;
+	}
+	/**
+	 * Stops the worker threads, which close every session, and stops listening. Waits for the worker threads to end and for the archiver thread to
+	 * append the replays of the games they closed, then flushes and closes the archive.
+	 */
+	public void close()
+	{
+		running=false;
+		for(Worker worker:workers)
+		{
+			if(worker==null)
+				continue;
+			worker.selector.wakeup();
+			if(worker.thread.isAlive()&&worker.thread!=Thread.currentThread())
+			{
+				try
+				{
+					worker.thread.join();
+				}
+				catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+			closeQuietly(worker.selector);
+		}
+		closeQuietly(server);
+		if(spectatorServer!=null)
+			closeQuietly(spectatorServer);
+		archiving=false;
+		if(archiver.isAlive()&&archiver!=Thread.currentThread())
+		{
+			try
+			{
+				archiver.join();
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		ReplayArchive a=archive;
+		archive=null;
+		if(a!=null)
+		{
+			flush(a);
+			closeQuietly(a);
+		}
+	}
+	/**
+	 * Hands the replay of a finished game to the archiver thread, if an archive was set.
+	 * @param replay the replay, or null if there is none.
+	 */
+	private void archive(Replay replay)
+	{
+		if(replay!=null&&archive!=null)
+			finishedReplays.add(replay);
+	}
+	/**
+	 * Runs the archiver thread: appends the replays of finished games to the archive as they come, flushing it whenever no replay is left waiting,
+	 * until the worker threads ended and every replay they finished was appended. The thread is never interrupted, since an interrupt would close
+	 * the channels of the archive.
+	 */
+	private void runArchiver()
+	{
+		while(archiving||!finishedReplays.isEmpty())
+		{
+			Replay replay;
+			try
+			{
+				replay=finishedReplays.poll(100,TimeUnit.MILLISECONDS);
+			}
+			catch(InterruptedException e)
+			{
+				continue;
+			}
+			ReplayArchive a=archive;
+			if(replay==null||a==null)
+				continue;
+			try
+			{
+				a.append(replay);
+			}
+			catch(IOException|RuntimeException e)
+			{
+				System.out.println("Replay not archived: "+e);
+			}
+			if(finishedReplays.isEmpty())
+				flush(a);
+		}
+	}
+	/**
+	 * Forces the replays appended to an archive to the storage device, reporting failures.
+	 * @param a the archive.
+	 */
+	private static void flush(ReplayArchive a)
+	{
+		try
+		{
+			a.flush();
+		}
+		catch(IOException e)
+		{
+			System.out.println("Archive not flushed: "+e);
+		}
+	}
+	/**
+	 * Closes something, ignoring failures.
+	 * @param c the thing to close.
+	 */
+	private static void closeQuietly(Closeable c)
+	{
+		try
+		{
+			c.close();
+		}
+		catch(IOException e)
+		{
+		}
+	}
+	/**
+	 * Runs a server until the process is killed. Arguments: {@code [port] [threads] [archive]}, by default {@link GameServer#DEFAULT_PORT}, one thread
+	 * per processor and no archive. Spectators are served on the port after the server's port. When the process is stopped, the server is closed,
+	 * which archives the games still played and closes the archive.
+	 * @param args the arguments.
+	 * @throws IOException if the server can not be started or the archive can not be opened.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int port=args.length>0?Integer.parseInt(args[0]):DEFAULT_PORT;
+		int threads=args.length>1?Integer.parseInt(args[1]):Runtime.getRuntime().availableProcessors();
+		GameServer server=new GameServer(new InetSocketAddress(port),threads,GameLoop.DEFAULT_STEP_NANOS);
+		if(args.length>2)
+			server.setArchive(ReplayArchive.open(Paths.get(args[2])));
+		server.setMetricsPublished(Boolean.getBoolean("kopper.tetris.jmx"));
+		server.listenForSpectators(new InetSocketAddress(server.getPort()+1));
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close,"kopper-tetris-server-shutdown"));
+		server.start();
+		System.out.println("Serving games on port "+server.getPort()+" and spectators on port "+server.getSpectatorPort()+" with "+threads+" threads");
+	}
+	/**
+	 * A spectator that connected and has not sent the number of the game it asks for completely yet.
+	 */
+	private static final class SpectatorRequest
+	{
+		/**
+		 * The buffer the number of the game is read into.
+		 */
+		private final ByteBuffer number=ByteBuffer.allocate(Integer.BYTES);
+	}
+	/**
+	 * The state of one worker thread: its selector, its sessions and the connections handed to it by the accepting worker.
+	 */
+	private class Worker implements Runnable
+	{
+		/**
+		 * The selector of the connections of this worker.
+		 */
+		private final Selector selector;
+		/**
+		 * The thread running this worker.
+		 */
+		private final Thread thread;
+		/**
+		 * The sessions of this worker.
+		 */
+		private final ArrayList<GameSession> sessions=new ArrayList<>();
+		/**
+		 * Connections accepted for this worker and not registered with its selector yet.
+		 */
+		private final ConcurrentLinkedQueue<SocketChannel> accepted=new ConcurrentLinkedQueue<>();
+		/**
+		 * The keys of the server sockets whose accepting is paused after a failure.
+		 */
+		private final ArrayList<SelectionKey> acceptPaused=new ArrayList<>();
+
+		/**
+		 * Creates a worker.
+		 * @param index the index of the worker, used in the name of its thread.
+		 * @throws IOException if the selector can not be opened.
+		 */
+		Worker(int index) throws IOException
+		{
+			this.selector=Selector.open();
+			this.thread=new Thread(this,"kopper-tetris-server-"+index);
+		}
+		public void run()
+		{
+			long next=System.nanoTime()+stepNanos;
+			try
+			{
+				while(running)
+				{
+					long wait=next-System.nanoTime();
+					if(wait>=1_000_000L)
+						selector.select(wait/1_000_000L);
+					else
+						selector.selectNow();
+					register();
+					handleSelected();
+					long now=System.nanoTime();
+					int steps=0;
+					while(now-next>=0&&steps<GameLoop.MAX_CATCH_UP_STEPS)
+					{
+						for(int i=0;i<sessions.size();i++)
+							tick(sessions.get(i));
+						steps++;
+						next+=stepNanos;
+					}
+					if(steps>0&&!acceptPaused.isEmpty())
+					{
+						for(SelectionKey key:acceptPaused)
+						{
+							if(key.isValid())
+								key.interestOps(SelectionKey.OP_ACCEPT);
+						}
+						acceptPaused.clear();
+					}
+					if(now-next>=0)
+					{
+						long behind=(now-next)/stepNanos+1;
+						next+=behind*stepNanos;
+						for(int i=0;i<sessions.size();i++)
+						{
+							GameMetrics metrics=sessions.get(i).getEngine().getMetrics();
+							if(metrics!=null)
+								metrics.recordSkippedFrames(behind);
+						}
+					}
+					flushSessions();
+				}
+			}
+			catch(IOException e)
+			{
+				System.out.println(thread.getName()+" failed: "+e);
+			}
+			finally
+			{
+				for(GameSession session:sessions)
+					close(session);
+				sessions.clear();
+				for(SocketChannel channel;(channel=accepted.poll())!=null;)
+					closeQuietly(channel);
+			}
+		}
+		/**
+		 * Accepts the pending connections of players and spectators, reads the commands of the sessions that have some, and reads the game numbers
+		 * of spectators. When accepting fails, for example because the process ran out of file descriptors, accepting is paused until the next logic
+		 * step rather than retried at once. A session that fails is closed alone.
+		 * @throws IOException if the selector failed.
+		 */
+		private void handleSelected() throws IOException
+		{
+			Iterator<SelectionKey> keys=selector.selectedKeys().iterator();
+			while(keys.hasNext())
+			{
+				SelectionKey key=keys.next();
+				keys.remove();
+				if(!key.isValid())
+					continue;
+				if(key.isAcceptable())
+				{
+					if(!(key.channel()==server?accept():acceptSpectators()))
+					{
+						key.interestOps(0);
+						acceptPaused.add(key);
+					}
+					continue;
+				}
+				if(key.attachment() instanceof SpectatorRequest)
+				{
+					readSpectatorRequest(key);
+					continue;
+				}
+				GameSession session=(GameSession)key.attachment();
+				try
+				{
+					if(key.isReadable())
+						session.read();
+					if(!session.isClosed()&&key.isWritable())
+						session.flush();
+				}
+				catch(IOException e)
+				{
+					session.close();
+				}
+				catch(RuntimeException e)
+				{
+					fail(session,e);
+				}
+			}
+		}
+		/**
+		 * Accepts every pending connection and hands each to the next worker in turn.
+		 * @return false if accepting failed, true otherwise.
+		 */
+		private boolean accept()
+		{
+			try
+			{
+				for(SocketChannel channel;(channel=server.accept())!=null;)
+				{
+					Worker worker=workers[nextWorker];
+					nextWorker=(nextWorker+1)%workers.length;
+					worker.accepted.add(channel);
+					if(worker!=this)
+						worker.selector.wakeup();
+				}
+				return true;
+			}
+			catch(IOException e)
+			{
+				System.out.println("Connection not accepted: "+e);
+				return false;
+			}
+		}
+		/**
+		 * Accepts every pending spectator and waits for the number of the game it asks for.
+		 * @return false if accepting failed, true otherwise.
+		 */
+		private boolean acceptSpectators()
+		{
+			try
+			{
+				for(SocketChannel channel;(channel=spectatorServer.accept())!=null;)
+				{
+					try
+					{
+						channel.configureBlocking(false);
+						channel.socket().setTcpNoDelay(true);
+						channel.register(selector,SelectionKey.OP_READ,new SpectatorRequest());
+					}
+					catch(IOException e)
+					{
+						closeQuietly(channel);
+					}
+				}
+				return true;
+			}
+			catch(IOException e)
+			{
+				System.out.println("Spectator not accepted: "+e);
+				return false;
+			}
+		}
+		/**
+		 * Reads the number of the game a spectator asks for and, once it is complete, hands the spectator to the session of the game. The spectator is
+		 * disconnected if no such game is played on this server.
+		 * @param key the key of the spectator's connection.
+		 */
+		private void readSpectatorRequest(SelectionKey key)
+		{
+			SocketChannel channel=(SocketChannel)key.channel();
+			ByteBuffer number=((SpectatorRequest)key.attachment()).number;
+			try
+			{
+				if(channel.read(number)<0)
+					throw new IOException("The spectator left");
+				if(number.hasRemaining())
+					return;
+				key.cancel();
+				GameSession session=games.get(number.getInt(0));
+				if(session==null)
+					throw new IOException("Unknown game "+number.getInt(0));
+				session.addSpectator(channel);
+			}
+			catch(IOException e)
+			{
+				key.cancel();
+				closeQuietly(channel);
+			}
+		}
+		/**
+		 * Advances the game of a session by one tick, closing the session if that fails.
+		 * @param session the session.
+		 */
+		private void tick(GameSession session)
+		{
+			if(session.isClosed())
+				return;
+			try
+			{
+				session.tick();
+			}
+			catch(RuntimeException e)
+			{
+				fail(session,e);
+			}
+		}
+		/**
+		 * Closes a session whose game failed, leaving the other sessions of the worker running.
+		 * @param session the session.
+		 * @param e the failure.
+		 */
+		private void fail(GameSession session, RuntimeException e)
+		{
+			System.out.println(thread.getName()+" closed a failed session: "+e);
+			session.close();
+		}
+		/**
+		 * Creates the sessions of the connections handed to this worker. A session whose metrics can not be published is closed.
+		 */
+		private void register()
+		{
+			for(SocketChannel channel;(channel=accepted.poll())!=null;)
+			{
+				GameSession session=null;
+				try
+				{
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					session=new GameSession(channel,channel.register(selector,SelectionKey.OP_READ),sessionsCreated.incrementAndGet(),COLUMNS,ROWS);
+					sessions.add(session);
+					sessionCount.incrementAndGet();
+					games.put(session.getNumber(),session);
+					if(metricsPublished)
+						session.publishMetrics("session-"+session.getNumber());
+				}
+				catch(IOException e)
+				{
+					closeQuietly(channel);
+				}
+				catch(RuntimeException e)
+				{
+					if(session!=null)
+						fail(session,e);
+					else
+						closeQuietly(channel);
+				}
+			}
+		}
+		/**
+		 * Writes the frames of the sessions whose games changed, archives the games that are over and drops the closed sessions. A session that fails
+		 * is closed alone.
+		 */
+		private void flushSessions()
+		{
+			for(int i=sessions.size()-1;i>=0;i--)
+			{
+				GameSession session=sessions.get(i);
+				if(!session.isClosed())
+				{
+					try
+					{
+						session.flush();
+						if(session.getEngine().getState().isGameOver())
+							archive(session.finish());
+					}
+					catch(IOException e)
+					{
+						session.close();
+					}
+					catch(RuntimeException e)
+					{
+						fail(session,e);
+					}
+				}
+				if(session.isClosed())
+				{
+					close(session);
+					int last=sessions.size()-1;
+					sessions.set(i,sessions.get(last));
+					sessions.remove(last);
+				}
+			}
+		}
+		/**
+		 * Closes a session and archives its game if it was started.
+		 * @param session the session.
+		 */
+		private void close(GameSession session)
+		{
+			session.close();
+			sessionCount.decrementAndGet();
+			games.remove(session.getNumber());
+			try
+			{
+				archive(session.finish());
+			}
+			catch(RuntimeException e)
+			{
+				System.out.println("Replay not archived: "+e);
+			}
+		}
+	}
+}
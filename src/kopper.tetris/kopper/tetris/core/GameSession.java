@@ -0,0 +1,263 @@
+package kopper.tetris.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One game hosted by a {@link GameServer}: the engine of one connected player, with the buffers its commands are read into and its frames are
+ * written from. A session is created, run and closed by a single worker thread of the server, and is not thread safe.
+ * <p>
+ * Every byte the player sends is a command, see {@link GameServer}. Every time the game changes, the session writes a frame holding a snapshot of
+ * the engine into its output buffer. A player who reads slower than the game changes gets fewer frames rather than a growing backlog: while the
+ * buffer has no room for another frame, the changes are coalesced into the next frame that fits.
+ * </p>
+ * <p>
+ * Spectators handed to the session with {@link GameSession#addSpectator(SocketChannel)}, which any worker thread may call, are sent the game by a
+ * {@link SpectatorPublisher} after every tick. The publisher is only created for the first spectator, so a game nobody watches costs nothing more.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+final class GameSession
+{
+	/**
+	 * The connection to the player.
+	 */
+	private final SocketChannel channel;
+	/**
+	 * The key of {@link GameSession#channel} with the selector of the worker thread.
+	 */
+	private final SelectionKey key;
+	/**
+	 * The number of the game, see {@link GameServer}.
+	 */
+	private final int number;
+	/**
+	 * The game of the player.
+	 */
+	private final TetrisEngine engine;
+	/**
+	 * The buffer commands are read into.
+	 */
+	private final ByteBuffer input=ByteBuffer.allocate(64);
+	/**
+	 * The frames not sent yet, between the start of the buffer and its position.
+	 */
+	private ByteBuffer output;
+	/**
+	 * True if the game changed since the last frame.
+	 */
+	private boolean changed=true;
+	/**
+	 * The spectators handed to the session and not subscribed to {@link GameSession#publisher} yet.
+	 */
+	private final ConcurrentLinkedQueue<SocketChannel> spectators=new ConcurrentLinkedQueue<>();
+	/**
+	 * The publisher sending the game to its spectators, null until the first spectator came.
+	 */
+	private SpectatorPublisher publisher;
+	/**
+	 * True once the session was closed. Read by the worker threads handing spectators to the session.
+	 */
+	private volatile boolean closed=false;
+	/**
+	 * True once the replay of the finished game was handed to the server.
+	 */
+	private boolean finished=false;
+
+	/**
+	 * Creates a session for a newly accepted connection, registered for reading with the selector of a worker thread.
+	 * @param channel the connection, in non-blocking mode.
+	 * @param key the key of the connection with the selector of the worker thread, whose attachment becomes this session.
+	 * @param number the number of the game.
+	 * @param columns the number of columns of the grid.
+	 * @param rows the number of rows of the grid.
+	 */
+	GameSession(SocketChannel channel, SelectionKey key, int number, int columns, int rows)
+	{
+		this.channel=channel;
+		this.key=key;
+		this.number=number;
+		this.engine=new TetrisEngine(columns,rows);
+		this.engine.startRecording();
+		this.output=ByteBuffer.allocateDirect(4*(Integer.BYTES+engine.getSnapshotSize()));
+		key.attach(this);
+	}
+	/**
+	 * Returns the number of the game.
+	 * @return the number.
+	 */
+	int getNumber()
+	{
+		return number;
+	}
+	/**
+	 * Returns the game of the player.
+	 * @return the engine.
+	 */
+	TetrisEngine getEngine()
+	{
+		return engine;
+	}
+	/**
+	 * Records the runtime metrics of the game and publishes them, see {@link GameMetrics#register(String)}, until the session is closed.
+	 * @param name the name of the game.
+	 */
+	void publishMetrics(String name)
+	{
+		GameMetrics metrics=new GameMetrics();
+		metrics.register(name);
+		engine.setMetrics(metrics);
+	}
+	/**
+	 * Tells if the session was closed.
+	 * @return true if the session was closed.
+	 */
+	boolean isClosed()
+	{
+		return closed;
+	}
+	/**
+	 * Reads the commands the player sent and applies them to the engine.
+	 * @throws IOException if the connection failed or the player sent an unknown command.
+	 */
+	void read() throws IOException
+	{
+		int n;
+		while((n=channel.read(input))>0)
+		{
+			input.flip();
+			int result=0;
+			while(input.hasRemaining())
+				result|=apply(input.get());
+			input.clear();
+			if(result!=0)
+				changed=true;
+		}
+		if(n<0)
+			close();
+	}
+	/**
+	 * Applies a command to the engine.
+	 * @param command the command.
+	 * @return the result of the command, see the {@code RESULT_...} constants of {@link TetrisEngine}.
+	 * @throws IOException if the command is unknown.
+	 */
+	private int apply(int command) throws IOException
+	{
+		switch(command)
+		{
+			case TetrisEngine.INPUT_LEFT:
+			case TetrisEngine.INPUT_RIGHT:
+			case TetrisEngine.INPUT_DOWN:
+			case TetrisEngine.INPUT_ROTATE_CW:
+			case TetrisEngine.INPUT_ROTATE_CCW:	return engine.input(command);
+			case GameServer.COMMAND_START:		return engine.start();
+			case GameServer.COMMAND_PAUSE:		return engine.pause();
+			case GameServer.COMMAND_TOGGLE_PAUSE:	return engine.togglePause();
+			default:							throw new IOException("Unknown command "+command);
+		}
+	}
+	/**
+	 * Hands a spectator to the session, which sends it the game from the next tick on. May be called by any thread. The connection is closed if the
+	 * session is closed.
+	 * @param spectator the connection to the spectator, in non-blocking mode and registered with no selector.
+	 */
+	void addSpectator(SocketChannel spectator)
+	{
+		spectators.add(spectator);
+		if(closed)
+			closeSpectators();
+	}
+	/**
+	 * Advances the game clock by one tick, then publishes the game to its spectators.
+	 */
+	void tick()
+	{
+		if(engine.tick()!=0)
+			changed=true;
+		if(publisher==null&&spectators.isEmpty())
+			return;
+		if(publisher==null)
+			publisher=new SpectatorPublisher(engine,SpectatorPublisher.DEFAULT_KEYFRAME_INTERVAL);
+		for(SocketChannel spectator;(spectator=spectators.poll())!=null;)
+			publisher.subscribe(spectator);
+		publisher.publish();
+	}
+	/**
+	 * Writes a frame if the game changed and the output buffer has room for it, then sends as much of the output buffer as the connection takes.
+	 * Waits for the connection to become writable when not everything was sent.
+	 * @throws IOException if the connection failed.
+	 */
+	void flush() throws IOException
+	{
+		if(changed)
+		{
+			int size=engine.getSnapshotSize();
+			if(Integer.BYTES+size>output.capacity()-output.position()&&output.position()==0)
+				output=ByteBuffer.allocateDirect(4*(Integer.BYTES+size));
+			if(Integer.BYTES+size<=output.remaining())
+			{
+				output.putInt(size);
+				engine.writeSnapshot(output);
+				changed=false;
+			}
+		}
+		if(output.position()==0)
+			return;
+		output.flip();
+		channel.write(output);
+		output.compact();
+		key.interestOps(output.position()>0?SelectionKey.OP_READ|SelectionKey.OP_WRITE:SelectionKey.OP_READ);
+	}
+	/**
+	 * Hands out the replay of the game, once, when the game is over or the player left.
+	 * @return the replay of the game, or null if the game was never started or the replay was already handed out.
+	 */
+	Replay finish()
+	{
+		if(finished||engine.getState().isGameStartScreen())
+			return null;
+		finished=true;
+		return engine.getRecorder().finish();
+	}
+	/**
+	 * Closes the connection and those of the spectators. The session is dropped by its worker thread afterwards.
+	 */
+	void close()
+	{
+		closed=true;
+		key.cancel();
+		if(publisher!=null)
+			publisher.close();
+		closeSpectators();
+		if(engine.getMetrics()!=null)
+			engine.getMetrics().unregister();
+		try
+		{
+			channel.close();
+		}
+		catch(IOException e)
+		{
+		}
+	}
+	/**
+	 * Closes the connections of the spectators handed to the session and not subscribed to the publisher yet.
+	 */
+	private void closeSpectators()
+	{
+		for(SocketChannel spectator;(spectator=spectators.poll())!=null;)
+		{
+			try
+			{
+				spectator.close();
+			}
+			catch(IOException e)
+			{
+			}
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package kopper.tetris.core;
+
+/**
+ * A Class which represents the state of a TetrisGame. It is owned by the {@link TetrisEngine} and uses nothing from {@code java.desktop}, so a headless
+ * game can keep its state without the Swing view.
+ * 
+ * Each of the FOUR states represents a different rendering flow inside of the {@link javax.swing.JPanel}'s overridden method  {@link TetrisGame#paintComponent(java.awt.Graphics)}.
+ * 
+ * <p>Note: In future releases I hope to potentially add a FIFTH state, probably titled GAME_ANIMATION, to accommodate some attractive animations during
+ * the row deletion process of the Tetris Game. Also, looking into changing this class to an Enum declaration in future releases.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class GameState
+{
+	/**
+	 * <p>This is the constant representing the game when it is first started up.
+	 * During this rendering flow. The following methods are called in order:
+	 *  </p>
+	 * <ol>
+	 * 	<li> {@link TetrisGame#performOneAnimationTick()} The internal {@link javax.swing.Timer} object triggers this method 25 times per second. </li>
+	 *  <li> {@link TetrisGame#repaintChanged()} This is called 25 times per second and repaints what changed.</li>
+	 *  <li> {@link TetrisGame#paintComponent(java.awt.Graphics)} is called when ever {@link TetrisGame#repaint()} is called.</li>
+	 * 	
+	 * 	<li> {@link TetrisGame#paintGameRunning(java.awt.Graphics2D, GameState)}. This is called whenever {@link TetrisGame#paintComponent(java.awt.Graphics)} is called.
+	 * This method paints the running game data represented mostly by {@link BackgroundGrid} is always painted on the bottom.</li>
+	 * 	<li> {@link TetrisGame#paintGameStartScreen(java.awt.Graphics2D)}. This is always called whenever {@link TetrisGame#paintComponent(java.awt.Graphics)} is called 
+	 * AND during this State {@code GAME_START_SCREEN=0;}. 
+	 * The start screen is painted over the game with a translucent color so that one can see the game screen behind the start screen.</li>
+	 *</ol>
+	 * 
+	 * 
+	 */
+	public static final int GAME_START_SCREEN=0;
+	
+	/**
+	 * <p>This is the constant representing the game when it running and being played. 
+	 * During this rendering flow. The following methods are called in order:
+	 * <ol>
+	 * 	<li> {@link TetrisGame#performOneAnimationTick()} The internal {@link javax.swing.Timer} object triggers this method 25 times per second. </li>
+	 *  <li> {@link TetrisGame#repaintChanged()} This is called 25 times per second and repaints what changed.</li>
+	 *  <li> {@link TetrisGame#paintComponent(java.awt.Graphics)} is called when ever {@link TetrisGame#repaint()} is called.</li>
+	 * 	
+	 * 	<li> {@link TetrisGame#paintGameRunning(java.awt.Graphics2D, GameState)}. This is called whenever {@link TetrisGame#paintComponent(java.awt.Graphics)} is called.
+	 * This method paints the running game data represented mostly by {@link BackgroundGrid} is always painted on the bottom.</li>
+	 * 	<li> {@link TetrisGame#performOneAnimationTick() }. The internals of this method always execute once for every {@link TetrisGame#TICKS_BETWEEN_GRAVITY } times
+	 * that {@link TetrisGame#performOneAnimationTick() } is called
+	 * AND during this State {@code GAME_RUNNING=1;}. </li>
+	 *</ol>
+	 * 
+	 * 
+	 */
+	public static final int GAME_RUNNING=1;
+	/**
+	 * <p>This is the constant representing the game when it is paused. 
+	 * During this rendering flow. The following methods are called in order:
+	 * <ol>
+	 * 	<li> {@link TetrisGame#performOneAnimationTick()} The internal {@link javax.swing.Timer} object triggers this method 25 times per second. </li>
+	 *  <li> {@link TetrisGame#repaintChanged()} This is called 25 times per second and repaints what changed.</li>
+	 *  <li> {@link TetrisGame#paintComponent(java.awt.Graphics)} is called when ever {@link TetrisGame#repaint()} is called.</li>
+	 * 	
+	 * 	<li> {@link TetrisGame#paintGameRunning(java.awt.Graphics2D, GameState)}. This is called whenever {@link TetrisGame#paintComponent(java.awt.Graphics)} is called.
+	 * This method paints the running game data represented mostly by {@link BackgroundGrid} is always painted on the bottom.</li>
+	 * 	<li> {@link TetrisGame#paintGamePauseScreen(java.awt.Graphics2D)}. This is always called whenever {@link TetrisGame#paintComponent(java.awt.Graphics)} is called 
+	 * AND during this State {@code GAME_PAUSED=2;}. 
+	 * The pause screen is painted over the game with a translucent color so that one can see the game screen behind the start screen.</li>
+	 *</ol>
+	 * 
+	 * 
+	 */
+	public static final int GAME_PAUSED=2;
+	/**
+	 * <p>This is the constant representing the game when it is over and the user has lost. 
+	 * During this rendering flow. The following methods are called in order:
+	 * <ol>
+	 * 	<li> {@link TetrisGame#performOneAnimationTick()} The internal {@link javax.swing.Timer} object triggers this method 25 times per second. </li>
+	 *  <li> {@link TetrisGame#repaintChanged()} This is called 25 times per second and repaints what changed.</li>
+	 *  <li> {@link TetrisGame#paintComponent(java.awt.Graphics)} is called when ever {@link TetrisGame#repaint()} is called.</li>
+	 * 	
+	 * 	<li> {@link TetrisGame#paintGameRunning(java.awt.Graphics2D, GameState)}. This is called whenever {@link TetrisGame#paintComponent(java.awt.Graphics)} is called.
+	 * This method paints the running game data represented mostly by {@link BackgroundGrid} is always painted on the bottom.</li>
+	 * 	<li> {@link TetrisGame#paintGameOverScreen(java.awt.Graphics2D)}. This is always called whenever {@link TetrisGame#paintComponent(java.awt.Graphics)} is called 
+	 * AND during this State {@code GAME_OVER=3;}. 
+	 * The game over screen is painted over the game with a translucent color so that one can see the game screen behind the start screen.</li>
+	 *</ol>
+	 * 
+	 * 
+	 */
+	public static final int GAME_OVER=3;
+	/**
+	 * The variable storing the current state of this object.
+	 */
+	private int currentState=0;
+	/**
+	 * Create a new State object.
+	 */
+	public GameState()//default state is Game START Screen
+	{
+		
+	}
+	/**
+	 * Sets the current state of this object to be {@link GameState#GAME_START_SCREEN}
+	 */
+	public void setGameStartScreen()
+	{
+		changeState(GAME_START_SCREEN);
+	}
+	/**
+	 * Sets the current state of this object to be {@link GameState#GAME_RUNNING}
+	 */
+	public void setGameRunning()
+	{
+		changeState(GAME_RUNNING);
+	}
+	/**
+	 * Sets the current state of this object to be {@link GameState#GAME_PAUSED}
+	 */
+	public void setGamePaused()
+	{
+		changeState(GAME_PAUSED);
+	}
+	/**
+	 * Sets the current state of this object to be {@link GameState#GAME_OVER}
+	 */
+	public void setGameOver()
+	{
+		changeState(GAME_OVER);
+	}
+	/**
+	 * Sets the current state of this object to one of the four constants representing a game state, for example one read from a
+	 * {@link FrameSnapshot}.
+	 * @param state {@link GameState#GAME_START_SCREEN },{@link GameState#GAME_RUNNING},{@link GameState#GAME_PAUSED} or {@link GameState#GAME_OVER}.
+	 * @throws IllegalArgumentException if the state is not one of the four constants.
+	 */
+	public void setCurrentState(int state)
+	{
+		if(state<GAME_START_SCREEN||state>GAME_OVER)
+			throw new IllegalArgumentException("Unknown game state "+state);
+		changeState(state);
+	}
+	/**
+	 * Sets the current state of this object, recording the transition as a {@code kopper.tetris.StateChange} event of the JDK Flight Recorder if the
+	 * state changes, see {@link StateChangeEvent}.
+	 * @param state one of the four constants representing a game state.
+	 */
+	private void changeState(int state)
+	{
+		if(state!=currentState)
+		{
+			StateChangeEvent event=new StateChangeEvent();
+			if(event.shouldCommit())
+			{
+				event.from=currentState;
+				event.to=state;
+				event.commit();
+			}
+		}
+		currentState=state;
+	}
+	/**
+	 * Get the current state of this object. One of the four constants representing a game state will be returned:
+	 * {@link GameState#GAME_START_SCREEN },{@link GameState#GAME_RUNNING},{@link GameState#GAME_PAUSED},{@link GameState#GAME_OVER}.
+	 * @return The current state this object is in.
+	 */
+	public int getCurrentState()
+	{
+		return currentState;
+	}
+	/**
+	 * Tests this object's current state value to see if it is equal to the {@link GameState#GAME_RUNNING} constant.
+	 * @return True if this game's current state is {@code GAME_RUNNING}.
+	 */
+	public boolean isGameRunning()
+	{
+		return currentState==GAME_RUNNING;
+	}
+	/**
+	 * Tests this object's current state value to see if it is equal to the {@link GameState#GAME_START_SCREEN} constant.
+	 * @return True if this game's current state is {@code GAME_START_SCREEN}.
+	 */
+	public boolean isGameStartScreen()
+	{
+		return currentState==GAME_START_SCREEN;
+	}
+	/**
+	 * Tests this object's current state value to see if it is equal to the {@link GameState#GAME_PAUSED } constant.
+	 * @return True if this game's current state is {@code GAME_PAUSED}.
+	 */
+	public boolean isGamePaused()
+	{
+		return currentState==GAME_PAUSED;
+	}
+	/**
+	 * Tests this object's current state value to see if it is equal to the {@link GameState#GAME_OVER} constant.
+	 * @return True if this game's current state is {@code GAME_OVER}.
+	 */
+	public boolean isGameOver()
+	{
+		return currentState==GAME_OVER;
+	}
+	/**
+	 * Returns the string representation of this object, which is a single line string with the class name and the constant field name for the variable 
+	 * representing this objects current state.
+	 * @return this object's string representation.
+	 */
+	public String toString()
+	{
+		String temp="GameState";
+		switch(currentState)
+		{
+		case GAME_START_SCREEN:	return temp+"=[GAME_START_SCREEN]";
+		case GAME_PAUSED:		return temp+"=[GAME_PAUSED]";
+		case GAME_OVER:			return temp+"=[GAME_OVER]";
+		case GAME_RUNNING:
+			default: 	 		return temp+"=[GAME_RUNNING]";
+		}
+	}
+}
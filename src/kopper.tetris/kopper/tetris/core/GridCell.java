@@ -133,6 +133,53 @@ public class GridCell
 	{
 		return this.color;
 	}
+	/**
+	 * Returns the upper left corner X component of the rectangular area.
+	 * @return the X component in pixels.
+	 */
+	public int getX()
+	{
+		return this.x;
+	}
+	/**
+	 * Returns the upper left corner Y component of the rectangular area.
+	 * @return the Y component in pixels.
+	 */
+	public int getY()
+	{
+		return this.y;
+	}
+	/**
+	 * Returns the width of the rectangular area.
+	 * @return the width in pixels.
+	 */
+	public int getWidth()
+	{
+		return this.width;
+	}
+	/**
+	 * Returns the height of the rectangular area.
+	 * @return the height in pixels.
+	 */
+	public int getHeight()
+	{
+		return this.height;
+	}
+	/**
+	 * Adds the pixels painted by {@link GridCell#drawCell(Graphics2D, boolean)} to the supplied region. This includes the outline, which reaches one
+	 * pixel past the right and bottom edge of the rectangular area, and on a scaled screen past the top and left edge as well.
+	 * @param region The region to grow, see {@link java.awt.Rectangle#add(Rectangle)}. A region with a negative width is empty and becomes the pixels of this cell.
+	 */
+	public void addBoundsTo(Rectangle region)
+	{
+		if(region.width<0||region.height<0)
+			region.setBounds(x-1, y-1, width+2, height+2);
+		else
+		{
+			region.add(x-1, y-1);
+			region.add(x+width+1, y+height+1);
+		}
+	}
 	/**
 	 * <p>This method is named differently for various classes, but all classes that must paint 
 	 * representations of their data to the window, have some variation
@@ -143,12 +190,14 @@ public class GridCell
 	 * <p>This method is where the GridCell data represented by this object is painted to represent this object.
 	 * Specifically, this object keeps track of each gridcell's color and the pixels it occupies so that a filled rectangle can be drawn to screen.
 	 * 
-	 *  <p>This method is called inside of {@link BackgroundGrid#drawBackgroundGrid(Graphics2D)} or 
-	 * inside of {@link kopper.tetris.shape.Shape#drawShape(Graphics2D, BackgroundGrid)} or 
-	 * inside of {@link kopper.tetris.shape.Shape#drawShape(Graphics2D, GridCell[][])} , 
+	 *  <p>This method is called inside of {@link GridView#drawBackgroundGrid(Graphics2D)} or 
+	 * inside of {@link GridView#drawShape(Graphics2D, kopper.tetris.shape.Shape)} or 
+	 * inside of {@link TetrominoStats#drawTetrominoCells(Graphics2D)} , 
 	 * which in turn is called by each respective caller methods (see their method documentation).
 	 * 
-	 * See {@link BackgroundGrid#drawBackgroundGrid(Graphics2D)}
+	 * See {@link GridView#drawBackgroundGrid(Graphics2D)}
+	 * 
+	 * <p>An outlined cell is copied from a pre-rendered tile of its color, see {@link TileAtlas}, since rasterizing rounded rectangles is slow.
 	 * 
 	 * @param g2d The graphics object ultimately supplied by overridden method  {@link TetrisGame#paintComponent(java.awt.Graphics)}
 	 * @param drawoutline True if draw outline, False if outline not needed to be drawn. Background GridCells do not draw borders, they draw solid colors.
@@ -159,6 +208,8 @@ public class GridCell
 		//Color[] fiveColors=new Color[5];
 		if(drawoutline)
 		{
+			if(TileAtlas.drawOutlinedCell(g2d, x, y, width, height, this.color))
+				return;
 			g2d.setColor(this.color);
 			g2d.fillRoundRect(x, y, width, height, 5, 5);
 			g2d.setColor(Color.lightGray);
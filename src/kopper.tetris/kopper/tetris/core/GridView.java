@@ -0,0 +1,158 @@
+package kopper.tetris.core;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import kopper.tetris.shape.Shape;
+
+/**
+ * A class that paints a {@link BackgroundGrid} and the live {@link Shape} over it. The grid and the Shape only hold the game model, with their colors
+ * as ARGB ints, so this is the one place where the model is mapped to {@link GridCell} objects with pixel locations and to {@link Color} objects.
+ * A headless {@link TetrisEngine} never needs one.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class GridView
+{
+	/**
+	 * The grid painted by this object.
+	 */
+	private final BackgroundGrid grid;
+	/**
+	 * The pixel area of every cell of the {@link GridView#grid}, indexed by row, then column.
+	 */
+	private final GridCell[][] cells;
+	/**
+	 * The color of every palette index of the {@link GridView#grid}, created the first time the palette index is painted.
+	 */
+	private final Color[] colors=new Color[BackgroundGrid.MAX_PALETTE_SIZE];
+	/**
+	 * The cell returned for every location outside the grid, which paints nothing.
+	 */
+	private final GridCell imaginaryCell=new GridCell()
+	{
+		public void drawCell(Graphics2D g2d,boolean drawOutline)
+		{
+			//do nothing on purpose. off screen location.
+		}
+	};
+	/**
+	 * Constructs a new object painting the supplied grid to a pixel area.
+	 * @param grid the grid to paint.
+	 * @param x the Xth pixel location of the upper left corner of the pixel area represented by this object. (x,y)=(0,0) represents the upper left most corner of GUI.
+	 * @param y the Yth pixel location of the upper left corner of the pixel area represented by this object. (x,y=(0,0) represents the upper left most corner of the GUI.
+	 * @param gridWidth the number of pixels wide the rectangular area represented by this object is. The {@link GridCell} created by this object will have the
+	 * following property: {@code cellwidth=(gridWidth-x)/columns;}
+	 * @param gridHeight the number of pixels tall the rectangular area represented by this object is. The {@link GridCell} created by this object will have the
+	 * following property: {@code cellheight=(gridHeight-y)/rows;}
+	 */
+	public GridView(BackgroundGrid grid,int x,int y,int gridWidth,int gridHeight)
+	{
+		this.grid=grid;
+		this.cells=GridCell.createUniformGrid(x, y, gridWidth, gridHeight, grid.getColumnCount(), grid.getRowCount(), getColor(BackgroundGrid.PALETTE_EMPTY));
+	}
+	/**
+	 * Returns the grid painted by this object.
+	 * @return the grid.
+	 */
+	public BackgroundGrid getGrid()
+	{
+		return this.grid;
+	}
+	/**
+	 * Returns the cell represented by the cell coordinate provided. If the coordinate is outside the bounds of the paintable area,
+	 * a dumby cell, representing all out of bounds cells with an overridden  {@link GridCell#drawCell(Graphics2D, boolean)} and functionless method, is returned.
+	 *
+	 * @param ro The row of the desired cell's location in the grid.
+	 * @param col The column of the desired cell's location in the grid.
+	 * @return the cell at the row, col location or in (col,row) if in (x,y) notation.
+	 */
+	public GridCell getCell(int ro,int col)
+	{
+		if(col>=0&&col<grid.getColumnCount()&&ro>=0&&ro<grid.getRowCount())
+		{
+			return cells[ro][col];
+		}
+		else
+		{
+			return imaginaryCell;
+		}
+	}
+	/**
+	 * Returns the color of a palette index of the grid. The same object is returned for the same palette index every time.
+	 * @param paletteIndex the palette index, 0 to {@link BackgroundGrid#getPaletteSize()}{@code -1}.
+	 * @return the color.
+	 */
+	public Color getColor(int paletteIndex)
+	{
+		int argb=grid.getPaletteRGB(paletteIndex);
+		Color color=colors[paletteIndex];
+		if(color==null||color.getRGB()!=argb)
+		{
+			color=new Color(argb,true);
+			colors[paletteIndex]=color;
+		}
+		return color;
+	}
+	/**
+	 * Returns the color of a cell of a Shape: the color of its palette index if the grid's palette holds it, which it does for the seven
+	 * Tetrominoes, otherwise a new color.
+	 * @param s the Shape.
+	 * @param cellNum the cell of the Shape.
+	 * @return the color.
+	 */
+	private Color getShapeColor(Shape s,int cellNum)
+	{
+		int argb=s.getCellRGB(cellNum);
+		int paletteIndex=grid.findPaletteIndex(argb);
+		return paletteIndex>=0?getColor(paletteIndex):new Color(argb,true);
+	}
+	/**
+	 * <p>This method is named differently for various classes, but all classes that must paint
+	 * representations of their data to the window, have some variation
+	 * of a method {@code drawOBJECTNAME(Graphics2D g2d);} This is that method for the {@link BackgroundGrid}.
+	 *
+	 * <p>This method is where the background model data represented by the grid is painted.
+	 * Specifically, the grid keeps track of each cell's palette index, whether it is occupied by a cell of a dead shape
+	 * or empty space and the background color of empty space.
+	 *
+	 * <p>
+	 * This method is called via helper method {@link TetrisGame#paintGameRunning(Graphics2D, GameState)}, which in turn is called by {@link TetrisGame#paintComponent(java.awt.Graphics)},
+	 * which in turn is an overridden method of{@link javax.swing.JPanel}'s {@link javax.swing.JComponent#paintComponents(java.awt.Graphics) }.
+	 * @param g2d The graphics object ultimately supplied by overridden method  {@link TetrisGame#paintComponent(java.awt.Graphics)}
+	 */
+	public void drawBackgroundGrid(Graphics2D g2d)
+	{
+		Color background=getColor(BackgroundGrid.PALETTE_EMPTY);
+		BitBoard occupancy=grid.getBitBoard();
+		for(int r=0;r<cells.length;r++)
+			for(int c=0;c<cells[r].length;c++)
+			{	cells[r][c].setColor(background);
+				cells[r][c].drawCell(g2d, false);
+				cells[r][c].setColor(getColor(grid.getCellPaletteIndex(r,c)));
+				cells[r][c].drawCell(g2d,occupancy.isOccupied(r,c));
+			}
+	}
+	/**
+	 * <p>This method paints a Shape over the grid. Cells of the Shape outside the grid are not painted.
+	 *
+	 * <p>
+	 * This method is called inside {@link TetrisGame#paintGameRunning(Graphics2D, GameState) }, which in turn is called by
+	 * {@link TetrisGame#paintComponent(java.awt.Graphics)}.
+	 *
+	 * @param g2d The graphics object ultimately supplied by overridden method  {@link TetrisGame#paintComponent(java.awt.Graphics)}
+	 * @param s The Shape to paint, nothing is painted if it is not {@link Shape#isVisible()}.
+	 */
+	public void drawShape(Graphics2D g2d,Shape s)
+	{
+		if(s.isVisible())
+		{
+			for(int i=0;i<s.getCellCount();i++)
+			{
+				GridCell cell=getCell(s.getAbsoluteCellRow(i), s.getAbsoluteCellColumn(i));
+				cell.setColor(getShapeColor(s,i));
+				cell.drawCell(g2d,true);
+			}
+		}
+	}
+}
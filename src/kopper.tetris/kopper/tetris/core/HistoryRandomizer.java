@@ -0,0 +1,137 @@
+package kopper.tetris.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A history based randomizer, as popularized by the Tetris: The Grand Master games. The types of the last few Shapes are remembered, and when a
+ * randomly chosen type is in that history, the choice is rerolled up to a fixed number of times. Repeats and droughts become rare, while the 
+ * sequence stays less predictable than a {@link BagRandomizer}.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class HistoryRandomizer extends AbstractRandomizer
+{
+	/**
+	 * The default number of Shapes remembered.
+	 */
+	public static final int DEFAULT_HISTORY=4;
+	/**
+	 * The default number of rolls made before a type in the history is accepted anyway.
+	 */
+	public static final int DEFAULT_ROLLS=6;
+	/**
+	 * The types of the most recent Shapes, used as a ring buffer.
+	 */
+	private final int[] history;
+	/**
+	 * The index of the oldest entry of {@link HistoryRandomizer#history}.
+	 */
+	private int oldest=0;
+	/**
+	 * The number of rolls made before a type in the history is accepted anyway.
+	 */
+	private final int rolls;
+	/**
+	 * Creates a randomizer from the supplied seed that remembers {@link HistoryRandomizer#DEFAULT_HISTORY} Shapes and rolls 
+	 * up to {@link HistoryRandomizer#DEFAULT_ROLLS} times.
+	 * @param seed the seed.
+	 */
+	public HistoryRandomizer(long seed)
+	{
+		this(seed,DEFAULT_HISTORY,DEFAULT_ROLLS);
+	}
+	/**
+	 * Creates a randomizer from the supplied seed.
+	 * @param seed the seed.
+	 * @param historySize the number of recent Shapes remembered, at least 1.
+	 * @param rolls the number of rolls made before a type in the history is accepted anyway, at least 1.
+	 */
+	public HistoryRandomizer(long seed,int historySize,int rolls)
+	{
+		super(seed);
+		this.history=new int[Math.max(1,historySize)];
+		this.rolls=Math.max(1,rolls);
+		fillHistory();
+	}
+	/**
+	 * Returns the number of recent Shapes remembered.
+	 * @return the size of the history.
+	 */
+	public int getHistorySize()
+	{
+		return history.length;
+	}
+	/**
+	 * Returns the number of rolls made before a type in the history is accepted anyway.
+	 * @return the number of rolls.
+	 */
+	public int getRolls()
+	{
+		return rolls;
+	}
+	/**
+	 * Starts the history filled with the S and Z types, so the first Shapes of a game are unlikely to be the awkward ones.
+	 */
+	private void fillHistory()
+	{
+		for(int i=0;i<history.length;i++)
+			history[i]=(i&1)==0?6:4;//Z and S
+		oldest=0;
+	}
+	public void reset()
+	{
+		super.reset();
+		fillHistory();
+	}
+	public int getStateSize()
+	{
+		return super.getStateSize()+history.length+Integer.BYTES;
+	}
+	public void writeState(ByteBuffer dest)
+	{
+		super.writeState(dest);
+		for(int type:history)
+			dest.put((byte)type);
+		dest.putInt(oldest);
+	}
+	public void readState(ByteBuffer src)
+	{
+		super.readState(src);
+		for(int i=0;i<history.length;i++)
+		{
+			history[i]=src.get();
+			if(history[i]<0||history[i]>=SHAPE_TYPES)
+				throw new IllegalArgumentException("Invalid type "+history[i]+" in the history");
+		}
+		oldest=src.getInt();
+		if(oldest<0||oldest>=history.length)
+			throw new IllegalArgumentException("Invalid history position "+oldest);
+	}
+	public int nextShapeIndex()
+	{
+		int type=0;
+		for(int roll=0;roll<rolls;roll++)
+		{
+			type=nextInt(SHAPE_TYPES);
+			if(!isInHistory(type))
+				break;
+		}
+		history[oldest]=type;
+		oldest=(oldest+1)%history.length;
+		return type;
+	}
+	/**
+	 * Tests if a type is one of the recently dealt types.
+	 * @param type the type index.
+	 * @return True if the type is in the history.
+	 */
+	private boolean isInHistory(int type)
+	{
+		for(int i=0;i<history.length;i++)
+		{
+			if(history[i]==type)
+				return true;
+		}
+		return false;
+	}
+}
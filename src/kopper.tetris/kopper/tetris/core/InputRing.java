@@ -0,0 +1,101 @@
+package kopper.tetris.core;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A bounded, lock-free queue of timestamped commands between exactly one producer thread and exactly one consumer thread, used by {@link GameLoop}
+ * to hand key presses from the Swing event dispatch thread to the loop thread. The commands live in two preallocated arrays used as a ring, so
+ * queuing a command neither allocates nor boxes anything, and neither thread ever waits for the other.
+ * </p>
+ * <p>
+ * The producer only writes the tail index and the consumer only writes the head index. Each publishes its index with a release store and reads the
+ * other's index with an acquire load, which is enough to make the array slots written by the producer visible to the consumer and vice versa.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+final class InputRing
+{
+	/**
+	 * The commands, indexed by position modulo the capacity.
+	 */
+	private final int[] commands;
+	/**
+	 * The {@link System#nanoTime()} at which each command was queued.
+	 */
+	private final long[] times;
+	/**
+	 * The capacity minus one, used to turn a position into an array index.
+	 */
+	private final int mask;
+	/**
+	 * The position of the oldest queued command, written by the consumer only.
+	 */
+	private final AtomicLong head=new AtomicLong();
+	/**
+	 * The position the next command is queued at, written by the producer only.
+	 */
+	private final AtomicLong tail=new AtomicLong();
+
+	/**
+	 * Creates an empty ring.
+	 * @param capacity the maximum number of queued commands, a power of two.
+	 * @throws IllegalArgumentException if the capacity is not a positive power of two.
+	 */
+	InputRing(int capacity)
+	{
+		if(capacity<=0||Integer.bitCount(capacity)!=1)
+			throw new IllegalArgumentException("The capacity must be a power of two, not "+capacity);
+		this.commands=new int[capacity];
+		this.times=new long[capacity];
+		this.mask=capacity-1;
+	}
+	/**
+	 * Queues a command. May only be called by the producer thread.
+	 * @param command the command.
+	 * @param time the {@link System#nanoTime()} of the command.
+	 * @return false if the ring is full and the command was dropped.
+	 */
+	boolean offer(int command, long time)
+	{
+		long t=tail.get();
+		if(t-head.getAcquire()>mask)
+			return false;
+		int i=(int)t&mask;
+		commands[i]=command;
+		times[i]=time;
+		tail.setRelease(t+1);
+		return true;
+	}
+	/**
+	 * Tells if no command is queued. May be called by either thread, but only the consumer can rely on the answer.
+	 * @return true if the ring is empty.
+	 */
+	boolean isEmpty()
+	{
+		return head.get()==tail.getAcquire();
+	}
+	/**
+	 * Returns the oldest queued command without removing it. May only be called by the consumer thread, and only when the ring is not empty.
+	 * @return the command.
+	 */
+	int peekCommand()
+	{
+		return commands[(int)head.get()&mask];
+	}
+	/**
+	 * Returns the time of the oldest queued command without removing it. May only be called by the consumer thread, and only when the ring is not empty.
+	 * @return the {@link System#nanoTime()} the command was queued with.
+	 */
+	long peekTime()
+	{
+		return times[(int)head.get()&mask];
+	}
+	/**
+	 * Removes the oldest queued command, freeing its slot for the producer. May only be called by the consumer thread, and only when the ring is
+	 * not empty.
+	 */
+	void remove()
+	{
+		head.setRelease(head.get()+1);
+	}
+}
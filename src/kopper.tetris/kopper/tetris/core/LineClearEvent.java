@@ -0,0 +1,33 @@
+package kopper.tetris.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder event of the full rows a lock cleared in the grid of a {@link TetrisEngine}, timed over
+ * {@link BackgroundGrid#removeDetectedRows()}.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+@Name("kopper.tetris.LineClear")
+@Label("Line Clear")
+@Category("Kopper Tetris")
+@Description("Full rows removed from the grid")
+@StackTrace(false)
+final class LineClearEvent extends Event
+{
+	/**
+	 * The number of rows cleared at once, 1 to 4.
+	 */
+	@Label("Rows")
+	int rows;
+	/**
+	 * The number of rows cleared in the game so far, these included.
+	 */
+	@Label("Total Rows")
+	int totalRows;
+}
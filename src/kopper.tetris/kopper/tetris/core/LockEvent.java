@@ -0,0 +1,48 @@
+package kopper.tetris.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder event of a Shape locked into the grid of a {@link TetrisEngine}, timed over {@link BackgroundGrid#consumeShape(kopper.tetris.shape.Shape)},
+ * the scoring, the detection of full rows and their removal. A lock that ended the game is recorded too, with no rows cleared.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+@Name("kopper.tetris.Lock")
+@Label("Piece Lock")
+@Category("Kopper Tetris")
+@Description("A Shape locked into the grid")
+@StackTrace(false)
+final class LockEvent extends Event
+{
+	/**
+	 * The kind of the Shape.
+	 */
+	@Label("Kind")
+	String kind;
+	/**
+	 * The column of the Shape when it locked.
+	 */
+	@Label("Column")
+	int column;
+	/**
+	 * The row of the Shape when it locked.
+	 */
+	@Label("Row")
+	int row;
+	/**
+	 * The number of rows the lock cleared.
+	 */
+	@Label("Rows Cleared")
+	int rowsCleared;
+	/**
+	 * True if the Shape did not fit in the grid and the game ended instead.
+	 */
+	@Label("Game Over")
+	boolean gameOver;
+}
@@ -0,0 +1,22 @@
+package kopper.tetris.core;
+
+import kopper.tetris.shape.Shape;
+
+/**
+ * Told by a {@link TetrisEngine} about every Shape it locks into its grid, see {@link TetrisEngine#setLockListener(LockListener)}. This is how
+ * observers learn exactly which cells a lock set and which rows it cleared, without comparing whole grids.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public interface LockListener
+{
+	/**
+	 * Called on the thread running the engine after a Shape was consumed by the grid and the full rows were detected, before they are removed. The
+	 * cells of the Shape, see {@link Shape#getAbsoluteCellRow(int)} and {@link Shape#getAbsoluteCellColumn(int)}, are set in the grid, and the
+	 * cleared rows are given by {@link BackgroundGrid#getDetectFullRowCount()} and {@link BackgroundGrid#getDetectedFullRow(int)}. The listener must not
+	 * change the grid.
+	 * @param shape the locked Shape.
+	 * @param grid the grid of the engine.
+	 */
+	void shapeLocked(Shape shape, BackgroundGrid grid);
+}
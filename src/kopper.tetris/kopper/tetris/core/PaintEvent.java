@@ -0,0 +1,37 @@
+package kopper.tetris.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder event of one {@link TetrisGame#paintComponent(java.awt.Graphics)} pass, timed from its start to its end.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+@Name("kopper.tetris.Paint")
+@Label("Paint")
+@Category("Kopper Tetris")
+@Description("One paint pass of the game window")
+@StackTrace(false)
+final class PaintEvent extends Event
+{
+	/**
+	 * The game state painted, one of the constants of {@link GameState}.
+	 */
+	@Label("State")
+	int state;
+	/**
+	 * The width of the area painted, the clip of the pass or the whole window if it has none, in pixels.
+	 */
+	@Label("Width")
+	int width;
+	/**
+	 * The height of the area painted, the clip of the pass or the whole window if it has none, in pixels.
+	 */
+	@Label("Height")
+	int height;
+}
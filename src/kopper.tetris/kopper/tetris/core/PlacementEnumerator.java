@@ -0,0 +1,313 @@
+package kopper.tetris.core;
+
+import java.util.Arrays;
+
+import kopper.tetris.shape.RotationTable;
+import kopper.tetris.shape.Shape;
+
+/**
+ * <p>Finds every final resting placement a Shape can reach from its current position. This is the basic building block of a Tetris bot: the bot scores
+ * every placement returned by this class and steers the Shape to the best one.
+ * </p>
+ * <p>
+ * A state of the search is a center column, a center row and an orientation of the Shape's {@link RotationTable}. From every state the search tries
+ * the same five moves a player has, one column left, one column right, one row down, and a rotation clockwise or counter clockwise, and accepts a move
+ * under the same rules as {@link BackgroundGrid#canTranslate(Shape, int, int)}, {@link BackgroundGrid#canRotateCW90(Shape)} and
+ * {@link BackgroundGrid#canRotateCCW90(Shape)}. Since the search is a breadth first search over all of these moves, placements that are only
+ * reachable by sliding under an overhang (tucks) or by rotating into a slot (spins) are found as well. Timing is not modeled, the search assumes the
+ * player can make any number of moves before the Shape locks.
+ * </p>
+ * <p>
+ * A placement is a state from which the Shape can not move down. Placements with cells above the top of the grid are left out, since locking there
+ * ends the game. Orientations that cover the exact same cells, like the four orientations of the "O", are reported once.
+ * </p>
+ * <p>
+ * The search runs on a {@link BitBoard} and allocates nothing: the visited states, the queue and the results live in buffers created once with the
+ * enumerator and reused by every call. The visited buffer is never cleared, every call uses a new generation number instead. An enumerator
+ * is therefore meant to be created once per thread and grid size, and it is not thread safe.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class PlacementEnumerator
+{
+	/**
+	 * The number of columns and rows around the grid a Shape's center may occupy while one of its cells is still inside the grid.
+	 */
+	private static final int PAD=4;
+	/**
+	 * The number of columns of the grids searched.
+	 */
+	private final int columns;
+	/**
+	 * The number of rows of the grids searched.
+	 */
+	private final int rows;
+	/**
+	 * The number of center columns a state can have.
+	 */
+	private final int stateColumns;
+	/**
+	 * The number of center rows a state can have.
+	 */
+	private final int stateRows;
+	/**
+	 * The generation number of the call that last visited each state.
+	 */
+	private final int[] visited;
+	/**
+	 * The generation number of the call that last reported a placement with a given canonical orientation and upper left cell.
+	 */
+	private final int[] reported;
+	/**
+	 * The states waiting to be expanded.
+	 */
+	private final int[] queue;
+	/**
+	 * The generation number of the current call.
+	 */
+	private int generation=0;
+	/**
+	 * For every orientation, the lowest numbered orientation covering the same cells relative to the upper left corner of its row bitmasks.
+	 */
+	private final int[] canonical=new int[RotationTable.ORIENTATIONS];
+	/**
+	 * The center column of every placement found.
+	 */
+	private final int[] resultX;
+	/**
+	 * The center row of every placement found.
+	 */
+	private final int[] resultY;
+	/**
+	 * The orientation of every placement found.
+	 */
+	private final int[] resultRotation;
+	/**
+	 * The number of placements found by the most recent call.
+	 */
+	private int count=0;
+	/**
+	 * The board searched by the most recent call.
+	 */
+	private BitBoard board;
+	/**
+	 * The table of the Shape searched by the most recent call.
+	 */
+	private RotationTable table;
+
+	/**
+	 * Creates an enumerator for grids of the specified size.
+	 * @param columns the number of columns of the grids to search.
+	 * @param rows the number of rows of the grids to search.
+	 */
+	public PlacementEnumerator(int columns, int rows)
+	{
+		this.columns=columns;
+		this.rows=rows;
+		this.stateColumns=columns+2*PAD;
+		this.stateRows=rows+2*PAD;
+		int states=RotationTable.ORIENTATIONS*stateColumns*stateRows;
+		this.visited=new int[states];
+		this.queue=new int[states];
+		int placements=RotationTable.ORIENTATIONS*columns*rows;
+		this.reported=new int[placements];
+		this.resultX=new int[placements];
+		this.resultY=new int[placements];
+		this.resultRotation=new int[placements];
+	}
+	/**
+	 * Finds every placement the supplied Shape can reach from its current position and orientation on the supplied grid.
+	 * @param grid the grid the Shape is on.
+	 * @param s the Shape.
+	 * @return the number of placements found, see {@link PlacementEnumerator#getCount()}.
+	 */
+	public int enumerate(BackgroundGrid grid, Shape s)
+	{
+		Coord pos=s.getAbsoluteShapePos();
+		return enumerate(grid.getBitBoard(),s.getRotationTable(),pos.getX(),pos.getY(),s.getRotation());
+	}
+	/**
+	 * Finds every placement a Shape described by the supplied table can reach from the supplied state.
+	 * @param board the board to search, which must have the size this enumerator was created for. It is not modified.
+	 * @param table the orientations of the Shape.
+	 * @param x the center column to start from.
+	 * @param y the center row to start from.
+	 * @param rotation the orientation to start from.
+	 * @return the number of placements found, 0 if the start state itself is off limits.
+	 * @throws IllegalArgumentException if the board size differs from the size this enumerator was created for.
+	 */
+	public int enumerate(BitBoard board, RotationTable table, int x, int y, int rotation)
+	{
+		if(board.getColumnCount()!=columns||board.getRowCount()!=rows)
+			throw new IllegalArgumentException("PlacementEnumerator is for "+columns+"x"+rows+" boards, not "+board.getColumnCount()+"x"+board.getRowCount());
+		this.board=board;
+		this.table=table;
+		this.count=0;
+		if(++generation==0)
+		{
+			Arrays.fill(visited,0);
+			Arrays.fill(reported,0);
+			generation=1;
+		}
+		computeCanonicalOrientations();
+
+		int head=0;
+		int tail=0;
+		if(!fits(x,y,rotation))
+			return 0;
+		int start=state(x,y,rotation);
+		if(start<0)
+			return 0;
+		visited[start]=generation;
+		queue[tail++]=start;
+		while(head<tail)
+		{
+			int st=queue[head++];
+			int sx=st%stateColumns-PAD;
+			int sy=(st/stateColumns)%stateRows-PAD;
+			int sr=st/(stateColumns*stateRows);
+
+			tail=visit(sx-1,sy,sr,tail);
+			tail=visit(sx+1,sy,sr,tail);
+			tail=visit(sx,sy,RotationTable.clockwise(sr),tail);
+			tail=visit(sx,sy,RotationTable.counterClockwise(sr),tail);
+			if(!fits(sx,sy+1,sr))
+				report(sx,sy,sr);
+			else
+				tail=visit(sx,sy+1,sr,tail);
+		}
+		return count;
+	}
+	/**
+	 * Queues a state if it is inside the search space, was not visited yet by this call and the Shape fits there.
+	 * @param x the center column.
+	 * @param y the center row.
+	 * @param r the orientation.
+	 * @param tail the current end of the queue.
+	 * @return the new end of the queue.
+	 */
+	private int visit(int x, int y, int r, int tail)
+	{
+		int st=state(x,y,r);
+		if(st<0||visited[st]==generation)
+			return tail;
+		visited[st]=generation;
+		if(!fits(x,y,r))
+			return tail;
+		queue[tail]=st;
+		return tail+1;
+	}
+	/**
+	 * Records a resting state as a placement unless it pokes out of the top of the grid or the same cells were already reported.
+	 * @param x the center column.
+	 * @param y the center row.
+	 * @param r the orientation.
+	 */
+	private void report(int x, int y, int r)
+	{
+		int top=y+table.getMaskTop(r);
+		int left=x+table.getMaskLeft(r);
+		if(top<0)
+			return;
+		int key=(canonical[r]*rows+top)*columns+left;
+		if(reported[key]==generation)
+			return;
+		reported[key]=generation;
+		resultX[count]=x;
+		resultY[count]=y;
+		resultRotation[count]=r;
+		count++;
+	}
+	/**
+	 * Determines whether the Shape fits at a state, the same test as {@link BackgroundGrid#canPlace(Shape, int, int, int)}.
+	 * @param x the center column.
+	 * @param y the center row.
+	 * @param r the orientation.
+	 * @return True if no cell of the Shape is off limits.
+	 */
+	private boolean fits(int x, int y, int r)
+	{
+		return !board.collides(table.getMasks(r),table.getMaskHeight(r),y+table.getMaskTop(r),x+table.getMaskLeft(r));
+	}
+	/**
+	 * Returns the index of a state in the visited buffer.
+	 * @param x the center column.
+	 * @param y the center row.
+	 * @param r the orientation.
+	 * @return the index, or -1 if the state is outside the search space.
+	 */
+	private int state(int x, int y, int r)
+	{
+		int cx=x+PAD;
+		int cy=y+PAD;
+		if(cx<0||cx>=stateColumns||cy<0||cy>=stateRows)
+			return -1;
+		return (r*stateRows+cy)*stateColumns+cx;
+	}
+	/**
+	 * Maps every orientation of the current table to the lowest numbered orientation with identical row bitmasks.
+	 */
+	private void computeCanonicalOrientations()
+	{
+		for(int r=0;r<canonical.length;r++)
+		{
+			canonical[r]=r;
+			for(int o=0;o<r;o++)
+			{
+				if(Arrays.equals(table.getMasks(o),table.getMasks(r)))
+				{
+					canonical[r]=canonical[o];
+					break;
+				}
+			}
+		}
+	}
+	/**
+	 * Returns the number of placements found by the most recent call to {@code enumerate}.
+	 * @return the number of placements.
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+	/**
+	 * Returns the center column of a placement, the value {@link Shape#getAbsoluteShapePos()} would have there.
+	 * @param i the placement, 0 to {@link PlacementEnumerator#getCount()}{@code -1}.
+	 * @return the center column.
+	 */
+	public int getColumn(int i)
+	{
+		return resultX[i];
+	}
+	/**
+	 * Returns the center row of a placement, the value {@link Shape#getAbsoluteShapePos()} would have there.
+	 * @param i the placement, 0 to {@link PlacementEnumerator#getCount()}{@code -1}.
+	 * @return the center row.
+	 */
+	public int getRow(int i)
+	{
+		return resultY[i];
+	}
+	/**
+	 * Returns the orientation of a placement, the value {@link Shape#getRotation()} would have there.
+	 * @param i the placement, 0 to {@link PlacementEnumerator#getCount()}{@code -1}.
+	 * @return the orientation.
+	 */
+	public int getRotation(int i)
+	{
+		return resultRotation[i];
+	}
+	/**
+	 * Writes the board that results from locking the Shape at a placement into the supplied board: a copy of the searched board with the Shape's cells
+	 * set. Full rows are not removed.
+	 * @param i the placement, 0 to {@link PlacementEnumerator#getCount()}{@code -1}.
+	 * @param target the board to write to, which must have the size this enumerator was created for. It may not be the searched board.
+	 */
+	public void applyPlacement(int i, BitBoard target)
+	{
+		int r=resultRotation[i];
+		target.copyFrom(board);
+		target.place(table.getMasks(r),table.getMaskHeight(r),resultY[i]+table.getMaskTop(r),resultX[i]+table.getMaskLeft(r));
+	}
+}
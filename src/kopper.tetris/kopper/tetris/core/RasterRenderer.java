@@ -0,0 +1,556 @@
+package kopper.tetris.core;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import kopper.tetris.shape.Shape;
+
+/**
+ * <p>A software renderer that paints the game screen by writing pixels straight into the {@code int[]} data buffer of a
+ * {@link BufferedImage#TYPE_INT_RGB} image, instead of making Java2D calls for every {@link GridCell}. {@link TetrisGame} shows the resulting frame
+ * with a single {@code drawImage} when raster rendering is turned on, see {@link TetrisGame#setRasterRendering(boolean)}.
+ * </p>
+ * <p>
+ * Everything that is drawn more than once is rasterized once, when it is first needed, with the same Java2D calls the rest of the game uses, and kept as
+ * pixel patterns:
+ * </p>
+ * <ul>
+ * 	<li>the screen without any locked cell, Shape or text, as a template that starts every frame,</li>
+ * 	<li>one outlined tile per palette color of the {@link BackgroundGrid},</li>
+ * 	<li>one coverage mask per printable ASCII character of the score font, and the shape of the rounded corners of the text boxes.</li>
+ * </ul>
+ * <p>
+ * A frame is then a copy of the template, a tile copy per locked cell and per cell of the current Shape, and the score texts composed from the
+ * character masks. Painting a frame allocates nothing and makes no Java2D calls, so its time depends only on the number of cells and characters,
+ * and frames can be produced without a screen, for example to export the frames of a replay.
+ * </p>
+ * <p>
+ * A renderer is not thread safe. The frame returned by {@link RasterRenderer#render(Shape, boolean)} is overwritten by the next call.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class RasterRenderer
+{
+	/**
+	 * The arc width and height of rounded corners, the same as {@link GridCell#drawCell(Graphics2D, boolean)} and {@link TetrominoStats} use.
+	 */
+	private static final int ARC=5;
+	/**
+	 * The first character with a mask.
+	 */
+	private static final char FIRST_GLYPH=' ';
+	/**
+	 * The last character with a mask.
+	 */
+	private static final char LAST_GLYPH='~';
+	/**
+	 * The padding around the text inside a text box, the same as {@link TetrominoStats} uses.
+	 */
+	private static final int TEXT_PADDING=10;
+	/**
+	 * The size of the rounded rectangle the corner shape of text boxes is measured on.
+	 */
+	private static final int CORNER_SAMPLE=16;
+
+	/**
+	 * The view holding the pixel area and the colors of the {@link RasterRenderer#grid}.
+	 */
+	private final GridView view;
+	/**
+	 * The grid whose cells are painted.
+	 */
+	private final BackgroundGrid grid;
+	/**
+	 * The score area whose texts are painted.
+	 */
+	private final TetrominoStats stats;
+	/**
+	 * The width of a frame.
+	 */
+	private final int width;
+	/**
+	 * The height of a frame.
+	 */
+	private final int height;
+	/**
+	 * The frame, reused by every call of {@link RasterRenderer#render(Shape, boolean)}.
+	 */
+	private final BufferedImage frame;
+	/**
+	 * The data buffer of {@link RasterRenderer#frame}, one RGB value per pixel, row after row.
+	 */
+	private final int[] pixels;
+	/**
+	 * The screen without any locked cell, Shape or text.
+	 */
+	private final int[] template;
+	/**
+	 * The width of the cells of the grid.
+	 */
+	private final int cellWidth;
+	/**
+	 * The height of the cells of the grid.
+	 */
+	private final int cellHeight;
+	/**
+	 * The index into {@link RasterRenderer#pixels} of the upper left corner of every cell of the grid, row after row.
+	 */
+	private final int[] cellOrigins;
+	/**
+	 * The outlined tile of every palette index, {@code cellWidth+1} by {@code cellHeight+1} ARGB values, since the outline reaches one pixel past the
+	 * right and bottom edge. Null until the palette index is first painted.
+	 */
+	private final int[][] tiles=new int[BackgroundGrid.MAX_PALETTE_SIZE][];
+	/**
+	 * The coverage, 0 to 255, of every pixel of every character mask.
+	 */
+	private final byte[][] glyphMasks=new byte[LAST_GLYPH-FIRST_GLYPH+1][];
+	/**
+	 * The offset of every character mask from the pen position on the baseline.
+	 */
+	private final int[] glyphLeft=new int[glyphMasks.length], glyphTop=new int[glyphMasks.length];
+	/**
+	 * The size of every character mask.
+	 */
+	private final int[] glyphWidth=new int[glyphMasks.length], glyphHeight=new int[glyphMasks.length];
+	/**
+	 * The distance the pen moves after every character.
+	 */
+	private final int[] glyphAdvance=new int[glyphMasks.length];
+	/**
+	 * The height of the score font, as {@link FontMetrics#getHeight()} reports it.
+	 */
+	private final int fontHeight;
+	/**
+	 * The number of pixels left out at the left and right end of the top and bottom rows of a rounded text box, indexed by the distance from the top or
+	 * bottom edge.
+	 */
+	private final int[] cornerTopLeft=new int[CORNER_SAMPLE/2], cornerTopRight=new int[CORNER_SAMPLE/2],
+			cornerBottomLeft=new int[CORNER_SAMPLE/2], cornerBottomRight=new int[CORNER_SAMPLE/2];
+	/**
+	 * The characters of the text being painted.
+	 */
+	private final char[] text=new char[64];
+
+	/**
+	 * Creates a renderer for frames of the specified size and rasterizes the template, the tiles of the current palette and the character masks.
+	 * @param view the view of the grid to paint, whose pixel area must be inside the frame.
+	 * @param stats the score area to paint.
+	 * @param width the width of a frame.
+	 * @param height the height of a frame.
+	 * @param decoration paints anything else that never changes on top of the template, such as the walls of {@link TetrisGame}, or null for nothing.
+	 * @throws IllegalArgumentException if the pixel area of the grid is not inside the frame.
+	 */
+	public RasterRenderer(GridView view, TetrominoStats stats, int width, int height, Consumer<Graphics2D> decoration)
+	{
+		this.view=view;
+		this.grid=view.getGrid();
+		this.stats=stats;
+		this.width=width;
+		this.height=height;
+		this.frame=new BufferedImage(width,height,BufferedImage.TYPE_INT_RGB);
+		this.pixels=((DataBufferInt)frame.getRaster().getDataBuffer()).getData();
+
+		int rows=grid.getRowCount();
+		int columns=grid.getColumnCount();
+		GridCell first=view.getCell(0,0);
+		GridCell last=view.getCell(rows-1,columns-1);
+		if(first.getX()<0||first.getY()<0||last.getX()+last.getWidth()>=width||last.getY()+last.getHeight()>=height)
+			throw new IllegalArgumentException("The grid must have a pixel area inside the "+width+"x"+height+" frame.");
+		this.cellWidth=first.getWidth();
+		this.cellHeight=first.getHeight();
+		this.cellOrigins=new int[rows*columns];
+		for(int r=0;r<rows;r++)
+		{
+			for(int c=0;c<columns;c++)
+			{
+				GridCell cell=view.getCell(r,c);
+				cellOrigins[r*columns+c]=cell.getY()*width+cell.getX();
+			}
+		}
+
+		Graphics2D g2d=frame.createGraphics();
+		g2d.setColor(Color.black);
+		g2d.fillRect(0, 0, width, height);
+		g2d.setColor(view.getColor(BackgroundGrid.PALETTE_EMPTY));
+		g2d.fillRect(first.getX(), first.getY(), last.getX()+last.getWidth()-first.getX(), last.getY()+last.getHeight()-first.getY());
+		stats.drawTetrominoCells(g2d);
+		if(decoration!=null)
+			decoration.accept(g2d);
+		FontMetrics metrics=g2d.getFontMetrics(stats.getTextFont());
+		this.fontHeight=metrics.getHeight();
+		g2d.dispose();
+		this.template=pixels.clone();
+
+		for(int i=1;i<grid.getPaletteSize();i++)
+			getTile(i);
+		initGlyphs(stats.getTextFont(),metrics);
+		initCorners();
+	}
+	/**
+	 * Paints a frame: the template, every locked cell of the grid, the current Shape and the score texts.
+	 * @param current the current Shape, or null.
+	 * @param isGameOver True once the game is over, which paints every score text white.
+	 * @return the frame, which is overwritten by the next call.
+	 */
+	public BufferedImage render(Shape current, boolean isGameOver)
+	{
+		System.arraycopy(template, 0, pixels, 0, pixels.length);
+		int rows=grid.getRowCount();
+		int columns=grid.getColumnCount();
+		for(int r=0;r<rows;r++)
+		{
+			for(int c=0;c<columns;c++)
+			{
+				int paletteIndex=grid.getCellPaletteIndex(r,c);
+				if(paletteIndex!=BackgroundGrid.PALETTE_EMPTY)//the next cell covers the outline past the edge, see GridView#drawBackgroundGrid.
+					drawTile(getTile(paletteIndex),cellOrigins[r*columns+c],cellWidth,cellHeight);
+			}
+		}
+		if(current!=null&&current.isVisible())
+		{
+			for(int i=0;i<current.getCellCount();i++)
+			{
+				int r=current.getAbsoluteCellRow(i);
+				int c=current.getAbsoluteCellColumn(i);
+				if(r>=0&&r<rows&&c>=0&&c<columns)
+					drawTile(getTile(grid.getPaletteIndex(current.getCellRGB(i))),cellOrigins[r*columns+c],cellWidth+1,cellHeight+1);
+			}
+		}
+		for(int i=0;i<stats.getTextCount();i++)
+			drawText(i,isGameOver);
+		return frame;
+	}
+	/**
+	 * Returns the frame painted by the last call of {@link RasterRenderer#render(Shape, boolean)}.
+	 * @return the frame.
+	 */
+	public BufferedImage getFrame()
+	{
+		return frame;
+	}
+	/**
+	 * Returns the pixels of the frame, one RGB value per pixel, row after row. This is the frame's own data buffer, not a copy.
+	 * @return the pixels.
+	 */
+	public int[] getPixels()
+	{
+		return pixels;
+	}
+	/**
+	 * Returns the width of a frame.
+	 * @return the width in pixels.
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+	/**
+	 * Returns the height of a frame.
+	 * @return the height in pixels.
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+	/**
+	 * Returns the outlined tile of a palette index, rasterizing it first if it was not painted before.
+	 * @param paletteIndex the palette index.
+	 * @return the tile.
+	 */
+	private int[] getTile(int paletteIndex)
+	{
+		int[] tile=tiles[paletteIndex];
+		if(tile==null)
+		{
+			BufferedImage image=new BufferedImage(cellWidth+1,cellHeight+1,BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g2d=image.createGraphics();
+			g2d.setColor(view.getColor(paletteIndex));
+			g2d.fillRoundRect(0, 0, cellWidth, cellHeight, ARC, ARC);
+			g2d.setColor(Color.lightGray);
+			g2d.drawRoundRect(0, 0, cellWidth, cellHeight, ARC, ARC);
+			g2d.dispose();
+			tile=image.getRGB(0, 0, cellWidth+1, cellHeight+1, null, 0, cellWidth+1);
+			tiles[paletteIndex]=tile;
+		}
+		return tile;
+	}
+	/**
+	 * Copies the upper left part of a tile into the frame. Transparent pixels are skipped and translucent pixels are blended.
+	 * @param tile the tile.
+	 * @param origin the index into {@link RasterRenderer#pixels} of the upper left corner.
+	 * @param w the number of columns of the tile to copy.
+	 * @param h the number of rows of the tile to copy.
+	 */
+	private void drawTile(int[] tile, int origin, int w, int h)
+	{
+		int stride=cellWidth+1;
+		for(int y=0;y<h;y++)
+		{
+			int src=y*stride;
+			int dst=origin+y*width;
+			for(int x=0;x<w;x++)
+			{
+				int argb=tile[src+x];
+				int alpha=argb>>>24;
+				if(alpha==255)
+					pixels[dst+x]=argb&0xFFFFFF;
+				else if(alpha!=0)
+					pixels[dst+x]=blend(pixels[dst+x],argb,alpha);
+			}
+		}
+	}
+	/**
+	 * Paints one score text and its box, at the same place and in the same colors as {@link TetrominoStats#drawTetrominoText(Graphics2D, boolean)}.
+	 * @param i the index of the text.
+	 * @param isGameOver True once the game is over.
+	 */
+	private void drawText(int i, boolean isGameOver)
+	{
+		int length=appendText(0,stats.getTextPrefix(i));
+		length=appendValue(length,stats.getValue(i));
+		length=appendText(length,stats.getTextSuffix(i));
+		int textWidth=0;
+		for(int k=0;k<length;k++)
+			textWidth+=glyphAdvance[glyph(text[k])];
+
+		Coord center=stats.getTextCenter(i);
+		int boxWidth=textWidth+TEXT_PADDING;
+		int boxHeight=((int)(0.5*fontHeight))+TEXT_PADDING;
+		fillRoundBox(center.getX()-boxWidth/2,center.getY()-boxHeight/2,boxWidth,boxHeight,0x000000);
+
+		int rgb=stats.getTextColor(i,isGameOver).getRGB()&0xFFFFFF;
+		int penX=center.getX()-textWidth/2;
+		int baseline=center.getY()+fontHeight/4;
+		for(int k=0;k<length;k++)
+		{
+			int g=glyph(text[k]);
+			drawGlyph(g,penX,baseline,rgb);
+			penX+=glyphAdvance[g];
+		}
+	}
+	/**
+	 * Appends a String to the text being painted.
+	 * @param length the current length of the text.
+	 * @param s the String.
+	 * @return the new length, never more than the capacity of the text.
+	 */
+	private int appendText(int length, String s)
+	{
+		for(int k=0;k<s.length()&&length<text.length;k++)
+			text[length++]=s.charAt(k);
+		return length;
+	}
+	/**
+	 * Appends the decimal digits of a value to the text being painted, without creating a String.
+	 * @param length the current length of the text.
+	 * @param value the value.
+	 * @return the new length.
+	 */
+	private int appendValue(int length, int value)
+	{
+		long v=value;
+		if(v<0)
+		{
+			text[length++]='-';
+			v=-v;
+		}
+		int digits=1;
+		for(long p=10;p<=v;p*=10)
+			digits++;
+		for(int k=length+digits-1;k>=length;k--)
+		{
+			text[k]=(char)('0'+v%10);
+			v/=10;
+		}
+		return length+digits;
+	}
+	/**
+	 * Returns the mask index of a character, the mask of {@code '?'} for characters without a mask.
+	 * @param c the character.
+	 * @return the index into the mask arrays.
+	 */
+	private static int glyph(char c)
+	{
+		if(c<FIRST_GLYPH||c>LAST_GLYPH)
+			c='?';
+		return c-FIRST_GLYPH;
+	}
+	/**
+	 * Paints a character mask in a color.
+	 * @param g the mask index.
+	 * @param penX the pen position.
+	 * @param baseline the baseline.
+	 * @param rgb the color.
+	 */
+	private void drawGlyph(int g, int penX, int baseline, int rgb)
+	{
+		byte[] mask=glyphMasks[g];
+		int left=penX+glyphLeft[g];
+		int top=baseline+glyphTop[g];
+		for(int y=0;y<glyphHeight[g];y++)
+		{
+			int py=top+y;
+			if(py<0||py>=height)
+				continue;
+			for(int x=0;x<glyphWidth[g];x++)
+			{
+				int px=left+x;
+				int coverage=mask[y*glyphWidth[g]+x]&0xFF;
+				if(coverage==0||px<0||px>=width)
+					continue;
+				int dst=py*width+px;
+				pixels[dst]=coverage==255?rgb:blend(pixels[dst],rgb,coverage);
+			}
+		}
+	}
+	/**
+	 * Fills a rectangle with rounded corners, the same pixels as {@link Graphics2D#fillRoundRect(int, int, int, int, int, int)} with an arc of
+	 * {@link RasterRenderer#ARC}.
+	 * @param x the left edge.
+	 * @param y the top edge.
+	 * @param w the width.
+	 * @param h the height.
+	 * @param rgb the color.
+	 */
+	private void fillRoundBox(int x, int y, int w, int h, int rgb)
+	{
+		int corner=cornerTopLeft.length;
+		for(int j=0;j<h;j++)
+		{
+			int py=y+j;
+			if(py<0||py>=height)
+				continue;
+			int from=x;
+			int to=x+w;
+			if(j<corner)
+			{
+				from+=cornerTopLeft[j];
+				to-=cornerTopRight[j];
+			}
+			else if(h-1-j<corner)
+			{
+				from+=cornerBottomLeft[h-1-j];
+				to-=cornerBottomRight[h-1-j];
+			}
+			from=Math.max(from,0);
+			to=Math.min(to,width);
+			for(int px=from;px<to;px++)
+				pixels[py*width+px]=rgb;
+		}
+	}
+	/**
+	 * Blends a color over a pixel.
+	 * @param dst the RGB value of the pixel.
+	 * @param src the RGB value of the color, the alpha bits are ignored.
+	 * @param alpha the coverage of the color, 0 to 255.
+	 * @return the blended RGB value.
+	 */
+	private static int blend(int dst, int src, int alpha)
+	{
+		int inverse=255-alpha;
+		int r=(((src>>16)&0xFF)*alpha+((dst>>16)&0xFF)*inverse)/255;
+		int g=(((src>>8)&0xFF)*alpha+((dst>>8)&0xFF)*inverse)/255;
+		int b=((src&0xFF)*alpha+(dst&0xFF)*inverse)/255;
+		return (r<<16)|(g<<8)|b;
+	}
+	/**
+	 * Rasterizes every printable ASCII character of the score font into a coverage mask, trimmed to the pixels the character covers.
+	 * @param font the score font.
+	 * @param metrics the metrics of the font.
+	 */
+	private void initGlyphs(Font font, FontMetrics metrics)
+	{
+		int pad=metrics.getMaxAdvance()>0?metrics.getMaxAdvance():font.getSize()*2;
+		int imageWidth=3*pad;
+		int imageHeight=metrics.getHeight()+2*pad;
+		int originX=pad;
+		int originY=pad+metrics.getAscent();
+		BufferedImage image=new BufferedImage(imageWidth,imageHeight,BufferedImage.TYPE_INT_ARGB);
+		int[] data=((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		for(char c=FIRST_GLYPH;c<=LAST_GLYPH;c++)
+		{
+			int g=c-FIRST_GLYPH;
+			Arrays.fill(data, 0);
+			Graphics2D g2d=image.createGraphics();
+			g2d.setFont(font);
+			g2d.setColor(Color.white);
+			g2d.drawString(String.valueOf(c), originX, originY);
+			g2d.dispose();
+			int minX=imageWidth, minY=imageHeight, maxX=-1, maxY=-1;
+			for(int y=0;y<imageHeight;y++)
+			{
+				for(int x=0;x<imageWidth;x++)
+				{
+					if((data[y*imageWidth+x]>>>24)!=0)
+					{
+						minX=Math.min(minX,x);
+						maxX=Math.max(maxX,x);
+						minY=Math.min(minY,y);
+						maxY=Math.max(maxY,y);
+					}
+				}
+			}
+			glyphAdvance[g]=metrics.charWidth(c);
+			if(maxX<0)
+			{
+				glyphMasks[g]=new byte[0];
+				continue;
+			}
+			int w=maxX-minX+1;
+			int h=maxY-minY+1;
+			byte[] mask=new byte[w*h];
+			for(int y=0;y<h;y++)
+				for(int x=0;x<w;x++)
+					mask[y*w+x]=(byte)(data[(minY+y)*imageWidth+minX+x]>>>24);
+			glyphMasks[g]=mask;
+			glyphLeft[g]=minX-originX;
+			glyphTop[g]=minY-originY;
+			glyphWidth[g]=w;
+			glyphHeight[g]=h;
+		}
+	}
+	/**
+	 * Measures the pixels a rounded rectangle leaves out at its corners, on a sample rectangle filled with
+	 * {@link Graphics2D#fillRoundRect(int, int, int, int, int, int)}.
+	 */
+	private void initCorners()
+	{
+		BufferedImage image=new BufferedImage(CORNER_SAMPLE,CORNER_SAMPLE,BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2d=image.createGraphics();
+		g2d.setColor(Color.white);
+		g2d.fillRoundRect(0, 0, CORNER_SAMPLE, CORNER_SAMPLE, ARC, ARC);
+		g2d.dispose();
+		for(int j=0;j<cornerTopLeft.length;j++)
+		{
+			cornerTopLeft[j]=countEmpty(image,j,0,1);
+			cornerTopRight[j]=countEmpty(image,j,CORNER_SAMPLE-1,-1);
+			cornerBottomLeft[j]=countEmpty(image,CORNER_SAMPLE-1-j,0,1);
+			cornerBottomRight[j]=countEmpty(image,CORNER_SAMPLE-1-j,CORNER_SAMPLE-1,-1);
+		}
+	}
+	/**
+	 * Counts the transparent pixels of a row of an image, from one end until the first painted pixel.
+	 * @param image the image.
+	 * @param y the row.
+	 * @param x the column to start at.
+	 * @param step 1 to count rightwards, -1 to count leftwards.
+	 * @return the number of transparent pixels.
+	 */
+	private static int countEmpty(BufferedImage image, int y, int x, int step)
+	{
+		int count=0;
+		while(x>=0&&x<image.getWidth()&&(image.getRGB(x,y)>>>24)==0)
+		{
+			count++;
+			x+=step;
+		}
+		return count;
+	}
+}
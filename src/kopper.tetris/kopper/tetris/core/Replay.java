@@ -0,0 +1,680 @@
+package kopper.tetris.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import kopper.tetris.shape.ShapeKind;
+
+/**
+ * <p>A recorded game: the settings and seed the game was created with and every call that changed it, with the tick it happened at. Since a
+ * {@link TetrisEngine} is deterministic, playing the calls back on a new engine created from the same settings reproduces the game exactly, as fast
+ * as the caller wants. A replay is recorded with {@link TetrisEngine#startRecording()} and played back with a {@link ReplayPlayer}, which makes the
+ * same {@link TetrisEngine#tick()} and {@link TetrisEngine#input(int)} calls {@link TetrisGame} makes from its timer and key listener.
+ * </p>
+ * <p>
+ * The binary format, all numbers unsigned LEB128 varints unless noted:
+ * </p>
+ * <ul>
+ * 	<li>the 4 bytes {@code KTRP}, a version byte and a flags byte, bit 0 telling that the calls are compressed with {@link Deflater},</li>
+ * 	<li>the columns, rows and ticks between gravity steps of the game,</li>
+ * 	<li>the randomizer type, the number of randomizer parameters and the parameters, and the seed as 8 bytes, big endian,</li>
+ * 	<li>the summary: the number of ticks, the number of calls, the score, the rows eliminated, the Shapes of each {@link ShapeKind} locked, the times
+ * 	the player fast forwarded, and a byte that is 1 if the game was over,</li>
+ * 	<li>the length of the calls, the length of the calls as stored, and the stored calls.</li>
+ * </ul>
+ * <p>
+ * Each call is one varint, the number of ticks since the previous call shifted left by {@link Replay#CODE_BITS} bits, combined with the code of the
+ * call: one of the {@code INPUT_...} constants of {@link TetrisEngine} or one of the {@code CODE_...} constants of this class. A call made in the same
+ * tick as the previous one takes a single byte, and a long game of a few thousand calls takes a few kilobytes, less once compressed. The summary lets
+ * tools list replays without playing them, and {@link Replay#verify()} checks that playing a replay back ends with the summary's score.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public final class Replay
+{
+	/**
+	 * The randomizer type of a {@link UniformRandomizer}.
+	 */
+	public static final int RANDOMIZER_UNIFORM=0;
+	/**
+	 * The randomizer type of a {@link BagRandomizer}.
+	 */
+	public static final int RANDOMIZER_BAG=1;
+	/**
+	 * The randomizer type of a {@link HistoryRandomizer}, stored with its history size and number of rolls.
+	 */
+	public static final int RANDOMIZER_HISTORY=2;
+	/**
+	 * The code of a call of {@link TetrisEngine#start()}.
+	 */
+	static final int CODE_START=6;
+	/**
+	 * The code of a call of {@link TetrisEngine#pause()}.
+	 */
+	static final int CODE_PAUSE=7;
+	/**
+	 * The code of a call of {@link TetrisEngine#togglePause()}.
+	 */
+	static final int CODE_TOGGLE_PAUSE=8;
+	/**
+	 * The code of a call of {@link TetrisEngine#step()} outside of a tick.
+	 */
+	static final int CODE_STEP=9;
+	/**
+	 * The number of low bits of a call's varint holding its code.
+	 */
+	static final int CODE_BITS=4;
+	/**
+	 * The maximum number of bytes of a varint of 64 bits.
+	 */
+	static final int MAX_VARINT_BYTES=10;
+	/**
+	 * The maximum number of randomizer parameters beyond its seed, the two of a {@link HistoryRandomizer}.
+	 */
+	static final int MAX_RANDOMIZER_PARAMETERS=2;
+	/**
+	 * The first 4 bytes of a replay, {@code KTRP}.
+	 */
+	private static final byte[] MAGIC= {'K','T','R','P'};
+	/**
+	 * The version of the format written.
+	 */
+	private static final int VERSION=2;
+	/**
+	 * The flag telling that the calls are compressed.
+	 */
+	private static final int FLAG_DEFLATED=1;
+	/**
+	 * The number of ticks per second of {@link TetrisGame}, used to show how long a game took.
+	 */
+	private static final double TICKS_PER_SECOND=25.0;
+
+	/**
+	 * The number of columns of the grid.
+	 */
+	private final int columns;
+	/**
+	 * The number of rows of the grid.
+	 */
+	private final int rows;
+	/**
+	 * The number of ticks between gravity steps.
+	 */
+	private final int ticksBetweenGravity;
+	/**
+	 * The type of the randomizer, one of the {@code RANDOMIZER_...} constants.
+	 */
+	private final int randomizerType;
+	/**
+	 * The parameters of the randomizer beyond its seed.
+	 */
+	private final int[] randomizerParameters;
+	/**
+	 * The seed of the randomizer.
+	 */
+	private final long seed;
+	/**
+	 * The number of ticks recorded.
+	 */
+	private final long ticks;
+	/**
+	 * The encoded calls, uncompressed.
+	 */
+	private final byte[] events;
+	/**
+	 * The number of calls.
+	 */
+	private final int eventCount;
+	/**
+	 * The summary: the score, rows eliminated and fast forwards at the end of the recording.
+	 */
+	private final int score, rowsEliminated, arrowDowns;
+	/**
+	 * The summary: the number of Shapes of each kind locked at the end of the recording, indexed by {@link ShapeKind#ordinal()}.
+	 */
+	private final int[] shapeCounts;
+	/**
+	 * True if the game was over at the end of the recording.
+	 */
+	private final boolean gameOver;
+
+	/**
+	 * Creates a replay. Use {@link ReplayRecorder#finish()} or {@link Replay#fromBytes(byte[])} instead.
+	 * @param columns the number of columns of the grid.
+	 * @param rows the number of rows of the grid.
+	 * @param ticksBetweenGravity the number of ticks between gravity steps.
+	 * @param randomizerType the type of the randomizer.
+	 * @param randomizerParameters the parameters of the randomizer beyond its seed.
+	 * @param seed the seed of the randomizer.
+	 * @param ticks the number of ticks recorded.
+	 * @param events the encoded calls, owned by the new replay.
+	 * @param eventCount the number of calls.
+	 * @param score the score at the end of the recording.
+	 * @param rowsEliminated the rows eliminated at the end of the recording.
+	 * @param shapeCounts the Shapes of each kind locked at the end of the recording, owned by the new replay.
+	 * @param arrowDowns the fast forwards at the end of the recording.
+	 * @param gameOver true if the game was over at the end of the recording.
+	 */
+	Replay(int columns, int rows, int ticksBetweenGravity, int randomizerType, int[] randomizerParameters, long seed, long ticks, byte[] events,
+			int eventCount, int score, int rowsEliminated, int[] shapeCounts, int arrowDowns, boolean gameOver)
+	{
+		this.columns=columns;
+		this.rows=rows;
+		this.ticksBetweenGravity=ticksBetweenGravity;
+		this.randomizerType=randomizerType;
+		this.randomizerParameters=randomizerParameters;
+		this.seed=seed;
+		this.ticks=ticks;
+		this.events=events;
+		this.eventCount=eventCount;
+		this.score=score;
+		this.rowsEliminated=rowsEliminated;
+		this.shapeCounts=shapeCounts;
+		this.arrowDowns=arrowDowns;
+		this.gameOver=gameOver;
+	}
+	/**
+	 * Returns the randomizer type a replay stores for a randomizer.
+	 * @param randomizer the randomizer.
+	 * @return one of the {@code RANDOMIZER_...} constants.
+	 * @throws IllegalArgumentException if the randomizer is not one of the randomizers of this package, and can therefore not be recreated from its seed.
+	 */
+	public static int getRandomizerType(ShapeRandomizer randomizer)
+	{
+		if(randomizer.getClass()==UniformRandomizer.class)
+			return RANDOMIZER_UNIFORM;
+		if(randomizer.getClass()==BagRandomizer.class)
+			return RANDOMIZER_BAG;
+		if(randomizer.getClass()==HistoryRandomizer.class)
+			return RANDOMIZER_HISTORY;
+		throw new IllegalArgumentException("A replay can not recreate a "+randomizer.getClass().getName());
+	}
+	/**
+	 * Creates a new randomizer dealing the same sequence of Shapes as the randomizer of the recorded game.
+	 * @return the randomizer.
+	 */
+	public ShapeRandomizer createRandomizer()
+	{
+		return createRandomizer(randomizerType,seed,randomizerParameters);
+	}
+	/**
+	 * Returns the parameters beyond its seed that a replay stores for a randomizer.
+	 * @param randomizer the randomizer, see {@link Replay#getRandomizerType(ShapeRandomizer)}.
+	 * @return the history size and number of rolls of a {@link HistoryRandomizer}, nothing for the other randomizers.
+	 */
+	static int[] getRandomizerParameters(ShapeRandomizer randomizer)
+	{
+		if(randomizer instanceof HistoryRandomizer)
+		{
+			HistoryRandomizer h=(HistoryRandomizer)randomizer;
+			return new int[] {h.getHistorySize(),h.getRolls()};
+		}
+		return new int[0];
+	}
+	/**
+	 * Creates a randomizer of a type, seed and parameters stored by a replay or a snapshot.
+	 * @param type one of the {@code RANDOMIZER_...} constants.
+	 * @param seed the seed.
+	 * @param parameters the parameters returned by {@link Replay#getRandomizerParameters(ShapeRandomizer)}.
+	 * @return the randomizer, at the start of its sequence.
+	 * @throws IllegalArgumentException if the type is unknown or the parameters are missing.
+	 */
+	static AbstractRandomizer createRandomizer(int type, long seed, int[] parameters)
+	{
+		switch(type)
+		{
+			case RANDOMIZER_UNIFORM:	return new UniformRandomizer(seed);
+			case RANDOMIZER_BAG:		return new BagRandomizer(seed);
+			case RANDOMIZER_HISTORY:
+				if(parameters.length<2)
+					throw new IllegalArgumentException("Missing randomizer parameters");
+				return new HistoryRandomizer(seed,parameters[0],parameters[1]);
+			default:
+				throw new IllegalArgumentException("Unknown randomizer type "+type);
+		}
+	}
+	/**
+	 * Creates a new engine in the state the recorded game started in, ready for the recorded calls.
+	 * @return the engine.
+	 */
+	public TetrisEngine createEngine()
+	{
+		TetrisEngine engine=new TetrisEngine(columns,rows,createRandomizer());
+		engine.setTicksBetweenGravity(ticksBetweenGravity);
+		return engine;
+	}
+	/**
+	 * Creates a player playing this replay back on a new engine.
+	 * @return the player.
+	 */
+	public ReplayPlayer createPlayer()
+	{
+		return new ReplayPlayer(this);
+	}
+	/**
+	 * Plays this replay back at full speed and tells if the game ended the way it was recorded.
+	 * @return true if the score, rows eliminated, Shapes locked, fast forwards and game over state of the played back game match the summary.
+	 */
+	public boolean verify()
+	{
+		ReplayPlayer player=createPlayer();
+		player.playToEnd();
+		TetrisEngine engine=player.getEngine();
+		TetrisScore s=engine.getScore();
+		for(ShapeKind kind:ShapeKind.values())
+		{
+			if(s.getShapeCount(kind)!=shapeCounts[kind.ordinal()])
+				return false;
+		}
+		return s.getScore()==score&&s.getRows()==rowsEliminated&&s.getArrowDowns()==arrowDowns&&engine.getState().isGameOver()==gameOver;
+	}
+	/**
+	 * Returns the number of columns of the grid.
+	 * @return the number of columns.
+	 */
+	public int getColumnCount()
+	{
+		return columns;
+	}
+	/**
+	 * Returns the number of rows of the grid.
+	 * @return the number of rows.
+	 */
+	public int getRowCount()
+	{
+		return rows;
+	}
+	/**
+	 * Returns the seed of the randomizer.
+	 * @return the seed.
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+	/**
+	 * Returns the number of ticks recorded.
+	 * @return the number of ticks.
+	 */
+	public long getTicks()
+	{
+		return ticks;
+	}
+	/**
+	 * Returns the number of calls recorded.
+	 * @return the number of calls.
+	 */
+	public int getEventCount()
+	{
+		return eventCount;
+	}
+	/**
+	 * Returns the score at the end of the recording.
+	 * @return the score, see {@link TetrisScore#getScore()}.
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+	/**
+	 * Returns the number of rows eliminated at the end of the recording.
+	 * @return the number of rows.
+	 */
+	public int getRowsEliminated()
+	{
+		return rowsEliminated;
+	}
+	/**
+	 * Returns the number of Shapes locked at the end of the recording.
+	 * @return the number of Shapes.
+	 */
+	public int getShapeCount()
+	{
+		int total=0;
+		for(int count:shapeCounts)
+			total+=count;
+		return total;
+	}
+	/**
+	 * Returns the number of Shapes of a kind locked at the end of the recording.
+	 * @param kind the kind.
+	 * @return the number of Shapes.
+	 */
+	public int getShapeCount(ShapeKind kind)
+	{
+		return shapeCounts[kind.ordinal()];
+	}
+	/**
+	 * Returns the number of times the player fast forwarded at the end of the recording.
+	 * @return the number of fast forwards, see {@link TetrisScore#getArrowDowns()}.
+	 */
+	public int getArrowDowns()
+	{
+		return arrowDowns;
+	}
+	/**
+	 * Tells if the game was over at the end of the recording.
+	 * @return true if the game was over.
+	 */
+	public boolean isGameOver()
+	{
+		return gameOver;
+	}
+	/**
+	 * Returns the encoded calls, read by {@link ReplayPlayer}.
+	 * @return the calls, not to be modified.
+	 */
+	byte[] getEvents()
+	{
+		return events;
+	}
+	/**
+	 * Encodes this replay in the binary format described above.
+	 * @param compress true to compress the calls with {@link Deflater}, which is skipped if it would not make them smaller.
+	 * @return the encoded replay.
+	 */
+	public byte[] toBytes(boolean compress)
+	{
+		byte[] stored=events;
+		int flags=0;
+		if(compress)
+		{
+			byte[] deflated=deflate(events);
+			if(deflated.length<events.length)
+			{
+				stored=deflated;
+				flags|=FLAG_DEFLATED;
+			}
+		}
+		byte[] out=new byte[MAGIC.length+2+(16+ShapeKind.COUNT+randomizerParameters.length)*MAX_VARINT_BYTES+8+1+stored.length];
+		System.arraycopy(MAGIC, 0, out, 0, MAGIC.length);
+		int pos=MAGIC.length;
+		out[pos++]=VERSION;
+		out[pos++]=(byte)flags;
+		pos=writeVarint(out, pos, columns);
+		pos=writeVarint(out, pos, rows);
+		pos=writeVarint(out, pos, ticksBetweenGravity);
+		pos=writeVarint(out, pos, randomizerType);
+		pos=writeVarint(out, pos, randomizerParameters.length);
+		for(int p:randomizerParameters)
+			pos=writeVarint(out, pos, p);
+		for(int i=56;i>=0;i-=8)
+			out[pos++]=(byte)(seed>>>i);
+		pos=writeVarint(out, pos, ticks);
+		pos=writeVarint(out, pos, eventCount);
+		pos=writeVarint(out, pos, score);
+		pos=writeVarint(out, pos, rowsEliminated);
+		for(int count:shapeCounts)
+			pos=writeVarint(out, pos, count);
+		pos=writeVarint(out, pos, arrowDowns);
+		out[pos++]=(byte)(gameOver?1:0);
+		pos=writeVarint(out, pos, events.length);
+		pos=writeVarint(out, pos, stored.length);
+		System.arraycopy(stored, 0, out, pos, stored.length);
+		return Arrays.copyOf(out, pos+stored.length);
+	}
+	/**
+	 * Decodes a replay encoded by {@link Replay#toBytes(boolean)}. The sizes in its header are checked before anything is allocated for them: a replay
+	 * of an empty grid, with more than {@link Replay#MAX_RANDOMIZER_PARAMETERS} randomizer parameters or with compressed calls longer than
+	 * {@link ReplayArchive#MAX_REPLAY_SIZE} is damaged.
+	 * @param data the encoded replay.
+	 * @return the replay.
+	 * @throws IOException if the data is not a replay of a version this class reads, or is damaged.
+	 */
+	public static Replay fromBytes(byte[] data) throws IOException
+	{
+		Reader in=new Reader(data);
+		for(byte b:MAGIC)
+		{
+			if(in.readByte()!=b)
+				throw new IOException("Not a replay");
+		}
+		int version=in.readByte();
+		if(version!=VERSION)
+			throw new IOException("Unsupported replay version "+version);
+		int flags=in.readByte();
+		int columns=in.readInt();
+		int rows=in.readInt();
+		if(columns<=0||rows<=0)
+			throw new IOException("Damaged replay");
+		int ticksBetweenGravity=in.readInt();
+		int randomizerType=in.readInt();
+		int parameterCount=in.readInt();
+		if(parameterCount>MAX_RANDOMIZER_PARAMETERS)
+			throw new IOException("Damaged replay");
+		int[] randomizerParameters=new int[parameterCount];
+		for(int i=0;i<randomizerParameters.length;i++)
+			randomizerParameters[i]=in.readInt();
+		try
+		{
+			createRandomizer(randomizerType,0,randomizerParameters);
+		}
+		catch(IllegalArgumentException e)
+		{
+			throw new IOException(e.getMessage(), e);
+		}
+		long seed=0;
+		for(int i=0;i<8;i++)
+			seed=(seed<<8)|(in.readByte()&0xFF);
+		long ticks=in.readVarint();
+		int eventCount=in.readInt();
+		int score=in.readInt();
+		int rowsEliminated=in.readInt();
+		int[] shapeCounts=new int[ShapeKind.COUNT];
+		for(int i=0;i<shapeCounts.length;i++)
+			shapeCounts[i]=in.readInt();
+		int arrowDowns=in.readInt();
+		boolean gameOver=in.readByte()!=0;
+		int length=in.readInt();
+		byte[] stored=in.readBytes(in.readInt());
+		byte[] events=(flags&FLAG_DEFLATED)!=0?inflate(stored,length):stored;
+		if(events.length!=length)
+			throw new IOException("Damaged replay");
+		return new Replay(columns,rows,ticksBetweenGravity,randomizerType,randomizerParameters,seed,ticks,events,eventCount,score,rowsEliminated,shapeCounts,
+				arrowDowns,gameOver);
+	}
+	/**
+	 * Writes this replay, compressed, to a file.
+	 * @param file the file.
+	 * @throws IOException if the file can not be written.
+	 */
+	public void write(Path file) throws IOException
+	{
+		Files.write(file, toBytes(true));
+	}
+	/**
+	 * Reads a replay from a file.
+	 * @param file the file.
+	 * @return the replay.
+	 * @throws IOException if the file can not be read or is not a replay.
+	 */
+	public static Replay read(Path file) throws IOException
+	{
+		return fromBytes(Files.readAllBytes(file));
+	}
+	/**
+	 * Writes a value as an unsigned LEB128 varint: 7 bits per byte, low bits first, the high bit of every byte but the last set.
+	 * @param buffer the buffer, with room for {@link Replay#MAX_VARINT_BYTES} bytes.
+	 * @param pos the index to write at.
+	 * @param value the value, taken as unsigned.
+	 * @return the index after the varint.
+	 */
+	static int writeVarint(byte[] buffer, int pos, long value)
+	{
+		while((value&~0x7FL)!=0)
+		{
+			buffer[pos++]=(byte)((value&0x7F)|0x80);
+			value>>>=7;
+		}
+		buffer[pos++]=(byte)value;
+		return pos;
+	}
+	/**
+	 * Compresses bytes with {@link Deflater}.
+	 * @param data the bytes.
+	 * @return the compressed bytes.
+	 */
+	private static byte[] deflate(byte[] data)
+	{
+		Deflater deflater=new Deflater(Deflater.BEST_COMPRESSION);
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] out=new byte[data.length/2+64];
+		int length=0;
+		while(!deflater.finished())
+		{
+			if(length==out.length)
+				out=Arrays.copyOf(out, out.length*2);
+			length+=deflater.deflate(out, length, out.length-length);
+		}
+		deflater.end();
+		return Arrays.copyOf(out, length);
+	}
+	/**
+	 * Decompresses bytes compressed by {@link Replay#deflate(byte[])}.
+	 * @param data the compressed bytes.
+	 * @param length the length of the decompressed bytes, which is checked against {@link ReplayArchive#MAX_REPLAY_SIZE} before anything is allocated.
+	 * @return the decompressed bytes.
+	 * @throws IOException if the bytes are damaged.
+	 */
+	private static byte[] inflate(byte[] data, int length) throws IOException
+	{
+		if(length>ReplayArchive.MAX_REPLAY_SIZE)
+			throw new IOException("Damaged replay");
+		Inflater inflater=new Inflater();
+		try
+		{
+			inflater.setInput(data);
+			byte[] out=new byte[length];
+			int n=inflater.inflate(out);
+			if(n!=length||!inflater.finished())
+				throw new IOException("Damaged replay");
+			return out;
+		}
+		catch(DataFormatException e)
+		{
+			throw new IOException("Damaged replay", e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+	/**
+	 * Returns a one line summary of this replay.
+	 */
+	public String toString()
+	{
+		String[] randomizers= {"uniform","bag","history"};
+		return String.format("%dx%d %s seed %d, %d ticks (%.1f s), %d calls, score %d, %d rows, %d Shapes%s",columns,rows,
+				randomizers[Math.min(randomizerType,randomizers.length-1)],seed,ticks,ticks/TICKS_PER_SECOND,eventCount,score,rowsEliminated,getShapeCount(),
+				gameOver?", game over":"");
+	}
+	/**
+	 * Prints the summary of every replay file named on the command line, plays it back at full speed and prints whether it ended the way it was
+	 * recorded and how long playing it back took.
+	 * @param args the replay files.
+	 */
+	public static void main(String[] args)
+	{
+		for(String name:args)
+		{
+			try
+			{
+				Replay replay=read(Paths.get(name));
+				System.out.println(name+": "+replay);
+				long start=System.nanoTime();
+				boolean verified=replay.verify();
+				System.out.println(String.format("  played back in %.3f ms, %s",(System.nanoTime()-start)/1e6,verified?"verified":"DOES NOT MATCH the summary"));
+			}
+			catch(IOException e)
+			{
+				System.out.println(name+": "+e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Reads the fields of an encoded replay, throwing {@link IOException} instead of running past its end.
+	 */
+	private static class Reader
+	{
+		/**
+		 * The encoded replay.
+		 */
+		private final byte[] data;
+		/**
+		 * The index of the next byte to read.
+		 */
+		private int pos=0;
+
+		/**
+		 * Creates a reader at the start of an encoded replay.
+		 * @param data the encoded replay.
+		 */
+		Reader(byte[] data)
+		{
+			this.data=data;
+		}
+		/**
+		 * Reads one byte.
+		 * @return the byte.
+		 * @throws IOException if the data ended.
+		 */
+		byte readByte() throws IOException
+		{
+			if(pos>=data.length)
+				throw new IOException("Truncated replay");
+			return data[pos++];
+		}
+		/**
+		 * Reads an unsigned varint.
+		 * @return the value.
+		 * @throws IOException if the data ended or the varint is too long.
+		 */
+		long readVarint() throws IOException
+		{
+			long value=0;
+			for(int shift=0;shift<64;shift+=7)
+			{
+				byte b=readByte();
+				value|=(long)(b&0x7F)<<shift;
+				if(b>=0)
+					return value;
+			}
+			throw new IOException("Damaged replay");
+		}
+		/**
+		 * Reads an unsigned varint that must fit into a non negative int.
+		 * @return the value.
+		 * @throws IOException if the data ended or the value does not fit.
+		 */
+		int readInt() throws IOException
+		{
+			long value=readVarint();
+			if(value<0||value>Integer.MAX_VALUE)
+				throw new IOException("Damaged replay");
+			return (int)value;
+		}
+		/**
+		 * Reads a run of bytes.
+		 * @param length the number of bytes.
+		 * @return the bytes.
+		 * @throws IOException if the data ended.
+		 */
+		byte[] readBytes(int length) throws IOException
+		{
+			if(length>data.length-pos)
+				throw new IOException("Truncated replay");
+			byte[] b=Arrays.copyOfRange(data, pos, pos+length);
+			pos+=length;
+			return b;
+		}
+	}
+}
@@ -0,0 +1,699 @@
+package kopper.tetris.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import kopper.tetris.shape.ShapeKind;
+
+/**
+ * <p>An append-only file holding any number of {@link Replay}s, with an index file giving the position of every replay, so any replay can be found
+ * with a single lookup. Both files are read through memory mapped {@link FileChannel} buffers, so reading a replay copies nothing until it is decoded,
+ * and scanning the whole archive runs at the speed the operating system pages the file in.
+ * </p>
+ * <p>
+ * The archive file starts with the 4 bytes {@code KTRA}, a version int and 8 reserved bytes, followed by the records. Each record is a fixed
+ * {@link ReplayArchive#RECORD_HEADER} byte header followed by the replay encoded by {@link Replay#toBytes(boolean)}. The header repeats the
+ * replay's summary in fixed positions as big endian ints and longs: the length and CRC-32 of the replay, the ticks, the seed, the score, the rows
+ * eliminated, the fast forwards, the flags (bit 0: game over), the Shapes of each {@link ShapeKind} and the number of calls. Bulk analysis reads
+ * these fields straight out of the mapped file through an {@link Entry}, without decoding a single replay.
+ * </p>
+ * <p>
+ * The index file, the archive's name with {@code .idx} appended, starts with {@code KTRI}, a version int and 8 reserved bytes, followed by the
+ * position of every record as a big endian long. A record is written before its index entry, so when a writer dies half way through an append, the
+ * archive opened for writing again recovers: records that are complete and pass their CRC are indexed, and the rest is cut off.
+ * </p>
+ * <p>
+ * An archive is used by a single thread. Several threads can scan one archive file at the same time through archives of their own, opened with
+ * {@link ReplayArchive#openReadOnly(Path)}, each scanning a range with {@link ReplayArchive#scan(long, long, Consumer)}.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class ReplayArchive implements Closeable
+{
+	/**
+	 * The size of the fixed header of each record.
+	 */
+	public static final int RECORD_HEADER=72;
+	/**
+	 * The maximum size of an encoded replay, 16 megabytes.
+	 */
+	public static final int MAX_REPLAY_SIZE=1<<24;
+	/**
+	 * The first 4 bytes of an archive file, {@code KTRA}.
+	 */
+	private static final int MAGIC=0x4B545241;
+	/**
+	 * The first 4 bytes of an index file, {@code KTRI}.
+	 */
+	private static final int INDEX_MAGIC=0x4B545249;
+	/**
+	 * The version of the format written.
+	 */
+	private static final int VERSION=1;
+	/**
+	 * The size of the file header of the archive and index files.
+	 */
+	private static final int FILE_HEADER=16;
+	/**
+	 * The distance between the starts of two mapped regions of a file. A region maps {@link ReplayArchive#MAX_REPLAY_SIZE} and a record header more
+	 * than that, so every record lies completely within the region it starts in, however large the file grows.
+	 */
+	private static final long SEGMENT_SIZE=1L<<30;
+	/**
+	 * The positions of the fields of a record header.
+	 */
+	private static final int LENGTH=0, CRC=4, TICKS=8, SEED=16, SCORE=24, ROWS=28, ARROW_DOWNS=32, FLAGS=36, SHAPES=40, EVENTS=40+4*ShapeKind.COUNT;
+	/**
+	 * The flag of a record telling that the game was over.
+	 */
+	private static final int FLAG_GAME_OVER=1;
+
+	/**
+	 * The archive file.
+	 */
+	private final Path file;
+	/**
+	 * The records.
+	 */
+	private final Mapping data;
+	/**
+	 * The index.
+	 */
+	private final Mapping index;
+	/**
+	 * False if the archive was opened read only.
+	 */
+	private final boolean writable;
+	/**
+	 * The number of replays.
+	 */
+	private long count;
+	/**
+	 * The position after the last record.
+	 */
+	private long end;
+
+	/**
+	 * Opens an archive, checking its files and, if it is writable, recovering from an interrupted append.
+	 * @param file the archive file.
+	 * @param writable true to open the archive for appending, creating it if it does not exist.
+	 * @throws IOException if the files can not be opened or are not a replay archive.
+	 */
+	private ReplayArchive(Path file, boolean writable) throws IOException
+	{
+		this.file=file;
+		this.writable=writable;
+		Path indexFile=file.resolveSibling(file.getFileName()+".idx");
+		FileChannel dataChannel=null;
+		FileChannel indexChannel=null;
+		try
+		{
+			if(writable)
+			{
+				dataChannel=FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+				indexChannel=FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+				writeHeaderIfEmpty(dataChannel, MAGIC);
+				writeHeaderIfEmpty(indexChannel, INDEX_MAGIC);
+			}
+			else
+			{
+				dataChannel=FileChannel.open(file, StandardOpenOption.READ);
+				indexChannel=FileChannel.open(indexFile, StandardOpenOption.READ);
+			}
+			checkHeader(dataChannel, MAGIC);
+			checkHeader(indexChannel, INDEX_MAGIC);
+		}
+		catch(IOException e)
+		{
+			if(dataChannel!=null)
+				dataChannel.close();
+			if(indexChannel!=null)
+				indexChannel.close();
+			throw e;
+		}
+		this.data=new Mapping(dataChannel);
+		this.index=new Mapping(indexChannel);
+		try
+		{
+			open();
+		}
+		catch(IOException e)
+		{
+			close();
+			throw e;
+		}
+	}
+	/**
+	 * Opens an archive for reading and appending, creating it if it does not exist.
+	 * @param file the archive file. The index is kept in the same directory, with {@code .idx} appended to the name.
+	 * @return the archive.
+	 * @throws IOException if the files can not be opened or are not a replay archive.
+	 */
+	public static ReplayArchive open(Path file) throws IOException
+	{
+		return new ReplayArchive(file,true);
+	}
+	/**
+	 * Opens an existing archive for reading only. Replays whose append was interrupted are not seen until the archive is opened for writing.
+	 * @param file the archive file.
+	 * @return the archive.
+	 * @throws IOException if the files do not exist, can not be opened or are not a replay archive.
+	 */
+	public static ReplayArchive openReadOnly(Path file) throws IOException
+	{
+		return new ReplayArchive(file,false);
+	}
+	/**
+	 * Finds the indexed records that are really in the archive file and, if the archive is writable, indexes the complete records after them and cuts
+	 * off everything else. This reads the files without mapping them, since a mapped file can not be truncated on every platform.
+	 * @throws IOException if the files can not be read or written.
+	 */
+	private void open() throws IOException
+	{
+		long dataSize=data.channel.size();
+		count=(index.channel.size()-FILE_HEADER)/Long.BYTES;
+		end=FILE_HEADER;
+		while(count>0)
+		{
+			long pos=read(index.channel, FILE_HEADER+(count-1)*Long.BYTES, Long.BYTES).getLong(0);
+			if(pos>=FILE_HEADER&&pos+RECORD_HEADER<=dataSize)
+			{
+				int length=read(data.channel, pos, RECORD_HEADER).getInt(LENGTH);
+				if(length>=0&&pos+RECORD_HEADER+length<=dataSize)
+				{
+					end=pos+RECORD_HEADER+length;
+					break;
+				}
+			}
+			count--;
+		}
+		if(!writable)
+			return;
+		while(end+RECORD_HEADER<=dataSize)
+		{
+			ByteBuffer header=read(data.channel, end, RECORD_HEADER);
+			int length=header.getInt(LENGTH);
+			if(length<0||length>MAX_REPLAY_SIZE||end+RECORD_HEADER+length>dataSize)
+				break;
+			if(header.getInt(CRC)!=crc(read(data.channel, end+RECORD_HEADER, length), 0, length))
+				break;
+			writeFully(index.channel, ByteBuffer.allocate(Long.BYTES).putLong(0, end), FILE_HEADER+count*Long.BYTES);
+			count++;
+			end+=RECORD_HEADER+length;
+		}
+		if(dataSize!=end)
+			data.channel.truncate(end);
+		if(index.channel.size()!=FILE_HEADER+count*Long.BYTES)
+			index.channel.truncate(FILE_HEADER+count*Long.BYTES);
+	}
+	/**
+	 * Returns the archive file.
+	 * @return the file.
+	 */
+	public Path getFile()
+	{
+		return file;
+	}
+	/**
+	 * Returns the number of replays in the archive.
+	 * @return the number of replays.
+	 */
+	public long size()
+	{
+		return count;
+	}
+	/**
+	 * Appends a replay, compressed, to the archive.
+	 * @param replay the replay.
+	 * @return the index of the replay in the archive.
+	 * @throws IOException if the files can not be written.
+	 * @throws IllegalStateException if the archive was opened read only.
+	 * @throws IllegalArgumentException if the encoded replay is larger than {@link ReplayArchive#MAX_REPLAY_SIZE}.
+	 */
+	public long append(Replay replay) throws IOException
+	{
+		if(!writable)
+			throw new IllegalStateException("The archive was opened read only");
+		byte[] bytes=replay.toBytes(true);
+		if(bytes.length>MAX_REPLAY_SIZE)
+			throw new IllegalArgumentException("The replay is too large, "+bytes.length+" bytes");
+		ByteBuffer record=ByteBuffer.allocate(RECORD_HEADER+bytes.length);
+		record.putInt(LENGTH, bytes.length);
+		CRC32 crc=new CRC32();
+		crc.update(bytes);
+		record.putInt(CRC, (int)crc.getValue());
+		record.putLong(TICKS, replay.getTicks());
+		record.putLong(SEED, replay.getSeed());
+		record.putInt(SCORE, replay.getScore());
+		record.putInt(ROWS, replay.getRowsEliminated());
+		record.putInt(ARROW_DOWNS, replay.getArrowDowns());
+		record.putInt(FLAGS, replay.isGameOver()?FLAG_GAME_OVER:0);
+		for(ShapeKind kind:ShapeKind.values())
+			record.putInt(SHAPES+4*kind.ordinal(), replay.getShapeCount(kind));
+		record.putInt(EVENTS, replay.getEventCount());
+		record.position(RECORD_HEADER);
+		record.put(bytes);
+		record.flip();
+		writeFully(data.channel, record, end);
+		writeFully(index.channel, ByteBuffer.allocate(Long.BYTES).putLong(0, end), FILE_HEADER+count*Long.BYTES);
+		end+=RECORD_HEADER+bytes.length;
+		return count++;
+	}
+	/**
+	 * Forces the appended replays to be written to the storage device.
+	 * @throws IOException if the files can not be written.
+	 */
+	public void flush() throws IOException
+	{
+		data.channel.force(false);
+		index.channel.force(false);
+	}
+	/**
+	 * Returns a view of a replay in the archive, reading its summary straight from the mapped file.
+	 * @param i the index of the replay.
+	 * @return the view, which stays valid until the archive is closed.
+	 * @throws IOException if the file can not be mapped.
+	 * @throws IndexOutOfBoundsException if there is no replay of that index.
+	 */
+	public Entry getEntry(long i) throws IOException
+	{
+		if(i<0||i>=count)
+			throw new IndexOutOfBoundsException("No replay "+i+" in an archive of "+count);
+		Entry entry=new Entry();
+		setEntry(entry, i, getPosition(i));
+		return entry;
+	}
+	/**
+	 * Reads and decodes a replay.
+	 * @param i the index of the replay.
+	 * @return the replay.
+	 * @throws IOException if the file can not be read or the replay is damaged.
+	 * @throws IndexOutOfBoundsException if there is no replay of that index.
+	 */
+	public Replay get(long i) throws IOException
+	{
+		return getEntry(i).toReplay();
+	}
+	/**
+	 * Visits every replay of the archive in order, see {@link ReplayArchive#scan(long, long, Consumer)}.
+	 * @param visitor called with each replay.
+	 * @throws IOException if the file can not be mapped.
+	 */
+	public void scan(Consumer<Entry> visitor) throws IOException
+	{
+		scan(0,count,visitor);
+	}
+	/**
+	 * Visits a range of replays of the archive in order. The visitor is passed the same {@link Entry} every time, moved from one record to the next,
+	 * so scanning allocates nothing per replay and copies no bytes: the visitor reads the summary fields it needs straight out of the mapped file. An
+	 * entry the visitor wants to keep must be fetched again with {@link ReplayArchive#getEntry(long)}.
+	 * @param from the index of the first replay visited.
+	 * @param to the index after the last replay visited.
+	 * @param visitor called with each replay.
+	 * @throws IOException if the file can not be mapped.
+	 * @throws IndexOutOfBoundsException if the range is not within the archive.
+	 */
+	public void scan(long from, long to, Consumer<Entry> visitor) throws IOException
+	{
+		if(from<0||to>count||from>to)
+			throw new IndexOutOfBoundsException("No replays "+from+" to "+to+" in an archive of "+count);
+		if(from==to)
+			return;
+		Entry entry=new Entry();
+		long pos=getPosition(from);
+		for(long i=from;i<to;i++)
+		{
+			setEntry(entry, i, pos);
+			visitor.accept(entry);
+			pos+=RECORD_HEADER+entry.getReplayLength();
+		}
+	}
+	/**
+	 * Closes the archive files. The entries of the archive must not be used anymore.
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			data.channel.close();
+		}
+		finally
+		{
+			index.channel.close();
+		}
+	}
+	/**
+	 * Returns the position of a record from the index.
+	 * @param i the index of the record.
+	 * @return the position of the record in the archive file.
+	 * @throws IOException if the index can not be mapped.
+	 */
+	private long getPosition(long i) throws IOException
+	{
+		long pos=FILE_HEADER+i*Long.BYTES;
+		return index.map(pos, Long.BYTES).getLong(index.offset(pos));
+	}
+	/**
+	 * Points an entry at a record.
+	 * @param entry the entry.
+	 * @param i the index of the record.
+	 * @param pos the position of the record.
+	 * @throws IOException if the file can not be mapped.
+	 */
+	private void setEntry(Entry entry, long i, long pos) throws IOException
+	{
+		ByteBuffer b=data.map(pos, RECORD_HEADER);
+		int length=b.getInt(data.offset(pos)+LENGTH);
+		entry.index=i;
+		entry.buffer=data.map(pos, RECORD_HEADER+length);
+		entry.base=data.offset(pos);
+	}
+	/**
+	 * Writes the file header to an empty file.
+	 * @param channel the file.
+	 * @param magic the first 4 bytes of the file.
+	 * @throws IOException if the file can not be written.
+	 */
+	private static void writeHeaderIfEmpty(FileChannel channel, int magic) throws IOException
+	{
+		if(channel.size()==0)
+			writeFully(channel, ByteBuffer.allocate(FILE_HEADER).putInt(0, magic).putInt(4, VERSION), 0);
+	}
+	/**
+	 * Checks the file header of a file.
+	 * @param channel the file.
+	 * @param magic the first 4 bytes the file must start with.
+	 * @throws IOException if the file can not be read or is not a replay archive of a version this class reads.
+	 */
+	private static void checkHeader(FileChannel channel, int magic) throws IOException
+	{
+		if(channel.size()<FILE_HEADER)
+			throw new IOException("Not a replay archive");
+		ByteBuffer header=read(channel, 0, FILE_HEADER);
+		if(header.getInt(0)!=magic)
+			throw new IOException("Not a replay archive");
+		if(header.getInt(4)!=VERSION)
+			throw new IOException("Unsupported replay archive version "+header.getInt(4));
+	}
+	/**
+	 * Reads a run of bytes of a file into a new buffer.
+	 * @param channel the file.
+	 * @param pos the position of the first byte.
+	 * @param length the number of bytes.
+	 * @return the buffer, holding the bytes from index 0.
+	 * @throws IOException if the file can not be read or ends before the last byte.
+	 */
+	private static ByteBuffer read(FileChannel channel, long pos, int length) throws IOException
+	{
+		ByteBuffer buffer=ByteBuffer.allocate(length);
+		while(buffer.hasRemaining())
+		{
+			if(channel.read(buffer, pos+buffer.position())<0)
+				throw new IOException("Replay archive truncated at "+pos);
+		}
+		return buffer;
+	}
+	/**
+	 * Writes all the remaining bytes of a buffer to a file.
+	 * @param channel the file.
+	 * @param buffer the bytes.
+	 * @param pos the position in the file to write at.
+	 * @throws IOException if the file can not be written.
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long pos) throws IOException
+	{
+		while(buffer.hasRemaining())
+			pos+=channel.write(buffer, pos);
+	}
+	/**
+	 * Computes the CRC-32 of a run of bytes of a buffer.
+	 * @param buffer the buffer.
+	 * @param offset the index of the first byte.
+	 * @param length the number of bytes.
+	 * @return the CRC-32, as stored in a record header.
+	 */
+	private static int crc(ByteBuffer buffer, int offset, int length)
+	{
+		ByteBuffer b=buffer.duplicate();
+		b.limit(offset+length).position(offset);
+		CRC32 crc=new CRC32();
+		crc.update(b);
+		return (int)crc.getValue();
+	}
+
+	/**
+	 * Prints statistics of every replay of an archive, read from the record headers only, or adds replay files to an archive. Arguments:
+	 * {@code stats <archive>} or {@code add <archive> <replay files>}.
+	 * @param args the command line arguments.
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length<2)
+		{
+			System.out.println("Arguments: stats <archive> | add <archive> <replay files>");
+			return;
+		}
+		try
+		{
+			if(args[0].equals("add"))
+			{
+				try(ReplayArchive archive=open(Paths.get(args[1])))
+				{
+					for(int i=2;i<args.length;i++)
+						archive.append(Replay.read(Paths.get(args[i])));
+					archive.flush();
+					System.out.println(archive.size()+" replays in "+archive.getFile());
+				}
+				return;
+			}
+			try(ReplayArchive archive=openReadOnly(Paths.get(args[1])))
+			{
+				long[] shapes=new long[ShapeKind.COUNT];
+				long[] totals=new long[5];//games, games over, score, rows, best score
+				long start=System.nanoTime();
+				archive.scan(e->
+				{
+					totals[0]++;
+					if(e.isGameOver())
+						totals[1]++;
+					totals[2]+=e.getScore();
+					totals[3]+=e.getRowsEliminated();
+					totals[4]=Math.max(totals[4], e.getScore());
+					for(ShapeKind kind:ShapeKind.values())
+						shapes[kind.ordinal()]+=e.getShapeCount(kind);
+				});
+				double seconds=(System.nanoTime()-start)/1e9;
+				long games=Math.max(1, totals[0]);
+				System.out.println(String.format("%d replays, %d games over, mean score %.1f, best score %d, mean rows %.1f",totals[0],totals[1],
+						(double)totals[2]/games,totals[4],(double)totals[3]/games));
+				long shapeTotal=Math.max(1, Arrays.stream(shapes).sum());
+				for(ShapeKind kind:ShapeKind.values())
+					System.out.println(String.format("  %s: %d (%.2f%%)",kind,shapes[kind.ordinal()],100.0*shapes[kind.ordinal()]/shapeTotal));
+				System.out.println(String.format("scanned in %.3f s, %.0f MB/s",seconds,archive.end/1e6/Math.max(seconds, 1e-9)));
+			}
+		}
+		catch(IOException e)
+		{
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * A view of one replay of an archive. Its getters read the record header straight out of the mapped archive file, and only
+	 * {@link Entry#toReplay()} copies and decodes the replay itself.
+	 */
+	public static final class Entry
+	{
+		/**
+		 * The index of the replay in the archive.
+		 */
+		private long index;
+		/**
+		 * The mapped region holding the record.
+		 */
+		private ByteBuffer buffer;
+		/**
+		 * The index of the record in {@link Entry#buffer}.
+		 */
+		private int base;
+
+		/**
+		 * Creates an entry pointing nowhere, see {@link ReplayArchive#setEntry(Entry, long, long)}.
+		 */
+		private Entry()
+		{
+		}
+		/**
+		 * Returns the index of the replay in the archive.
+		 * @return the index.
+		 */
+		public long getIndex()
+		{
+			return index;
+		}
+		/**
+		 * Returns the number of ticks of the replay.
+		 * @return the number of ticks.
+		 */
+		public long getTicks()
+		{
+			return buffer.getLong(base+TICKS);
+		}
+		/**
+		 * Returns the seed of the replay's randomizer.
+		 * @return the seed.
+		 */
+		public long getSeed()
+		{
+			return buffer.getLong(base+SEED);
+		}
+		/**
+		 * Returns the score at the end of the replay.
+		 * @return the score.
+		 */
+		public int getScore()
+		{
+			return buffer.getInt(base+SCORE);
+		}
+		/**
+		 * Returns the rows eliminated at the end of the replay.
+		 * @return the number of rows.
+		 */
+		public int getRowsEliminated()
+		{
+			return buffer.getInt(base+ROWS);
+		}
+		/**
+		 * Returns the times the player fast forwarded at the end of the replay.
+		 * @return the number of fast forwards.
+		 */
+		public int getArrowDowns()
+		{
+			return buffer.getInt(base+ARROW_DOWNS);
+		}
+		/**
+		 * Tells if the game was over at the end of the replay.
+		 * @return true if the game was over.
+		 */
+		public boolean isGameOver()
+		{
+			return (buffer.getInt(base+FLAGS)&FLAG_GAME_OVER)!=0;
+		}
+		/**
+		 * Returns the number of Shapes of a kind locked at the end of the replay.
+		 * @param kind the kind.
+		 * @return the number of Shapes.
+		 */
+		public int getShapeCount(ShapeKind kind)
+		{
+			return buffer.getInt(base+SHAPES+4*kind.ordinal());
+		}
+		/**
+		 * Returns the number of calls recorded in the replay.
+		 * @return the number of calls.
+		 */
+		public int getEventCount()
+		{
+			return buffer.getInt(base+EVENTS);
+		}
+		/**
+		 * Returns the length of the encoded replay.
+		 * @return the length in bytes.
+		 */
+		public int getReplayLength()
+		{
+			return buffer.getInt(base+LENGTH);
+		}
+		/**
+		 * Returns the encoded replay without copying it.
+		 * @return a read only buffer holding exactly the bytes written by {@link Replay#toBytes(boolean)}.
+		 */
+		public ByteBuffer getReplayBytes()
+		{
+			ByteBuffer b=buffer.asReadOnlyBuffer();
+			b.limit(base+RECORD_HEADER+getReplayLength()).position(base+RECORD_HEADER);
+			return b.slice();
+		}
+		/**
+		 * Copies and decodes the replay.
+		 * @return the replay.
+		 * @throws IOException if the replay is damaged.
+		 */
+		public Replay toReplay() throws IOException
+		{
+			int length=getReplayLength();
+			if(crc(buffer, base+RECORD_HEADER, length)!=buffer.getInt(base+CRC))
+				throw new IOException("Damaged replay "+index);
+			byte[] bytes=new byte[length];
+			getReplayBytes().get(bytes);
+			return Replay.fromBytes(bytes);
+		}
+	}
+
+	/**
+	 * The read only memory mapped regions of a file. A file larger than 2 gigabytes, the most a single buffer can map, is mapped in regions starting
+	 * every {@link ReplayArchive#SEGMENT_SIZE} bytes and overlapping by the size of the largest record.
+	 */
+	private static class Mapping
+	{
+		/**
+		 * The file.
+		 */
+		private final FileChannel channel;
+		/**
+		 * The mapped regions, null where a region was not mapped yet.
+		 */
+		private MappedByteBuffer[] regions=new MappedByteBuffer[1];
+
+		/**
+		 * Creates the mapping of a file, which maps nothing yet.
+		 * @param channel the file.
+		 */
+		Mapping(FileChannel channel)
+		{
+			this.channel=channel;
+		}
+		/**
+		 * Returns the region holding a run of bytes of the file, mapping it first if needed, or again if the file grew since the region was mapped.
+		 * @param pos the position of the first byte in the file.
+		 * @param length the number of bytes, at most {@link ReplayArchive#RECORD_HEADER}{@code +}{@link ReplayArchive#MAX_REPLAY_SIZE}.
+		 * @return the region. The first byte is at {@link Mapping#offset(long)} within it.
+		 * @throws IOException if the bytes are beyond the end of the file or can not be mapped.
+		 */
+		ByteBuffer map(long pos, int length) throws IOException
+		{
+			int r=(int)(pos/SEGMENT_SIZE);
+			long start=r*SEGMENT_SIZE;
+			if(r>=regions.length)
+				regions=Arrays.copyOf(regions, Math.max(r+1, regions.length*2));
+			MappedByteBuffer region=regions[r];
+			if(region==null||pos+length-start>region.capacity())
+			{
+				long size=Math.min(channel.size()-start, SEGMENT_SIZE+RECORD_HEADER+MAX_REPLAY_SIZE);
+				if(pos+length-start>size)
+					throw new IOException("Replay archive truncated at "+pos);
+				region=channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+				regions[r]=region;
+			}
+			return region;
+		}
+		/**
+		 * Returns where a position of the file lies within the region {@link Mapping#map(long, int)} returns for it.
+		 * @param pos the position in the file.
+		 * @return the index in the region.
+		 */
+		int offset(long pos)
+		{
+			return (int)(pos%SEGMENT_SIZE);
+		}
+	}
+}
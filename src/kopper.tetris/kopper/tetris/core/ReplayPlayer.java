@@ -0,0 +1,141 @@
+package kopper.tetris.core;
+
+/**
+ * Plays a {@link Replay} back on a new {@link TetrisEngine}, tick by tick. Each call of {@link ReplayPlayer#advance()} first makes the recorded calls
+ * due before the next tick, then ticks the engine, so a viewer can show the game at its original speed by calling it from a 25 per second timer, and
+ * verification can call {@link ReplayPlayer#playToEnd()} to play the whole game as fast as the engine runs.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class ReplayPlayer
+{
+	/**
+	 * The replay played back.
+	 */
+	private final Replay replay;
+	/**
+	 * The engine the replay is played back on.
+	 */
+	private final TetrisEngine engine;
+	/**
+	 * The encoded calls of the replay.
+	 */
+	private final byte[] events;
+	/**
+	 * The index of the next call in {@link ReplayPlayer#events}.
+	 */
+	private int pos=0;
+	/**
+	 * The tick of the next call, -1 if there are no more calls.
+	 */
+	private long nextEventTick;
+	/**
+	 * The code of the next call.
+	 */
+	private int nextEventCode;
+	/**
+	 * The number of ticks played back.
+	 */
+	private long ticks=0;
+
+	/**
+	 * Creates a player at the start of a replay. Use {@link Replay#createPlayer()} instead.
+	 * @param replay the replay.
+	 */
+	ReplayPlayer(Replay replay)
+	{
+		this.replay=replay;
+		this.engine=replay.createEngine();
+		this.events=replay.getEvents();
+		readNextEvent(0);
+	}
+	/**
+	 * Returns the engine the replay is played back on.
+	 * @return the engine.
+	 */
+	public TetrisEngine getEngine()
+	{
+		return engine;
+	}
+	/**
+	 * Returns the number of ticks played back so far.
+	 * @return the number of ticks.
+	 */
+	public long getTicks()
+	{
+		return ticks;
+	}
+	/**
+	 * Tells if the whole replay was played back.
+	 * @return true if every recorded tick and call was played back.
+	 */
+	public boolean isFinished()
+	{
+		return nextEventTick<0&&ticks>=replay.getTicks();
+	}
+	/**
+	 * Makes the recorded calls due before the next tick, then ticks the engine, unless the recording ended there.
+	 * @return the combination of {@code RESULT_...} flags of {@link TetrisEngine} describing what happened.
+	 */
+	public int advance()
+	{
+		int result=0;
+		while(nextEventTick==ticks)
+		{
+			result|=apply(nextEventCode);
+			readNextEvent(ticks);
+		}
+		if(ticks<replay.getTicks())
+		{
+			result|=engine.tick();
+			ticks++;
+		}
+		return result;
+	}
+	/**
+	 * Plays the rest of the replay back as fast as possible.
+	 */
+	public void playToEnd()
+	{
+		while(!isFinished())
+			advance();
+	}
+	/**
+	 * Makes one recorded call.
+	 * @param code the code of the call.
+	 * @return the result of the call.
+	 */
+	private int apply(int code)
+	{
+		switch(code)
+		{
+			case Replay.CODE_START:			return engine.start();
+			case Replay.CODE_PAUSE:			return engine.pause();
+			case Replay.CODE_TOGGLE_PAUSE:	return engine.togglePause();
+			case Replay.CODE_STEP:			return engine.step();
+			default:						return engine.input(code);
+		}
+	}
+	/**
+	 * Decodes the next call.
+	 * @param lastTick the tick of the previous call.
+	 */
+	private void readNextEvent(long lastTick)
+	{
+		if(pos>=events.length)
+		{
+			nextEventTick=-1;
+			return;
+		}
+		long value=0;
+		for(int shift=0;pos<events.length;shift+=7)
+		{
+			byte b=events[pos++];
+			value|=(long)(b&0x7F)<<shift;
+			if(b>=0)
+				break;
+		}
+		nextEventCode=(int)(value&((1<<Replay.CODE_BITS)-1));
+		nextEventTick=lastTick+(value>>>Replay.CODE_BITS);
+	}
+}
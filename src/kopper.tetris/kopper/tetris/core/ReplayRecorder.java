@@ -0,0 +1,130 @@
+package kopper.tetris.core;
+
+import java.util.Arrays;
+import kopper.tetris.shape.ShapeKind;
+
+/**
+ * <p>Records a game into a {@link Replay} while it is played. A recorder is created by {@link TetrisEngine#startRecording()}, after which the engine
+ * reports every tick and every call that changed the game to it, and {@link ReplayRecorder#finish()} returns the replay of the game so far.
+ * </p>
+ * <p>
+ * Each recorded call is appended as a single varint holding the number of ticks since the previous call and the code of the call, see
+ * {@link Replay}, so a call costs one or two bytes and the ticks in between cost nothing. The recorder is used by the thread running the engine
+ * only and is not thread safe.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class ReplayRecorder
+{
+	/**
+	 * The recorded engine.
+	 */
+	private final TetrisEngine engine;
+	/**
+	 * The seed of the engine's randomizer.
+	 */
+	private final long seed;
+	/**
+	 * The type of the engine's randomizer, one of the {@code RANDOMIZER_...} constants of {@link Replay}.
+	 */
+	private final int randomizerType;
+	/**
+	 * The ticks between gravity steps when the recording started.
+	 */
+	private final int ticksBetweenGravity;
+	/**
+	 * The encoded calls.
+	 */
+	private byte[] events=new byte[256];
+	/**
+	 * The number of bytes of {@link ReplayRecorder#events} used.
+	 */
+	private int length=0;
+	/**
+	 * The number of calls recorded.
+	 */
+	private int eventCount=0;
+	/**
+	 * The number of ticks recorded.
+	 */
+	private long ticks=0;
+	/**
+	 * The tick of the most recently recorded call.
+	 */
+	private long lastEventTick=0;
+
+	/**
+	 * Creates a recorder for an engine that was not started yet. Use {@link TetrisEngine#startRecording()} instead.
+	 * @param engine the engine.
+	 * @throws IllegalArgumentException if the randomizer of the engine can not be recreated from a replay.
+	 */
+	ReplayRecorder(TetrisEngine engine)
+	{
+		this.engine=engine;
+		this.randomizerType=Replay.getRandomizerType(engine.getRandomizer());
+		this.seed=engine.getRandomizer().getSeed();
+		this.ticksBetweenGravity=engine.getTicksBetweenGravity();
+	}
+	/**
+	 * Records one tick of the engine's clock.
+	 */
+	void tick()
+	{
+		ticks++;
+	}
+	/**
+	 * Records a call that changed the game.
+	 * @param code the code of the call, one of the {@code INPUT_...} constants of {@link TetrisEngine} or a {@code CODE_...} constant of {@link Replay}.
+	 */
+	void record(int code)
+	{
+		long value=((ticks-lastEventTick)<<Replay.CODE_BITS)|code;
+		lastEventTick=ticks;
+		eventCount++;
+		if(length+Replay.MAX_VARINT_BYTES>events.length)
+			events=Arrays.copyOf(events, events.length*2);
+		length=Replay.writeVarint(events, length, value);
+	}
+	/**
+	 * Returns the number of ticks recorded so far.
+	 * @return the number of ticks.
+	 */
+	public long getTicks()
+	{
+		return ticks;
+	}
+	/**
+	 * Returns the number of calls recorded so far.
+	 * @return the number of calls.
+	 */
+	public int getEventCount()
+	{
+		return eventCount;
+	}
+	/**
+	 * Returns the replay of the game recorded so far, with the engine's current score as its summary. Recording goes on, so this method can be called
+	 * again later, for example once the game is over.
+	 * @return the replay.
+	 */
+	public Replay finish()
+	{
+		BackgroundGrid grid=engine.getGrid();
+		TetrisScore score=engine.getScore();
+		return new Replay(grid.getColumnCount(),grid.getRowCount(),ticksBetweenGravity,randomizerType,
+				Replay.getRandomizerParameters(engine.getRandomizer()),seed,ticks,Arrays.copyOf(events, length),eventCount,score.getScore(),
+				score.getRows(),getShapeCounts(score),score.getArrowDowns(),engine.getState().isGameOver());
+	}
+	/**
+	 * Returns the number of Shapes of each kind locked.
+	 * @param score the score of the engine.
+	 * @return the counts, indexed by {@link ShapeKind#ordinal()}.
+	 */
+	private static int[] getShapeCounts(TetrisScore score)
+	{
+		int[] counts=new int[ShapeKind.COUNT];
+		for(ShapeKind kind:ShapeKind.values())
+			counts[kind.ordinal()]=score.getShapeCount(kind);
+		return counts;
+	}
+}
@@ -0,0 +1,49 @@
+package kopper.tetris.core;
+
+import kopper.tetris.shape.ShapeKind;
+
+/**
+ * <p>A source of the sequence of Tetromino types a game spawns. Every {@link TetrisEngine} owns its own randomizer, so games never share or contend on 
+ * one random number generator, and every randomizer is created from a seed, so the same seed always produces the exact same sequence. That is what makes
+ * replays and fair multiplayer games (every player receives the same pieces) possible.
+ * </p>
+ * <p>
+ * Tetromino types are returned as indices from 0 to {@link ShapeRandomizer#SHAPE_TYPES}{@code -1} in the order used by {@link BackgroundGrid#createShape(int, int, int)}:
+ * I, J, L, O, S, T, Z, the indices of {@link ShapeKind}.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public interface ShapeRandomizer
+{
+	/**
+	 * The number of different Tetromino types a randomizer chooses from.
+	 */
+	int SHAPE_TYPES=ShapeKind.COUNT;
+	/**
+	 * Returns the seed this randomizer was created with.
+	 * @return the seed.
+	 */
+	long getSeed();
+	/**
+	 * Restarts the sequence from the beginning, as if this randomizer had just been created with its seed.
+	 */
+	void reset();
+	/**
+	 * Returns the next Tetromino type of the sequence.
+	 * @return the type index, 0 to {@link ShapeRandomizer#SHAPE_TYPES}{@code -1}.
+	 */
+	int nextShapeIndex();
+	/**
+	 * Writes the next {@code length} Tetromino types of the sequence into the supplied buffer. This is the same as calling 
+	 * {@link ShapeRandomizer#nextShapeIndex()} {@code length} times, without any per piece allocation or call overhead for the caller.
+	 * @param buffer the buffer to write the type indices into.
+	 * @param offset the index of the first element to write.
+	 * @param length the number of types to write.
+	 */
+	default void fill(byte[] buffer,int offset,int length)
+	{
+		for(int i=offset;i<offset+length;i++)
+			buffer[i]=(byte)nextShapeIndex();
+	}
+}
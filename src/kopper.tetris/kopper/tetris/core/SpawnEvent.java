@@ -0,0 +1,33 @@
+package kopper.tetris.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder event of a new current Shape spawned by a {@link TetrisEngine}, timed over drawing its type from the randomizer and
+ * creating it.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+@Name("kopper.tetris.Spawn")
+@Label("Piece Spawn")
+@Category("Kopper Tetris")
+@Description("A new current Shape spawned")
+@StackTrace(false)
+final class SpawnEvent extends Event
+{
+	/**
+	 * The kind of the Shape.
+	 */
+	@Label("Kind")
+	String kind;
+	/**
+	 * The column the Shape spawned in.
+	 */
+	@Label("Column")
+	int column;
+}
@@ -0,0 +1,543 @@
+package kopper.tetris.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import kopper.tetris.shape.Shape;
+
+/**
+ * <p>Broadcasts a game to any number of spectators as a stream of small deltas, instead of sending the whole board to every spectator every time
+ * something changes. The thread running the engine calls {@link SpectatorPublisher#publish()} after every tick. Each call that finds the game
+ * changed encodes one message, once, into a heap buffer that is reused for every message, and writes it to every spectator from there, so a message
+ * costs the same to encode for one spectator as for a thousand, and publishing allocates nothing while the spectators keep up.
+ * </p>
+ * <p>
+ * A delta holds only what changed since the previous message: the cells set by every Shape locked, as reported to the publisher as the engine's
+ * {@link LockListener}, the rows those locks cleared, the new score after a lock, the game state, and the kind, position and orientation of the
+ * current Shape if it moved. A keyframe holds the whole game, as written by {@link TetrisEngine#writeSnapshot(ByteBuffer)}. Keyframes are published
+ * every {@link SpectatorPublisher#getKeyframeInterval()} ticks, and right away for spectators that just subscribed, which receive no deltas before
+ * their first keyframe. {@link SpectatorView} applies the messages to an engine of its own.
+ * </p>
+ * <p>
+ * Every message is a frame as sent by {@link GameServer}: a big endian int giving the length of the rest, so a spectator reads them with
+ * {@link GameClient#readFrame()}. The rest starts with the message type, {@link SpectatorPublisher#MESSAGE_KEYFRAME} or
+ * {@link SpectatorPublisher#MESSAGE_DELTA}, and an int sequence number, which grows by one with every delta. A keyframe carries the number of the
+ * last delta and continues with the snapshot. A delta continues with the game state as a byte, then operations, each a byte code followed by its
+ * data, and ends with {@link SpectatorPublisher#OP_END}:
+ * </p>
+ * <ul>
+ * 	<li>{@link SpectatorPublisher#OP_CELLS}: a byte count, then the row, column and palette index of each cell set, a byte each.</li>
+ * 	<li>{@link SpectatorPublisher#OP_ROWS}: a byte count, then each row cleared, a byte each, in increasing order.</li>
+ * 	<li>{@link SpectatorPublisher#OP_SCORE}: the score, see {@link TetrisScore#writeTo(ByteBuffer)}.</li>
+ * 	<li>{@link SpectatorPublisher#OP_SHAPE}: the {@link kopper.tetris.shape.ShapeKind} ordinal of the current Shape as a byte, -1 if there is none,
+ * 	its column and row as shorts, and its orientation as a byte.</li>
+ * </ul>
+ * <p>
+ * Spectators are written to without blocking. A spectator that can not keep up has its messages queued, each copied from the reused buffer, up to
+ * {@link SpectatorPublisher#MAX_BACKLOG}; beyond that its queue is dropped and it waits for a new keyframe, so a slow spectator costs a bounded
+ * amount of memory and never holds up the game or the other spectators.
+ * </p>
+ * <p>
+ * A publisher is used by the thread running the engine, except for {@link SpectatorPublisher#subscribe(WritableByteChannel)}, which may be called by
+ * any thread.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class SpectatorPublisher implements LockListener
+{
+	/**
+	 * The default interval between two keyframes, 250 ticks, 10 seconds at the speed of {@link TetrisGame}.
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL=250;
+	/**
+	 * The maximum number of messages queued for a spectator that does not keep up.
+	 */
+	public static final int MAX_BACKLOG=64;
+	/**
+	 * The type of a message holding the whole game.
+	 */
+	public static final int MESSAGE_KEYFRAME=1;
+	/**
+	 * The type of a message holding what changed since the previous message.
+	 */
+	public static final int MESSAGE_DELTA=2;
+	/**
+	 * The operation ending a delta.
+	 */
+	public static final int OP_END=0;
+	/**
+	 * The operation setting cells.
+	 */
+	public static final int OP_CELLS=1;
+	/**
+	 * The operation clearing rows.
+	 */
+	public static final int OP_ROWS=2;
+	/**
+	 * The operation setting the score.
+	 */
+	public static final int OP_SCORE=3;
+	/**
+	 * The operation setting the current Shape.
+	 */
+	public static final int OP_SHAPE=4;
+	/**
+	 * The size of the header of a message: the frame length, the type and the sequence number.
+	 */
+	static final int HEADER=Integer.BYTES+1+Integer.BYTES;
+	/**
+	 * The size of a {@link SpectatorPublisher#OP_SHAPE} operation.
+	 */
+	private static final int SHAPE_SIZE=1+1+2*Short.BYTES+1;
+
+	/**
+	 * The published game.
+	 */
+	private final TetrisEngine engine;
+	/**
+	 * The number of ticks between two keyframes.
+	 */
+	private final int keyframeInterval;
+	/**
+	 * The spectators receiving messages.
+	 */
+	private final ArrayList<Subscriber> subscribers=new ArrayList<>();
+	/**
+	 * Spectators that subscribed and were not added to {@link SpectatorPublisher#subscribers} yet.
+	 */
+	private final ConcurrentLinkedQueue<WritableByteChannel> subscribed=new ConcurrentLinkedQueue<>();
+	/**
+	 * The cell and row operations of the locks since the previous message.
+	 */
+	private ByteBuffer lockOps=ByteBuffer.allocate(256);
+	/**
+	 * The buffer every message is encoded into, grown when a message does not fit. A message is only valid until the next one is encoded, so
+	 * whatever a spectator does not take right away is copied into its queue.
+	 */
+	private ByteBuffer message=ByteBuffer.allocate(1024);
+	/**
+	 * The number of deltas published, the sequence number of the last one.
+	 */
+	private int sequence=0;
+	/**
+	 * The number of ticks since the last keyframe.
+	 */
+	private int ticksSinceKeyframe=0;
+	/**
+	 * True if the next message must be a keyframe for every spectator.
+	 */
+	private boolean keyframeRequested=true;
+	/**
+	 * The game state last published.
+	 */
+	private int publishedState=-1;
+	/**
+	 * The kind ordinal of the current Shape last published, -1 for none.
+	 */
+	private int publishedKind=-1;
+	/**
+	 * The column, row and orientation of the current Shape last published.
+	 */
+	private int publishedX, publishedY, publishedRotation;
+	/**
+	 * The palette size of the grid when the last message was published.
+	 */
+	private int publishedPaletteSize;
+
+	/**
+	 * Creates a publisher for a game and makes it the game's {@link LockListener}.
+	 * @param engine the game.
+	 * @param keyframeInterval the number of ticks between two keyframes, {@link SpectatorPublisher#DEFAULT_KEYFRAME_INTERVAL} for example.
+	 * @throws IllegalArgumentException if the interval is not positive, or the grid has more than 127 rows or columns, which deltas can not address.
+	 */
+	public SpectatorPublisher(TetrisEngine engine, int keyframeInterval)
+	{
+		BackgroundGrid grid=engine.getGrid();
+		if(keyframeInterval<=0)
+			throw new IllegalArgumentException("The keyframe interval must be positive, not "+keyframeInterval);
+		if(grid.getRowCount()>Byte.MAX_VALUE||grid.getColumnCount()>Byte.MAX_VALUE)
+			throw new IllegalArgumentException("The grid is too large for deltas");
+		this.engine=engine;
+		this.keyframeInterval=keyframeInterval;
+		engine.setLockListener(this);
+	}
+	/**
+	 * Returns the number of ticks between two keyframes.
+	 * @return the interval.
+	 */
+	public int getKeyframeInterval()
+	{
+		return keyframeInterval;
+	}
+	/**
+	 * Returns the number of spectators receiving messages, not counting those that subscribed since the last call of
+	 * {@link SpectatorPublisher#publish()}.
+	 * @return the number of spectators.
+	 */
+	public int getSubscriberCount()
+	{
+		return subscribers.size();
+	}
+	/**
+	 * Adds a spectator, which receives a keyframe with the next call of {@link SpectatorPublisher#publish()} and every message after it. May be called
+	 * by any thread.
+	 * @param channel the connection to the spectator. A {@link java.nio.channels.SocketChannel} must be in non-blocking mode. It is closed when
+	 * writing to it fails.
+	 */
+	public void subscribe(WritableByteChannel channel)
+	{
+		subscribed.add(channel);
+	}
+	/**
+	 * Makes the next message a keyframe for every spectator, for example after the game was replaced with
+	 * {@link TetrisEngine#restoreSnapshot(ByteBuffer)}.
+	 */
+	public void requestKeyframe()
+	{
+		keyframeRequested=true;
+	}
+	public void shapeLocked(Shape shape, BackgroundGrid grid)
+	{
+		int cells=shape.getCellCount();
+		int rows=grid.getDetectFullRowCount();
+		ensureLockOps(2+3*cells+2+rows);
+		lockOps.put((byte)OP_CELLS);
+		int countAt=lockOps.position();
+		lockOps.put((byte)0);
+		int count=0;
+		for(int i=0;i<cells;i++)
+		{
+			int r=shape.getAbsoluteCellRow(i);
+			int c=shape.getAbsoluteCellColumn(i);
+			if(r<0||r>=grid.getRowCount()||c<0||c>=grid.getColumnCount())
+				continue;
+			lockOps.put((byte)r).put((byte)c).put((byte)grid.getCellPaletteIndex(r,c));
+			count++;
+		}
+		lockOps.put(countAt,(byte)count);
+		if(rows==0)
+			return;
+		lockOps.put((byte)OP_ROWS).put((byte)rows);
+		for(int i=0;i<rows;i++)
+			lockOps.put((byte)grid.getDetectedFullRow(i));
+	}
+	/**
+	 * Closes the connection of every spectator, including those that subscribed since the last call of {@link SpectatorPublisher#publish()}, for
+	 * example when the published game ended for good.
+	 */
+	public void close()
+	{
+		for(WritableByteChannel channel;(channel=subscribed.poll())!=null;)
+			closeQuietly(channel);
+		for(int i=0;i<subscribers.size();i++)
+			closeQuietly(subscribers.get(i).channel);
+		subscribers.clear();
+	}
+	/**
+	 * Publishes what changed in the game since the previous call, if anything did, and sends the messages queued for spectators that were not
+	 * writable before. Must be called after every tick of the engine, since it counts the ticks between keyframes.
+	 * @return the number of messages encoded, 0, 1 or 2.
+	 */
+	public int publish()
+	{
+		for(WritableByteChannel channel;(channel=subscribed.poll())!=null;)
+			subscribers.add(new Subscriber(channel));
+		ticksSinceKeyframe++;
+		if(ticksSinceKeyframe>=keyframeInterval||engine.getGrid().getPaletteSize()!=publishedPaletteSize)
+			keyframeRequested=true;
+		int messages=0;
+		if(keyframeRequested)
+		{
+			send(encodeKeyframe(),true);
+			keyframeRequested=false;
+			ticksSinceKeyframe=0;
+			messages++;
+		}
+		else
+		{
+			ByteBuffer delta=encodeDelta();
+			if(delta!=null)
+			{
+				send(delta,false);
+				messages++;
+			}
+			if(hasUnsynced())
+			{
+				send(encodeKeyframe(),false);
+				messages++;
+			}
+		}
+		flushBacklogs();
+		return messages;
+	}
+	/**
+	 * Encodes a keyframe, which also becomes the base of the following deltas. A keyframe carries the sequence number of the last delta, since it
+	 * holds the game as that delta left it.
+	 * @return the message, ready to be written.
+	 */
+	private ByteBuffer encodeKeyframe()
+	{
+		int size=engine.getSnapshotSize();
+		ByteBuffer message=startMessage(HEADER+size);
+		message.putInt(1+Integer.BYTES+size).put((byte)MESSAGE_KEYFRAME).putInt(sequence);
+		engine.writeSnapshot(message);
+		message.flip();
+		lockOps.clear();
+		rememberPublished();
+		return message;
+	}
+	/**
+	 * Encodes a delta holding what changed since the previous message.
+	 * @return the message, ready to be written, or null if nothing changed.
+	 */
+	private ByteBuffer encodeDelta()
+	{
+		int state=engine.getState().getCurrentState();
+		boolean shapeChanged=isShapeChanged();
+		int locks=lockOps.position();
+		if(locks==0&&!shapeChanged&&state==publishedState)
+			return null;
+		int size=HEADER+1+locks+(locks>0?1+TetrisScore.BYTES:0)+(shapeChanged?SHAPE_SIZE:0)+1;
+		ByteBuffer message=startMessage(size);
+		message.putInt(size-Integer.BYTES).put((byte)MESSAGE_DELTA).putInt(++sequence).put((byte)state);
+		if(locks>0)
+		{
+			lockOps.flip();
+			message.put(lockOps);
+			lockOps.clear();
+			message.put((byte)OP_SCORE);
+			engine.getScore().writeTo(message);
+		}
+		if(shapeChanged)
+		{
+			Shape s=engine.getCurrentShape();
+			message.put((byte)OP_SHAPE);
+			if(s!=null)
+				message.put((byte)s.getKind().ordinal()).putShort((short)s.getAbsoluteShapePos().getX()).putShort((short)s.getAbsoluteShapePos().getY())
+						.put((byte)s.getRotation());
+			else
+				message.put((byte)-1).putShort((short)0).putShort((short)0).put((byte)0);
+		}
+		message.put((byte)OP_END);
+		message.flip();
+		rememberPublished();
+		return message;
+	}
+	/**
+	 * Clears the buffer messages are encoded into, growing it first if it is smaller than the message.
+	 * @param size the size of the message.
+	 * @return the buffer, empty.
+	 */
+	private ByteBuffer startMessage(int size)
+	{
+		if(message.capacity()<size)
+			message=ByteBuffer.allocate(Math.max(2*message.capacity(),size));
+		message.clear();
+		return message;
+	}
+	/**
+	 * Tells if the current Shape differs from the one last published.
+	 * @return true if the Shape spawned, moved, rotated or was locked.
+	 */
+	private boolean isShapeChanged()
+	{
+		Shape s=engine.getCurrentShape();
+		if(s==null)
+			return publishedKind!=-1;
+		return s.getKind().ordinal()!=publishedKind||s.getAbsoluteShapePos().getX()!=publishedX||s.getAbsoluteShapePos().getY()!=publishedY
+				||s.getRotation()!=publishedRotation;
+	}
+	/**
+	 * Remembers the game state, current Shape and palette size as published.
+	 */
+	private void rememberPublished()
+	{
+		Shape s=engine.getCurrentShape();
+		publishedState=engine.getState().getCurrentState();
+		publishedKind=s!=null?s.getKind().ordinal():-1;
+		publishedX=s!=null?s.getAbsoluteShapePos().getX():0;
+		publishedY=s!=null?s.getAbsoluteShapePos().getY():0;
+		publishedRotation=s!=null?s.getRotation():0;
+		publishedPaletteSize=engine.getGrid().getPaletteSize();
+	}
+	/**
+	 * Makes room in {@link SpectatorPublisher#lockOps}.
+	 * @param bytes the number of bytes needed.
+	 */
+	private void ensureLockOps(int bytes)
+	{
+		if(lockOps.remaining()>=bytes)
+			return;
+		ByteBuffer larger=ByteBuffer.allocate(Math.max(2*lockOps.capacity(),lockOps.position()+bytes));
+		lockOps.flip();
+		larger.put(lockOps);
+		lockOps=larger;
+	}
+	/**
+	 * Tells if a spectator waits for its first keyframe.
+	 * @return true if a spectator is not synchronized.
+	 */
+	private boolean hasUnsynced()
+	{
+		for(int i=0;i<subscribers.size();i++)
+		{
+			if(!subscribers.get(i).synced)
+				return true;
+		}
+		return false;
+	}
+	/**
+	 * Sends a message to the spectators it is meant for. A spectator with nothing queued is written to directly from the buffer of the message, and
+	 * only the part its connection does not take is copied into its queue. The spectators whose connection failed are dropped.
+	 * @param message the message, in the reused buffer.
+	 * @param all true to send the message to every spectator, false to send a delta to the synchronized spectators, or a keyframe to the others.
+	 */
+	private void send(ByteBuffer message, boolean all)
+	{
+		boolean keyframe=message.get(Integer.BYTES)==MESSAGE_KEYFRAME;
+		for(int i=subscribers.size()-1;i>=0;i--)
+		{
+			Subscriber s=subscribers.get(i);
+			if(!all&&s.synced==keyframe)
+				continue;
+			if(s.backlog.size()>=MAX_BACKLOG)
+			{
+				s.dropBacklog();
+				s.synced=false;
+				continue;
+			}
+			message.rewind();
+			try
+			{
+				s.send(message);
+			}
+			catch(IOException e)
+			{
+				drop(i);
+				continue;
+			}
+			if(keyframe)
+				s.synced=true;
+		}
+	}
+	/**
+	 * Writes as much of the queued messages of every spectator as its connection takes without blocking, and drops the spectators whose
+	 * connection failed.
+	 */
+	private void flushBacklogs()
+	{
+		for(int i=subscribers.size()-1;i>=0;i--)
+		{
+			Subscriber s=subscribers.get(i);
+			try
+			{
+				s.flush();
+			}
+			catch(IOException e)
+			{
+				drop(i);
+			}
+		}
+	}
+	/**
+	 * Closes the connection of a spectator and drops it, moving the last spectator into its place.
+	 * @param i the index of the spectator in {@link SpectatorPublisher#subscribers}.
+	 */
+	private void drop(int i)
+	{
+		closeQuietly(subscribers.get(i).channel);
+		int last=subscribers.size()-1;
+		subscribers.set(i,subscribers.get(last));
+		subscribers.remove(last);
+	}
+	/**
+	 * Closes a connection, ignoring failures.
+	 * @param channel the connection.
+	 */
+	private static void closeQuietly(WritableByteChannel channel)
+	{
+		try
+		{
+			channel.close();
+		}
+		catch(IOException e)
+		{
+		}
+	}
+	/**
+	 * A spectator: its connection and the messages not written to it yet.
+	 */
+	private static final class Subscriber
+	{
+		/**
+		 * The connection to the spectator.
+		 */
+		private final WritableByteChannel channel;
+		/**
+		 * The messages not completely written yet, the first one possibly in part.
+		 */
+		private final ArrayDeque<ByteBuffer> backlog=new ArrayDeque<>();
+		/**
+		 * True once the spectator was sent a keyframe, after which it is sent every delta.
+		 */
+		private boolean synced=false;
+
+		/**
+		 * Creates a spectator.
+		 * @param channel the connection to the spectator.
+		 */
+		Subscriber(WritableByteChannel channel)
+		{
+			this.channel=channel;
+		}
+		/**
+		 * Drops the queued messages, except for one written in part, which must still be completed to keep the stream of frames intact.
+		 */
+		void dropBacklog()
+		{
+			ByteBuffer first=backlog.peekFirst();
+			backlog.clear();
+			if(first!=null&&first.position()>0)
+				backlog.add(first);
+		}
+		/**
+		 * Writes a message right away if nothing is queued, and queues a copy of it if the connection did not take all of it. The copy keeps the
+		 * position up to which the message was written, so {@link Subscriber#dropBacklog()} can tell that it was written in part.
+		 * @param message the message, at its start, which is only valid until the next one is encoded.
+		 * @throws IOException if the connection failed.
+		 */
+		void send(ByteBuffer message) throws IOException
+		{
+			if(backlog.isEmpty())
+			{
+				channel.write(message);
+				if(!message.hasRemaining())
+					return;
+			}
+			int written=message.position();
+			ByteBuffer copy=ByteBuffer.allocate(message.limit());
+			copy.put(message.rewind()).flip();
+			copy.position(written);
+			backlog.add(copy);
+		}
+		/**
+		 * Writes queued messages until the connection takes no more.
+		 * @throws IOException if the connection failed.
+		 */
+		void flush() throws IOException
+		{
+			while(!backlog.isEmpty())
+			{
+				ByteBuffer message=backlog.peekFirst();
+				channel.write(message);
+				if(message.hasRemaining())
+					return;
+				backlog.removeFirst();
+			}
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package kopper.tetris.core;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import kopper.tetris.shape.Shape;
+import kopper.tetris.shape.ShapeKind;
+
+/**
+ * The spectator's side of a {@link SpectatorPublisher}: applies its keyframes and deltas to an engine that mirrors the published game and is never
+ * advanced itself, so it can be painted like any other game. Deltas that arrive before the first keyframe, or after a gap in the sequence numbers,
+ * are ignored until the next keyframe.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class SpectatorView
+{
+	/**
+	 * The engine mirroring the published game.
+	 */
+	private final TetrisEngine engine;
+	/**
+	 * True once a keyframe was applied and every delta since.
+	 */
+	private boolean synced=false;
+	/**
+	 * The sequence number of the last delta applied, or of the last keyframe.
+	 */
+	private int sequence;
+
+	/**
+	 * Creates a view of a published game.
+	 * @param columns the number of columns of the published grid.
+	 * @param rows the number of rows of the published grid.
+	 */
+	public SpectatorView(int columns, int rows)
+	{
+		this(new TetrisEngine(columns,rows));
+	}
+	/**
+	 * Creates a view that mirrors a published game on an engine, for example one created with a grid that knows how to paint itself.
+	 * @param engine the engine, with a grid of the size of the published grid.
+	 */
+	public SpectatorView(TetrisEngine engine)
+	{
+		this.engine=engine;
+	}
+	/**
+	 * Returns the engine mirroring the published game.
+	 * @return the engine.
+	 */
+	public TetrisEngine getEngine()
+	{
+		return engine;
+	}
+	/**
+	 * Tells if the view shows the published game, that is if a keyframe was applied and no delta was missed since.
+	 * @return true if the view is synchronized.
+	 */
+	public boolean isSynced()
+	{
+		return synced;
+	}
+	/**
+	 * Applies a message of the publisher to the engine.
+	 * @param message the message without its frame length, as returned by {@link GameClient#readFrame()}, read from its position.
+	 * @return true if the message was applied, false if it was a delta ignored while waiting for a keyframe.
+	 * @throws IllegalArgumentException if the message is malformed. The view then waits for the next keyframe.
+	 */
+	public boolean apply(ByteBuffer message)
+	{
+		try
+		{
+			int type=message.get();
+			int s=message.getInt();
+			if(type==SpectatorPublisher.MESSAGE_KEYFRAME)
+			{
+				synced=false;
+				engine.restoreSnapshot(message);
+				sequence=s;
+				synced=true;
+				return true;
+			}
+			if(type!=SpectatorPublisher.MESSAGE_DELTA)
+				throw new IllegalArgumentException("Unknown message type "+type);
+			if(!synced||s!=sequence+1)
+			{
+				synced=false;
+				return false;
+			}
+			synced=false;
+			applyDelta(message);
+			sequence=s;
+			synced=true;
+			return true;
+		}
+		catch(BufferUnderflowException e)
+		{
+			throw new IllegalArgumentException("Truncated message",e);
+		}
+	}
+	/**
+	 * Applies the game state and operations of a delta.
+	 * @param message the message, at the game state.
+	 * @throws IllegalArgumentException if the delta is malformed, for example its game state is not one of the constants of {@link GameState}, or does
+	 * not fit the game shown.
+	 */
+	private void applyDelta(ByteBuffer message)
+	{
+		BackgroundGrid grid=engine.getGrid();
+		int state=message.get();
+		if(state<GameState.GAME_START_SCREEN||state>GameState.GAME_OVER)
+			throw new IllegalArgumentException("Unknown game state "+state);
+		engine.getState().setCurrentState(state);
+		for(int op=message.get();op!=SpectatorPublisher.OP_END;op=message.get())
+		{
+			switch(op)
+			{
+				case SpectatorPublisher.OP_CELLS:
+					for(int n=message.get();n>0;n--)
+					{
+						int r=message.get();
+						int c=message.get();
+						int palette=message.get()&0xFF;
+						if(r<0||r>=grid.getRowCount()||c<0||c>=grid.getColumnCount()||palette==0||palette>=grid.getPaletteSize())
+							throw new IllegalArgumentException("Invalid cell "+r+","+c+" of color "+palette);
+						grid.fillCell(r,c,palette);
+					}
+					break;
+				case SpectatorPublisher.OP_ROWS:
+					int n=message.get();
+					if(grid.detectFullRows()!=n)
+						throw new IllegalArgumentException("The delta clears other rows than the grid shown");
+					for(int i=0;i<n;i++)
+					{
+						if(grid.getDetectedFullRow(i)!=message.get())
+							throw new IllegalArgumentException("The delta clears other rows than the grid shown");
+					}
+					grid.removeDetectedRows();
+					break;
+				case SpectatorPublisher.OP_SCORE:
+					engine.getScore().readFrom(message);
+					break;
+				case SpectatorPublisher.OP_SHAPE:
+					int kind=message.get();
+					int x=message.getShort();
+					int y=message.getShort();
+					int rotation=message.get();
+					if(kind<-1||kind>=ShapeKind.COUNT)
+						throw new IllegalArgumentException("Unknown Shape kind "+kind);
+					Shape shape=null;
+					if(kind>=0)
+					{
+						shape=ShapeKind.fromIndex(kind).createShape(x,y);
+						shape.setRotation(rotation);
+					}
+					engine.setCurrentShape(shape);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown operation "+op);
+			}
+		}
+	}
+}
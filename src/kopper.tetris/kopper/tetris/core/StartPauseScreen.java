@@ -3,7 +3,7 @@ import java.awt.*;
 /**
  * <p>
  * This class represents the drawing information for both game states:
- * {@link TetrisGame.State#GAME_PAUSED} and {@link TetrisGame.State#GAME_START_SCREEN}. 
+ * {@link GameState#GAME_PAUSED} and {@link GameState#GAME_START_SCREEN}. 
  * Specifically, this class draws the rounded rectangles that represent the Text pixel boundaries of all the screen information to be printed and 
  * the translucent layer over the (paused game logic but) ever still drawing running game screen. 
  * </p>
@@ -200,12 +200,17 @@ public class StartPauseScreen
 	/**
 	 * Draws the rounded rectangles that represent the Text pixel boundaries of all the screen information to be printed and 
 	 * the translucent layer over the paused game logic but ever still drawing running game screen. 
-	 * See {@link TetrisGame#paintGameRunning(Graphics2D, kopper.tetris.core.TetrisGame.State)}.
+	 * See {@link TetrisGame#paintGameRunning(Graphics2D, kopper.tetris.core.GameState)}.
 	 * @param g2d The graphics object ultimately supplied by {@link TetrisGame#paintComponent(Graphics)}.
 	 * @param isPaused  If true, the pause screen is drawn, if false, the start screen is drawn.
 	 */
 	private void drawScreen(Graphics2D g2d, boolean isPaused)
 	{
+		if(!isSetup&&initCanStart)//set up on the first paint, which must show the screen too since a paused game is not repainted again.
+		{
+			initRectangles(g2d);
+			isSetup=true;
+		}
 		if(isSetup)
 		{
 			Font temp=g2d.getFont();
@@ -256,14 +261,6 @@ public class StartPauseScreen
 			g2d.setFont(temp);
 			g2d.setColor(tempColor);
 		}
-		else
-		{
-			if(initCanStart)
-			{
-				initRectangles(g2d);
-				isSetup=true;
-			}
-		}
 		
 		
 		
@@ -0,0 +1,31 @@
+package kopper.tetris.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JDK Flight Recorder event of a {@link GameState} changing from one game state to another. The stack trace of the event tells what
+ * changed the state.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+@Name("kopper.tetris.StateChange")
+@Label("State Change")
+@Category("Kopper Tetris")
+@Description("A transition between the start screen, running, paused and game over states")
+final class StateChangeEvent extends Event
+{
+	/**
+	 * The state before the change, one of the constants of {@link GameState}.
+	 */
+	@Label("From")
+	int from;
+	/**
+	 * The state after the change, one of the constants of {@link GameState}.
+	 */
+	@Label("To")
+	int to;
+}
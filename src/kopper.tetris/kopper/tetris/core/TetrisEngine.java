@@ -0,0 +1,781 @@
+package kopper.tetris.core;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import kopper.tetris.shape.Shape;
+import kopper.tetris.shape.ShapeKind;
+
+/**
+ * <p>This class holds all of the rules of a Tetris game: spawning, moving, rotating and locking the current {@link Shape}, deleting full rows,
+ * keeping score and tracking the game's {@link GameState}. It does no painting and has no timer, so it never needs a window, an AWT toolkit
+ * or the Swing event dispatch thread. Time only advances when {@link TetrisEngine#tick()} or {@link TetrisEngine#step()} is called and the player
+ * only acts through {@link TetrisEngine#input(int)}, which makes it possible to run many games in one JVM, as fast as the caller wants.
+ * </p>
+ * <p>
+ * In the Model Viewer Controller (MVC) software architecture, this class is the model and the rules. {@link TetrisGame} is a thin viewer and controller
+ * over it, which calls {@link TetrisEngine#tick()} from its timer, translates key presses into {@link TetrisEngine#input(int)} calls and paints the
+ * engine's {@link BackgroundGrid} and current Shape.
+ * </p>
+ * <p>
+ * Every method that changes the game returns a combination of the {@code RESULT_...} flags of this class describing what happened, so callers
+ * can react without comparing state before and after the call.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ */
+public class TetrisEngine
+{
+	/**
+	 * The input constant for doing nothing.
+	 */
+	public static final int INPUT_NONE=0;
+	/**
+	 * The input constant for moving the current Shape one column to the left.
+	 */
+	public static final int INPUT_LEFT=1;
+	/**
+	 * The input constant for moving the current Shape one column to the right.
+	 */
+	public static final int INPUT_RIGHT=2;
+	/**
+	 * The input constant for moving the current Shape one row down, locking it if it can not move down anymore.
+	 */
+	public static final int INPUT_DOWN=3;
+	/**
+	 * The input constant for rotating the current Shape 90 degrees clockwise.
+	 */
+	public static final int INPUT_ROTATE_CW=4;
+	/**
+	 * The input constant for rotating the current Shape 90 degrees counter clockwise.
+	 */
+	public static final int INPUT_ROTATE_CCW=5;
+
+	/**
+	 * Result flag set when the current Shape moved or rotated.
+	 */
+	public static final int RESULT_MOVED=1;
+	/**
+	 * Result flag set when a new current Shape was spawned.
+	 */
+	public static final int RESULT_SPAWNED=2;
+	/**
+	 * Result flag set when the current Shape was locked into the {@link BackgroundGrid}.
+	 */
+	public static final int RESULT_LOCKED=4;
+	/**
+	 * Result flag set when one or more full rows were deleted. See {@link TetrisEngine#getLastRowsCleared()} for how many.
+	 */
+	public static final int RESULT_ROWS_CLEARED=8;
+	/**
+	 * Result flag set when the game ended.
+	 */
+	public static final int RESULT_GAME_OVER=16;
+	/**
+	 * Result flag set when the game state changed, for example from running to paused.
+	 */
+	public static final int RESULT_STATE_CHANGED=32;
+
+	/**
+	 * The default number of ticks between a single iteration in game logic, such as moving the current shape down one row.
+	 */
+	public static final int DEFAULT_TICKS_BETWEEN_GRAVITY=15;
+	/**
+	 * The first int of a snapshot, {@code KTSS}.
+	 */
+	private static final int SNAPSHOT_MAGIC=0x4B545353;
+	/**
+	 * The version of the snapshot format written.
+	 */
+	private static final int SNAPSHOT_VERSION=1;
+	/**
+	 * The number of ints of a snapshot before the randomizer: magic, version, columns, rows, ticks between gravity, tick count, rows last cleared,
+	 * state, and the kind, column, row and orientation of the current Shape.
+	 */
+	private static final int SNAPSHOT_HEADER_INTS=12;
+
+	/**
+	 * The model of the background and all dead Shapes.
+	 */
+	private BackgroundGrid grid;
+	/**
+	 * The current shape, there can be only a maximum of one live shape at a time and this is where it is stored.
+	 */
+	private Shape currentShape;
+	/**
+	 * The internal object that keeps track of the game's state.
+	 */
+	private GameState currentState=new GameState();
+	/**
+	 * The internal object responsible for keeping score.
+	 */
+	private TetrisScore score=new TetrisScore();
+	/**
+	 * The spawn location of a new shape, the horizontal center and one cell over the top of the grid.
+	 */
+	private Coord spawnCoord;
+	/**
+	 * The number of ticks between a single iteration in game logic.
+	 */
+	private int ticksBetweenGravity=DEFAULT_TICKS_BETWEEN_GRAVITY;
+	/**
+	 * Keeps track of the number of ticks since the last game logic iteration.
+	 */
+	private int tickCount=0;
+	/**
+	 * The number of rows deleted by the most recent lock.
+	 */
+	private int lastRowsCleared=0;
+	/**
+	 * The source of the sequence of Shapes spawned by this game.
+	 */
+	private ShapeRandomizer randomizer;
+	/**
+	 * Records every tick and every call that changed the game, null when the game is not recorded.
+	 */
+	private ReplayRecorder recorder;
+	/**
+	 * Told about every Shape locked into the grid, null if nobody listens.
+	 */
+	private LockListener lockListener;
+	/**
+	 * The runtime metrics ticks, inputs and locks are recorded into, null when they are not recorded.
+	 */
+	private GameMetrics metrics;
+
+	/**
+	 * Creates a new engine with a grid of the specified size and no painting information, ready to be run without any display.
+	 * @param columns the number of columns of the grid.
+	 * @param rows the number of rows of the grid.
+	 */
+	public TetrisEngine(int columns, int rows)
+	{
+		this(new BackgroundGrid(columns,rows));
+	}
+	/**
+	 * Creates a new engine with a grid of the specified size and no painting information, which spawns Shapes in the order dealt by the supplied randomizer.
+	 * @param columns the number of columns of the grid.
+	 * @param rows the number of rows of the grid.
+	 * @param randomizer the source of the sequence of Shapes, used by this game only.
+	 */
+	public TetrisEngine(int columns, int rows, ShapeRandomizer randomizer)
+	{
+		this(new BackgroundGrid(columns,rows),randomizer);
+	}
+	/**
+	 * Creates a new engine that plays on the supplied grid, with a {@link UniformRandomizer} seeded from the system clock.
+	 * This is how {@link TetrisGame} supplies a grid that also knows how to paint itself.
+	 * @param grid the empty grid to play on.
+	 */
+	public TetrisEngine(BackgroundGrid grid)
+	{
+		this(grid,new UniformRandomizer(System.nanoTime()));
+	}
+	/**
+	 * Creates a new engine that plays on the supplied grid and spawns Shapes in the order dealt by the supplied randomizer.
+	 * @param grid the empty grid to play on.
+	 * @param randomizer the source of the sequence of Shapes, used by this game only.
+	 */
+	public TetrisEngine(BackgroundGrid grid, ShapeRandomizer randomizer)
+	{
+		this.grid=grid;
+		this.randomizer=randomizer;
+		this.spawnCoord=new Coord(grid.getColumnCount()/2,-1);
+	}
+	/**
+	 * Returns the source of the sequence of Shapes spawned by this game.
+	 * @return the randomizer of this game.
+	 */
+	public ShapeRandomizer getRandomizer()
+	{
+		return randomizer;
+	}
+	/**
+	 * Sets the number of calls to {@link TetrisEngine#tick()} between gravity steps. Default is {@link TetrisEngine#DEFAULT_TICKS_BETWEEN_GRAVITY}.
+	 * @param ticks the number of ticks, at least 1.
+	 */
+	public void setTicksBetweenGravity(int ticks)
+	{
+		this.ticksBetweenGravity=Math.max(1,ticks);
+	}
+	/**
+	 * Returns the number of calls to {@link TetrisEngine#tick()} between gravity steps.
+	 * @return the number of ticks.
+	 */
+	public int getTicksBetweenGravity()
+	{
+		return ticksBetweenGravity;
+	}
+	/**
+	 * Starts recording this game into a {@link Replay}. From now on every tick, and every call of {@link TetrisEngine#start()},
+	 * {@link TetrisEngine#pause()}, {@link TetrisEngine#togglePause()}, {@link TetrisEngine#step()} and {@link TetrisEngine#input(int)} that changes the
+	 * game is recorded, whoever makes it. The recorder is used by the thread running this engine.
+	 * @return the recorder, whose {@link ReplayRecorder#finish()} returns the replay.
+	 * @throws IllegalStateException if the game was already started or is already recorded, since the replay must begin with the first Shape.
+	 * @throws IllegalArgumentException if the randomizer of this game can not be recreated from a replay, see {@link Replay#getRandomizerType(ShapeRandomizer)}.
+	 */
+	public ReplayRecorder startRecording()
+	{
+		if(recorder!=null||!currentState.isGameStartScreen())
+			throw new IllegalStateException("Only a game that was not started yet can be recorded");
+		recorder=new ReplayRecorder(this);
+		return recorder;
+	}
+	/**
+	 * Returns the recorder of this game.
+	 * @return the recorder, or null if the game is not recorded.
+	 */
+	public ReplayRecorder getRecorder()
+	{
+		return recorder;
+	}
+	/**
+	 * Sets the listener told about every Shape locked into the grid, see {@link LockListener#shapeLocked(Shape, BackgroundGrid)}.
+	 * @param listener the listener, or null to remove it.
+	 */
+	public void setLockListener(LockListener listener)
+	{
+		this.lockListener=listener;
+	}
+	/**
+	 * Returns the listener told about every Shape locked into the grid.
+	 * @return the listener, or null if there is none.
+	 */
+	public LockListener getLockListener()
+	{
+		return lockListener;
+	}
+	/**
+	 * Sets the runtime metrics the ticks, inputs and locks of this game are recorded into. Each tick is then timed, and the bytes the ticking thread
+	 * allocates during every few ticks are measured, see {@link GameMetrics#isAllocationSampleDue()}.
+	 * @param metrics the metrics, or null to stop recording, the default.
+	 */
+	public void setMetrics(GameMetrics metrics)
+	{
+		this.metrics=metrics;
+	}
+	/**
+	 * Returns the runtime metrics of this game.
+	 * @return the metrics, or null if they are not recorded.
+	 */
+	public GameMetrics getMetrics()
+	{
+		return metrics;
+	}
+	/**
+	 * Returns the number of bytes {@link TetrisEngine#writeSnapshot(ByteBuffer)} writes for the game as it is now. The size only changes when Shapes
+	 * with custom colors are locked.
+	 * @return the size of a snapshot in bytes.
+	 * @throws IllegalArgumentException if the randomizer of this game can not be recreated from a snapshot, see {@link Replay#getRandomizerType(ShapeRandomizer)}.
+	 */
+	public int getSnapshotSize()
+	{
+		Replay.getRandomizerType(randomizer);
+		return SNAPSHOT_HEADER_INTS*Integer.BYTES+2*Integer.BYTES+Replay.getRandomizerParameters(randomizer).length*Integer.BYTES+Long.BYTES
+				+Integer.BYTES+((AbstractRandomizer)randomizer).getStateSize()+Integer.BYTES+(grid.getPaletteSize()-1-ShapeKind.COUNT)*Integer.BYTES
+				+grid.getRowCount()*grid.getColumnCount()+TetrisScore.BYTES;
+	}
+	/**
+	 * Writes the whole state of this game to a buffer: the grid's cells, the current Shape, the score, the state of the randomizer and the game
+	 * state, in {@link TetrisEngine#getSnapshotSize()} bytes. Everything is written straight from the fields of the game, nothing is allocated, so
+	 * the buffer can be a direct buffer that is then written to a {@link java.nio.channels.FileChannel} or socket. A game restored from the snapshot
+	 * with {@link TetrisEngine#readSnapshot(ByteBuffer)} or {@link TetrisEngine#restoreSnapshot(ByteBuffer)} continues exactly as this game would,
+	 * including the Shapes its randomizer deals. Multi-byte values are written in the byte order of the buffer, which must be the same when reading.
+	 * <p>
+	 * The snapshot holds, as ints unless noted: the magic number {@code KTSS}, the version, the columns and rows, the ticks between gravity steps, the
+	 * ticks since the last gravity step, the rows cleared by the last lock, the game state, the kind ordinal of the current Shape (-1 if none) and its
+	 * column, row and orientation, the randomizer type of {@link Replay}, its parameter count and parameters, its seed as a long, its state size and
+	 * state, the palette size and the ARGB value of every palette color beyond the standard ones, the palette index of every cell as bytes, and the
+	 * counts of the score, see {@link TetrisScore#writeTo(ByteBuffer)}.
+	 * </p>
+	 * @param dest the buffer, written at its position, which is advanced by {@link TetrisEngine#getSnapshotSize()}.
+	 * @throws java.nio.BufferOverflowException if the buffer has not enough room.
+	 * @throws IllegalArgumentException if the randomizer of this game can not be recreated from a snapshot.
+	 */
+	public void writeSnapshot(ByteBuffer dest)
+	{
+		int type=Replay.getRandomizerType(randomizer);
+		dest.putInt(SNAPSHOT_MAGIC);
+		dest.putInt(SNAPSHOT_VERSION);
+		dest.putInt(grid.getColumnCount());
+		dest.putInt(grid.getRowCount());
+		dest.putInt(ticksBetweenGravity);
+		dest.putInt(tickCount);
+		dest.putInt(lastRowsCleared);
+		dest.putInt(currentState.getCurrentState());
+		if(currentShape!=null)
+		{
+			dest.putInt(currentShape.getKind().ordinal());
+			dest.putInt(currentShape.getAbsoluteShapePos().getX());
+			dest.putInt(currentShape.getAbsoluteShapePos().getY());
+			dest.putInt(currentShape.getRotation());
+		}
+		else
+		{
+			dest.putInt(-1);
+			dest.putInt(0);
+			dest.putInt(0);
+			dest.putInt(0);
+		}
+		dest.putInt(type);
+		if(type==Replay.RANDOMIZER_HISTORY)
+		{
+			HistoryRandomizer h=(HistoryRandomizer)randomizer;
+			dest.putInt(2);
+			dest.putInt(h.getHistorySize());
+			dest.putInt(h.getRolls());
+		}
+		else
+		{
+			dest.putInt(0);
+		}
+		AbstractRandomizer r=(AbstractRandomizer)randomizer;
+		dest.putLong(r.getSeed());
+		dest.putInt(r.getStateSize());
+		r.writeState(dest);
+		dest.putInt(grid.getPaletteSize());
+		for(int i=1+ShapeKind.COUNT;i<grid.getPaletteSize();i++)
+			dest.putInt(grid.getPaletteRGB(i));
+		grid.writeCellsTo(dest);
+		score.writeTo(dest);
+	}
+	/**
+	 * Creates a new engine, without painting information, from a snapshot written by {@link TetrisEngine#writeSnapshot(ByteBuffer)}.
+	 * @param src the buffer, read at its position, which is advanced past the snapshot.
+	 * @return the engine, in the state of the snapshot.
+	 * @throws IllegalArgumentException if the buffer does not hold a valid snapshot. The position of the buffer is then undefined.
+	 */
+	public static TetrisEngine readSnapshot(ByteBuffer src)
+	{
+		if(src.remaining()<SNAPSHOT_HEADER_INTS*Integer.BYTES)
+			throw new IllegalArgumentException("Truncated snapshot");
+		int columns=src.getInt(src.position()+2*Integer.BYTES);
+		int rows=src.getInt(src.position()+3*Integer.BYTES);
+		if(columns<=0||rows<=0||(long)columns*rows>src.remaining())
+			throw new IllegalArgumentException("Invalid grid size "+columns+"x"+rows);
+		TetrisEngine engine=new TetrisEngine(columns,rows);
+		engine.restoreSnapshot(src);
+		return engine;
+	}
+	/**
+	 * Replaces the state of this game with a snapshot written by {@link TetrisEngine#writeSnapshot(ByteBuffer)}, keeping the grid, score and game state
+	 * objects, so whoever paints them shows the restored game. The randomizer is replaced by one continuing the snapshot's sequence. Recording stops,
+	 * since a {@link Replay} always starts with a new game.
+	 * @param src the buffer, read at its position, which is advanced past the snapshot.
+	 * @throws IllegalArgumentException if the buffer does not hold a valid snapshot or the snapshot's grid has another size than the grid of this game.
+	 * The game is then left unchanged, and the position of the buffer is undefined.
+	 */
+	public void restoreSnapshot(ByteBuffer src)
+	{
+		try
+		{
+			if(src.getInt()!=SNAPSHOT_MAGIC)
+				throw new IllegalArgumentException("Not a snapshot");
+			int version=src.getInt();
+			if(version!=SNAPSHOT_VERSION)
+				throw new IllegalArgumentException("Unsupported snapshot version "+version);
+			int columns=src.getInt();
+			int rows=src.getInt();
+			if(columns!=grid.getColumnCount()||rows!=grid.getRowCount())
+				throw new IllegalArgumentException("The snapshot is of a "+columns+"x"+rows+" grid, not "+grid.getColumnCount()+"x"+grid.getRowCount());
+			int gravity=src.getInt();
+			int ticks=src.getInt();
+			int cleared=src.getInt();
+			int state=src.getInt();
+			if(state<GameState.GAME_START_SCREEN||state>GameState.GAME_OVER)
+				throw new IllegalArgumentException("Unknown game state "+state);
+			int kind=src.getInt();
+			int x=src.getInt();
+			int y=src.getInt();
+			int rotation=src.getInt();
+			if(kind<-1||kind>=ShapeKind.COUNT)
+				throw new IllegalArgumentException("Unknown Shape kind "+kind);
+			int type=src.getInt();
+			int parameterCount=src.getInt();
+			if(parameterCount<0||parameterCount>Replay.MAX_RANDOMIZER_PARAMETERS)
+				throw new IllegalArgumentException("Invalid randomizer parameters");
+			int[] parameters=new int[parameterCount];
+			for(int i=0;i<parameterCount;i++)
+				parameters[i]=src.getInt();
+			AbstractRandomizer r=Replay.createRandomizer(type,src.getLong(),parameters);
+			if(src.getInt()!=r.getStateSize())
+				throw new IllegalArgumentException("Invalid randomizer state");
+			r.readState(src);
+			int paletteSize=src.getInt();
+			if(paletteSize<1+ShapeKind.COUNT||paletteSize>BackgroundGrid.MAX_PALETTE_SIZE)
+				throw new IllegalArgumentException("Invalid palette size "+paletteSize);
+			int palette=src.position();
+			if(src.remaining()<(paletteSize-1-ShapeKind.COUNT)*Integer.BYTES)
+				throw new IllegalArgumentException("Truncated snapshot");
+			for(int i=1+ShapeKind.COUNT;i<paletteSize;i++)
+			{
+				if(getSnapshotPaletteIndex(src,palette,i)!=i)
+					throw new IllegalArgumentException("The palette of the snapshot does not match the palette of the grid");
+			}
+			src.position(palette+(paletteSize-1-ShapeKind.COUNT)*Integer.BYTES);
+			if(src.remaining()<rows*columns+TetrisScore.BYTES)
+				throw new IllegalArgumentException("Truncated snapshot");
+			grid.checkCells(src,Math.max(paletteSize,grid.getPaletteSize()));
+			for(int i=grid.getPaletteSize();i<paletteSize;i++)
+				grid.getPaletteIndex(src.getInt(palette+(i-1-ShapeKind.COUNT)*Integer.BYTES));
+			grid.readCellsFrom(src);
+			score.readFrom(src);
+			ticksBetweenGravity=Math.max(1,gravity);
+			tickCount=ticks;
+			lastRowsCleared=cleared;
+			currentState.setCurrentState(state);
+			if(kind<0)
+			{
+				currentShape=null;
+			}
+			else
+			{
+				currentShape=ShapeKind.fromIndex(kind).createShape(x,y);
+				currentShape.setRotation(rotation);
+			}
+			randomizer=r;
+			recorder=null;
+		}
+		catch(BufferUnderflowException e)
+		{
+			throw new IllegalArgumentException("Truncated snapshot",e);
+		}
+	}
+	/**
+	 * Returns the palette index the grid would give a color of a snapshot if the colors of the snapshot it lacks were appended to its palette one after
+	 * another, without changing the palette. The palettes match if every color of the snapshot gets its own index.
+	 * @param src the buffer holding the snapshot.
+	 * @param palette the position in the buffer of the ARGB values of the colors of the snapshot beyond the standard ones.
+	 * @param i the palette index of the color in the snapshot.
+	 * @return the palette index the grid would give the color, or -1 if the grid has another color at that index.
+	 */
+	private int getSnapshotPaletteIndex(ByteBuffer src, int palette, int i)
+	{
+		int argb=src.getInt(palette+(i-1-ShapeKind.COUNT)*Integer.BYTES);
+		int known=grid.findPaletteIndex(argb);
+		if(known>=0)
+			return known;
+		if(i<grid.getPaletteSize())
+			return -1;
+		for(int k=grid.getPaletteSize();k<i;k++)
+		{
+			if(src.getInt(palette+(k-1-ShapeKind.COUNT)*Integer.BYTES)==argb)
+				return k;
+		}
+		return i;
+	}
+	/**
+	 * Starts the game if it is showing the start screen.
+	 * @return {@link TetrisEngine#RESULT_STATE_CHANGED} if the game was started, 0 otherwise.
+	 */
+	public int start()
+	{
+		if(currentState.isGameStartScreen())
+		{
+			currentState.setGameRunning();
+			return record(Replay.CODE_START,RESULT_STATE_CHANGED);
+		}
+		return 0;
+	}
+	/**
+	 * Pauses a running game or resumes a paused game. Does nothing on the start screen or once the game is over.
+	 * @return {@link TetrisEngine#RESULT_STATE_CHANGED} if the state changed, 0 otherwise.
+	 */
+	public int togglePause()
+	{
+		if(currentState.isGamePaused())
+		{
+			currentState.setGameRunning();
+			return record(Replay.CODE_TOGGLE_PAUSE,RESULT_STATE_CHANGED);
+		}
+		if(currentState.isGameRunning())
+		{
+			currentState.setGamePaused();
+			return record(Replay.CODE_TOGGLE_PAUSE,RESULT_STATE_CHANGED);
+		}
+		return 0;
+	}
+	/**
+	 * Pauses the game if it is running.
+	 * @return {@link TetrisEngine#RESULT_STATE_CHANGED} if the game was paused, 0 otherwise.
+	 */
+	public int pause()
+	{
+		if(currentState.isGameRunning())
+		{
+			currentState.setGamePaused();
+			return record(Replay.CODE_PAUSE,RESULT_STATE_CHANGED);
+		}
+		return 0;
+	}
+	/**
+	 * Advances the game clock by one tick. Every {@link TetrisEngine#getTicksBetweenGravity()} ticks a gravity step ({@link TetrisEngine#step()}) is performed.
+	 * Each tick is a {@code kopper.tetris.Tick} event of the JDK Flight Recorder, see {@link TickEvent}.
+	 * @return the result flags of the gravity step, or 0 when no gravity step was due.
+	 */
+	public int tick()
+	{
+		TickEvent event=new TickEvent();
+		event.begin();
+		int result=metrics==null?advanceClock():measureClock();
+		if(event.shouldCommit())
+		{
+			event.result=result;
+			event.state=currentState.getCurrentState();
+			event.commit();
+		}
+		return result;
+	}
+	/**
+	 * Advances the game clock by one tick, see {@link TetrisEngine#tick()}, recording its duration and allocations into the metrics.
+	 * @return the combination of {@code RESULT_...} flags describing what happened.
+	 */
+	private int measureClock()
+	{
+		long allocated=metrics.isAllocationSampleDue()?GameMetrics.getThreadAllocatedBytes():-1;
+		long start=System.nanoTime();
+		int result=advanceClock();
+		long nanos=System.nanoTime()-start;
+		metrics.recordTick(nanos,allocated<0?-1:GameMetrics.getThreadAllocatedBytes()-allocated);
+		return result;
+	}
+	/**
+	 * Advances the game clock by one tick, see {@link TetrisEngine#tick()}, without recording metrics.
+	 * @return the combination of {@code RESULT_...} flags describing what happened.
+	 */
+	private int advanceClock()
+	{
+		if(recorder!=null)
+			recorder.tick();
+		tickCount++;
+		if(tickCount>=ticksBetweenGravity)
+		{
+			tickCount=0;
+			return gravityStep();
+		}
+		return 0;
+	}
+	/**
+	 * Performs one iteration of game logic if the game is running: the spawning of a Shape if it does not exist and the periodic translation of the
+	 * Shape downwards, locking it once it can not move down anymore.
+	 * @return the combination of {@code RESULT_...} flags describing what happened.
+	 */
+	public int step()
+	{
+		return record(Replay.CODE_STEP,gravityStep());
+	}
+	/**
+	 * Performs the iteration of game logic of {@link TetrisEngine#step()}, without recording it separately from the tick it belongs to.
+	 * @return the combination of {@code RESULT_...} flags describing what happened.
+	 */
+	private int gravityStep()
+	{
+		int result=0;
+		if(currentState.isGameRunning())
+		{
+			if(currentShape==null)
+			{
+				SpawnEvent event=new SpawnEvent();
+				event.begin();
+				currentShape=BackgroundGrid.createShape(randomizer.nextShapeIndex(),spawnCoord.getX(),spawnCoord.getY());
+				result|=RESULT_SPAWNED;
+				if(event.shouldCommit())
+				{
+					event.kind=currentShape.getKind().name();
+					event.column=spawnCoord.getX();
+					event.commit();
+				}
+			}
+
+			if(grid.canTranslateDown(currentShape))
+			{
+				currentShape.translateShapeDown();
+				result|=RESULT_MOVED;
+			}
+
+			if(grid.isShapeDead(currentShape))
+			{
+				result|=lockShape();
+			}
+		}
+		return result;
+	}
+	/**
+	 * Applies one player input to the current Shape if the game is running and a Shape exists. Only inputs that changed the game are counted by the
+	 * metrics, the same inputs a {@link Replay} records, so key presses that are mapped to no input or that move nothing are not counted.
+	 * @param input one of the {@code INPUT_...} constants of this class.
+	 * @return the combination of {@code RESULT_...} flags describing what happened.
+	 */
+	public int input(int input)
+	{
+		int result=applyInput(input);
+		if(metrics!=null&&result!=0)
+			metrics.recordInput();
+		return record(input,result);
+	}
+	/**
+	 * Applies one player input, see {@link TetrisEngine#input(int)}, without recording it.
+	 * @param input one of the {@code INPUT_...} constants of this class.
+	 * @return the combination of {@code RESULT_...} flags describing what happened.
+	 */
+	private int applyInput(int input)
+	{
+		if(currentShape==null||!currentState.isGameRunning())
+			return 0;
+		switch(input)
+		{
+			case INPUT_LEFT:
+				if(grid.canTranslate(currentShape, -1, 0))
+				{
+					currentShape.translateShape(-1, 0);
+					return RESULT_MOVED;
+				}
+				return 0;
+			case INPUT_RIGHT:
+				if(grid.canTranslate(currentShape, 1, 0))
+				{
+					currentShape.translateShape(1, 0);
+					return RESULT_MOVED;
+				}
+				return 0;
+			case INPUT_DOWN:
+				if(grid.canTranslate(currentShape, 0, 1))
+				{
+					currentShape.translateShapeDown();
+					score.incrementArrowDown();
+					return RESULT_MOVED;
+				}
+				return lockShape();
+			case INPUT_ROTATE_CW:
+				if(grid.canRotateCW90(currentShape))
+				{
+					currentShape.rotateShapeClockwise90();
+					return RESULT_MOVED;
+				}
+				return 0;
+			case INPUT_ROTATE_CCW:
+				if(grid.canRotateCCW90(currentShape))
+				{
+					currentShape.rotateShapeCounterClockwise90();
+					return RESULT_MOVED;
+				}
+				return 0;
+			default:
+				return 0;
+		}
+	}
+	/**
+	 * Passes a call that changed the game to the recorder, if the game is recorded. Calls that changed nothing are not recorded, since playing them
+	 * back would change nothing either.
+	 * @param code the code of the call in a {@link Replay}, one of the {@code INPUT_...} constants or a {@code Replay.CODE_...} constant.
+	 * @param result the result of the call.
+	 * @return the result.
+	 */
+	private int record(int code, int result)
+	{
+		if(recorder!=null&&result!=0)
+			recorder.record(code);
+		return result;
+	}
+	/**
+	 * Locks the dead current Shape into the grid, scores it and deletes any full rows. If the Shape is not completely inside the grid, the game is over instead.
+	 * The lock is a {@code kopper.tetris.Lock} event of the JDK Flight Recorder, and the deletion of rows a {@code kopper.tetris.LineClear} event, see
+	 * {@link LockEvent} and {@link LineClearEvent}.
+	 * @return the combination of {@code RESULT_...} flags describing what happened.
+	 */
+	private int lockShape()
+	{
+		Shape shape=currentShape;
+		LockEvent event=new LockEvent();
+		event.begin();
+		int result=lockShapeIntoGrid();
+		if(event.shouldCommit())
+		{
+			event.kind=shape.getKind().name();
+			event.column=shape.getAbsoluteShapePos().getX();
+			event.row=shape.getAbsoluteShapePos().getY();
+			event.rowsCleared=(result&RESULT_ROWS_CLEARED)!=0?lastRowsCleared:0;
+			event.gameOver=(result&RESULT_GAME_OVER)!=0;
+			event.commit();
+		}
+		return result;
+	}
+	/**
+	 * Locks the dead current Shape into the grid, see {@link TetrisEngine#lockShape()}, without recording its event.
+	 * @return the combination of {@code RESULT_...} flags describing what happened.
+	 */
+	private int lockShapeIntoGrid()
+	{
+		if(grid.isShapeOutBounds(currentShape))
+		{
+			currentShape=null;
+			currentState.setGameOver();
+			return RESULT_GAME_OVER|RESULT_STATE_CHANGED;
+		}
+		grid.consumeShape(currentShape);
+		score.incrementShape(currentShape);
+		lastRowsCleared=grid.detectFullRows();
+		score.incrementRow(lastRowsCleared);
+		if(lockListener!=null)
+			lockListener.shapeLocked(currentShape,grid);
+		if(metrics!=null)
+			metrics.recordLock(lastRowsCleared);
+		LineClearEvent event=new LineClearEvent();
+		event.begin();
+		grid.removeDetectedRows();
+		if(lastRowsCleared>0&&event.shouldCommit())
+		{
+			event.rows=lastRowsCleared;
+			event.totalRows=score.getRows();
+			event.commit();
+		}
+		currentShape=null;
+		return lastRowsCleared>0?RESULT_LOCKED|RESULT_ROWS_CLEARED:RESULT_LOCKED;
+	}
+	/**
+	 * Returns the grid this game is played on.
+	 * @return the grid.
+	 */
+	public BackgroundGrid getGrid()
+	{
+		return grid;
+	}
+	/**
+	 * Returns the current Shape.
+	 * @return the current Shape, or null if none has spawned yet, it was just locked, or the game is over.
+	 */
+	public Shape getCurrentShape()
+	{
+		return currentShape;
+	}
+	/**
+	 * Replaces the current Shape, for views that mirror a game played elsewhere, such as {@link SpectatorView}.
+	 * @param shape the Shape, or null for none.
+	 */
+	void setCurrentShape(Shape shape)
+	{
+		this.currentShape=shape;
+	}
+	/**
+	 * Returns the object keeping track of this game's state.
+	 * @return the game state.
+	 */
+	public GameState getState()
+	{
+		return currentState;
+	}
+	/**
+	 * Returns the object keeping track of this game's score.
+	 * @return the score.
+	 */
+	public TetrisScore getScore()
+	{
+		return score;
+	}
+	/**
+	 * Returns the number of rows deleted by the most recent lock of a Shape.
+	 * @return the number of rows, 0 to 4 for the standard Tetrominoes.
+	 */
+	public int getLastRowsCleared()
+	{
+		return lastRowsCleared;
+	}
+}
@@ -1,6 +1,18 @@
 package kopper.tetris.core;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.*;
 
 import kopper.tetris.shape.Shape;
@@ -26,7 +38,7 @@ import kopper.tetris.shape.Shape;
  *</p>
  *
  *<p>In the Model Viewer Controller (MVC) software architecture, this class combines the model components:
- * mostly represented by {@link BackgroundGrid}, {@link Shape} (and its subclasses), with the viewer components: {@link TetrisGame},
+ * mostly represented by {@link TetrisEngine}, which owns the game rules, {@link BackgroundGrid}, {@link Shape} (and its subclasses), with the viewer components: {@link TetrisGame},
  * which is a subclass of {@link JPanel} and heavily relies on {@link TetrisGame#paintComponent(Graphics)}, and {@code drawOBJECTNAME(Graphics2D g2d)} 
  * methods and the controller components: {@link java.awt.event.KeyListener} implemented in TetrisGame as methods.
  * </p>
@@ -52,208 +64,26 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 	 * The unicode character for the arrow down key on the board.
 	 */
 	public static char ARROW_DOWN='\u2193';
-
-	
-	/**
-	 * A Class which represents the state of a TetrisGame. 
-	 * 
-	 * Each of the FOUR states represents a different rendering flow inside of the {@link JPanel}'s overridden method  {@link TetrisGame#paintComponent(Graphics)}.
-	 * 
-	 * <p>Note: In future releases I hope to potentially add a FIFTH state, probably titled GAME_ANIMATION, to accommodate some attractive animations during
-	 * the row deletion process of the Tetris Game. Also, looking into changing this class to an Enum declaration in future releases.
-	 * @author <a href="https://github.com/kopperknight">KopperKnight</a>
-	 *
-	 */
-	public static class State
-	{
-		/**
-		 * <p>This is the constant representing the game when it is first started up.
-		 * During this rendering flow. The following methods are called in order:
-		 *  </p>
-		 * <ol>
-		 * 	<li> {@link TetrisGame#performOneAnimationTick()} The internal {@link javax.swing.Timer} object triggers this method 25 times per second. </li>
-		 *  <li> {@link TetrisGame#repaint()} This is called 25 times per second.</li>
-		 *  <li> {@link TetrisGame#paintComponent(Graphics)} is called when ever {@link TetrisGame#repaint()} is called.</li>
-		 * 	
-		 * 	<li> {@link TetrisGame#paintGameRunning(Graphics2D, State)}. This is called whenever {@link TetrisGame#paintComponent(Graphics)} is called.
-		 * This method paints the running game data represented mostly by {@link BackgroundGrid} is always painted on the bottom.</li>
-		 * 	<li> {@link TetrisGame#paintGameStartScreen(Graphics2D)}. This is always called whenever {@link TetrisGame#paintComponent(Graphics)} is called 
-		 * AND during this State {@code GAME_START_SCREEN=0;}. 
-		 * The start screen is painted over the game with a translucent color so that one can see the game screen behind the start screen.</li>
-		 *</ol>
-		 * 
-		 * 
-		 */
-		public static final int GAME_START_SCREEN=0;
-		
-		/**
-		 * <p>This is the constant representing the game when it running and being played. 
-		 * During this rendering flow. The following methods are called in order:
-		 * <ol>
-		 * 	<li> {@link TetrisGame#performOneAnimationTick()} The internal {@link javax.swing.Timer} object triggers this method 25 times per second. </li>
-		 *  <li> {@link TetrisGame#repaint()} This is called 25 times per second.</li>
-		 *  <li> {@link TetrisGame#paintComponent(Graphics)} is called when ever {@link TetrisGame#repaint()} is called.</li>
-		 * 	
-		 * 	<li> {@link TetrisGame#paintGameRunning(Graphics2D, State)}. This is called whenever {@link TetrisGame#paintComponent(Graphics)} is called.
-		 * This method paints the running game data represented mostly by {@link BackgroundGrid} is always painted on the bottom.</li>
-		 * 	<li> {@link TetrisGame#performOneAnimationTick() }. The internals of this method always execute once for every {@link TetrisGame#TICKS_BETWEEN_GRAVITY } times
-		 * that {@link TetrisGame#performOneAnimationTick() } is called
-		 * AND during this State {@code GAME_RUNNING=1;}. </li>
-		 *</ol>
-		 * 
-		 * 
-		 */
-		public static final int GAME_RUNNING=1;
-		/**
-		 * <p>This is the constant representing the game when it is paused. 
-		 * During this rendering flow. The following methods are called in order:
-		 * <ol>
-		 * 	<li> {@link TetrisGame#performOneAnimationTick()} The internal {@link javax.swing.Timer} object triggers this method 25 times per second. </li>
-		 *  <li> {@link TetrisGame#repaint()} This is called 25 times per second.</li>
-		 *  <li> {@link TetrisGame#paintComponent(Graphics)} is called when ever {@link TetrisGame#repaint()} is called.</li>
-		 * 	
-		 * 	<li> {@link TetrisGame#paintGameRunning(Graphics2D, State)}. This is called whenever {@link TetrisGame#paintComponent(Graphics)} is called.
-		 * This method paints the running game data represented mostly by {@link BackgroundGrid} is always painted on the bottom.</li>
-		 * 	<li> {@link TetrisGame#paintGamePauseScreen(Graphics2D)}. This is always called whenever {@link TetrisGame#paintComponent(Graphics)} is called 
-		 * AND during this State {@code GAME_PAUSED=2;}. 
-		 * The pause screen is painted over the game with a translucent color so that one can see the game screen behind the start screen.</li>
-		 *</ol>
-		 * 
-		 * 
-		 */
-		public static final int GAME_PAUSED=2;
-		/**
-		 * <p>This is the constant representing the game when it is over and the user has lost. 
-		 * During this rendering flow. The following methods are called in order:
-		 * <ol>
-		 * 	<li> {@link TetrisGame#performOneAnimationTick()} The internal {@link javax.swing.Timer} object triggers this method 25 times per second. </li>
-		 *  <li> {@link TetrisGame#repaint()} This is called 25 times per second.</li>
-		 *  <li> {@link TetrisGame#paintComponent(Graphics)} is called when ever {@link TetrisGame#repaint()} is called.</li>
-		 * 	
-		 * 	<li> {@link TetrisGame#paintGameRunning(Graphics2D, State)}. This is called whenever {@link TetrisGame#paintComponent(Graphics)} is called.
-		 * This method paints the running game data represented mostly by {@link BackgroundGrid} is always painted on the bottom.</li>
-		 * 	<li> {@link TetrisGame#paintGameOverScreen(Graphics2D) }. This is always called whenever {@link TetrisGame#paintComponent(Graphics)} is called 
-		 * AND during this State {@code GAME_OVER=3;}. 
-		 * The game over screen is painted over the game with a translucent color so that one can see the game screen behind the start screen.</li>
-		 *</ol>
-		 * 
-		 * 
-		 */
-		public static final int GAME_OVER=3;
-		/**
-		 * The variable storing the current state of this object.
-		 */
-		private int currentState=0;
-		/**
-		 * Create a new State object.
-		 */
-		public State()//default state is Game START Screen
-		{
-			
-		}
-		/**
-		 * Sets the current state of this object to be {@link TetrisGame.State#GAME_START_SCREEN}
-		 */
-		public void setGameStartScreen()
-		{
-			currentState=GAME_START_SCREEN;
-		}
-		/**
-		 * Sets the current state of this object to be {@link TetrisGame.State#GAME_RUNNING}
-		 */
-		public void setGameRunning()
-		{
-			currentState=GAME_RUNNING;
-		}
-		/**
-		 * Sets the current state of this object to be {@link TetrisGame.State#GAME_PAUSED}
-		 */
-		public void setGamePaused()
-		{
-			currentState=GAME_PAUSED;
-		}
-		/**
-		 * Sets the current state of this object to be {@link TetrisGame.State#GAME_OVER}
-		 */
-		public void setGameOver()
-		{
-			currentState=GAME_OVER;
-		}
-		/**
-		 * Get the current state of this object. One of the four constants representing a game state will be returned:
-		 * {@link TetrisGame.State#GAME_START_SCREEN },{@link TetrisGame.State#GAME_RUNNING},{@link TetrisGame.State#GAME_PAUSED},{@link TetrisGame.State#GAME_OVER}.
-		 * @return The current state this object is in.
-		 */
-		public int getCurrentState()
-		{
-			return currentState;
-		}
-		/**
-		 * Tests this object's current state value to see if it is equal to the {@link TetrisGame.State#GAME_RUNNING} constant.
-		 * @return True if this game's current state is {@code GAME_RUNNING}.
-		 */
-		public boolean isGameRunning()
-		{
-			return currentState==GAME_RUNNING;
-		}
-		/**
-		 * Tests this object's current state value to see if it is equal to the {@link TetrisGame.State#GAME_START_SCREEN} constant.
-		 * @return True if this game's current state is {@code GAME_START_SCREEN}.
-		 */
-		public boolean isGameStartScreen()
-		{
-			return currentState==GAME_START_SCREEN;
-		}
-		/**
-		 * Tests this object's current state value to see if it is equal to the {@link TetrisGame.State#GAME_PAUSED } constant.
-		 * @return True if this game's current state is {@code GAME_PAUSED}.
-		 */
-		public boolean isGamePaused()
-		{
-			return currentState==GAME_PAUSED;
-		}
-		/**
-		 * Tests this object's current state value to see if it is equal to the {@link TetrisGame.State#GAME_OVER} constant.
-		 * @return True if this game's current state is {@code GAME_OVER}.
-		 */
-		public boolean isGameOver()
-		{
-			return currentState==GAME_OVER;
-		}
-		/**
-		 * Returns the string representation of this object, which is a single line string with the class name and the constant field name for the variable 
-		 * representing this objects current state.
-		 * @return this object's string representation.
-		 */
-		public String toString()
-		{
-			String temp="TetrisGame.State";
-			switch(currentState)
-			{
-			case GAME_START_SCREEN:	return temp+"=[GAME_START_SCREEN]";
-			case GAME_PAUSED:		return temp+"=[GAME_PAUSED]";
-			case GAME_OVER:			return temp+"=[GAME_OVER]";
-			case GAME_RUNNING:
-				default: 	 		return temp+"=[GAME_RUNNING]";
-			}
-		}
-	}
 	/**
 	 * Serializable identifier. 
 	 */
 	private static final long serialVersionUID = 1L;
 	/**
-	 * The current shape, there can be only a maximum of one live shape at a time and this is where it is stored.
+	 * The engine holding all of the game rules and the game model. This class only paints the engine's data and feeds it timer ticks and key presses.
 	 */
-	private Shape currentShape;
+	private TetrisEngine engine;
 	/**
-	 * The internal object that paints the game background.
+	 * The grid this object paints. This is the grid the {@link TetrisGame#engine} plays on, or in game loop mode the grid mirroring the loop's snapshots.
 	 */
 	private BackgroundGrid grid;
 	/**
-	 * The internal object that keeps track of the game's state.
+	 * The internal object that paints the game background, the {@link TetrisGame#grid}.
 	 */
-	private State currentState;
+	private GridView gridView;
+	/**
+	 * The internal object that keeps track of the game's state, owned by the {@link TetrisGame#engine}.
+	 */
+	private GameState currentState;
 	/**
 	 * The internal object that paints the score and Tetromino Shape legend at the bottom of the game screen.
 	 */
@@ -272,17 +102,7 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 	/**
 	 * The number of timer events between a single iteration in game logic, such as moving the current shape down one row.
 	 */
-	private final int TICKS_BETWEEN_GRAVITY=15;
-	/**
-	 * Keeps track of the number of animation events since the last game logic iteration. 
-	 * When this value reaches the value of {@link TetrisGame#TICKS_BETWEEN_GRAVITY}, it resets to zero and keeps track of the count again.
-	 * 
-	 */
-	private int animationTickCount=0;
-	/**
-	 * The spawn location of a new shape is set to the horizontal center and one cell over the top of the game screen.
-	 */
-	private Coord spawnCoord=new Coord(10,-1);
+	private final int TICKS_BETWEEN_GRAVITY=TetrisEngine.DEFAULT_TICKS_BETWEEN_GRAVITY;
 	/**
 	 * The size in terms of height and width of this JPanel required to properly present the game.
 	 */
@@ -308,11 +128,82 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 	 *  close this application when the user presses the ESC key.
 	 */
 	private JFrame parentFrame;
+	/**
+	 * The cached image of everything painted under the current Shape that rarely changes: the {@link BackgroundGrid}, the walls and the
+	 * cells and Tetrominoes of the score area. See {@link TetrisGame#paintBackgroundLayer(Graphics2D)}.
+	 */
+	private BufferedImage backgroundLayer;
+	/**
+	 * The scale of the device {@link TetrisGame#backgroundLayer} was rendered for, so that it is rendered again in full resolution when the window
+	 * moves to a screen with a different scale.
+	 */
+	private double backgroundLayerScale=0.0;
+	/**
+	 * The {@link BackgroundGrid#getModificationCount()} of the grid as it was rendered into {@link TetrisGame#backgroundLayer}.
+	 */
+	private int backgroundLayerGridVersion;
+	/**
+	 * The loop running the engine on a thread of its own in game loop mode, null when the engine is run by {@link TetrisGame#timer}.
+	 * See {@link TetrisGame#TetrisGame(JFrame, boolean)}.
+	 */
+	private GameLoop gameLoop;
+	/**
+	 * The connection to the server running the game in client mode, null when the game runs in this process.
+	 * See {@link TetrisGame#TetrisGame(JFrame, GameClient)}.
+	 */
+	private GameClient client;
+	/**
+	 * The latest frame received from the server in client mode and not applied yet, null if there is none.
+	 */
+	private final AtomicReference<ByteBuffer> latestFrame=new AtomicReference<>();
+	/**
+	 * The Shape painted in game loop mode, created from the last applied {@link FrameSnapshot}.
+	 */
+	private Shape snapshotShape;
+	/**
+	 * The last {@link FrameSnapshot} applied to the painted grid, score and state in game loop mode.
+	 */
+	private FrameSnapshot appliedSnapshot;
+	/**
+	 * The directory the {@link Replay} of the game is written to once the game is over, null to not write it. See
+	 * {@link TetrisGame#setReplayDirectory(Path)}.
+	 */
+	private Path replayDirectory;
+	/**
+	 * True for every engine input whose key is held in game loop mode. The operating system repeats the key events of a held key, but the loop repeats
+	 * held moves itself, so only the first press and the release of a key are submitted to the loop.
+	 */
+	private final boolean[] inputHeld=new boolean[TetrisEngine.INPUT_ROTATE_CCW+1];
+	/**
+	 * True while a call of {@link TetrisGame#applySnapshot()} is waiting on the event dispatch thread, so that snapshots published faster than
+	 * they are painted queue only one event.
+	 */
+	private final AtomicBoolean snapshotPending=new AtomicBoolean();
+	/**
+	 * The renderer painting every frame when raster rendering is turned on, null otherwise. See {@link TetrisGame#setRasterRendering(boolean)}.
+	 */
+	private RasterRenderer rasterRenderer;
+	/**
+	 * The state painted by the last full repaint, see {@link TetrisGame#repaintChanged()}.
+	 */
+	private int paintedState=-1;
+	/**
+	 * The pixels covered by the current Shape where it was last asked to be painted. A negative width means no Shape was painted.
+	 */
+	private Rectangle paintedShapeBounds=new Rectangle(0,0,-1,-1);
+	/**
+	 * The pixels covered by the current Shape where it is now, reused by every call of {@link TetrisGame#repaintChanged()}.
+	 */
+	private Rectangle shapeBounds=new Rectangle();
+	/**
+	 * A scratch rectangle for the changed rows and score texts, reused by every call of {@link TetrisGame#repaintChanged()}.
+	 */
+	private Rectangle changedArea=new Rectangle();
 
 	/**
-	 * The internal object responsible for keeping score.
+	 * The internal object responsible for keeping score, owned by the {@link TetrisGame#engine}.
 	 */
-	private TetrisScore score=new TetrisScore();
+	private TetrisScore score;
 
 	
 	
@@ -394,71 +285,71 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 				}
 			}
 		}
-		if(currentShape!=null&&currentState.isGameRunning())
+		if(gameLoop!=null)
 		{
-			if(e.getKeyCode()==KeyEvent.VK_LEFT||e.getKeyCode()==KeyEvent.VK_A)
-			{
-				if(grid.canTranslate(currentShape, -1, 0))
-				currentShape.translateShape(-1, 0);
-			}
-			else if(e.getKeyCode()==KeyEvent.VK_RIGHT||e.getKeyCode()==KeyEvent.VK_D)
+			int input=toEngineInput(e.getKeyCode());
+			if(input!=TetrisEngine.INPUT_NONE&&currentState.isGameRunning()&&!inputHeld[input])
 			{
-				if(grid.canTranslate(currentShape, 1, 0))
-					currentShape.translateShape(1, 0);
+				inputHeld[input]=true;
+				gameLoop.submit(input);
 			}
-			else if(e.getKeyCode()==KeyEvent.VK_DOWN||e.getKeyCode()==KeyEvent.VK_S)
-			{
-				if(grid.canTranslate(currentShape, 0, 1))
-				{
-					currentShape.translateShapeDown();
-					score.incrementArrowDown();
-				}
-				else if(grid.isShapeDead(currentShape))
-				{
-					if(grid.isShapeOutBounds(currentShape))
-					{
-						setGameOver();
-					}
-					else
-					{
-						grid.consumeShape(currentShape);
-						score.incrementShape(currentShape);
-						score.incrementRow(grid.detectFullRows());
-						grid.removeDetectedRows();
-						currentShape=null;
-					}
-					
-				}
-			}
-			else if(e.getKeyCode()==KeyEvent.VK_W||e.getKeyCode()==KeyEvent.VK_UP)
-			{
-				if(grid.canRotateCW90(currentShape))
-				currentShape.rotateShapeClockwise90();
-			}
-			else if(e.getKeyCode()==KeyEvent.VK_Q||e.getKeyCode()==KeyEvent.VK_NUMPAD0)
-			{
-				if(grid.canRotateCCW90(currentShape))
-				currentShape.rotateShapeCounterClockwise90();
-			}
-			else
+		}
+		else if(client!=null)
+		{
+			int input=toEngineInput(e.getKeyCode());
+			if(input!=TetrisEngine.INPUT_NONE&&currentState.isGameRunning())
+				sendToServer(input);
+		}
+		else if(engine.getCurrentShape()!=null&&currentState.isGameRunning())
+		{
+			int result=engine.input(toEngineInput(e.getKeyCode()));
+			if((result&TetrisEngine.RESULT_GAME_OVER)!=0)
 			{
-				
+				setGameOver();
 			}
-			repaint();
 		}
-		
+		repaintChanged();
 	}
 	/**
-	 * Not implemented in this class, used to listen for keyTyped.
+	 * Translates a key code into the matching {@code INPUT_...} constant of {@link TetrisEngine}.
+	 * @param keyCode The key code of a key event.
+	 * @return the engine input, {@link TetrisEngine#INPUT_NONE} for keys that do not move the current Shape.
+	 */
+	private int toEngineInput(int keyCode)
+	{
+		switch(keyCode)
+		{
+			case KeyEvent.VK_LEFT:
+			case KeyEvent.VK_A:			return TetrisEngine.INPUT_LEFT;
+			case KeyEvent.VK_RIGHT:
+			case KeyEvent.VK_D:			return TetrisEngine.INPUT_RIGHT;
+			case KeyEvent.VK_DOWN:
+			case KeyEvent.VK_S:			return TetrisEngine.INPUT_DOWN;
+			case KeyEvent.VK_W:
+			case KeyEvent.VK_UP:		return TetrisEngine.INPUT_ROTATE_CW;
+			case KeyEvent.VK_Q:
+			case KeyEvent.VK_NUMPAD0:	return TetrisEngine.INPUT_ROTATE_CCW;
+			default:					return TetrisEngine.INPUT_NONE;
+		}
+	}
+	/**
+	 * In game loop mode, tells the loop that the key of an input was released, ending the auto repeat of its move. Not used otherwise.
 	 */
 	public void keyReleased(KeyEvent e)
 	{
-
+		if(gameLoop==null)
+			return;
+		int input=toEngineInput(e.getKeyCode());
+		if(input!=TetrisEngine.INPUT_NONE&&inputHeld[input])
+		{
+			inputHeld[input]=false;
+			gameLoop.submit(GameLoop.COMMAND_RELEASE|input);
+		}
 	}
 	
 	/**
-	 * Constructs a new object of this class. Every argument except for the first one, is passed directly into the member object's constructor:
-	 * {@link BackgroundGrid#BackgroundGrid(int, int, int, int, int, int)}.
+	 * Constructs a new object of this class. Every argument except for the first one, is passed directly into the member objects' constructors:
+	 * {@link GridView#GridView(BackgroundGrid, int, int, int, int)} and {@link BackgroundGrid#BackgroundGrid(int, int)}.
 	 * @param parent The JFrame object that needs to be properly closed when the application ends.
 	 * @param x The x component pixel location of the upper left corner of the BackgroundGrid object 
 	 * @param y The y component pixel location of the upper left corner of the BackgroundGrid object
@@ -476,9 +367,7 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 		this.initWalls();
 	
 		this.parentFrame=parent;
-		this.grid=new BackgroundGrid(x,y,gridwidth,gridheight,columns,rows);
-		this.currentState=new State();
-		this.statGrid=new TetrominoStats(score);
+		this.initEngine(new GridView(new BackgroundGrid(columns,rows),x,y,gridwidth,gridheight));
 		this.pauseScreen=new StartPauseScreen(this.preferredSize);
 	}
 	/**
@@ -488,6 +377,18 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
      * @param parent The JFrame object that needs to be properly closed when the application ends.
 	 */
 	public TetrisGame(JFrame parent)
+	{
+		this(parent,false);
+	}
+	/**
+	 * Constructs a new object of this class with the pixel dimensions of {@link TetrisGame#TetrisGame(JFrame)}, optionally in game loop mode.
+	 * <p>In game loop mode the engine is run by a {@link GameLoop} on a thread of its own instead of by the Swing timer of this class. The engine
+	 * then plays on a grid of its own that only the loop thread touches, and this object paints a grid, score and state of its own,
+	 * which mirror the {@link FrameSnapshot} objects the loop publishes. Key presses are handed to the loop with {@link GameLoop#submit(int)}.
+	 * @param parent The JFrame object that needs to be properly closed when the application ends.
+	 * @param gameLoop True for game loop mode, false to run the engine with the Swing timer.
+	 */
+	public TetrisGame(JFrame parent,boolean gameLoop)
 	{
 		super();
 		this.setSize(preferredSize);
@@ -496,11 +397,186 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 		this.initWalls();
 
 		this.parentFrame=parent;
-		this.grid=new BackgroundGrid(30,30,600,600,20,20);
-		this.currentState=new State();
-		this.statGrid=new TetrominoStats(score);
+		if(gameLoop)
+			this.initGameLoop(new GridView(new BackgroundGrid(20,20),30,30,600,600));
+		else
+			this.initEngine(new GridView(new BackgroundGrid(20,20),30,30,600,600));
 		this.pauseScreen=new StartPauseScreen(this.preferredSize);
 	}
+	/**
+	 * Constructs a new object of this class with the pixel dimensions of {@link TetrisGame#TetrisGame(JFrame)}, in client mode.
+	 * <p>In client mode the game runs on a {@link GameServer}. Key presses are sent to the server with {@link GameClient#send(int)}, and a thread
+	 * of this object receives the frames of the game, each restored into the engine painted by this object on the event dispatch thread. The engine
+	 * is never advanced locally.
+	 * @param parent The JFrame object that needs to be properly closed when the application ends.
+	 * @param client The connection to the server.
+	 */
+	public TetrisGame(JFrame parent,GameClient client)
+	{
+		this(parent,false);
+		this.client=client;
+		Thread reader=new Thread(this::readFrames,"kopper-tetris-client");
+		reader.setDaemon(true);
+		reader.start();
+	}
+	/**
+	 * Creates the engine that plays on the grid of the supplied view and the objects painting its data.
+	 * @param view The view painting the grid the engine plays on.
+	 */
+	private void initEngine(GridView view)
+	{
+		this.gridView=view;
+		this.grid=view.getGrid();
+		this.engine=new TetrisEngine(grid);
+		this.engine.setTicksBetweenGravity(TICKS_BETWEEN_GRAVITY);
+		this.engine.startRecording();
+		this.currentState=engine.getState();
+		this.score=engine.getScore();
+		this.statGrid=new TetrominoStats(score);
+	}
+	/**
+	 * Creates the engine, on a grid of its own, and the loop running it, and the grid, score and state painted by this object, which
+	 * mirror the loop's snapshots.
+	 * @param view The view painting the grid that mirrors the loop's snapshots.
+	 */
+	private void initGameLoop(GridView view)
+	{
+		this.gridView=view;
+		this.grid=view.getGrid();
+		this.engine=new TetrisEngine(grid.getColumnCount(),grid.getRowCount());
+		this.engine.setTicksBetweenGravity(TICKS_BETWEEN_GRAVITY);
+		this.engine.startRecording();
+		this.currentState=new GameState();
+		this.score=new TetrisScore();
+		this.statGrid=new TetrominoStats(score);
+		this.gameLoop=new GameLoop(engine,TIMER_PERIOD*1_000_000L,this::snapshotPublished);
+	}
+	/**
+	 * Called on the loop thread with every snapshot the {@link GameLoop} publishes. Schedules {@link TetrisGame#applySnapshot()} on the event
+	 * dispatch thread unless it is already scheduled.
+	 * @param snapshot the snapshot, which {@link TetrisGame#applySnapshot()} reads again with {@link GameLoop#getLatestSnapshot()}.
+	 */
+	private void snapshotPublished(FrameSnapshot snapshot)
+	{
+		if(snapshotPending.compareAndSet(false,true))
+			SwingUtilities.invokeLater(this::applySnapshot);
+	}
+	/**
+	 * Copies the latest snapshot of the {@link GameLoop} into the grid, score, state and Shape painted by this object and repaints what changed.
+	 * Runs on the event dispatch thread. Snapshots published in between are skipped, only the latest is painted.
+	 */
+	private void applySnapshot()
+	{
+		snapshotPending.set(false);
+		FrameSnapshot snapshot=gameLoop.getLatestSnapshot();
+		if(snapshot==null||snapshot==appliedSnapshot)
+			return;
+		applySnapshot(snapshot);
+	}
+	/**
+	 * Copies a snapshot into the grid, score, state and Shape painted by this object and repaints what changed. Runs on the event dispatch thread.
+	 * @param snapshot the snapshot.
+	 */
+	private void applySnapshot(FrameSnapshot snapshot)
+	{
+		if(appliedSnapshot==null||appliedSnapshot.getGridVersion()!=snapshot.getGridVersion())
+			snapshot.restoreCells(grid);
+		snapshot.copyScoreTo(score);
+		snapshotShape=snapshot.createShape();
+		boolean wasOver=currentState.isGameOver();
+		currentState.setCurrentState(snapshot.getState());
+		appliedSnapshot=snapshot;
+		if(currentState.isGameOver()&&!wasOver)
+			setGameOver();
+		repaintChanged();
+	}
+	/**
+	 * The body of the thread receiving the frames of the game in client mode. Hands every frame to the event dispatch thread, where
+	 * {@link TetrisGame#applyFrame()} applies the latest one.
+	 */
+	private void readFrames()
+	{
+		try
+		{
+			while(true)
+			{
+				if(latestFrame.getAndSet(client.readFrame())==null)
+					SwingUtilities.invokeLater(this::applyFrame);
+			}
+		}
+		catch(IOException e)
+		{
+			System.out.println("Disconnected from the server: "+e);
+			SwingUtilities.invokeLater(()->
+			{
+				if(!currentState.isGameOver())
+					setGameOver();
+			});
+		}
+	}
+	/**
+	 * Restores the latest frame received from the server into the engine painted by this object and repaints what changed. Runs on the event
+	 * dispatch thread. Frames received in between are skipped, only the latest is painted.
+	 */
+	private void applyFrame()
+	{
+		ByteBuffer frame=latestFrame.getAndSet(null);
+		if(frame==null)
+			return;
+		boolean wasOver=currentState.isGameOver();
+		try
+		{
+			engine.restoreSnapshot(frame);
+		}
+		catch(IllegalArgumentException e)
+		{
+			System.out.println("Invalid frame from the server: "+e.getMessage());
+			return;
+		}
+		if(currentState.isGameOver()&&!wasOver)
+			setGameOver();
+		repaintChanged();
+	}
+	/**
+	 * Sends a command to the server in client mode.
+	 * @param command The command, see {@link GameClient#send(int)}.
+	 */
+	private void sendToServer(int command)
+	{
+		try
+		{
+			client.send(command);
+		}
+		catch(IOException e)
+		{
+			System.out.println("Command not sent: "+e);
+		}
+	}
+	/**
+	 * Returns the current Shape to paint: the engine's current Shape, or in game loop mode the Shape of the last applied snapshot.
+	 * @return the Shape, or null if there is none.
+	 */
+	private Shape getPaintedShape()
+	{
+		return gameLoop!=null?snapshotShape:engine.getCurrentShape();
+	}
+	/**
+	 * Returns the loop running the engine in game loop mode.
+	 * @return the loop, or null if the engine is run by the Swing timer of this class.
+	 */
+	public GameLoop getGameLoop()
+	{
+		return gameLoop;
+	}
+	/**
+	 * Returns the engine holding the rules and model of the game painted by this object. In game loop mode the engine belongs to the loop thread
+	 * once the game started, and must not be used by any other thread.
+	 * @return the engine of this game.
+	 */
+	public TetrisEngine getEngine()
+	{
+		return engine;
+	}
 	/**
 	 * Used to initialize the GridCell arrays that are used to arbitrarily draw the walls one cell thick of the TetrisGame, which pad the
 	 * internal BackgroundGrid object.
@@ -546,6 +622,10 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 	 */
 	public void paintComponent(Graphics g)
 	{
+		GameMetrics metrics=engine.getMetrics();
+		long start=metrics!=null?System.nanoTime():0;
+		PaintEvent event=new PaintEvent();
+		event.begin();
 		super.paintComponent(g);
 		Graphics2D g2d=(Graphics2D)g;
 		
@@ -556,7 +636,16 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 			paintGameOverScreen(g2d);
 		if(currentState.isGamePaused())
 			paintGamePauseScreen(g2d);
-		
+		if(metrics!=null)
+			metrics.recordPaint(System.nanoTime()-start);
+		if(event.shouldCommit())
+		{
+			Rectangle clip=g.getClipBounds();
+			event.state=currentState.getCurrentState();
+			event.width=clip!=null?clip.width:getWidth();
+			event.height=clip!=null?clip.height:getHeight();
+			event.commit();
+		}
 	}
 	/**
 	 * Paints the Game Start Screen.
@@ -572,17 +661,219 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 	 * @param g2d The Graphics object supplied by {@link TetrisGame#paintComponent(Graphics)}
 	 * @param state The object keeping track of the games current state.
 	 */
-	public void paintGameRunning(Graphics2D g2d,State state)
+	public void paintGameRunning(Graphics2D g2d,GameState state)
 	{
-		grid.drawBackgroundGrid(g2d);
-		statGrid.drawTetrominoStats(g2d,state.isGameOver());
-		drawWalls(g2d);
-		if(currentShape!=null)//shape doesnt exist until first timer event
+		if(rasterRenderer!=null)
+		{
+			g2d.drawImage(rasterRenderer.render(getPaintedShape(),state.isGameOver()),0,0,null);
+			return;
+		}
+		paintBackgroundLayer(g2d);
+		statGrid.drawTetrominoText(g2d,state.isGameOver());
+		Shape shape=getPaintedShape();
+		if(shape!=null)//shape doesnt exist until first timer event
 		{
-			currentShape.drawShape(g2d, grid);
+			gridView.drawShape(g2d, shape);
 		}
 		
 	}
+	/**
+	 * Turns raster rendering on or off. With raster rendering on, the running game is painted by a {@link RasterRenderer}, which writes every frame
+	 * straight into the pixels of an image that is then copied to the screen with a single {@code drawImage}, instead of with Java2D calls for every
+	 * cell. The start, pause and game over screens are painted over it as usual. The default is off.
+	 * @param enabled True to paint with a {@link RasterRenderer}.
+	 */
+	public void setRasterRendering(boolean enabled)
+	{
+		if(enabled&&rasterRenderer==null)
+			rasterRenderer=new RasterRenderer(gridView,statGrid,(int)preferredSize.getWidth(),(int)preferredSize.getHeight(),this::drawWalls);
+		else if(!enabled)
+			rasterRenderer=null;
+		repaint();
+	}
+	/**
+	 * Sets the directory the {@link Replay} of the game is written to once the game is over, as {@code koppertetris-<seed>.ktr}. The game is always
+	 * recorded, which costs a byte or two per key press, so a reported game can be played back with {@link Replay#main(String[])}.
+	 * @param directory The directory, or null to not write the replay, the default.
+	 */
+	public void setReplayDirectory(Path directory)
+	{
+		this.replayDirectory=directory;
+	}
+	/**
+	 * Returns the replay of the game so far.
+	 * In game loop mode the loop thread records the game, so this may only be called once the game is over or before it was started.
+	 * @return the replay, or null if the game was resumed with {@link TetrisGame#resumeGame(Path)} and is not recorded.
+	 */
+	public Replay getReplay()
+	{
+		ReplayRecorder recorder=engine.getRecorder();
+		return recorder!=null?recorder.finish():null;
+	}
+	/**
+	 * Writes the {@link Replay} of the game to the replay directory, if one was set and the game is recorded.
+	 */
+	private void writeReplay()
+	{
+		if(replayDirectory==null||engine.getRecorder()==null)
+			return;
+		Replay replay=getReplay();
+		Path file=replayDirectory.resolve(String.format("koppertetris-%016x.ktr",replay.getSeed()));
+		try
+		{
+			replay.write(file);
+			System.out.println("Replay written to "+file);
+		}
+		catch(IOException e)
+		{
+			System.out.println("Replay not written: "+e);
+		}
+	}
+	/**
+	 * Saves the game in progress to a file, as a snapshot of the engine, see {@link TetrisEngine#writeSnapshot(ByteBuffer)}, so that it can be resumed
+	 * later with {@link TetrisGame#resumeGame(Path)}. The snapshot is written from a direct buffer through a {@link FileChannel} to a temporary file
+	 * next to the file, which then replaces it, so a crash while saving leaves the previous save intact.
+	 * In game loop mode the loop is stopped first and the game can not go on afterwards, so this is meant to be called when the window closes.
+	 * @param file The file.
+	 * @return True if the game was saved, false if nothing was written because the game was not started or is over.
+	 * @throws IOException if the file can not be written, or the wait for the loop thread was interrupted.
+	 */
+	public boolean saveGame(Path file) throws IOException
+	{
+		if(gameLoop!=null)
+		{
+			gameLoop.stop();
+			try
+			{
+				gameLoop.awaitStop();
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while stopping the game loop");
+			}
+		}
+		GameState state=engine.getState();
+		if(state.isGameStartScreen()||state.isGameOver())
+			return false;
+		ByteBuffer buffer=ByteBuffer.allocateDirect(engine.getSnapshotSize());
+		engine.writeSnapshot(buffer);
+		buffer.flip();
+		Path temp=file.resolveSibling(file.getFileName()+".tmp");
+		try(FileChannel channel=FileChannel.open(temp,StandardOpenOption.CREATE,StandardOpenOption.WRITE,StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(false);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return true;
+	}
+	/**
+	 * Resumes a game saved with {@link TetrisGame#saveGame(Path)}. The file is read through a {@link FileChannel} into a direct buffer, from which the
+	 * engine restores its grid, Shape, score, randomizer and state. A game that was running when it was saved is resumed paused, and goes on once the
+	 * pause key is pressed. The resumed game is not recorded, since its {@link Replay} would have to start with the saved game.
+	 * @param file The file.
+	 * @throws IOException if the file can not be read or holds no valid snapshot for the grid of this game.
+	 * @throws IllegalStateException if the game was already started.
+	 */
+	public void resumeGame(Path file) throws IOException
+	{
+		if(!currentState.isGameStartScreen())
+			throw new IllegalStateException("A game can only be resumed on the start screen");
+		ByteBuffer buffer;
+		try(FileChannel channel=FileChannel.open(file,StandardOpenOption.READ))
+		{
+			long size=channel.size();
+			if(size>Integer.MAX_VALUE)
+				throw new IOException("Not a saved game: "+file);
+			buffer=ByteBuffer.allocateDirect((int)size);
+			while(buffer.hasRemaining()&&channel.read(buffer)>=0);
+		}
+		buffer.flip();
+		try
+		{
+			engine.restoreSnapshot(buffer);
+		}
+		catch(IllegalArgumentException e)
+		{
+			throw new IOException("Not a saved game: "+file,e);
+		}
+		engine.pause();
+		if(gameLoop!=null)
+			applySnapshot(new FrameSnapshot(engine,0,null));
+		repaint();
+	}
+	/**
+	 * Publishes the runtime metrics of this game over JMX as {@code kopper.tetris:type=Game,name=window}, see {@link GameMetrics}: the ticks and
+	 * paints with their durations, the logic steps dropped, the inputs, the Shapes locked, the rows cleared and the bytes allocated per tick. Must be
+	 * called before the game is started.
+	 */
+	public void publishMetrics()
+	{
+		if(engine.getMetrics()!=null)
+			return;
+		GameMetrics metrics=new GameMetrics();
+		metrics.register("window");
+		engine.setMetrics(metrics);
+	}
+	/**
+	 * Determines whether raster rendering is turned on, see {@link TetrisGame#setRasterRendering(boolean)}.
+	 * @return True if the game is painted by a {@link RasterRenderer}.
+	 */
+	public boolean isRasterRendering()
+	{
+		return rasterRenderer!=null;
+	}
+	/**
+	 * Paints the cached background layer: the {@link BackgroundGrid}, the cells and Tetrominoes of the score area and the walls, in that order.
+	 * <p>The layer is rendered into a {@link BufferedImage} once, and after that only the grid and the walls around it are rendered into it again, and
+	 * only when {@link BackgroundGrid#getModificationCount()} shows the grid changed, which is once per locked Shape. Every other repaint is a single
+	 * image copy. The image is created compatible with the screen, so Java2D can keep it in video memory, and at the screen's scale, so it stays sharp
+	 * on high resolution screens.
+	 * @param g2d The Graphics object supplied by {@link TetrisGame#paintComponent(Graphics)}
+	 */
+	private void paintBackgroundLayer(Graphics2D g2d)
+	{
+		int width=(int)preferredSize.getWidth();
+		int height=(int)preferredSize.getHeight();
+		double scale=Math.max(1.0,Math.max(g2d.getTransform().getScaleX(),g2d.getTransform().getScaleY()));
+		if(backgroundLayer==null||scale!=backgroundLayerScale)
+		{
+			backgroundLayer=createLayerImage((int)Math.ceil(width*scale),(int)Math.ceil(height*scale));
+			backgroundLayerScale=scale;
+			Graphics2D layer=backgroundLayer.createGraphics();
+			layer.scale(scale,scale);
+			gridView.drawBackgroundGrid(layer);
+			statGrid.drawTetrominoCells(layer);
+			drawWalls(layer);
+			layer.dispose();
+			backgroundLayerGridVersion=grid.getModificationCount();
+		}
+		else if(backgroundLayerGridVersion!=grid.getModificationCount())
+		{
+			Graphics2D layer=backgroundLayer.createGraphics();
+			layer.scale(scale,scale);
+			gridView.drawBackgroundGrid(layer);
+			drawWalls(layer);//the outlines of the walls overlap the edge of the grid.
+			layer.dispose();
+			backgroundLayerGridVersion=grid.getModificationCount();
+		}
+		g2d.drawImage(backgroundLayer,0,0,width,height,null);
+	}
+	/**
+	 * Creates an opaque image for the background layer, compatible with the screen this panel is shown on if there is one.
+	 * @param width the width in device pixels.
+	 * @param height the height in device pixels.
+	 * @return the new image.
+	 */
+	private BufferedImage createLayerImage(int width,int height)
+	{
+		GraphicsConfiguration gc=getGraphicsConfiguration();
+		if(gc!=null)
+			return gc.createCompatibleImage(width,height,Transparency.OPAQUE);
+		return new BufferedImage(width,height,BufferedImage.TYPE_INT_RGB);
+	}
 	/**
 	 * Paints the Game Pause Screen.
 	 * @param g2d The Graphics object supplied by {@link TetrisGame#paintComponent(Graphics)}
@@ -599,6 +890,18 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 	 * The game over screen "Press ESC to close Window!" font.
 	 */
 	private Font quitInstructions=new Font("Serif",Font.PLAIN,48);
+	/**
+	 * The translucent red painted over the whole game on the game over screen.
+	 */
+	private Color gameOverTint=new Color(255,0,0,96);
+	/**
+	 * The translucent white of the game over screen's text box.
+	 */
+	private Color gameOverBox=new Color(255,255,255,128);
+	/**
+	 * The translucent black of the game over screen's text.
+	 */
+	private Color gameOverText=new Color(0,0,0,192);
 	/**
 	 * Paints the Game Over Screen.
 	 * @param g2d The Graphics object supplied by {@link TetrisGame#paintComponent(Graphics)}
@@ -611,12 +914,12 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 		int textY=((int)(preferredSize.getHeight()/2))-textHeight;
 		int textX=((int)(preferredSize.getWidth()/2))-textWidth/2;
 		
-		g2d.setColor(new Color(255,0,0,96));
+		g2d.setColor(gameOverTint);
 		g2d.fillRect(0, 0,(int) preferredSize.getWidth(), (int)preferredSize.getHeight());
-		g2d.setColor(new Color(255,255,255,128));
+		g2d.setColor(gameOverBox);
 		g2d.fillRoundRect(10, 270, 640, 240, 10, 10);
 	
-		g2d.setColor(new Color(0,0,0,192)); 
+		g2d.setColor(gameOverText); 
 		g2d.setFont(gameOverFont);
 		
 		g2d.drawString("GAME OVER!", textX, textY);
@@ -628,89 +931,174 @@ public class TetrisGame extends JPanel implements KeyListener,FocusListener
 		g2d.drawString("Press ESC to close Window!",690/2-t2W/2 ,690/2+100+t2H/2 );
 	}
 	/**
-	 * Sets the internal current game state to {@link TetrisGame.State#GAME_START_SCREEN}.
+	 * Sets the internal current game state to {@link GameState#GAME_START_SCREEN}.
 	 */
 	public void setGameStartScreen()
 	{
 		currentState.setGameStartScreen();
 	}
 	/**
-	 * Sets the internal current game state to {@link TetrisGame.State#GAME_RUNNING}.
+	 * Sets the internal current game state to {@link GameState#GAME_RUNNING}.
 	 */
 	public void setGameRunning()
 	{
+		if(gameLoop!=null)
+		{
+			gameLoop.start();
+			if(currentState.isGameStartScreen())
+				gameLoop.submit(GameLoop.COMMAND_START);
+			else if(currentState.isGamePaused())
+				gameLoop.submit(GameLoop.COMMAND_RESUME);
+			return;
+		}
+		if(client!=null)
+		{
+			if(currentState.isGameStartScreen())
+				sendToServer(GameServer.COMMAND_START);
+			else if(currentState.isGamePaused())
+				sendToServer(GameServer.COMMAND_TOGGLE_PAUSE);
+			return;
+		}
 		if(!timer.isRunning())
 		{
 			timer.start();
 		}
-		currentState.setGameRunning();
+		if(currentState.isGameStartScreen())
+			engine.start();
+		else if(currentState.isGamePaused())
+			engine.togglePause();
 	}
 	/**
-	 * Sets the internal current game state to {@link TetrisGame.State#GAME_PAUSED}.
+	 * Sets the internal current game state to {@link GameState#GAME_PAUSED}.
 	 */
 	public void setGamePaused()
 	{
-		currentState.setGamePaused();
+		if(gameLoop!=null)
+		{
+			Arrays.fill(inputHeld, false);
+			gameLoop.submit(GameLoop.COMMAND_PAUSE);
+		}
+		else if(client!=null)
+			sendToServer(GameServer.COMMAND_PAUSE);
+		else
+			engine.pause();
 	}
 	/**
-	 * Sets the internal current game state to {@link TetrisGame.State#GAME_OVER}.
+	 * Sets the internal current game state to {@link GameState#GAME_OVER}.
 	 */
 	public void setGameOver()
 	{
 		this.timer.stop();
-		currentShape=null;
-		currentState.setGameOver();
+		if(gameLoop!=null)
+			gameLoop.stop();
+		if(!currentState.isGameOver())
+			currentState.setGameOver();
+		writeReplay();
 		repaint();
 		
 	}
 	/**
 	 * Called once every time the internal timer event fires. See {@link TetrisGame#TIMER_PERIOD}. 
-	 * Only rendering explicitly occurs in this method definition, unless game logic is responding to a rendering or keyboard input,
-	 * no time based game logic occurs here.
+	 * Advances the engine's clock with {@link TetrisEngine#tick()}, which performs one iteration of game logic every {@link TetrisGame#TICKS_BETWEEN_GRAVITY}
+	 * ticks, and repaints.
+	 * Does nothing in game loop mode, where the loop thread advances the engine.
 	 */
 	public void performOneAnimationTick()
 	{
-		animationTickCount++;
-		if(animationTickCount==TICKS_BETWEEN_GRAVITY)
+		if(gameLoop!=null)
+			return;
+		if((engine.tick()&TetrisEngine.RESULT_GAME_OVER)!=0)
 		{
-			performOneGameTick();
-			animationTickCount=0;
+			setGameOver();
 		}
-		repaint();//repaint 25 times per second.
+		repaintChanged();
+	}
+	/**
+	 * Asks Swing to repaint only the parts of this panel that changed since they were last asked to be painted, and nothing at all when nothing changed:
+	 * <ul>
+	 * 	<li>the whole panel when the game state changed, since the start, pause and game over screens cover all of it,</li>
+	 * 	<li>the pixels the current Shape covered and now covers, when it moved, rotated, spawned or locked,</li>
+	 * 	<li>the rows of the {@link BackgroundGrid} that changed, see {@link BackgroundGrid#getChangedRowTop()},</li>
+	 * 	<li>the bands of the score texts whose values changed, see {@link TetrominoStats#isTextChanged(int)}.</li>
+	 * </ul>
+	 * Most timer ticks move nothing and cost no painting at all, and a move of the current Shape repaints a few cells instead of the whole panel.
+	 * Swing's {@link RepaintManager} merges the areas of one event into a single clipped paint.
+	 */
+	private void repaintChanged()
+	{
+		if(currentState.getCurrentState()!=paintedState)
+		{
+			paintedState=currentState.getCurrentState();
+			getShapeBounds(getPaintedShape(),paintedShapeBounds);
+			grid.clearChangedRows();
+			repaint();
+			return;
+		}
+		getShapeBounds(getPaintedShape(),shapeBounds);
+		if(!shapeBounds.equals(paintedShapeBounds))
+		{
+			repaintArea(paintedShapeBounds);
+			repaintArea(shapeBounds);
+			paintedShapeBounds.setBounds(shapeBounds);
+		}
+		int top=grid.getChangedRowTop();
+		int bottom=grid.getChangedRowBottom();
+		if(top<=bottom)
+		{
+			changedArea.setBounds(0,0,-1,-1);
+			gridView.getCell(top,0).addBoundsTo(changedArea);
+			gridView.getCell(bottom,grid.getColumnCount()-1).addBoundsTo(changedArea);
+			repaintArea(changedArea);
+			grid.clearChangedRows();
+		}
+		for(int i=0;i<statGrid.getTextCount();i++)
+		{
+			if(statGrid.isTextChanged(i))
+				repaintArea(statGrid.getTextBand(i,changedArea));
+		}
+	}
+	/**
+	 * Stores the pixels covered by the cells of a Shape that are inside the grid, the only cells painted.
+	 * @param s the Shape, or null.
+	 * @param dest the rectangle to store the pixels in, with a negative width if there are none.
+	 */
+	private void getShapeBounds(Shape s,Rectangle dest)
+	{
+		dest.setBounds(0,0,-1,-1);
+		if(s==null)
+			return;
+		for(int i=0;i<s.getCellCount();i++)
+		{
+			int row=s.getAbsoluteCellRow(i);
+			int column=s.getAbsoluteCellColumn(i);
+			if(row>=0&&row<grid.getRowCount()&&column>=0&&column<grid.getColumnCount())
+				gridView.getCell(row,column).addBoundsTo(dest);
+		}
+	}
+	/**
+	 * Asks Swing to repaint an area of this panel, unless the area is empty.
+	 * @param area the area, with a negative width if it is empty.
+	 */
+	private void repaintArea(Rectangle area)
+	{
+		if(area.width>0&&area.height>0)
+			repaint(area.x,area.y,area.width,area.height);
 	}
 	/**
 	 * Called only once every {@link TetrisGame#TICKS_BETWEEN_GRAVITY} times the {@link TetrisGame#performOneAnimationTick()} is called. 
-	 * Game logic is initiated here if need be, principally the periodic translation of a Shape downwards or spawning of a Shape if it does not
+	 * Game logic is performed by {@link TetrisEngine#step()}, principally the periodic translation of a Shape downwards or spawning of a Shape if it does not
 	 * exist.
+	 * Does nothing in game loop mode, where the loop thread advances the engine.
 	 */
 	public void performOneGameTick()
 	{
-		if(currentState.isGameRunning())
+		if(gameLoop!=null)
+			return;
+		if((engine.step()&TetrisEngine.RESULT_GAME_OVER)!=0)
 		{
-			if(currentShape==null)
-				currentShape=BackgroundGrid.getNextShape(spawnCoord);
-			
-			if(grid.canTranslateDown(currentShape))
-				currentShape.translateShapeDown();
-			
-			if(grid.isShapeDead(currentShape))
-			{
-				if(grid.isShapeOutBounds(currentShape))
-				{
-					setGameOver();
-				}
-				else
-				{
-					grid.consumeShape(currentShape);
-					score.incrementShape(currentShape);
-					score.incrementRow(grid.detectFullRows());
-					grid.removeDetectedRows();
-					currentShape=null;
-				}
-				
-			}
+			setGameOver();
 		}
 	}
 	
 	
-}
+}
\ No newline at end of file
@@ -1,12 +1,7 @@
 package kopper.tetris.core;
+import java.nio.ByteBuffer;
 import kopper.tetris.shape.Shape;
-import kopper.tetris.shape.ShapeI;
-import kopper.tetris.shape.ShapeJ;
-import kopper.tetris.shape.ShapeL;
-import kopper.tetris.shape.ShapeO;
-import kopper.tetris.shape.ShapeS;
-import kopper.tetris.shape.ShapeT;
-import kopper.tetris.shape.ShapeZ;
+import kopper.tetris.shape.ShapeKind;
 /**
  * A class that keeps track of the score.
  * Since a formula for the composite score in Tetris is not standardized across many implementations I have played, this class simply keeps track 
@@ -20,33 +15,9 @@ import kopper.tetris.shape.ShapeZ;
 public class TetrisScore 
 {
 	/**
-	 * Keeps the internal count of the number of shapes for an "I" shaped Tetromino placed on the Tetris structure or pile.
+	 * Keeps the internal count of the number of shapes of every kind placed on the Tetris structure or pile, indexed by {@link ShapeKind#ordinal()}.
 	 */
-	private int countI=0;
-	/**
-	 * Keeps the internal count of the number of shapes for an "O" shaped Tetromino placed on the Tetris structure or pile.
-	 */
-	private int countO=0;
-	/**
-	 * Keeps the internal count of the number of shapes for an "T" shaped Tetromino placed on the Tetris structure or pile.
-	 */
-	private int countT=0;
-	/**
-	 * Keeps the internal count of the number of shapes for an "J" shaped Tetromino placed on the Tetris structure or pile.
-	 */
-	private int countJ=0;
-	/**
-	 * Keeps the internal count of the number of shapes for an "L" shaped Tetromino placed on the Tetris structure or pile.
-	 */
-	private int countL=0;
-	/**
-	 * Keeps the internal count of the number of shapes for an "S" shaped Tetromino placed on the Tetris structure or pile.
-	 */
-	private int countS=0;
-	/**
-	 * Keeps the internal count of the number of shapes for an "Z" shaped Tetromino placed on the Tetris structure or pile.
-	 */
-	private int countZ=0;
+	private int[] shapeCounts=new int[ShapeKind.COUNT];
 	/**
 	 * Keeps the internal count of the number of rows successfully filled and therefore deleted as part of the game logic.
 	 */
@@ -56,45 +27,20 @@ public class TetrisScore
 	 * game logic commanded translation of Tetromino shapes downwards by one box per regular period).
 	 */
 	private int countArrowDowns=0;
+	/**
+	 * The number of bytes {@link TetrisScore#writeTo(ByteBuffer)} writes: one int per count.
+	 */
+	public static final int BYTES=(ShapeKind.COUNT+2)*Integer.BYTES;
 	
 	
 	/**
-	 *  Adds only one integer point to the internal variable representing the specific subclass of the Shape parameter. This method
-	 *  is defined to process subclasses of Shape of the following types: {@link ShapeI}, {@link ShapeO}, {@link ShapeT}, {@link ShapeJ}, {@link ShapeL}, 
-	 *  {@link ShapeS}, {@link ShapeZ}, which are the default shapes of any popular implementation of Tetris. 
-	 *  To process any other subclasses of Shape, requires this class and this method to be overridden in a new sub class.
+	 *  Adds only one integer point to the count of the {@link ShapeKind} of the Shape parameter. The count is found by a table lookup with the kind's
+	 *  index, so no Shape's class is ever tested.
 	 * @param s an object that is a subclass of Shape.
 	 */
 	public void incrementShape(Shape s)
 	{
-		if(s instanceof ShapeI)
-		{
-			countI++;
-		}
-		else if(s instanceof ShapeO)
-		{
-			countO++;
-		}
-		else if(s instanceof ShapeT)
-		{
-			countT++;
-		}
-		else if(s instanceof ShapeJ)
-		{
-			countJ++;
-		}
-		else if(s instanceof ShapeL)
-		{
-			countL++;
-		}
-		else if(s instanceof ShapeS)
-		{
-			countS++;
-		}
-		else if(s instanceof ShapeZ)
-		{
-			countZ++;
-		}
+		shapeCounts[s.getKind().ordinal()]++;
 	}
 	/**
 	 *   Adds only one integer point to the internal variable representing the number of rows successfully filled (and thus deleted). 
@@ -113,13 +59,66 @@ public class TetrisScore
 		countArrowDowns++;
 	}
 	
+	/**
+	 * Overwrites every count of this object with the counts of another score object.
+	 * @param other the score to copy.
+	 */
+	public void copyFrom(TetrisScore other)
+	{
+		System.arraycopy(other.shapeCounts, 0, this.shapeCounts, 0, this.shapeCounts.length);
+		this.countRows=other.countRows;
+		this.countArrowDowns=other.countArrowDowns;
+	}
+	/**
+	 * Writes every count of this object to a buffer: the Shapes of each kind in {@link ShapeKind} order, the rows and the fast forwards, as ints in the
+	 * byte order of the buffer.
+	 * @param dest the buffer, written at its position, which is advanced by {@link TetrisScore#BYTES}.
+	 */
+	public void writeTo(ByteBuffer dest)
+	{
+		for(int count:shapeCounts)
+			dest.putInt(count);
+		dest.putInt(countRows);
+		dest.putInt(countArrowDowns);
+	}
+	/**
+	 * Overwrites every count of this object with the counts read from a buffer, as written by {@link TetrisScore#writeTo(ByteBuffer)}.
+	 * @param src the buffer, read at its position, which is advanced by {@link TetrisScore#BYTES}.
+	 */
+	public void readFrom(ByteBuffer src)
+	{
+		for(int i=0;i<shapeCounts.length;i++)
+			shapeCounts[i]=src.getInt();
+		countRows=src.getInt();
+		countArrowDowns=src.getInt();
+	}
+	/**
+	 * Returns the internal count of the number of shapes of the specified kind placed on the Tetris structure or pile.
+	 * @param kind the kind of Tetromino.
+	 * @return the score of that kind.
+	 */
+	public int getShapeCount(ShapeKind kind)
+	{
+		return shapeCounts[kind.ordinal()];
+	}
+	/**
+	 * Returns the internal count of the number of shapes of all kinds placed on the Tetris structure or pile.
+	 * @return the number of shapes placed.
+	 */
+	public int getShapeTotal()
+	{
+		int total=0;
+		for(int i=0;i<shapeCounts.length;i++)
+			total+=shapeCounts[i];
+		return total;
+	}
 	/**
 	 * Returns the internal count of the number of shapes for an "I" shaped Tetromino placed on the Tetris structure or pile.
 	 * @return the "I" score.
 	 */
 	public int getShapeI()
 	{
-		return countI;
+		return shapeCounts[ShapeKind.I.ordinal()];
 	}
 	/**
 	 * Returns the internal count of the number of shapes for an "O" shaped Tetromino placed on the Tetris structure or pile.
@@ -127,7 +126,7 @@ public class TetrisScore
 	 */
 	public int getShapeO()
 	{
-		return countO;
+		return shapeCounts[ShapeKind.O.ordinal()];
 	}
 	/**
 	 * Returns the internal count of the number of shapes for an "T" shaped Tetromino placed on the Tetris structure or pile.
@@ -135,7 +134,7 @@ public class TetrisScore
 	 */
 	public int getShapeT()
 	{
-		return countT;
+		return shapeCounts[ShapeKind.T.ordinal()];
 	}
 	/**
 	 * Returns the internal count of the number of shapes for an "J" shaped Tetromino placed on the Tetris structure or pile.
@@ -143,7 +142,7 @@ public class TetrisScore
 	 */
 	public int getShapeJ()
 	{
-		return countJ;
+		return shapeCounts[ShapeKind.J.ordinal()];
 	}
 	/**
 	 * Returns the internal count of the number of shapes for an "L" shaped Tetromino placed on the Tetris structure or pile.
@@ -151,7 +150,7 @@ public class TetrisScore
 	 */
 	public int getShapeL()
 	{
-		return countL;
+		return shapeCounts[ShapeKind.L.ordinal()];
 	}
 	/**
 	 * Returns the internal count of the number of shapes for an "S" shaped Tetromino placed on the Tetris structure or pile.
@@ -159,7 +158,7 @@ public class TetrisScore
 	 */
 	public int getShapeS()
 	{
-		return countS;
+		return shapeCounts[ShapeKind.S.ordinal()];
 	}
 	/**
 	 * Returns the internal count of the number of shapes for an "Z" shaped Tetromino placed on the Tetris structure or pile.
@@ -167,7 +166,7 @@ public class TetrisScore
 	 */
 	public int getShapeZ()
 	{
-		return countZ;
+		return shapeCounts[ShapeKind.Z.ordinal()];
 	}
 	/**
 	 * Returns the internal count of the number of rows successfully filled and thus deleted as part of the game logic.
@@ -193,7 +192,7 @@ public class TetrisScore
 	 */
 	public int getScore()
 	{
-		return this.countI+this.countO+this.countT+this.countJ+this.countL+this.countZ+this.countS+this.countRows;
+		return getShapeTotal()+this.countRows;
 	}
 	/**
 	 * Returns this object's String representation, which is an itemized single line string denoting all the scores and component scores of this object.
@@ -201,7 +200,7 @@ public class TetrisScore
 	 */
 	public String toString()
 	{
-		return "I="+countI+"   O="+countO+"   T="+countT+"   J="+countJ+"   L="+countL+"   S="+countS+"   Z="+countZ+"   R="+countRows+"   D="+countArrowDowns;
+		return "I="+getShapeI()+"   O="+getShapeO()+"   T="+getShapeT()+"   J="+getShapeJ()+"   L="+getShapeL()+"   S="+getShapeS()+"   Z="+getShapeZ()+"   R="+countRows+"   D="+countArrowDowns;
 		
 	}
 }
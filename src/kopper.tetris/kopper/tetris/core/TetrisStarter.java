@@ -2,7 +2,12 @@ package kopper.tetris.core;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.*;
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * This class provides the entry point to the Tetris Game application.
@@ -27,7 +32,49 @@ public class TetrisStarter
 		
 		JFrame frame =new JFrame("KopperKnight Tetris (Build 0.2.9-21050)");
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		TetrisGame game=new TetrisGame(frame);
+		String server=System.getProperty("kopper.tetris.server");//java -Dkopper.tetris.server=<host>:<port>
+		TetrisGame game=createGame(frame,server);
+		game.setRasterRendering(Boolean.getBoolean("kopper.tetris.raster"));//java -Dkopper.tetris.raster=true
+		if(Boolean.getBoolean("kopper.tetris.jmx"))//java -Dkopper.tetris.jmx=true
+			game.publishMetrics();
+		String replays=System.getProperty("kopper.tetris.replays");//java -Dkopper.tetris.replays=<directory>
+		if(replays!=null)
+			game.setReplayDirectory(Paths.get(replays));
+		String save=System.getProperty("kopper.tetris.save");//java -Dkopper.tetris.save=<file>
+		if(save!=null&&server==null)
+		{
+			Path saveFile=Paths.get(save);
+			if(Files.exists(saveFile))
+			{
+				try
+				{
+					game.resumeGame(saveFile);
+				}
+				catch(IOException e)
+				{
+					System.out.println("Saved game not resumed: "+e);
+				}
+			}
+			frame.addWindowListener(new WindowAdapter()
+			{
+				public void windowClosing(WindowEvent e)
+				{
+					try
+					{
+						if(game.saveGame(saveFile))
+							System.out.println("Game saved to "+saveFile);
+						else
+							Files.deleteIfExists(saveFile);
+					}
+					catch(IOException ex)
+					{
+						System.out.println("Game not saved: "+ex);
+					}
+				}
+			});
+		}
+		if(game.getGameLoop()!=null)//java -Dkopper.tetris.das=170 -Dkopper.tetris.arr=50, in milliseconds
+			game.getGameLoop().setAutoRepeat(Long.getLong("kopper.tetris.das",170)*1_000_000L, Long.getLong("kopper.tetris.arr",50)*1_000_000L);
 		
 		InputStream  in=TetrisStarter.class.getResourceAsStream("kopper.png");
 		if(in!=null)
@@ -53,5 +100,28 @@ public class TetrisStarter
 		//System.out.println("[\u1f48]");
 		
 	}
-
+	/**
+	 * Creates the game, in client mode if a server was named and can be reached, otherwise running in this process.
+	 * @param frame The window of the game.
+	 * @param server The server as {@code <host>:<port>} or {@code <host>}, or null to play locally.
+	 * @return the game.
+	 */
+	private static TetrisGame createGame(JFrame frame,String server)
+	{
+		if(server!=null)
+		{
+			int colon=server.lastIndexOf(':');
+			try
+			{
+				InetSocketAddress address=colon<0?new InetSocketAddress(server,GameServer.DEFAULT_PORT)
+						:new InetSocketAddress(server.substring(0,colon),Integer.parseInt(server.substring(colon+1)));
+				return new TetrisGame(frame,new GameClient(address));
+			}
+			catch(IOException|IllegalArgumentException e)
+			{
+				System.out.println("Server "+server+" not reachable, playing locally: "+e);
+			}
+		}
+		return new TetrisGame(frame,Boolean.getBoolean("kopper.tetris.loop"));//java -Dkopper.tetris.loop=true
+	}
 }
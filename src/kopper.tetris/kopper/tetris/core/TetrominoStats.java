@@ -14,9 +14,44 @@ import kopper.tetris.shape.*;
  */
 public class TetrominoStats 
 {
+	/**
+	 * The kind of Tetromino shown in each of the first seven positions of the score area, from left to right.
+	 */
+	private static final ShapeKind[] DISPLAY_KINDS= {ShapeKind.I,ShapeKind.O,ShapeKind.T,ShapeKind.J,ShapeKind.L,ShapeKind.Z,ShapeKind.S};
+	/**
+	 * The column of the score area's cell grid each displayed Tetromino is located at.
+	 */
+	private static final int[] DISPLAY_COLUMNS= {1,3,7,11,13,16,19};
+	/**
+	 * The row of the score area's cell grid each displayed Tetromino is located at.
+	 */
+	private static final int[] DISPLAY_ROWS= {2,2,1,2,2,2,2};
+	/**
+	 * The orientation each displayed Tetromino is shown in, see {@link Shape#setRotation(int)}.
+	 */
+	private static final int[] DISPLAY_ROTATIONS= {1,0,0,3,1,1,1};
+	/**
+	 * The horizontal pixel center of the count text below each displayed Tetromino.
+	 */
+	private static final int[] DISPLAY_TEXT_X= {45,120,225,330,420,510,600};
+	/**
+	 * The pixel width of the score area.
+	 */
+	private static final int AREA_WIDTH=660;
+	/**
+	 * The text painted in front of the value of each text.
+	 */
+	private static final String[] TEXT_PREFIXES= {"","","","","","","","Rows Eliminated ","Fast Forwarded ","Overall Score: "};
+	/**
+	 * The text painted after the value of each text.
+	 */
+	private static final String[] TEXT_SUFFIXES= {"","","","","","","",""," Times!",""};
 	GridCell[][] cells;
-	Shape tetI,tetO,tetT,tetJ,tetL,tetZ,tetS;
-	Shape[] shapes=new Shape[7];
+	Shape[] shapes=new Shape[DISPLAY_KINDS.length];
+	/**
+	 * The color of each of the seven Tetrominoes shown.
+	 */
+	private Color[] colors=new Color[DISPLAY_KINDS.length];
 	TetrisScore score;
 	Rectangle[] stringPos=new Rectangle[10];
 	Rectangle[] stringBoxes=new Rectangle[10];
@@ -25,6 +60,15 @@ public class TetrominoStats
 	Font statsFont=new Font("Serif",Font.PLAIN,24);
 	Font temp;
 	private int fontHeight;
+	/**
+	 * The score values that {@link TetrominoStats#scoreText} was last built from. Text and rectangles are only rebuilt when one of these changes,
+	 * so that a repaint with an unchanged score allocates nothing.
+	 */
+	private int[] shownValues=new int[10];
+	/**
+	 * False until the text and rectangles have been built once.
+	 */
+	private boolean textReady=false;
 	/**
 	 * Constructs a TetrominoStats object.
 	 * @param score A reference to the current object keeping track of the game score.
@@ -34,39 +78,14 @@ public class TetrominoStats
 		int tetrominoTextY=840;
 		int secondTextY=tetrominoTextY+45;
 		int thirdTextY=secondTextY+45;
-		cells=GridCell.createUniformGrid(0, 660, 660, 210+90, 22, 7+3, Color.DARK_GRAY);
-		tetI=new ShapeI(1,2);
-		tetI.rotateShapeClockwise90();
-		coords[0]=new Coord(45,tetrominoTextY);
-		shapes[0]=tetI;
-		
-		tetO=new ShapeO(3,2);
-		coords[1]=new Coord(120,tetrominoTextY);
-		shapes[1]=tetO;
-		
-		tetT=new ShapeT(7,1);
-		coords[2]=new Coord(225,tetrominoTextY);
-		shapes[2]=tetT;
-		
-		tetJ=new ShapeJ(11,2);
-		tetJ.rotateShapeCounterClockwise90();
-		coords[3]=new Coord(330,tetrominoTextY);
-		shapes[3]=tetJ;
-		
-		tetL=new ShapeL(13,2);
-		tetL.rotateShapeClockwise90();
-		coords[4]=new Coord(420,tetrominoTextY);
-		shapes[4]=tetL;
-		
-		tetZ=new ShapeZ(16,2);
-		tetZ.rotateShapeClockwise90();
-		coords[5]=new Coord(510,tetrominoTextY);
-		shapes[5]=tetZ;
-		
-		tetS=new ShapeS(19,2);
-		tetS.rotateShapeClockwise90();
-		coords[6]=new Coord(600,tetrominoTextY);
-		shapes[6]=tetS;
+		cells=GridCell.createUniformGrid(0, 660, AREA_WIDTH, 210+90, 22, 7+3, Color.DARK_GRAY);
+		for(int i=0;i<DISPLAY_KINDS.length;i++)
+		{
+			shapes[i]=DISPLAY_KINDS[i].createShape(DISPLAY_COLUMNS[i],DISPLAY_ROWS[i]);
+			shapes[i].setRotation(DISPLAY_ROTATIONS[i]);
+			colors[i]=new Color(shapes[i].getCellRGB(0),true);
+			coords[i]=new Coord(DISPLAY_TEXT_X[i],tetrominoTextY);
+		}
 		
 		coords[7]=new Coord(165,secondTextY);//Rows Eliminated
 		
@@ -102,7 +121,7 @@ public class TetrominoStats
 	 * Specifically, this object keeps track of each {@link GridCell}, Color and Shape painted in the Game's Score area of the window.
 	 * 
 	 * <p>
-	 * This method is called via helper method {@link TetrisGame#paintGameRunning(Graphics2D, kopper.tetris.core.TetrisGame.State)}, 
+	 * This method is called via helper method {@link TetrisGame#paintGameRunning(Graphics2D, kopper.tetris.core.GameState)}, 
 	 * which in turn is called by {@link TetrisGame#paintComponent(java.awt.Graphics)}, 
 	 * which in turn is an overridden method of {@link javax.swing.JPanel}'s {@link javax.swing.JComponent#paintComponent(Graphics g)}.
 	 *  
@@ -113,21 +132,44 @@ public class TetrominoStats
 	 */
 	public void drawTetrominoStats(Graphics2D g2d,boolean isGameOver)
 	{
-		updateRectangles(g2d);
-		
-		
+		drawTetrominoCells(g2d);
+		drawTetrominoText(g2d,isGameOver);
+	}
+	/**
+	 * Paints the part of the score area that never changes: the background cells and the seven Tetrominoes. {@link TetrisGame} paints this part
+	 * once into its cached background layer instead of on every repaint.
+	 * @param g2d The graphics object to paint to.
+	 */
+	public void drawTetrominoCells(Graphics2D g2d)
+	{
 		if(cells!=null)
 		{
 			for(int r=0;r<cells.length;r++)
 				for(int c=0;c<cells[r].length;c++)
+				{
+					cells[r][c].setColor(Color.DARK_GRAY);//the Tetrominoes leave their colors in their cells.
 					cells[r][c].drawCell(g2d, false);
+				}
 		}
 		if(shapes!=null)
 		{
 			for(int i=0;i<shapes.length;i++)
-				shapes[i].drawShape(g2d, cells);
+				for(int j=0;j<shapes[i].getCellCount();j++)
+				{
+					GridCell cell=cells[shapes[i].getAbsoluteCellRow(j)][shapes[i].getAbsoluteCellColumn(j)];
+					cell.setColor(colors[i]);
+					cell.drawCell(g2d, true);
+				}
 		}
-		
+	}
+	/**
+	 * Paints the part of the score area that changes with the score: the counts and their boxes.
+	 * @param g2d The graphics object to paint to.
+	 * @param isGameOver used to make the score String colors white and able to be seen through translucent red GameOver paint.
+	 */
+	public void drawTetrominoText(Graphics2D g2d,boolean isGameOver)
+	{
+		updateRectangles(g2d);
 		temp=g2d.getFont();
 		g2d.setFont(statsFont);
 		Color tColor=g2d.getColor();
@@ -136,17 +178,7 @@ public class TetrominoStats
 			g2d.setColor(Color.black);
 			g2d.fillRoundRect((int)stringBoxes[i].getX(),(int) stringBoxes[i].getY(), (int)stringBoxes[i].getWidth(), (int)stringBoxes[i].getHeight(),5, 5);
 			//g2d.fillRoundRect((int)stringPos[i].getX(), (int)stringPos[i].getY()-fontHeight/2, (int)stringPos[i].getWidth()+10, (int)stringPos[i].getHeight()+10, 5, 5);
-			if(isGameOver)
-			{
-				g2d.setColor(Color.white);
-			}
-			else
-			{	
-				if(i<shapes.length)
-					g2d.setColor(shapes[i].getCellColor(0));
-				else
-					g2d.setColor(Color.white);
-			}
+			g2d.setColor(getTextColor(i,isGameOver));
 			g2d.drawString(scoreText[i], (int)stringPos[i].getX(), (int)stringPos[i].getY());
 		}
 		g2d.setFont(temp);
@@ -165,20 +197,13 @@ public class TetrominoStats
 	 */
 	private void updateRectangles(Graphics2D g2d)
 	{
+		if(textReady&&!isScoreChanged())
+			return;
+		textReady=true;
 		FontMetrics metrics=g2d.getFontMetrics(statsFont);
-		scoreText[0]=""+score.getShapeI();
-		scoreText[1]=""+score.getShapeO();
-		scoreText[2]=""+score.getShapeT();
-		scoreText[3]=""+score.getShapeJ();
-		scoreText[4]=""+score.getShapeL();
-		scoreText[5]=""+score.getShapeZ();
-		scoreText[6]=""+score.getShapeS();
-		
-		scoreText[7]="Rows Eliminated "+score.getRows();
+		for(int i=0;i<scoreText.length;i++)
+			scoreText[i]=TEXT_PREFIXES[i]+getValue(i)+TEXT_SUFFIXES[i];
 		//scoreText[8]="Fast Forwarded "+score.getArrowDowns()+" Times! "+TetrisGame.ARROW_DOWN+TetrisGame.ARROW_UP+TetrisGame.ARROW_LEFT+TetrisGame.ARROW_RIGHT;
-		scoreText[8]="Fast Forwarded "+score.getArrowDowns()+" Times!";
-	
-		scoreText[9]="Overall Score: "+score.getScore();
 		int fH=metrics.getHeight();
 		fontHeight=fH;
 		int fW=0;
@@ -208,6 +233,133 @@ public class TetrominoStats
 			}
 		}
 	}
+	/**
+	 * Compares the current score against the values the displayed text was last built from and remembers the current values.
+	 * @return True if any displayed value changed.
+	 */
+	private boolean isScoreChanged()
+	{
+		boolean changed=false;
+		for(int i=0;i<shownValues.length;i++)
+			changed|=updateShownValue(i,getValue(i));
+		return changed;
+	}
+	/**
+	 * Returns the current score value displayed in a text.
+	 * @param i the index of the text.
+	 * @return the value.
+	 */
+	int getValue(int i)
+	{
+		if(i<DISPLAY_KINDS.length)
+			return score.getShapeCount(DISPLAY_KINDS[i]);
+		switch(i)
+		{
+			case 7:		return score.getRows();
+			case 8:		return score.getArrowDowns();
+			default:	return score.getScore();
+		}
+	}
+	/**
+	 * Returns the text painted in front of the value of a text, for example {@code "Overall Score: "}.
+	 * @param i the index of the text.
+	 * @return the prefix, possibly empty.
+	 */
+	String getTextPrefix(int i)
+	{
+		return TEXT_PREFIXES[i];
+	}
+	/**
+	 * Returns the text painted after the value of a text.
+	 * @param i the index of the text.
+	 * @return the suffix, possibly empty.
+	 */
+	String getTextSuffix(int i)
+	{
+		return TEXT_SUFFIXES[i];
+	}
+	/**
+	 * Returns the pixel location a text and its box are centered on.
+	 * @param i the index of the text.
+	 * @return the center.
+	 */
+	Coord getTextCenter(int i)
+	{
+		return coords[i];
+	}
+	/**
+	 * Returns the color of a text: the color of the Tetromino it counts, or white. Every text is white once the game is over, so that it can be seen
+	 * through the translucent red of the game over screen.
+	 * @param i the index of the text.
+	 * @param isGameOver True once the game is over.
+	 * @return the color.
+	 */
+	Color getTextColor(int i,boolean isGameOver)
+	{
+		if(!isGameOver&&i<shapes.length)
+			return colors[i];
+		return Color.white;
+	}
+	/**
+	 * Returns the font of the texts.
+	 * @return the font.
+	 */
+	Font getTextFont()
+	{
+		return statsFont;
+	}
+	/**
+	 * Returns the number of texts painted by {@link TetrominoStats#drawTetrominoText(Graphics2D, boolean)}.
+	 * @return the number of texts.
+	 */
+	public int getTextCount()
+	{
+		return scoreText.length;
+	}
+	/**
+	 * Determines whether a text shows an outdated value, so that it changes the next time it is painted.
+	 * @param i the index of the text, 0 to {@link TetrominoStats#getTextCount()}{@code -1}.
+	 * @return True if the text was never painted or its value changed since it was last painted.
+	 */
+	public boolean isTextChanged(int i)
+	{
+		return !textReady||shownValues[i]!=getValue(i);
+	}
+	/**
+	 * Returns the band of the score area a text and its box are painted in, whatever the value shown: the full height of the text and the width up to
+	 * halfway to its neighbors.
+	 * @param i the index of the text, 0 to {@link TetrominoStats#getTextCount()}{@code -1}.
+	 * @param dest the rectangle to store the band in.
+	 * @return {@code dest}.
+	 */
+	public Rectangle getTextBand(int i,Rectangle dest)
+	{
+		int halfHeight=statsFont.getSize();
+		int left=0;
+		int right=AREA_WIDTH;
+		if(i<DISPLAY_KINDS.length)
+		{
+			if(i>0)
+				left=(DISPLAY_TEXT_X[i-1]+DISPLAY_TEXT_X[i])/2;
+			if(i<DISPLAY_KINDS.length-1)
+				right=(DISPLAY_TEXT_X[i]+DISPLAY_TEXT_X[i+1])/2;
+		}
+		dest.setBounds(left,coords[i].getY()-halfHeight,right-left,2*halfHeight);
+		return dest;
+	}
+	/**
+	 * Stores one displayed value.
+	 * @param i the index of the text the value is displayed in.
+	 * @param value the current value.
+	 * @return True if the value differs from the one previously stored.
+	 */
+	private boolean updateShownValue(int i,int value)
+	{
+		if(shownValues[i]==value)
+			return false;
+		shownValues[i]=value;
+		return true;
+	}
 
 	
 	
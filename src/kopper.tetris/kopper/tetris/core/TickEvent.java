@@ -0,0 +1,34 @@
+package kopper.tetris.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder event of one {@link TetrisEngine#tick()}, timed from the start to the end of the tick. A recording shows the ticks next to
+ * the garbage collections, compilations and safepoints of the same moment, which tells why a tick stalled.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+@Name("kopper.tetris.Tick")
+@Label("Tick")
+@Category("Kopper Tetris")
+@Description("One tick of the game clock of an engine")
+@StackTrace(false)
+final class TickEvent extends Event
+{
+	/**
+	 * The combination of {@code TetrisEngine.RESULT_...} flags the tick returned.
+	 */
+	@Label("Result")
+	@Description("The result flags of the tick, 0 when no gravity step was due")
+	int result;
+	/**
+	 * The game state after the tick, one of the constants of {@link GameState}.
+	 */
+	@Label("State")
+	int state;
+}
@@ -0,0 +1,170 @@
+package kopper.tetris.core;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * <p>A cache of pre-rendered outlined cells, used by {@link GridCell#drawCell(Graphics2D, boolean)}. Rasterizing the rounded rectangle and rounded
+ * outline of an outlined cell is the most expensive part of painting the game, and every cell of one color looks exactly the same. The atlas therefore
+ * renders one tile per color once, with the same Java2D calls {@link GridCell} would make, and every later cell of that color is a single image copy.
+ * </p>
+ * <p>
+ * All tiles of an atlas have the same cell size and device scale. The atlases of the last few sizes and scales painted are kept side by side, so
+ * grids of different cell sizes, or one window moved between screens of different scales, each keep their tiles instead of rebuilding a single
+ * atlas back and forth. The tiles are transparent outside of the rounded corners, so the pixels painted are the same as without the atlas.
+ * </p>
+ * <p>
+ * Painting happens on the Swing event dispatch thread only, so this class is not thread safe.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+class TileAtlas
+{
+	/**
+	 * The number of colors an atlas holds. Cells of further colors are drawn without the atlas.
+	 */
+	private static final int MAX_TILES=64;
+	/**
+	 * The arc width and height of the rounded corners, the same as {@link GridCell#drawCell(Graphics2D, boolean)} uses.
+	 */
+	private static final int ARC=5;
+	/**
+	 * The transparent margin around every tile. On a scaled screen the outline is wider than one pixel and reaches past the top and left edge too.
+	 */
+	private static final int MARGIN=1;
+	/**
+	 * The number of atlases kept. When an atlas of a further size or scale is needed, the one built longest ago is replaced.
+	 */
+	private static final int MAX_ATLASES=8;
+	/**
+	 * The atlases kept, one per cell size and device scale, searched in order.
+	 */
+	private static final TileAtlas[] atlases=new TileAtlas[MAX_ATLASES];
+	/**
+	 * The number of atlases in {@link TileAtlas#atlases}.
+	 */
+	private static int atlasCount=0;
+	/**
+	 * The index in {@link TileAtlas#atlases} the next atlas built is stored at.
+	 */
+	private static int nextAtlas=0;
+
+	/**
+	 * The width of the cells of this atlas.
+	 */
+	private final int width;
+	/**
+	 * The height of the cells of this atlas.
+	 */
+	private final int height;
+	/**
+	 * The device scale the tiles of this atlas were rendered at, a whole number.
+	 */
+	private final int scale;
+	/**
+	 * The ARGB value of the color of every tile.
+	 */
+	private final int[] colors=new int[MAX_TILES];
+	/**
+	 * The tiles, the cell plus {@link TileAtlas#MARGIN} on every side, times the scale.
+	 */
+	private final BufferedImage[] tiles=new BufferedImage[MAX_TILES];
+	/**
+	 * The number of tiles rendered.
+	 */
+	private int count=0;
+
+	/**
+	 * Creates an empty atlas.
+	 * @param width the width of the cells.
+	 * @param height the height of the cells.
+	 * @param scale the device scale.
+	 */
+	private TileAtlas(int width, int height, int scale)
+	{
+		this.width=width;
+		this.height=height;
+		this.scale=scale;
+	}
+	/**
+	 * Paints an outlined cell by copying its tile, rendering the tile first if this is the first cell of its color, size and scale.
+	 * @param g2d The graphics object to paint to.
+	 * @param x The upper left corner X component of the cell.
+	 * @param y The upper left corner Y component of the cell.
+	 * @param width The width of the cell.
+	 * @param height The height of the cell.
+	 * @param color The color of the cell.
+	 * @return False if the cell could not be painted from the atlas, because the graphics object is rotated, sheared or scaled by a fraction, or the
+	 * atlas is full. The caller must then paint the cell itself.
+	 */
+	static boolean drawOutlinedCell(Graphics2D g2d, int x, int y, int width, int height, Color color)
+	{
+		AffineTransform t=g2d.getTransform();
+		if((t.getType()&~(AffineTransform.TYPE_TRANSLATION|AffineTransform.TYPE_UNIFORM_SCALE))!=0)
+			return false;
+		double s=t.getScaleX();
+		int scale=(int)s;
+		if(scale<1||scale!=s)
+			return false;
+		BufferedImage tile=getAtlas(width,height,scale).getTile(g2d.getDeviceConfiguration(),color);
+		if(tile==null)
+			return false;
+		g2d.drawImage(tile, x-MARGIN, y-MARGIN, width+2*MARGIN, height+2*MARGIN, null);
+		return true;
+	}
+	/**
+	 * Returns the atlas of a cell size and device scale, building it if there is none yet.
+	 * @param width the width of the cells.
+	 * @param height the height of the cells.
+	 * @param scale the device scale.
+	 * @return the atlas.
+	 */
+	private static TileAtlas getAtlas(int width, int height, int scale)
+	{
+		for(int i=0;i<atlasCount;i++)
+		{
+			TileAtlas atlas=atlases[i];
+			if(atlas.width==width&&atlas.height==height&&atlas.scale==scale)
+				return atlas;
+		}
+		TileAtlas atlas=new TileAtlas(width,height,scale);
+		atlases[nextAtlas]=atlas;
+		nextAtlas=(nextAtlas+1)%MAX_ATLASES;
+		atlasCount=Math.min(atlasCount+1,MAX_ATLASES);
+		return atlas;
+	}
+	/**
+	 * Returns the tile of a color, rendering it if there is none yet.
+	 * @param gc the configuration to create a tile compatible with.
+	 * @param color the color.
+	 * @return the tile, or null if the atlas is full.
+	 */
+	private BufferedImage getTile(GraphicsConfiguration gc, Color color)
+	{
+		int argb=color.getRGB();
+		for(int i=0;i<count;i++)
+		{
+			if(colors[i]==argb)
+				return tiles[i];
+		}
+		if(count==MAX_TILES)
+			return null;
+		BufferedImage tile=gc.createCompatibleImage((width+2*MARGIN)*scale, (height+2*MARGIN)*scale, Transparency.TRANSLUCENT);
+		Graphics2D tg=tile.createGraphics();
+		tg.scale(scale, scale);
+		tg.translate(MARGIN, MARGIN);
+		tg.setColor(color);
+		tg.fillRoundRect(0, 0, width, height, ARC, ARC);
+		tg.setColor(Color.lightGray);
+		tg.drawRoundRect(0, 0, width, height, ARC, ARC);
+		tg.dispose();
+		colors[count]=argb;
+		tiles[count]=tile;
+		count++;
+		return tile;
+	}
+}
@@ -0,0 +1,23 @@
+package kopper.tetris.core;
+
+/**
+ * A randomizer where every Tetromino type has an equal, independent chance of being next. This is how {@link BackgroundGrid#getNextShape(int, int)}
+ * has always chosen Shapes, except this randomizer is seeded and owned by one game.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class UniformRandomizer extends AbstractRandomizer
+{
+	/**
+	 * Creates a randomizer from the supplied seed.
+	 * @param seed the seed.
+	 */
+	public UniformRandomizer(long seed)
+	{
+		super(seed);
+	}
+	public int nextShapeIndex()
+	{
+		return nextInt(SHAPE_TYPES);
+	}
+}
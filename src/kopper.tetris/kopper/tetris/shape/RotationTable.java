@@ -0,0 +1,195 @@
+package kopper.tetris.shape;
+
+/**
+ * <p>An immutable table of every orientation of one Tetromino type. A table is built once per {@link Shape} subclass from the relative
+ * coordinates of its spawn orientation (see Figure 1 of each subclass) and then shared by every live Shape of that type.
+ * </p>
+ * <p>
+ * Orientation {@code 0} is the spawn orientation. Orientation {@code r+1} is orientation {@code r} rotated 90 degrees clockwise about the
+ * Shape's center cell, which maps a relative coordinate (x,y) to (-y,x). Orientation indices wrap around, so rotating a Shape is simply a change
+ * of its orientation index, see {@link RotationTable#clockwise(int)} and {@link RotationTable#counterClockwise(int)}.
+ * </p>
+ * <p>
+ * For each orientation the table stores the relative cell offsets and the row bitmasks of the cells, in the form tested by
+ * {@link kopper.tetris.core.BitBoard#collides(long[], int, int, int)}.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public final class RotationTable
+{
+	/**
+	 * The number of orientations stored in every table.
+	 */
+	public static final int ORIENTATIONS=4;
+	/**
+	 * The relative column (x) of every cell, indexed {@code [orientation][cell]}.
+	 */
+	private final int[][] columns;
+	/**
+	 * The relative row (y) of every cell, indexed {@code [orientation][cell]}.
+	 */
+	private final int[][] rows;
+	/**
+	 * The row bitmasks of every orientation, indexed {@code [orientation][row]}.
+	 */
+	private final long[][] masks;
+	/**
+	 * The relative row the first row bitmask of every orientation is aligned to.
+	 */
+	private final int[] maskTop=new int[ORIENTATIONS];
+	/**
+	 * The relative column bit zero of the row bitmasks of every orientation is aligned to.
+	 */
+	private final int[] maskLeft=new int[ORIENTATIONS];
+	/**
+	 * The number of cells of the Tetromino.
+	 */
+	private final int cellCount;
+
+	/**
+	 * Builds the table of all orientations from the relative coordinates of the spawn orientation.
+	 * @param x the relative column of every cell of the spawn orientation.
+	 * @param y the relative row of every cell of the spawn orientation.
+	 * @param rotatable False for Tetrominoes, like the "O", where rotating about the center cell does not come across as a rotation but as a
+	 * translation and a wobble. Every orientation of such a table is identical to the spawn orientation.
+	 * @throws IllegalArgumentException if the coordinate arrays differ in length.
+	 */
+	public RotationTable(int[] x, int[] y, boolean rotatable)
+	{
+		if(x.length!=y.length)
+			throw new IllegalArgumentException("Every cell needs both an x and a y coordinate.");
+		this.cellCount=x.length;
+		this.columns=new int[ORIENTATIONS][cellCount];
+		this.rows=new int[ORIENTATIONS][cellCount];
+		this.masks=new long[ORIENTATIONS][];
+		for(int i=0;i<cellCount;i++)
+		{
+			columns[0][i]=x[i];
+			rows[0][i]=y[i];
+		}
+		for(int r=1;r<ORIENTATIONS;r++)
+		{
+			for(int i=0;i<cellCount;i++)
+			{
+				if(rotatable)
+				{
+					columns[r][i]=-rows[r-1][i];
+					rows[r][i]=columns[r-1][i];
+				}
+				else
+				{
+					columns[r][i]=columns[0][i];
+					rows[r][i]=rows[0][i];
+				}
+			}
+		}
+		for(int r=0;r<ORIENTATIONS;r++)
+			buildMasks(r);
+	}
+	/**
+	 * Packs the cells of one orientation into its row bitmasks.
+	 * @param r the orientation.
+	 */
+	private void buildMasks(int r)
+	{
+		int top=Integer.MAX_VALUE;
+		int bottom=Integer.MIN_VALUE;
+		int left=Integer.MAX_VALUE;
+		for(int i=0;i<cellCount;i++)
+		{
+			top=Math.min(top,rows[r][i]);
+			bottom=Math.max(bottom,rows[r][i]);
+			left=Math.min(left,columns[r][i]);
+		}
+		masks[r]=new long[cellCount==0?0:bottom-top+1];
+		for(int i=0;i<cellCount;i++)
+			masks[r][rows[r][i]-top]|=1L<<(columns[r][i]-left);
+		maskTop[r]=cellCount==0?0:top;
+		maskLeft[r]=cellCount==0?0:left;
+	}
+	/**
+	 * Returns the orientation reached by rotating the supplied orientation 90 degrees clockwise.
+	 * @param orientation the current orientation.
+	 * @return the rotated orientation.
+	 */
+	public static int clockwise(int orientation)
+	{
+		return (orientation+1)&(ORIENTATIONS-1);
+	}
+	/**
+	 * Returns the orientation reached by rotating the supplied orientation 90 degrees counter clockwise.
+	 * @param orientation the current orientation.
+	 * @return the rotated orientation.
+	 */
+	public static int counterClockwise(int orientation)
+	{
+		return (orientation+ORIENTATIONS-1)&(ORIENTATIONS-1);
+	}
+	/**
+	 * Returns the number of cells of the Tetromino this table describes.
+	 * @return the number of cells.
+	 */
+	public int getCellCount()
+	{
+		return cellCount;
+	}
+	/**
+	 * Returns the column of a cell relative to the center cell.
+	 * @param orientation the orientation, 0 to 3.
+	 * @param cellNum the cell in question.
+	 * @return the relative column (x) of the cell.
+	 */
+	public int getColumn(int orientation,int cellNum)
+	{
+		return columns[orientation][cellNum];
+	}
+	/**
+	 * Returns the row of a cell relative to the center cell.
+	 * @param orientation the orientation, 0 to 3.
+	 * @param cellNum the cell in question.
+	 * @return the relative row (y) of the cell.
+	 */
+	public int getRow(int orientation,int cellNum)
+	{
+		return rows[orientation][cellNum];
+	}
+	/**
+	 * Returns the row bitmasks of an orientation. Bit {@code j} of element {@code i} is set when a cell is located {@code i} rows below
+	 * {@link RotationTable#getMaskTop(int)} and {@code j} columns right of {@link RotationTable#getMaskLeft(int)}. The returned array is shared
+	 * and must not be modified.
+	 * @param orientation the orientation, 0 to 3.
+	 * @return the row bitmasks.
+	 */
+	public long[] getMasks(int orientation)
+	{
+		return masks[orientation];
+	}
+	/**
+	 * Returns the number of rows an orientation spans, which is the length of {@link RotationTable#getMasks(int)}.
+	 * @param orientation the orientation, 0 to 3.
+	 * @return the height of the orientation.
+	 */
+	public int getMaskHeight(int orientation)
+	{
+		return masks[orientation].length;
+	}
+	/**
+	 * Returns the row relative to the center cell that the first row bitmask of an orientation is aligned to.
+	 * @param orientation the orientation, 0 to 3.
+	 * @return the relative top most row.
+	 */
+	public int getMaskTop(int orientation)
+	{
+		return maskTop[orientation];
+	}
+	/**
+	 * Returns the column relative to the center cell that bit zero of the row bitmasks of an orientation is aligned to.
+	 * @param orientation the orientation, 0 to 3.
+	 * @return the relative left most column.
+	 */
+	public int getMaskLeft(int orientation)
+	{
+		return maskLeft[orientation];
+	}
+}
@@ -1,18 +1,16 @@
 package kopper.tetris.shape;
 
-import java.awt.*;
-
 import kopper.tetris.core.*;
 
 /**
  * 
  *
  *
- *A class that defines the superclass for a Tetromino shape. All subclasses should at a minimum, maintain two copies of data for 
- *relative coordinates. It is suggested that this can be done by defining {@link Shape#getRelativeCellPos(int)}, {@link Shape#getTrialRelativeCellPos(int)},
- *and {@link Shape#getCellCount()} in a subclass to return data from two arrays of {@link kopper.tetris.core.Coord} elements of equal length, respectively. 
- *Then since most normal Tetris games have a uniform color across a single Tetromino, {@link Shape#getCellColor(int)} can simply return a single color, regardless of the
- *cell index argument. Subclasses do not need to implement the absolute position or trial absolute position data, as that is handled in this super class.
+ *A class that defines the superclass for a Tetromino shape. All subclasses need only supply a {@link RotationTable} through {@link Shape#getRotationTable()},
+ *which holds the precomputed relative coordinates and row bitmasks of all four orientations of the Tetromino. The table should be a single static instance
+ *shared by every object of the subclass, since a Shape only stores its absolute position and the index of its current orientation in the table.
+ *Then since most normal Tetris games have a uniform color across a single Tetromino, {@link Shape#getCellRGB(int)} can simply return a single color, regardless of the
+ *cell index argument. Colors are plain ARGB ints and a Shape does no painting, so the model never touches {@code java.awt}; {@link GridView} paints Shapes. Subclasses do not need to implement the absolute position or rotation, as that is handled in this super class.
  *
  *<H3> A Reference diagram of coordinate space of this class and subclasses</H3>
  *
@@ -47,10 +45,6 @@ public abstract class Shape
 			temp[i]=coords[i].add(0,0);
 		return temp;
 	}
-	/**
-	 * A temp variable representing this Shape's position used for the trial methods.
-	 */
-	private Coord tempAbs;
 	/**
 	 * The Coord variable that represents this shape's position in relation to the upper left corner of the game screen.
 	 */
@@ -59,6 +53,10 @@ public abstract class Shape
 	 * a debug variable. Set true during non-debug situations.
 	 */
 	private boolean visible=true;
+	/**
+	 * The index of this Shape's current orientation in its {@link RotationTable}. Orientation 0 is the spawn orientation.
+	 */
+	private int rotation=0;
 	/**
 	 * Creates an object with the supplied x, y Cartesian coordinate for its absolute position. See Figure 1 for what this means precisely.
 	 * @param gridx The x component of the coordinate location.
@@ -75,7 +73,6 @@ public abstract class Shape
 	public Shape(Coord absolutePos)
 	{
 		this.absPos=absolutePos;
-		this.tempAbs=new Coord(absPos.getX(),absPos.getY());
 	}
 	/**
 	 * Sets this Shape's visibility boolean. Default it is visible is true.
@@ -86,77 +83,13 @@ public abstract class Shape
 		this.visible=v;
 	}
 	/**
-	 * Returns this Shape's visibility boolean. Default is true. If false, then {@link Shape#drawShape(Graphics2D, BackgroundGrid)} and
-	 * {@link Shape#drawShape(Graphics2D, GridCell[][])} do nothing.
+	 * Returns this Shape's visibility boolean. Default is true. If false, then {@link GridView} does not draw this Shape.
 	 * @return If false, then it is not drawn.
 	 */
 	public boolean isVisible()
 	{
 		return this.visible;
 	}
-	
-	/**
-	 * <p>This method is named differently for various classes, but all classes that must paint 
-	 * representations of their data to the window, have some variation
-	 * of a method {@code drawOBJECTNAME(Graphics2D g2d);} This is that method for this class.
-	 * <p>Note: TO BE REIMPLEMENTED AS AN INTERFACE DEFINITION implemented by all drawable classes in the future.
-	 * 
-	 * <p>This method is where the background model data represented by this object is painted to represent this object.
-	 * Specifically, this object keeps track of each gridcell's color, each cell making up this Shape's shape relative to this Shape's origin.
-	 * 
-	 * <p>
-	 * This method is called inside {@link TetrisGame#paintGameRunning(Graphics2D, kopper.tetris.core.TetrisGame.State) },
-	 * or inside of {@link TetrominoStats#drawTetrominoStats(Graphics2D, boolean) },
-	 *  which in turn is called by each respective caller methods (see their method documentation).
-	 * 
-	 * 
-	 * @param g2d The graphics object ultimately supplied by overridden method  {@link TetrisGame#paintComponent(java.awt.Graphics)}
-	 * @param grid The grid that represents the background. This is used to prevent Exceptions that would occur if an off screen location
-	 * represented by the shape were called. 
-	 * 
-	 * 
-	 */
-	public void drawShape(Graphics2D g2d,BackgroundGrid grid)
-	{
-		if(this.isVisible())
-		{
-			for(int i=0;i<getCellCount();i++)
-			{
-				grid.getCell(getAbsoluteCellPos(i).getRow(), getAbsoluteCellPos(i).getColumn()).setColor(getCellColor(i));
-				grid.getCell(getAbsoluteCellPos(i).getRow(), getAbsoluteCellPos(i).getColumn()).drawCell(g2d,true);
-			}
-		}
-		
-	}
-	/**
-	 * <p>This method is named differently for various classes, but all classes that must paint 
-	 * representations of their data to the window, have some variation
-	 * of a method {@code drawOBJECTNAME(Graphics2D g2d);} This is that method for this class.
-	 * <p>Note: TO BE REIMPLEMENTED AS AN INTERFACE DEFINITION implemented by all drawable classes in the future.
-	 * 
-	 * <p>This method is where the background model data represented by this object is painted to represent this object.
-	 * Specifically, this object keeps track of each gridcell's color, whether it is occupied by a cell of a dead shape
-	 * or empty space and the background color of empty space. 
-	 * 
-	 * <p>
-	 * This method is called via helper method {@link TetrisGame#paintGameRunning(Graphics2D, kopper.tetris.core.TetrisGame.State)}, which in turn is called by {@link TetrisGame#paintComponent(java.awt.Graphics)}, 
-	 * which in turn is an overridden method of {@link javax.swing.JComponent#paintComponent(Graphics g)}.
-	 * @param g2d The graphics object ultimately supplied by overridden method  {@link TetrisGame#paintComponent(java.awt.Graphics)}
-	 * @param cells This is used for drawing shapes that are not on top of the {@link BackgroundGrid} object. For example, drawing the
-	 * {@link TetrominoStats#drawTetrominoStats(Graphics2D, boolean)} requires this method.
-	 */
-	public void drawShape(Graphics2D g2d,GridCell[][]cells)
-	{
-		if(this.isVisible())
-		{
-			for(int i=0;i<getCellCount();i++)
-			{
-				cells[this.getAbsoluteCellPos(i).getRow()][this.getAbsoluteCellPos(i).getColumn()].setColor(this.getCellColor(i));
-				cells[this.getAbsoluteCellPos(i).getRow()][this.getAbsoluteCellPos(i).getColumn()].drawCell(g2d, true);
-			}
-		}
-		
-	}
 	/**
 	 * Moves the absolute position of this object downwards one row. The same as calling {@code translateShape(0,1)}.
 	 */
@@ -174,176 +107,164 @@ public abstract class Shape
 		this.getAbsoluteShapePos().translate(x,y);
 	}
 	/**
-	 * Makes the trial coordinates equal in value (still separate objects in memory) to the actual coordinate data of this Shape. Effectively clearing
-	 * or erasing any trial moves made previously.
+	 * This method rotates this Shape 90 degrees in the clockwise direction. The axis of rotation is the absolute position coordinate of this Shape.
+	 * Since all orientations are precomputed in this Shape's {@link RotationTable}, only the orientation index changes.
 	 */
-	public void clearTrial()//reset temp variables to equal legal variables
+	public void rotateShapeClockwise90()
 	{
-		this.getTrialAbsoluteShapePos().setX(this.getAbsoluteShapePos().getX());
-		this.getTrialAbsoluteShapePos().setY(this.getAbsoluteShapePos().getY());
-		for(int i=0;i<this.getCellCount();i++)
-			this.getTrialRelativeCellPos(i).set(this.getRelativeCellPos(i).getX(), this.getRelativeCellPos(i).getY());
+		this.rotation=RotationTable.clockwise(this.rotation);
 	}
 	/**
-	 * This method translates this Shape just like {@link Shape#translateShape(int, int)}, except it does so on temp variable copies of this Shape's 
-	 * actual position.If a trial operation has already been called previously, this clears it so that the trial move will represent only one potential
-	 *  move away from current actual Shape's internal data state. It is important to test collisions between Shape and other grid coordinates of the game by making moves before they actually happen.
-	 * @param x The value to add to the X component (negative value is subtraction).
-	 * @param y The value to add to the Y component (negative value is subtraction).
-	 * 
+	 * This method rotates this Shape 90 degrees in the counter clockwise direction. The axis of rotation is the absolute position coordinate of this Shape.
+	 * Since all orientations are precomputed in this Shape's {@link RotationTable}, only the orientation index changes.
 	 */
-	public void trialTranslateShape(int x, int y)
+	public void rotateShapeCounterClockwise90()
 	{
-		clearTrial();
-		this.getTrialAbsoluteShapePos().translate(x,y);
+		this.rotation=RotationTable.counterClockwise(this.rotation);
 	}
 	/**
-	 * This method rotates this Shape just like {@link Shape#rotateShapeClockwise90() }, except it does so on temp variable copies of this Shape's 
-	 * actual position. If a trial operation has already been called previously, this clears it so that the trial move will represent only one potential
-	 *  move away from current actual Shape's internal data state.It is important to test collisions between Shape and other grid coordinates of the game by making moves before they actually happen.
+	 * Returns the index of this Shape's current orientation in its {@link RotationTable}.
+	 * @return the orientation, 0 to 3, where 0 is the spawn orientation.
 	 */
-	public void trialRotateShapeClockwise90()
+	public int getRotation()
 	{
-		clearTrial();
-		int x=0;
-		int y=0;
-		for(int i=0;i<this.getCellCount();i++)
-		{
-			x=this.getRelativeCellPos(i).getX();
-			y=this.getRelativeCellPos(i).getY();
-			this.getTrialRelativeCellPos(i).setX(-y);
-			this.getTrialRelativeCellPos(i).setY(x);
-		}	
+		return this.rotation;
 	}
 	/**
-	 * This method rotates this Shape just like {@link Shape#rotateShapeCounterClockwise90() }, except it does so on temp variable copies of this Shape's 
-	 * actual position. If a trial operation has already been called previously, this clears it so that the trial move will represent only one potential
-	 *  move away from current actual Shape's internal data state. It is important to test collisions between Shape and other grid coordinates of the
-	 *  game by making moves before they actually happen.
+	 * Sets the index of this Shape's current orientation in its {@link RotationTable}.
+	 * @param rotation the orientation, 0 to 3, where 0 is the spawn orientation.
 	 */
-	public void trialRotateShapeCounterClockwise90()
+	public void setRotation(int rotation)
 	{
-		clearTrial();
-		int x=0;
-		int y=0;
-		for(int i=0;i<this.getCellCount();i++)
-		{
-			x=this.getRelativeCellPos(i).getX();
-			y=this.getRelativeCellPos(i).getY();
-			this.getTrialRelativeCellPos(i).setX(y);
-			this.getTrialRelativeCellPos(i).setY(-x);
-		}	
+		this.rotation=rotation&(RotationTable.ORIENTATIONS-1);
 	}
 	/**
-	 * This method rotates this Shape 90 degrees in the clockwise direction. The axis of rotation is the absolute position coordinate of this Shape.
+	 * Returns this shape's absolute position, which is always the axis of rotation and typically the center cell of the Shape's numerous cells.
+	 * @return The position of this object's center cell in relation to the upper left corner cell of the game window.
 	 */
-	public void rotateShapeClockwise90()
+	public Coord getAbsoluteShapePos()
 	{
-		Coord relativeCellCoord;
-		int x=0;
-		int y=0;
-		for(int i=0;i<getCellCount();i++)
-		{
-			relativeCellCoord=this.getRelativeCellPos(i);
-			x=relativeCellCoord.getX();
-			y=relativeCellCoord.getY();
-			
-			relativeCellCoord.setX(-y);
-			relativeCellCoord.setY(x);
-		}
+		return this.absPos;
 	}
 	/**
-	 * This method rotates this Shape 90 degrees in the counter clockwise direction. The axis of rotation is the absolute position coordinate of this Shape.
+	 * This method adds the cell center returned by {@link Shape#getAbsoluteShapePos()} to each of this cell's relative coordinates.
+	 * A Shape is represented by two major sets of data. First, its absolute position data pointing to this Shape's center cell in relation
+	 *  to the upper left corner of the game screen's grid.
+	 * Second, an array or index of non-center cells that describe their location relatively with respect to the center cell of the Shape.
+	 * This method converts all of those relative coordinates to absolute ones by returning new Coordinate objects that add the relative and absolute
+	 * position data for all the cells of this Shape together.
+	 * <p>Note: a new Coord is allocated on every call. Code that runs every game tick or every repaint should use the allocation free
+	 * {@link Shape#getAbsoluteCellRow(int)} and {@link Shape#getAbsoluteCellColumn(int)} instead.
+	 * 
+	 *  @param cellNum The index of the cell that makes up this Shape object.
+	 * @return The cell location in relation to the upper left corner grid coordinate of the game screen grid.
 	 */
-	public void rotateShapeCounterClockwise90()
+	public Coord getAbsoluteCellPos(int cellNum)
+	{
+		return new Coord(getAbsoluteCellColumn(cellNum),getAbsoluteCellRow(cellNum));
+	}
+	/**
+	 * Returns the row of the same cell location as {@link Shape#getAbsoluteCellPos(int)} without allocating a {@link Coord}.
+	 * @param cellNum The index of the cell that makes up this Shape object.
+	 * @return The row of the cell in relation to the upper left corner grid coordinate of the game screen grid.
+	 */
+	public int getAbsoluteCellRow(int cellNum)
+	{
+		return getRotationTable().getRow(rotation,cellNum)+absPos.getRow();
+	}
+	/**
+	 * Returns the column of the same cell location as {@link Shape#getAbsoluteCellPos(int)} without allocating a {@link Coord}.
+	 * @param cellNum The index of the cell that makes up this Shape object.
+	 * @return The column of the cell in relation to the upper left corner grid coordinate of the game screen grid.
+	 */
+	public int getAbsoluteCellColumn(int cellNum)
+	{
+		return getRotationTable().getColumn(rotation,cellNum)+absPos.getColumn();
+	}
+	/**
+	 * Copies the rows and columns of all of this Shape's absolute cell locations into the caller supplied arrays, without allocating anything.
+	 * Element {@code i} of each array receives the location of the {@code i}'th cell.
+	 * @param rows The array receiving the cell rows, at least {@link Shape#getCellCount()} long.
+	 * @param columns The array receiving the cell columns, at least {@link Shape#getCellCount()} long.
+	 * @return the number of cells copied, which is {@link Shape#getCellCount()}.
+	 */
+	public int getAbsoluteCellPositions(int[] rows, int[] columns)
 	{
-		Coord relativeCellCoord;
-		int x=0;
-		int y=0;
 		for(int i=0;i<getCellCount();i++)
 		{
-			relativeCellCoord=this.getRelativeCellPos(i);
-			x=relativeCellCoord.getX();
-			y=relativeCellCoord.getY();
-			
-			relativeCellCoord.setX(y);
-			relativeCellCoord.setY(-x);
+			rows[i]=getAbsoluteCellRow(i);
+			columns[i]=getAbsoluteCellColumn(i);
 		}
+		return getCellCount();
 	}
 	/**
-	 * Returns this shape's absolute position, which is always the axis of rotation and typically the center cell of the Shape's numerous cells.
-	 * @return The position of this object's center cell in relation to the upper left corner cell of the game window.
+	 * Returns the row bitmasks of this Shape's cells in its current orientation, which is the form {@link BitBoard#collides(long[], int, int, int)} tests against. 
+	 * Bit {@code j} of element {@code i} is set when a cell of this Shape is located at row {@link Shape#getRowMaskTop()}{@code +i} and column 
+	 * {@link Shape#getRowMaskLeft()}{@code +j}. The masks come straight from the shared {@link RotationTable} and must not be modified.
+	 * @return the row bitmasks of this Shape.
 	 */
-	public Coord getAbsoluteShapePos()
+	public long[] getRowMasks()
 	{
-		return this.absPos;
+		return getRotationTable().getMasks(rotation);
 	}
 	/**
-	 * Works like (@link Shape#getAbsoluteShapePos()}, except it returns the trial version. If no trial translation or trial rotation method 
-	 * has been previously called or if (@link Shape#clearTrial()} has been called, then the Coord returned will represent the exact same 
-	 * Coord as that returned by {@link Shape#getAbsoluteShapePos()}. In essence, a trial method makes pretend move that and this method returns
-	 * the absolute center cell of this Shape if it had actually made that move in reality. This method can be thought of as returning
-	 *  the future position of this Shape's center cell.
-	 * @return The future position of the center cell of this object in relation to the upper left corner cell of the game.
+	 * Returns the length of the array returned by {@link Shape#getRowMasks()}.
+	 * @return the number of rows this Shape spans.
 	 */
-	public Coord getTrialAbsoluteShapePos()
+	public int getRowMaskHeight()
 	{
-		return this.tempAbs;
+		return getRotationTable().getMaskHeight(rotation);
 	}
 	/**
-	 * This method adds the cell center returned by {@link Shape#getAbsoluteShapePos()} to each of this cell's relative coordinates.
-	 * A Shape is represented by two major sets of data. First, its absolute position data pointing to this Shape's center cell in relation
-	 *  to the upper left corner of the game screen's grid.
-	 * Second, an array or index of non-center cells that describe their location relatively with respect to the center cell of the Shape.
-	 * This method converts all of those relative coordinates to absolute ones by returning new Coordinate objects that add the relative and absolute
-	 * position data for all the cells of this Shape together.
-	 * 
-	 *  @param cellNum The index of the cell that makes up this Shape object.
-	 * @return The cell location in relation to the upper left corner grid coordinate of the game screen grid.
+	 * Returns the absolute row the first element of {@link Shape#getRowMasks()} is aligned to.
+	 * @return the top most row this Shape occupies.
 	 */
-	public Coord getAbsoluteCellPos(int cellNum)
+	public int getRowMaskTop()
 	{
-		return getRelativeCellPos(cellNum).add(absPos);
+		return getRotationTable().getMaskTop(rotation)+this.absPos.getRow();
 	}
 	/**
-	 * Works like (@link Shape#getAbsoluteCellPos(int) }, except it returns the trial version. If no trial translation or trial rotation method 
-	 * has been previously called or if (@link Shape#clearTrial()} has been called, then the Coord returned will represent the exact same 
-	 * Coord as that returned by {@link Shape#getAbsoluteCellPos(int) }. In essence, a trial method makes pretend move that and this method returns
-	 * the {@code cellNum'th} cell of this Shape if it had actually made that move in reality. This method can be thought of as returning
-	 *  the future position of this Shape's {@code cellNum'th} cell.
-	 *  @param cellNum The index of the cell that makes up this Shape object.
-	 * @return The future position of the cell of this object in relation to the upper left corner cell of the game.
+	 * Returns the absolute column bit zero of every element of {@link Shape#getRowMasks()} is aligned to.
+	 * @return the left most column this Shape occupies.
 	 */
-	public Coord getTrialAbsoluteCellPos(int cellNum)
+	public int getRowMaskLeft()
 	{
-		return getTrialRelativeCellPos(cellNum).add(tempAbs);
+		return getRotationTable().getMaskLeft(rotation)+this.absPos.getColumn();
 	}
 	/**
-	 * Returns the cell color for this Shape's {@code cellNum}'th cell. 
+	 * Returns the cell color for this Shape's {@code cellNum}'th cell as an ARGB value, alpha in the highest byte. 
 	 * @param cellNum the cell in question.
-	 * @return the color for the cell in question.
+	 * @return the ARGB color for the cell in question.
 	 */
-	public abstract Color getCellColor(int cellNum);
+	public abstract int getCellRGB(int cellNum);
 	/**
-	 * Returns the relative coordinate for the cell in question. This is the coordinate of this cell in relation to this Shape's center cell.
-	 * @param cellNum the cell in question.
-	 * @return the relative coordinate of the cell in question.
+	 * Returns the table of precomputed orientations of this Shape's Tetromino type. Subclasses should return one static instance shared
+	 * by all of their objects.
+	 * @return the orientation table of this Shape.
+	 */
+	public abstract RotationTable getRotationTable();
+	/**
+	 * Returns the kind of Tetromino this Shape is. The kind is used as a table index wherever Shapes are told apart, instead of testing their class.
+	 * @return the kind of this Shape.
 	 */
-	public abstract Coord getRelativeCellPos(int cellNum);
+	public abstract ShapeKind getKind();
 	/**
-	 * Works like {@link Shape#getRelativeCellPos(int)}, except in a trial temporary way. If no trial translation or trial rotation called previously, 
-	 * or if {@link Shape#clearTrial()} just immediately and previously called, this method returns the same as {@link Shape#getRelativeCellPos(int)}.
-	 * Otherwise, this method returns the relative temporary coordinate for the cell in question. This is the temporary coordinate of this cell
-	 *  in relation to this Shape's temporary center cell. The temporary data is used for collision detection before collisions actually occur.
+	 * Returns the relative coordinate for the cell in question in this Shape's current orientation. This is the coordinate of this cell in relation to this Shape's center cell.
+	 * <p>Note: a new Coord is allocated on every call, the table returned by {@link Shape#getRotationTable()} holds the same data as primitives.
 	 * @param cellNum the cell in question.
-	 * @return the temporary relative coordinate of the cell in question.
+	 * @return the relative coordinate of the cell in question.
 	 */
-	public abstract Coord getTrialRelativeCellPos(int cellNum);
+	public Coord getRelativeCellPos(int cellNum)
+	{
+		return new Coord(getRotationTable().getColumn(rotation,cellNum),getRotationTable().getRow(rotation,cellNum));
+	}
 	/**
 	 * This method returns the total number of cells that make up this Shape.
-	 * This method provides the link between future subclasses and the logic performed in this super class. All FOR loops,
-	 * and cell operations defined in this superclass use this method to figure out the number of iterations of loops to perform.
+	 * All FOR loops and cell operations defined in this superclass use this method to figure out the number of iterations of loops to perform.
 	 * @return the number of cells that make up this shape.
 	 */
-	public abstract int getCellCount();
+	public int getCellCount()
+	{
+		return getRotationTable().getCellCount();
+	}
 }
@@ -0,0 +1,111 @@
+package kopper.tetris.shape;
+
+/**
+ * The identity of a Tetromino type. Every {@link Shape} reports its kind through {@link Shape#getKind()}, and code that needs to tell Tetrominoes
+ * apart, like keeping score per type, uses the kind's {@link ShapeKind#ordinal()} as an index into a table instead of testing the Shape's class.
+ * <p>
+ * The order of the constants is the type index order used throughout the game: I, J, L, O, S, T, Z. The index of a kind is its ordinal, and
+ * {@link ShapeKind#fromIndex(int)} maps an index back to its kind, for example to turn the output of a {@link kopper.tetris.core.ShapeRandomizer} into a Shape.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public enum ShapeKind
+{
+	/**
+	 * The "I" Tetromino, see {@link ShapeI}.
+	 */
+	I
+	{
+		public Shape createShape(int x, int y)
+		{
+			return new ShapeI(x,y);
+		}
+	},
+	/**
+	 * The "J" Tetromino, see {@link ShapeJ}.
+	 */
+	J
+	{
+		public Shape createShape(int x, int y)
+		{
+			return new ShapeJ(x,y);
+		}
+	},
+	/**
+	 * The "L" Tetromino, see {@link ShapeL}.
+	 */
+	L
+	{
+		public Shape createShape(int x, int y)
+		{
+			return new ShapeL(x,y);
+		}
+	},
+	/**
+	 * The "O" Tetromino, see {@link ShapeO}.
+	 */
+	O
+	{
+		public Shape createShape(int x, int y)
+		{
+			return new ShapeO(x,y);
+		}
+	},
+	/**
+	 * The "S" Tetromino, see {@link ShapeS}.
+	 */
+	S
+	{
+		public Shape createShape(int x, int y)
+		{
+			return new ShapeS(x,y);
+		}
+	},
+	/**
+	 * The "T" Tetromino, see {@link ShapeT}.
+	 */
+	T
+	{
+		public Shape createShape(int x, int y)
+		{
+			return new ShapeT(x,y);
+		}
+	},
+	/**
+	 * The "Z" Tetromino, see {@link ShapeZ}.
+	 */
+	Z
+	{
+		public Shape createShape(int x, int y)
+		{
+			return new ShapeZ(x,y);
+		}
+	};
+
+	/**
+	 * The number of kinds, the length of every table indexed by kind.
+	 */
+	public static final int COUNT=7;
+	/**
+	 * All kinds in index order. Kept so that {@link ShapeKind#fromIndex(int)} does not copy the array like {@link ShapeKind#values()} does.
+	 */
+	private static final ShapeKind[] KINDS=values();
+
+	/**
+	 * Creates a new Shape of this kind in its spawn orientation.
+	 * @param x The x component of the coordinate where the Shape should be located.
+	 * @param y The y component of the coordinate where the Shape should be located.
+	 * @return the new Shape.
+	 */
+	public abstract Shape createShape(int x, int y);
+	/**
+	 * Returns the kind with the specified index.
+	 * @param index the index, 0 to {@link ShapeKind#COUNT}{@code -1}.
+	 * @return the kind whose {@link ShapeKind#ordinal()} is {@code index}.
+	 */
+	public static ShapeKind fromIndex(int index)
+	{
+		return KINDS[index];
+	}
+}
@@ -1,5 +1,4 @@
 package kopper.tetris.shape;
-import java.awt.Color;
 
 import kopper.tetris.core.Coord;
 /**
@@ -25,19 +24,13 @@ import kopper.tetris.core.Coord;
 public class ShapeL extends Shape 
 {
 	/**
-	 * Figure 1 above shows the actual locations of these relative coordinates.
+	 * The precomputed orientations of this Shape, built from the spawn orientation's relative coordinates (x,y). Figure 1 above shows the actual locations
+	 * of these relative coordinates. The table is shared by every object of this class.
 	 */
-	private Coord[] relativeCoords= {
-			new Coord(-1,0),
-			new Coord(0,0),
-			new Coord(1,0),
-			new Coord(1,-1)
-	};
-	/**
-	 * Figure 1 above shows the actual locations of these temporary relative coordinates, when initiated. This variable is used to keep track of 
-	 * coordinates for the {@code trial....():} methods of this class.
-	 */
-	private Coord[] tempCoords= Shape.cloneCoords(relativeCoords);
+	private static final RotationTable TABLE=new RotationTable(
+			new int[] {-1,0,1,1},
+			new int[] {0,0,0,-1},
+			true);
 	/**
 	 * Creates an object with the supplied x, y Cartesian coordinate for its absolute position. See Figure 1 for what this means precisely.
 	 * @param absolutePos The absolute position of this Shape.
@@ -56,25 +49,28 @@ public class ShapeL extends Shape
 		super(x,y);
 	}
 	/**
-	 * Methods of this class always returns {@link java.awt.Color#orange}
-	 * @return  {@link java.awt.Color#orange}.
+	 * Methods of this class always return the ARGB value of {@code java.awt.Color.orange}, {@code 0xFFFFC800}.
+	 * @return  {@code 0xFFFFC800}.
 	 */
-	public Color getCellColor(int cellNum)
+	public int getCellRGB(int cellNum)
 	{
-		return Color.orange;
+		return 0xFFFFC800;
 	}
-	public Coord getRelativeCellPos(int cellNum)
-	{
-		return relativeCoords[cellNum];
-	}
-	public Coord getTrialRelativeCellPos(int cellNum)
+	/**
+	 * Returns {@link ShapeKind#L}.
+	 * @return {@link ShapeKind#L}.
+	 */
+	public ShapeKind getKind()
 	{
-		return tempCoords[cellNum];
+		return ShapeKind.L;
 	}
-
-	public int getCellCount() 
+	/**
+	 * Returns the precomputed orientations shared by every object of this class.
+	 * @return the orientation table of this class.
+	 */
+	public RotationTable getRotationTable()
 	{
-		return tempCoords.length;
+		return TABLE;
 	}
 
 }
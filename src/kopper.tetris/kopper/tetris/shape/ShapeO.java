@@ -1,5 +1,4 @@
 package kopper.tetris.shape;
-import java.awt.Color;
 
 import kopper.tetris.core.Coord;
 
@@ -26,19 +25,14 @@ import kopper.tetris.core.Coord;
 public class ShapeO extends Shape 
 {
 	/**
-	 * Figure 1 above shows the actual locations of these relative coordinates.
+	 * The precomputed orientations of this Shape, built from the spawn orientation's relative coordinates (x,y). Figure 1 above shows the actual locations
+	 * of these relative coordinates. The table is shared by every object of this class. It is not rotatable, since rotating a shape that this class represents
+	 * about its center cell (or absolute position) does not come across as a rotate, but as a translation and a wobble and therefore does not make sense.
 	 */
-	private Coord[] relativeCoords= {
-			new Coord(0,0),
-			new Coord(0,-1),
-			new Coord(1,-1),
-			new Coord(1,0)
-	};
-	/**
-	 * Figure 1 above shows the actual locations of these temporary relative coordinates, when initiated. This variable is used to keep track of 
-	 * coordinates for the {@code trial....():} methods of this class.
-	 */
-	private Coord[] tempCoords= Shape.cloneCoords(relativeCoords);
+	private static final RotationTable TABLE=new RotationTable(
+			new int[] {0,0,1,1},
+			new int[] {0,-1,-1,0},
+			false);
 	/**
 	 * Creates an object with the supplied x, y Cartesian coordinate for its absolute position. See Figure 1 for what this means precisely.
 	 * @param absolutePos The absolute position of this Shape.
@@ -55,51 +49,30 @@ public class ShapeO extends Shape
 	public ShapeO(int x, int y)
 	{
 		super(x,y);
-		this.rotateShapeClockwise90();
-		this.rotateShapeCounterClockwise90();
-		this.trialRotateShapeClockwise90();
-		this.trialRotateShapeCounterClockwise90();
 	}
 	/**
-	 * This method is overridden in this class to do nothing. Rotating a shape that this class represents, about its center cell (or absolute position),
-	 * does not come across as a rotate, but as a translation and a wobble and therefore does not make sense.
+	 * Methods of this class always return the ARGB value of {@code java.awt.Color.yellow}, {@code 0xFFFFFF00}.
+	 * @return  {@code 0xFFFFFF00}.
 	 */
-	public void rotateShapeClockwise90(){}//do nothing, not applicable
-	/**
-	 * This method is overridden in this class to do nothing. Rotating a shape that this class represents, about its center cell (or absolute position),
-	 * does not come across as a rotate, but as a translation and a wobble and therefore does not make sense.
-	 */
-	public void rotateShapeCounterClockwise90() {}//do nothing, not applicable
-	/**
-	 * This method is overridden in this class to do nothing. Rotating a shape that this class represents, about its center cell (or absolute position),
-	 * does not come across as a rotate, but as a translation and a wobble and therefore does not make sense.
-	 */
-	public void trialRotateShapeClockwise90() {}//do nothing, not applicable;
-	/**
-	 * This method is overridden in this class to do nothing. Rotating a shape that this class represents, about its center cell (or absolute position),
-	 * does not come across as a rotate, but as a translation and a wobble and therefore does not make sense.
-	 */
-	public void trialRotateShapeCounterClockwise90() {}//do nothing, not applicable.
-	/**
-	 * Methods of this class always returns {@link java.awt.Color#yellow }
-	 * @return  {@link java.awt.Color#yellow }.
-	 */
-	public Color getCellColor(int cellNum)
-	{
-		return Color.YELLOW;
-	}
-	public Coord getRelativeCellPos(int cellNum)
+	public int getCellRGB(int cellNum)
 	{
-		return relativeCoords[cellNum];
+		return 0xFFFFFF00;
 	}
-	public Coord getTrialRelativeCellPos(int cellNum)
+	/**
+	 * Returns {@link ShapeKind#O}.
+	 * @return {@link ShapeKind#O}.
+	 */
+	public ShapeKind getKind()
 	{
-		return tempCoords[cellNum];
+		return ShapeKind.O;
 	}
-
-	public int getCellCount() 
+	/**
+	 * Returns the precomputed orientations shared by every object of this class.
+	 * @return the orientation table of this class.
+	 */
+	public RotationTable getRotationTable()
 	{
-		return tempCoords.length;
+		return TABLE;
 	}
 
 }
@@ -1,5 +1,4 @@
 package kopper.tetris.shape;
-import java.awt.Color;
 
 import kopper.tetris.core.Coord;
 
@@ -26,19 +25,13 @@ import kopper.tetris.core.Coord;
 public class ShapeS extends Shape 
 {
 	/**
-	 * Figure 1 above shows the actual locations of these relative coordinates.
+	 * The precomputed orientations of this Shape, built from the spawn orientation's relative coordinates (x,y). Figure 1 above shows the actual locations
+	 * of these relative coordinates. The table is shared by every object of this class.
 	 */
-	private Coord[] relativeCoords= {
-			new Coord(0,0),
-			new Coord(-1,0),
-			new Coord(0,-1),
-			new Coord(1,-1)
-	};
-	/**
-	 * Figure 1 above shows the actual locations of these temporary relative coordinates, when initiated. This variable is used to keep track of 
-	 * coordinates for the {@code trial....():} methods of this class.
-	 */
-	private Coord[] tempCoords= Shape.cloneCoords(relativeCoords);
+	private static final RotationTable TABLE=new RotationTable(
+			new int[] {0,-1,0,1},
+			new int[] {0,0,-1,-1},
+			true);
 	/**
 	 * Creates an object with the supplied x, y Cartesian coordinate for its absolute position. See Figure 1 for what this means precisely.
 	 * @param absolutePos The absolute position of this Shape.
@@ -57,25 +50,28 @@ public class ShapeS extends Shape
 		super(x,y);
 	}
 	/**
-	 * Methods of this class always returns {@link java.awt.Color#green }
-	 * @return  {@link java.awt.Color#green }.
+	 * Methods of this class always return the ARGB value of {@code java.awt.Color.green}, {@code 0xFF00FF00}.
+	 * @return  {@code 0xFF00FF00}.
 	 */
-	public Color getCellColor(int cellNum)
+	public int getCellRGB(int cellNum)
 	{
-		return Color.green;
+		return 0xFF00FF00;
 	}
-	public Coord getRelativeCellPos(int cellNum)
-	{
-		return relativeCoords[cellNum];
-	}
-	public Coord getTrialRelativeCellPos(int cellNum)
+	/**
+	 * Returns {@link ShapeKind#S}.
+	 * @return {@link ShapeKind#S}.
+	 */
+	public ShapeKind getKind()
 	{
-		return tempCoords[cellNum];
+		return ShapeKind.S;
 	}
-
-	public int getCellCount() 
+	/**
+	 * Returns the precomputed orientations shared by every object of this class.
+	 * @return the orientation table of this class.
+	 */
+	public RotationTable getRotationTable()
 	{
-		return tempCoords.length;
+		return TABLE;
 	}
 
 }
@@ -1,5 +1,4 @@
 package kopper.tetris.shape;
-import java.awt.Color;
 
 import kopper.tetris.core.Coord;
 /**
@@ -26,20 +25,14 @@ public class ShapeT extends Shape
 {
 	
 	/**
-	 * Figure 1 above shows the actual locations of these relative coordinates.
+	 * The precomputed orientations of this Shape, built from the spawn orientation's relative coordinates (x,y). Figure 1 above shows the actual locations
+	 * of these relative coordinates. The table is shared by every object of this class.
 	 */
-	private Coord[] relativeCoords= {
-			new Coord(-1,0),
-			new Coord(0,0),
-			new Coord(0,1),
-			new Coord(1,0)
-	};
+	private static final RotationTable TABLE=new RotationTable(
+			new int[] {-1,0,0,1},
+			new int[] {0,0,1,0},
+			true);
 	
-	/**
-	 * Figure 1 above shows the actual locations of these temporary relative coordinates, when initiated. This variable is used to keep track of 
-	 * coordinates for the {@code trial....():} methods of this class.
-	 */
-	private Coord[] tempCoords= Shape.cloneCoords(relativeCoords);
 	
 	/**
 	 * Creates an object with the supplied x, y Cartesian coordinate for its absolute position. See Figure 1 for what this means precisely.
@@ -59,25 +52,28 @@ public class ShapeT extends Shape
 		super(x,y);	
 	}
 	/**
-	 * Methods of this class always returns {@link java.awt.Color#magenta }
-	 * @return  {@link java.awt.Color#magenta }.
+	 * Methods of this class always return the ARGB value of {@code java.awt.Color.magenta}, {@code 0xFFFF00FF}.
+	 * @return  {@code 0xFFFF00FF}.
 	 */
-	public Color getCellColor(int cellNum)
+	public int getCellRGB(int cellNum)
 	{
-		return Color.magenta;
+		return 0xFFFF00FF;
 	}
-	public Coord getRelativeCellPos(int cellNum) 
-	{
-		return relativeCoords[cellNum];
-	}
-	public Coord getTrialRelativeCellPos(int cellNum) 
+	/**
+	 * Returns {@link ShapeKind#T}.
+	 * @return {@link ShapeKind#T}.
+	 */
+	public ShapeKind getKind()
 	{
-		return tempCoords[cellNum];
+		return ShapeKind.T;
 	}
-
-	public int getCellCount() 
+	/**
+	 * Returns the precomputed orientations shared by every object of this class.
+	 * @return the orientation table of this class.
+	 */
+	public RotationTable getRotationTable()
 	{
-		return tempCoords.length;
+		return TABLE;
 	}
 	
 }
@@ -1,5 +1,4 @@
 package kopper.tetris.shape;
-import java.awt.Color;
 
 import kopper.tetris.core.Coord;
 
@@ -26,19 +25,13 @@ import kopper.tetris.core.Coord;
 public class ShapeZ extends Shape 
 {
 	/**
-	 * Figure 1 above shows the actual locations of these relative coordinates.
+	 * The precomputed orientations of this Shape, built from the spawn orientation's relative coordinates (x,y). Figure 1 above shows the actual locations
+	 * of these relative coordinates. The table is shared by every object of this class.
 	 */
-	private Coord[] relativeCoords= {
-			new Coord(0,0),
-			new Coord(1,0),
-			new Coord(0,-1),
-			new Coord(-1,-1)
-	};
-	/**
-	 * Figure 1 above shows the actual locations of these temporary relative coordinates, when initiated. This variable is used to keep track of 
-	 * coordinates for the {@code trial....():} methods of this class.
-	 */
-	private Coord[] tempCoords= Shape.cloneCoords(relativeCoords);
+	private static final RotationTable TABLE=new RotationTable(
+			new int[] {0,1,0,-1},
+			new int[] {0,0,-1,-1},
+			true);
 
 	/**
 	 * Creates an object with the supplied x, y Cartesian coordinate for its absolute position. See Figure 1 for what this means precisely.
@@ -58,25 +51,28 @@ public class ShapeZ extends Shape
 		super(x,y);
 	}
 	/**
-	 * Methods of this class always returns {@link java.awt.Color#red}
-	 * @return  {@link java.awt.Color#red}.
+	 * Methods of this class always return the ARGB value of {@code java.awt.Color.red}, {@code 0xFFFF0000}.
+	 * @return  {@code 0xFFFF0000}.
 	 */
-	public Color getCellColor(int cellNum)
+	public int getCellRGB(int cellNum)
 	{
-		return Color.red;
+		return 0xFFFF0000;
 	}
-	public Coord getRelativeCellPos(int cellNum)
-	{
-		return relativeCoords[cellNum];
-	}
-	public Coord getTrialRelativeCellPos(int cellNum)
+	/**
+	 * Returns {@link ShapeKind#Z}.
+	 * @return {@link ShapeKind#Z}.
+	 */
+	public ShapeKind getKind()
 	{
-		return tempCoords[cellNum];
+		return ShapeKind.Z;
 	}
-
-	public int getCellCount() 
+	/**
+	 * Returns the precomputed orientations shared by every object of this class.
+	 * @return the orientation table of this class.
+	 */
+	public RotationTable getRotationTable()
 	{
-		return tempCoords.length;
+		return TABLE;
 	}
 
 }
@@ -0,0 +1,292 @@
+package kopper.tetris.sim;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongFunction;
+
+import kopper.tetris.core.BagRandomizer;
+import kopper.tetris.core.HistoryRandomizer;
+import kopper.tetris.core.ShapeRandomizer;
+import kopper.tetris.core.TetrisEngine;
+import kopper.tetris.core.UniformRandomizer;
+
+/**
+ * <p>Plays a batch of headless games on every core of the machine and aggregates their scores into {@link BatchStatistics}.
+ * Each game is a {@link TetrisEngine} driven by its own {@link MovePolicy} as fast as the CPU allows, with no timer and no display, so a game that
+ * takes minutes in {@link kopper.tetris.core.TetrisGame} finishes in well under a millisecond.
+ * </p>
+ * <p>
+ * Game {@code i} of a batch is created from the seed {@code baseSeed+i}, which is passed to both the randomizer factory and the policy factory.
+ * The outcome of a batch therefore only depends on its settings and never on the number of threads or the order the games run in.
+ * </p>
+ * <p>
+ * The games are split into ranges that are played by the tasks of a {@link ForkJoinPool}. Every task fills its own {@link BatchStatistics} and the
+ * results are merged when the tasks join, so the games share no mutable state at all.
+ * </p>
+ * The simulator can also be run from the command line, see {@link BatchSimulator#main(String[])}.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class BatchSimulator
+{
+	/**
+	 * The largest number of inputs applied between two gravity steps, which stops a policy that never answers {@link TetrisEngine#INPUT_NONE} or
+	 * locks its Shape from stalling a game forever.
+	 */
+	public static final int MAX_INPUTS_PER_STEP=64;
+	/**
+	 * The number of games below which a task plays its range of games itself instead of splitting it further.
+	 */
+	private static final int GAMES_PER_TASK=16;
+	/**
+	 * The number of columns of every grid, 20 like {@link kopper.tetris.core.TetrisGame}.
+	 */
+	private int columns=20;
+	/**
+	 * The number of rows of every grid, 20 like {@link kopper.tetris.core.TetrisGame}.
+	 */
+	private int rows=20;
+	/**
+	 * The number of games to play.
+	 */
+	private int games=1000;
+	/**
+	 * The seed of the first game. Game {@code i} uses the seed {@code baseSeed+i}.
+	 */
+	private long baseSeed=0L;
+	/**
+	 * The number of pieces after which a game is stopped if it is not over yet.
+	 */
+	private int maxPieces=1000;
+	/**
+	 * The number of threads that play games.
+	 */
+	private int parallelism=Runtime.getRuntime().availableProcessors();
+	/**
+	 * Creates the policy of a game from the game's seed.
+	 */
+	private LongFunction<MovePolicy> policyFactory=RandomMovePolicy::new;
+	/**
+	 * Creates the randomizer of a game from the game's seed.
+	 */
+	private LongFunction<ShapeRandomizer> randomizerFactory=UniformRandomizer::new;
+
+	/**
+	 * Sets the size of the grid of every game. Default is 20 columns by 20 rows.
+	 * @param columns the number of columns.
+	 * @param rows the number of rows.
+	 */
+	public void setGridSize(int columns, int rows)
+	{
+		this.columns=columns;
+		this.rows=rows;
+	}
+	/**
+	 * Sets the number of games to play. Default is 1000.
+	 * @param games the number of games.
+	 */
+	public void setGames(int games)
+	{
+		this.games=Math.max(0,games);
+	}
+	/**
+	 * Returns the number of games to play.
+	 * @return the number of games.
+	 */
+	public int getGames()
+	{
+		return games;
+	}
+	/**
+	 * Sets the seed of the first game. Game {@code i} uses the seed {@code baseSeed+i}. Default is 0.
+	 * @param baseSeed the seed of the first game.
+	 */
+	public void setBaseSeed(long baseSeed)
+	{
+		this.baseSeed=baseSeed;
+	}
+	/**
+	 * Returns the seed of the first game.
+	 * @return the seed of the first game.
+	 */
+	public long getBaseSeed()
+	{
+		return baseSeed;
+	}
+	/**
+	 * Sets the number of pieces after which a game is stopped if it is not over yet. Default is 1000.
+	 * @param maxPieces the maximum number of pieces per game.
+	 */
+	public void setMaxPieces(int maxPieces)
+	{
+		this.maxPieces=Math.max(0,maxPieces);
+	}
+	/**
+	 * Returns the number of pieces after which a game is stopped.
+	 * @return the maximum number of pieces per game.
+	 */
+	public int getMaxPieces()
+	{
+		return maxPieces;
+	}
+	/**
+	 * Sets the number of threads that play games. Default is the number of available processors.
+	 * @param parallelism the number of threads, at least 1.
+	 */
+	public void setParallelism(int parallelism)
+	{
+		this.parallelism=Math.max(1,parallelism);
+	}
+	/**
+	 * Returns the number of threads that play games.
+	 * @return the number of threads.
+	 */
+	public int getParallelism()
+	{
+		return parallelism;
+	}
+	/**
+	 * Sets the factory creating the policy of every game from the game's seed. Default is {@link RandomMovePolicy}.
+	 * The factory is called from several threads at once.
+	 * @param policyFactory the policy factory.
+	 */
+	public void setPolicyFactory(LongFunction<MovePolicy> policyFactory)
+	{
+		this.policyFactory=policyFactory;
+	}
+	/**
+	 * Sets the factory creating the randomizer of every game from the game's seed. Default is {@link UniformRandomizer}.
+	 * The factory is called from several threads at once.
+	 * @param randomizerFactory the randomizer factory.
+	 */
+	public void setRandomizerFactory(LongFunction<ShapeRandomizer> randomizerFactory)
+	{
+		this.randomizerFactory=randomizerFactory;
+	}
+	/**
+	 * Plays every game of the batch and returns their aggregated statistics. The calling thread waits until all games are over.
+	 * @return the statistics of all games.
+	 */
+	public BatchStatistics run()
+	{
+		ForkJoinPool pool=new ForkJoinPool(parallelism);
+		try
+		{
+			return pool.invoke(new GameRange(0,games));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+	/**
+	 * Plays one game until it is over or reaches the piece limit and records it in the supplied statistics. After every gravity step the policy
+	 * is asked for inputs until it answers {@link TetrisEngine#INPUT_NONE}, the Shape locks or {@link BatchSimulator#MAX_INPUTS_PER_STEP} inputs were applied.
+	 * @param seed the seed of the game.
+	 * @param stats the statistics to record the game in.
+	 */
+	public void playGame(long seed, BatchStatistics stats)
+	{
+		TetrisEngine engine=new TetrisEngine(columns,rows,randomizerFactory.apply(seed));
+		MovePolicy policy=policyFactory.apply(seed);
+		engine.start();
+		int placed=0;
+		boolean over=false;
+		while(placed<maxPieces&&!over)
+		{
+			int result=engine.step();
+			for(int i=0;i<MAX_INPUTS_PER_STEP&&(result&TetrisEngine.RESULT_LOCKED)==0&&engine.getCurrentShape()!=null;i++)
+			{
+				int input=policy.nextInput(engine);
+				if(input==TetrisEngine.INPUT_NONE)
+					break;
+				result|=engine.input(input);
+			}
+			if((result&TetrisEngine.RESULT_LOCKED)!=0)
+			{
+				placed++;
+				stats.addClear(engine.getLastRowsCleared());
+			}
+			over=(result&TetrisEngine.RESULT_GAME_OVER)!=0;
+		}
+		stats.addGame(engine.getScore(),over);
+	}
+
+	/**
+	 * A range of games of the batch, which is either split in two halves or played by the task itself.
+	 */
+	private class GameRange extends RecursiveTask<BatchStatistics>
+	{
+		private static final long serialVersionUID=1L;
+		/**
+		 * The first game of the range.
+		 */
+		private final int from;
+		/**
+		 * The game after the last game of the range.
+		 */
+		private final int to;
+
+		/**
+		 * Creates a task playing the games {@code from} to {@code to-1}.
+		 * @param from the first game.
+		 * @param to the game after the last game.
+		 */
+		GameRange(int from, int to)
+		{
+			this.from=from;
+			this.to=to;
+		}
+		protected BatchStatistics compute()
+		{
+			if(to-from<=GAMES_PER_TASK)
+			{
+				BatchStatistics stats=new BatchStatistics();
+				for(int i=from;i<to;i++)
+					playGame(baseSeed+i,stats);
+				return stats;
+			}
+			int middle=(from+to)>>>1;
+			GameRange upper=new GameRange(middle,to);
+			upper.fork();
+			BatchStatistics stats=new GameRange(from,middle).compute();
+			stats.merge(upper.join());
+			return stats;
+		}
+	}
+
+	/**
+	 * Runs a batch from the command line with {@link RandomMovePolicy} and prints its statistics and throughput.
+	 * Arguments, all optional and in this order: the number of games, the maximum number of pieces per game, the base seed,
+	 * the randomizer ({@code uniform}, {@code bag} or {@code history}) and the number of threads.
+	 * @param args the command line arguments.
+	 */
+	public static void main(String[] args)
+	{
+		BatchSimulator sim=new BatchSimulator();
+		if(args.length>0)
+			sim.setGames(Integer.parseInt(args[0]));
+		if(args.length>1)
+			sim.setMaxPieces(Integer.parseInt(args[1]));
+		if(args.length>2)
+			sim.setBaseSeed(Long.parseLong(args[2]));
+		if(args.length>3)
+		{
+			if(args[3].equalsIgnoreCase("bag"))
+				sim.setRandomizerFactory(BagRandomizer::new);
+			else if(args[3].equalsIgnoreCase("history"))
+				sim.setRandomizerFactory(HistoryRandomizer::new);
+			else
+				sim.setRandomizerFactory(UniformRandomizer::new);
+		}
+		if(args.length>4)
+			sim.setParallelism(Integer.parseInt(args[4]));
+
+		long start=System.nanoTime();
+		BatchStatistics stats=sim.run();
+		double seconds=(System.nanoTime()-start)/1e9;
+		System.out.println(stats);
+		System.out.println(String.format("%d games on %d threads in %.3f s (%.0f games/s, %.0f pieces/s)",stats.getGames(),sim.getParallelism(),seconds,
+				stats.getGames()/seconds,stats.getPieces().getSum()/seconds));
+	}
+}
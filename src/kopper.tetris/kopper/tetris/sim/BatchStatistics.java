@@ -0,0 +1,165 @@
+package kopper.tetris.sim;
+
+import kopper.tetris.core.TetrisScore;
+import kopper.tetris.shape.ShapeKind;
+
+/**
+ * The aggregated {@link TetrisScore} statistics of a batch of games played by a {@link BatchSimulator}: the pieces placed per Shape type, the
+ * distributions of rows, score and pieces per game, and how often each number of rows was deleted at once.
+ * <p>
+ * Objects of this class are not thread safe. Every worker of a batch fills its own object, which are then combined with
+ * {@link BatchStatistics#merge(BatchStatistics)}.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class BatchStatistics
+{
+	/**
+	 * The number of games played.
+	 */
+	private long games=0;
+	/**
+	 * The number of games that ended because the pile reached the top of the grid.
+	 */
+	private long gamesOver=0;
+	/**
+	 * The number of pieces placed per Shape kind, indexed by {@link ShapeKind#ordinal()}.
+	 */
+	private final long[] shapeCounts=new long[ShapeKind.COUNT];
+	/**
+	 * The number of locks that deleted 0, 1, 2, 3 and 4 or more rows at once.
+	 */
+	private final long[] clears=new long[5];
+	/**
+	 * The distribution of the number of rows deleted per game.
+	 */
+	private final Histogram rows=new Histogram(1,1000);
+	/**
+	 * The distribution of the {@link TetrisScore#getScore()} per game.
+	 */
+	private final Histogram scores=new Histogram(5,1000);
+	/**
+	 * The distribution of the number of pieces placed per game.
+	 */
+	private final Histogram pieces=new Histogram(5,1000);
+
+	/**
+	 * Records the final score of one game.
+	 * @param score the score of the game.
+	 * @param gameOver True if the game ended because the pile reached the top of the grid, false if it was stopped at the piece limit.
+	 */
+	public void addGame(TetrisScore score, boolean gameOver)
+	{
+		games++;
+		if(gameOver)
+			gamesOver++;
+		for(int i=0;i<shapeCounts.length;i++)
+			shapeCounts[i]+=score.getShapeCount(ShapeKind.fromIndex(i));
+		rows.add(score.getRows());
+		scores.add(score.getScore());
+		pieces.add(score.getShapeTotal());
+	}
+	/**
+	 * Records one lock of a Shape.
+	 * @param rowsCleared the number of rows the lock deleted.
+	 */
+	public void addClear(int rowsCleared)
+	{
+		clears[Math.min(rowsCleared,clears.length-1)]++;
+	}
+	/**
+	 * Adds every game recorded by the supplied object to this object.
+	 * @param other the statistics to add.
+	 */
+	public void merge(BatchStatistics other)
+	{
+		games+=other.games;
+		gamesOver+=other.gamesOver;
+		for(int i=0;i<shapeCounts.length;i++)
+			shapeCounts[i]+=other.shapeCounts[i];
+		for(int i=0;i<clears.length;i++)
+			clears[i]+=other.clears[i];
+		rows.merge(other.rows);
+		scores.merge(other.scores);
+		pieces.merge(other.pieces);
+	}
+	/**
+	 * Returns the number of games played.
+	 * @return the number of games.
+	 */
+	public long getGames()
+	{
+		return games;
+	}
+	/**
+	 * Returns the number of games that ended because the pile reached the top of the grid, rather than at the piece limit.
+	 * @return the number of games lost.
+	 */
+	public long getGamesOver()
+	{
+		return gamesOver;
+	}
+	/**
+	 * Returns the number of pieces of one Shape kind placed over all games.
+	 * @param kind the kind of Tetromino.
+	 * @return the number of pieces.
+	 */
+	public long getShapeCount(ShapeKind kind)
+	{
+		return shapeCounts[kind.ordinal()];
+	}
+	/**
+	 * Returns the number of locks that deleted the specified number of rows at once.
+	 * @param rowsCleared the number of rows, 0 to 4. 4 also counts locks deleting more rows on custom Shapes.
+	 * @return the number of locks.
+	 */
+	public long getClearCount(int rowsCleared)
+	{
+		return clears[rowsCleared];
+	}
+	/**
+	 * Returns the distribution of the number of rows deleted per game.
+	 * @return the rows histogram.
+	 */
+	public Histogram getRows()
+	{
+		return rows;
+	}
+	/**
+	 * Returns the distribution of the score per game.
+	 * @return the score histogram.
+	 */
+	public Histogram getScores()
+	{
+		return scores;
+	}
+	/**
+	 * Returns the distribution of the number of pieces placed per game.
+	 * @return the pieces histogram.
+	 */
+	public Histogram getPieces()
+	{
+		return pieces;
+	}
+	/**
+	 * Returns this object's String representation, a multi line report of all statistics.
+	 * @return this object's String representation.
+	 */
+	public String toString()
+	{
+		String nl=System.lineSeparator();
+		StringBuilder sb=new StringBuilder();
+		sb.append("games=").append(games).append("   over=").append(gamesOver).append(nl);
+		sb.append("pieces per shape:");
+		for(int i=0;i<shapeCounts.length;i++)
+			sb.append("   ").append(ShapeKind.fromIndex(i)).append("=").append(shapeCounts[i]);
+		sb.append(nl).append("locks by rows deleted:");
+		for(int i=0;i<clears.length;i++)
+			sb.append("   ").append(i).append(i==clears.length-1?"+=":"=").append(clears[i]);
+		sb.append(nl).append("rows per game:   ").append(rows);
+		sb.append(nl).append("score per game:   ").append(scores);
+		sb.append(nl).append("pieces per game:   ").append(pieces);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,168 @@
+package kopper.tetris.sim;
+
+/**
+ * A histogram of non negative integer values with fixed width buckets. Values past the last bucket are counted in the last bucket, while the exact
+ * count, sum, minimum and maximum of all values are kept separately. Histograms of the same layout can be merged, which is how the per thread
+ * results of a {@link BatchSimulator} run are combined without any locking.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class Histogram
+{
+	/**
+	 * The range of values counted by each bucket.
+	 */
+	private final int bucketWidth;
+	/**
+	 * The number of values counted by each bucket. Bucket {@code b} counts the values {@code b*bucketWidth} to {@code (b+1)*bucketWidth-1}.
+	 */
+	private final long[] buckets;
+	/**
+	 * The number of values added.
+	 */
+	private long count=0;
+	/**
+	 * The sum of all values added.
+	 */
+	private long sum=0;
+	/**
+	 * The smallest value added.
+	 */
+	private long min=Long.MAX_VALUE;
+	/**
+	 * The largest value added.
+	 */
+	private long max=Long.MIN_VALUE;
+
+	/**
+	 * Creates an empty histogram.
+	 * @param bucketWidth the range of values counted by each bucket, at least 1.
+	 * @param bucketCount the number of buckets, at least 1.
+	 */
+	public Histogram(int bucketWidth, int bucketCount)
+	{
+		this.bucketWidth=Math.max(1,bucketWidth);
+		this.buckets=new long[Math.max(1,bucketCount)];
+	}
+	/**
+	 * Counts one value.
+	 * @param value the value, negative values are counted in the first bucket.
+	 */
+	public void add(long value)
+	{
+		long b=Math.max(0L,value)/bucketWidth;
+		buckets[(int)Math.min(b,buckets.length-1)]++;
+		count++;
+		sum+=value;
+		min=Math.min(min,value);
+		max=Math.max(max,value);
+	}
+	/**
+	 * Adds every value counted by the supplied histogram to this histogram.
+	 * @param other a histogram with the same bucket width and bucket count as this histogram.
+	 * @throws IllegalArgumentException if the layouts of the histograms differ.
+	 */
+	public void merge(Histogram other)
+	{
+		if(other.bucketWidth!=this.bucketWidth||other.buckets.length!=this.buckets.length)
+			throw new IllegalArgumentException("Histogram layouts differ.");
+		for(int b=0;b<buckets.length;b++)
+			buckets[b]+=other.buckets[b];
+		count+=other.count;
+		sum+=other.sum;
+		min=Math.min(min,other.min);
+		max=Math.max(max,other.max);
+	}
+	/**
+	 * Returns the range of values counted by each bucket.
+	 * @return the bucket width.
+	 */
+	public int getBucketWidth()
+	{
+		return bucketWidth;
+	}
+	/**
+	 * Returns the number of buckets.
+	 * @return the bucket count.
+	 */
+	public int getBucketCount()
+	{
+		return buckets.length;
+	}
+	/**
+	 * Returns the number of values counted by a bucket.
+	 * @param bucket the bucket, 0 to {@link Histogram#getBucketCount()}{@code -1}.
+	 * @return the number of values.
+	 */
+	public long getBucket(int bucket)
+	{
+		return buckets[bucket];
+	}
+	/**
+	 * Returns the number of values added.
+	 * @return the count.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+	/**
+	 * Returns the sum of all values added.
+	 * @return the sum.
+	 */
+	public long getSum()
+	{
+		return sum;
+	}
+	/**
+	 * Returns the smallest value added.
+	 * @return the minimum, or 0 if no value was added.
+	 */
+	public long getMin()
+	{
+		return count==0?0:min;
+	}
+	/**
+	 * Returns the largest value added.
+	 * @return the maximum, or 0 if no value was added.
+	 */
+	public long getMax()
+	{
+		return count==0?0:max;
+	}
+	/**
+	 * Returns the mean of all values added.
+	 * @return the mean, or 0 if no value was added.
+	 */
+	public double getMean()
+	{
+		return count==0?0.0:(double)sum/count;
+	}
+	/**
+	 * Returns an estimate of a percentile, accurate to one bucket width.
+	 * @param percentile the percentile, 0 to 100.
+	 * @return the lower bound of the bucket containing the percentile, or 0 if no value was added.
+	 */
+	public long getPercentile(double percentile)
+	{
+		long rank=(long)Math.ceil(count*Math.min(100.0,Math.max(0.0,percentile))/100.0);
+		long seen=0;
+		for(int b=0;b<buckets.length;b++)
+		{
+			seen+=buckets[b];
+			if(seen>=rank&&seen>0)
+				return (long)b*bucketWidth;
+		}
+		return 0;
+	}
+	/**
+	 * Returns this object's String representation, a single line with the count, mean, minimum, median, 90th and 99th percentile and maximum.
+	 * The individual buckets are available through {@link Histogram#getBucket(int)}.
+	 * @return this object's String representation.
+	 */
+	public String toString()
+	{
+		return "n="+count+"   mean="+String.format("%.2f",getMean())+"   min="+getMin()+"   p50="+getPercentile(50)+"   p90="+getPercentile(90)
+			+"   p99="+getPercentile(99)+"   max="+getMax();
+	}
+}
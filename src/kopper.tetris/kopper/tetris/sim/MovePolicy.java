@@ -0,0 +1,23 @@
+package kopper.tetris.sim;
+
+import kopper.tetris.core.TetrisEngine;
+
+/**
+ * A player of a headless game, also known as a bot. The {@link BatchSimulator} asks the policy for inputs after every gravity step of the game
+ * and applies them to the game's {@link TetrisEngine} one by one, until the policy answers {@link TetrisEngine#INPUT_NONE} or the current Shape locks.
+ * <p>
+ * Every game gets its own policy object, created by the {@link BatchSimulator}'s policy factory, so a policy may keep state about the game it plays
+ * without any synchronization.
+ * </p>
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public interface MovePolicy
+{
+	/**
+	 * Returns the next input to apply to the game.
+	 * @param engine the game being played. The policy may read it but must not change it.
+	 * @return one of the {@code INPUT_...} constants of {@link TetrisEngine}, {@link TetrisEngine#INPUT_NONE} to wait for the next gravity step.
+	 */
+	int nextInput(TetrisEngine engine);
+}
@@ -0,0 +1,68 @@
+package kopper.tetris.sim;
+
+import java.util.SplittableRandom;
+
+import kopper.tetris.core.TetrisEngine;
+import kopper.tetris.shape.Shape;
+
+/**
+ * A baseline policy that picks a random rotation and a random column for every Shape and then drops it. It plays badly, but it plays fast and
+ * reproducibly, which makes it useful as the reference point other policies are measured against.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ *
+ */
+public class RandomMovePolicy implements MovePolicy
+{
+	/**
+	 * The random number generator of this policy.
+	 */
+	private final SplittableRandom random;
+	/**
+	 * The Shape the remaining moves were chosen for.
+	 */
+	private Shape plannedShape;
+	/**
+	 * The number of clockwise rotations still to be made.
+	 */
+	private int rotationsLeft;
+	/**
+	 * The number of columns still to be moved, negative for left and positive for right.
+	 */
+	private int shiftLeft;
+
+	/**
+	 * Creates a policy whose random choices are determined by the supplied seed.
+	 * @param seed the seed.
+	 */
+	public RandomMovePolicy(long seed)
+	{
+		this.random=new SplittableRandom(seed^0x5DEECE66DL);
+	}
+	public int nextInput(TetrisEngine engine)
+	{
+		Shape s=engine.getCurrentShape();
+		if(s!=plannedShape)
+		{
+			plannedShape=s;
+			int half=engine.getGrid().getColumnCount()/2;
+			rotationsLeft=random.nextInt(4);
+			shiftLeft=random.nextInt(-half,half+1);
+		}
+		if(rotationsLeft>0)
+		{
+			rotationsLeft--;
+			return TetrisEngine.INPUT_ROTATE_CW;
+		}
+		if(shiftLeft<0)
+		{
+			shiftLeft++;
+			return TetrisEngine.INPUT_LEFT;
+		}
+		if(shiftLeft>0)
+		{
+			shiftLeft--;
+			return TetrisEngine.INPUT_RIGHT;
+		}
+		return TetrisEngine.INPUT_DOWN;
+	}
+}
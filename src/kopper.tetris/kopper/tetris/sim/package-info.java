@@ -0,0 +1,6 @@
+/**
+ * This package contains the classes that play many headless Tetris games at once, as fast as the machine allows, to evaluate move policies (bots)
+ * and scoring changes. Nothing in this package paints or needs a display.
+ * @author <a href="https://github.com/kopperknight">KopperKnight</a>
+ */
+package kopper.tetris.sim;
@@ -10,4 +10,8 @@ module kopper.tetris
 {
 	requires java.base;
 	requires java.desktop;
+	requires java.management;
+	requires jdk.management;
+	requires jdk.jfr;
+	exports kopper.tetris.core to java.management;
 }
\ No newline at end of file
@@ -43,7 +43,7 @@ mkdir %classoutdir%\kopper.tetris\
 )
 @echo on
 
-javac -d %classoutdir%\kopper.tetris\ src\kopper.tetris\kopper\tetris\core\*.java src\kopper.tetris\kopper\tetris\shape\*.java
+javac -d %classoutdir%\kopper.tetris\ src\kopper.tetris\kopper\tetris\core\*.java src\kopper.tetris\kopper\tetris\shape\*.java src\kopper.tetris\kopper\tetris\sim\*.java
 
 javac -d %classoutdir%\kopper.tetris\ src\kopper.tetris\*.java
 